@@ -2,13 +2,19 @@ package de.otto.synapse.configuration.kinesis;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.otto.synapse.configuration.SynapseAutoConfiguration;
+import de.otto.synapse.configuration.SynapseProperties;
 import de.otto.synapse.configuration.aws.AwsProperties;
 import de.otto.synapse.configuration.aws.SynapseAwsAuthConfiguration;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.receiver.MessageLogReceiverEndpointFactory;
 import de.otto.synapse.endpoint.receiver.kinesis.KinesisMessageLogReceiverEndpointFactory;
+import de.otto.synapse.endpoint.receiver.kinesis.KinesisReceiverSettings;
+import de.otto.synapse.endpoint.receiver.kinesis.KinesisShardMultiplexer;
 import de.otto.synapse.endpoint.sender.MessageSenderEndpointFactory;
 import de.otto.synapse.endpoint.sender.kinesis.KinesisMessageSenderEndpointFactory;
+import de.otto.synapse.endpoint.sender.kinesis.KinesisSenderSettings;
+import de.otto.synapse.endpoint.sender.kinesis.OversizedRecordHandler;
+import de.otto.synapse.translator.CompressionCodec;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -27,7 +33,9 @@ import software.amazon.awssdk.core.retry.conditions.RetryCondition;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -39,7 +47,7 @@ import static software.amazon.awssdk.core.interceptor.SdkExecutionAttribute.SERV
 
 @Configuration
 @Import({SynapseAwsAuthConfiguration.class, SynapseAutoConfiguration.class})
-@EnableConfigurationProperties(AwsProperties.class)
+@EnableConfigurationProperties({AwsProperties.class, KinesisProperties.class})
 public class KinesisAutoConfiguration {
 
     private static final Logger LOG = getLogger(KinesisAutoConfiguration.class);
@@ -78,21 +86,59 @@ public class KinesisAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean(name = "messageLogSenderEndpointFactory")
     public MessageSenderEndpointFactory messageLogSenderEndpointFactory(final MessageInterceptorRegistry registry,
-                                                                        final KinesisAsyncClient kinesisClient) {
+                                                                        final KinesisAsyncClient kinesisClient,
+                                                                        final KinesisProperties kinesisProperties,
+                                                                        final SynapseProperties synapseProperties,
+                                                                        final Optional<OversizedRecordHandler> oversizedRecordHandler) {
         LOG.info("Auto-configuring Kinesis MessageSenderEndpointFactory");
-        return new KinesisMessageSenderEndpointFactory(registry, kinesisClient);
+        final KinesisProperties.Aggregation aggregation = kinesisProperties.getAggregation();
+        if (aggregation.isEnabled()) {
+            LOG.info("Aggregating Kinesis records up to {} bytes", aggregation.getMaxRecordSize());
+        }
+        final SynapseProperties.Sender.Compression compression = synapseProperties.getSender().getCompression();
+        final CompressionCodec compressionCodec = compression.toCompressionCodec();
+        if (compressionCodec != null) {
+            LOG.info("Compressing Kinesis records of at least {} characters using {}", compression.getMinSize(), compressionCodec.name());
+        }
+        final KinesisSenderSettings senderSettings = kinesisProperties.getSender().toSenderSettingsBuilder()
+                .withMessageFormat(synapseProperties.getSender().getMessageFormat())
+                .withPayloadCodec(synapseProperties.getSender().toPayloadCodec())
+                .withRecordAggregation(aggregation.isEnabled(), aggregation.getMaxRecordSize())
+                .withOversizedRecordHandler(oversizedRecordHandler.orElse(OversizedRecordHandler.rejectOversizedRecords()))
+                .withCompression(compressionCodec, compression.getMinSize())
+                .withTrustedJsonPayloads(synapseProperties.getSender().isTrustJsonPayloads())
+                .build();
+        return new KinesisMessageSenderEndpointFactory(registry, kinesisClient, senderSettings);
     }
 
     @Bean
     @ConditionalOnMissingBean(name = "messageLogReceiverEndpointFactory")
     public MessageLogReceiverEndpointFactory messageLogReceiverEndpointFactory(final MessageInterceptorRegistry interceptorRegistry,
                                                                                final KinesisAsyncClient kinesisClient,
-                                                                               final ApplicationEventPublisher eventPublisher) {
+                                                                               final ApplicationEventPublisher eventPublisher,
+                                                                               final KinesisProperties kinesisProperties) {
         LOG.info("Auto-configuring Kinesis MessageLogReceiverEndpointFactory");
         final ExecutorService executorService = newCachedThreadPool(
                 new ThreadFactoryBuilder().setNameFormat("kinesis-message-log-%d").build()
         );
-        return new KinesisMessageLogReceiverEndpointFactory(interceptorRegistry, kinesisClient, executorService, eventPublisher);
+        final KinesisProperties.EnhancedFanOut enhancedFanOut = kinesisProperties.getEnhancedFanOut();
+        final String enhancedFanOutConsumerName = enhancedFanOut.isEnabled() ? enhancedFanOut.getConsumerName() : null;
+        if (enhancedFanOutConsumerName != null) {
+            LOG.info("Using enhanced fan-out with stream consumer {}", enhancedFanOutConsumerName);
+        }
+        final KinesisShardMultiplexer shardMultiplexer = kinesisProperties.getSharedShardReads().isEnabled()
+                ? KinesisShardMultiplexer.sharedShardMultiplexer()
+                : null;
+        if (shardMultiplexer != null && enhancedFanOutConsumerName == null) {
+            LOG.info("Sharing reads of Kinesis shards between all consumers of a stream");
+        }
+        final KinesisProperties.Polling polling = kinesisProperties.getPolling();
+        return new KinesisMessageLogReceiverEndpointFactory(interceptorRegistry, kinesisClient, executorService, eventPublisher, Clock.systemDefaultZone(), channelName -> KinesisReceiverSettings.builder()
+                .withPollingStrategy(polling.pollingStrategyFor(channelName))
+                .withEnhancedFanOut(enhancedFanOutConsumerName)
+                .withShardDiscoveryInterval(kinesisProperties.getShardDiscoveryInterval())
+                .withShardMultiplexer(shardMultiplexer)
+                .build());
     }
 
 
@@ -0,0 +1,334 @@
+package de.otto.synapse.configuration.kinesis;
+
+import de.otto.synapse.endpoint.receiver.kinesis.AdaptivePollingStrategy;
+import de.otto.synapse.endpoint.receiver.kinesis.KinesisReceiverSettings;
+import de.otto.synapse.endpoint.sender.kinesis.KinesisRecordAggregator;
+import de.otto.synapse.endpoint.sender.kinesis.KinesisSenderSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "synapse.aws.kinesis")
+public class KinesisProperties {
+
+    private final EnhancedFanOut enhancedFanOut;
+    private final Polling polling = new Polling();
+    private final SharedShardReads sharedShardReads = new SharedShardReads();
+    private final Aggregation aggregation = new Aggregation();
+    private final Sender sender = new Sender();
+
+    /**
+     * Interval used to discover new shards of consumed Kinesis message logs. After a stream was resharded,
+     * consumption of the child shards is started without restarting the service.
+     */
+    private Duration shardDiscoveryInterval = KinesisReceiverSettings.DEFAULT_SHARD_DISCOVERY_INTERVAL;
+
+    public KinesisProperties(@Value("${spring.application.name:Synapse}") String defaultName) {
+        this.enhancedFanOut = new EnhancedFanOut(defaultName);
+    }
+
+    public EnhancedFanOut getEnhancedFanOut() {
+        return enhancedFanOut;
+    }
+
+    public Polling getPolling() {
+        return polling;
+    }
+
+    public SharedShardReads getSharedShardReads() {
+        return sharedShardReads;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    public Sender getSender() {
+        return sender;
+    }
+
+    public Duration getShardDiscoveryInterval() {
+        return shardDiscoveryInterval;
+    }
+
+    public void setShardDiscoveryInterval(Duration shardDiscoveryInterval) {
+        this.shardDiscoveryInterval = shardDiscoveryInterval;
+    }
+
+    public static class EnhancedFanOut {
+
+        /**
+         * If enabled, Kinesis message logs are consumed using enhanced fan-out (SubscribeToShard) instead of
+         * polling the shards using GetRecords.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The name of the stream consumer that is registered for every consumed Kinesis stream. By default, this
+         * is the same as property 'spring.application.name'.
+         *
+         * Only a single subscription per stream consumer and shard is possible at the same time, so every
+         * instance of a service consuming the same stream requires a different consumer name.
+         */
+        private String consumerName;
+
+        private EnhancedFanOut(final String defaultName) {
+            this.consumerName = defaultName;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getConsumerName() {
+            return consumerName;
+        }
+
+        public void setConsumerName(String consumerName) {
+            this.consumerName = consumerName;
+        }
+    }
+
+    public static class SharedShardReads {
+
+        /**
+         * If enabled, all Kinesis message logs consuming the same stream in this JVM are sharing the GetRecords
+         * requests of the shards, instead of polling every shard on their own. Not used if enhanced fan-out is
+         * enabled.
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Aggregation {
+
+        /**
+         * If enabled, messages sent in batches to the same shard are aggregated into Kinesis records using the
+         * aggregation format of the Kinesis Producer Library. Aggregated records are de-aggregated by Synapse
+         * and by the Kinesis Client Library.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The maximum number of bytes of an aggregated record.
+         */
+        private int maxRecordSize = KinesisRecordAggregator.DEFAULT_MAX_AGGREGATED_RECORD_SIZE;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxRecordSize() {
+            return maxRecordSize;
+        }
+
+        public void setMaxRecordSize(int maxRecordSize) {
+            this.maxRecordSize = maxRecordSize;
+        }
+    }
+
+    public static class Sender {
+
+        /**
+         * The maximum number of PutRecords requests that are sent concurrently by a single message sender.
+         */
+        private int maxInFlightBatches = KinesisSenderSettings.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+
+        /**
+         * The maximum number of PutRecords requests of a single message sender that are waiting to be sent. If
+         * more requests would be waiting, sending fails instead of buffering the messages without limits.
+         */
+        private int maxQueuedBatches = KinesisSenderSettings.DEFAULT_MAX_QUEUED_BATCHES;
+
+        /**
+         * The maximum number of retries of records that could not be written.
+         */
+        private int maxRetries = KinesisSenderSettings.DEFAULT_MAX_RETRIES;
+
+        /**
+         * Delay before the first retry. Consecutive retries are backing off exponentially, starting with this delay.
+         */
+        private Duration retryBaseDelay = KinesisSenderSettings.DEFAULT_RETRY_BASE_DELAY;
+
+        /**
+         * Maximum delay between two retries.
+         */
+        private Duration retryMaxDelay = KinesisSenderSettings.DEFAULT_RETRY_MAX_DELAY;
+
+        public int getMaxInFlightBatches() {
+            return maxInFlightBatches;
+        }
+
+        public void setMaxInFlightBatches(int maxInFlightBatches) {
+            this.maxInFlightBatches = maxInFlightBatches;
+        }
+
+        public int getMaxQueuedBatches() {
+            return maxQueuedBatches;
+        }
+
+        public void setMaxQueuedBatches(int maxQueuedBatches) {
+            this.maxQueuedBatches = maxQueuedBatches;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getRetryBaseDelay() {
+            return retryBaseDelay;
+        }
+
+        public void setRetryBaseDelay(Duration retryBaseDelay) {
+            this.retryBaseDelay = retryBaseDelay;
+        }
+
+        public Duration getRetryMaxDelay() {
+            return retryMaxDelay;
+        }
+
+        public void setRetryMaxDelay(Duration retryMaxDelay) {
+            this.retryMaxDelay = retryMaxDelay;
+        }
+
+        public KinesisSenderSettings toSenderSettings() {
+            return toSenderSettingsBuilder().build();
+        }
+
+        /**
+         * @return a builder of KinesisSenderSettings, initialized with the concurrency and retry settings of
+         * these properties.
+         */
+        public KinesisSenderSettings.Builder toSenderSettingsBuilder() {
+            return KinesisSenderSettings.builder()
+                    .withMaxInFlightBatches(maxInFlightBatches)
+                    .withMaxQueuedBatches(maxQueuedBatches)
+                    .withMaxRetries(maxRetries)
+                    .withRetryBaseDelay(retryBaseDelay)
+                    .withRetryMaxDelay(retryMaxDelay);
+        }
+    }
+
+    /**
+     * Settings of the AdaptivePollingStrategy used to poll the shards of Kinesis message logs.
+     */
+    public static class PollingSettings {
+
+        /**
+         * Delay between two polls, if the last poll returned a full page of records, or if the reader is
+         * catching up.
+         */
+        private Duration minDelay = AdaptivePollingStrategy.DEFAULT_MIN_DELAY;
+
+        /**
+         * Delay after polls returning some records. Consecutive empty polls are backing off exponentially,
+         * starting with this delay.
+         */
+        private Duration baseDelay = AdaptivePollingStrategy.DEFAULT_BASE_DELAY;
+
+        /**
+         * Maximum delay between two polls.
+         */
+        private Duration maxDelay = AdaptivePollingStrategy.DEFAULT_MAX_DELAY;
+
+        /**
+         * If the reader is more than this duration behind the tip of the shard, the shard is polled using
+         * min-delay.
+         */
+        private Duration catchUpThreshold = AdaptivePollingStrategy.DEFAULT_CATCH_UP_THRESHOLD;
+
+        /**
+         * Random jitter added to every delay, as a fraction of the delay.
+         */
+        private double jitter = AdaptivePollingStrategy.DEFAULT_JITTER;
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public Duration getBaseDelay() {
+            return baseDelay;
+        }
+
+        public void setBaseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public Duration getCatchUpThreshold() {
+            return catchUpThreshold;
+        }
+
+        public void setCatchUpThreshold(Duration catchUpThreshold) {
+            this.catchUpThreshold = catchUpThreshold;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+
+        public AdaptivePollingStrategy toPollingStrategy() {
+            return AdaptivePollingStrategy.builder()
+                    .withMinDelay(minDelay)
+                    .withBaseDelay(baseDelay)
+                    .withMaxDelay(maxDelay)
+                    .withCatchUpThreshold(catchUpThreshold)
+                    .withJitter(jitter)
+                    .build();
+        }
+    }
+
+    public static class Polling extends PollingSettings {
+
+        /**
+         * Polling settings per channel, overriding the default settings. The key of the map is the name of the
+         * channel.
+         */
+        private final Map<String, PollingSettings> channels = new HashMap<>();
+
+        public Map<String, PollingSettings> getChannels() {
+            return channels;
+        }
+
+        public AdaptivePollingStrategy pollingStrategyFor(final String channelName) {
+            return channels.getOrDefault(channelName, this).toPollingStrategy();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package de.otto.synapse.endpoint.kinesis;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes and decodes Kinesis records using the aggregation format of the
+ * <a href="https://github.com/awslabs/amazon-kinesis-producer/blob/master/aggregation-format.md">Kinesis Producer Library</a>.
+ * <p>
+ *     An aggregated record is containing several user records. It consists of a four byte magic number, the
+ *     protobuf encoded {@code AggregatedRecord} message, and the MD5 checksum of the protobuf message:
+ * </p>
+ * <pre><code>
+ * message AggregatedRecord {
+ *     repeated string partition_key_table     = 1;
+ *     repeated string explicit_hash_key_table = 2;
+ *     repeated Record records                 = 3;
+ * }
+ * message Record {
+ *     required uint64 partition_key_index     = 1;
+ *     optional uint64 explicit_hash_key_index = 2;
+ *     required bytes  data                    = 3;
+ *     repeated Tag    tags                    = 4;
+ * }
+ * </code></pre>
+ * <p>
+ *     Records written by the KPL can therefore be consumed by Synapse, and the KCL is able to consume records
+ *     aggregated by Synapse.
+ * </p>
+ */
+public final class KinesisAggregatedRecord {
+
+    private static final byte[] MAGIC = new byte[]{(byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2};
+    private static final int CHECKSUM_LENGTH = 16;
+
+    /**
+     * The number of bytes added to the encoded user records by the magic number and the checksum.
+     */
+    public static final int OVERHEAD = MAGIC.length + CHECKSUM_LENGTH;
+
+    private static final int PARTITION_KEY_TABLE = 1;
+    private static final int RECORDS = 3;
+    private static final int PARTITION_KEY_INDEX = 1;
+    private static final int DATA = 3;
+
+    private static final int WIRE_TYPE_VARINT = 0;
+    private static final int WIRE_TYPE_FIXED64 = 1;
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_TYPE_FIXED32 = 5;
+
+    private KinesisAggregatedRecord() {
+    }
+
+    /**
+     * Returns true, if the data is starting with the magic number of aggregated records.
+     *
+     * @param data the data of a Kinesis record
+     * @return true, if the record is an aggregated record, false otherwise
+     */
+    public static boolean isAggregated(final @Nonnull ByteBuffer data) {
+        if (data.remaining() <= OVERHEAD) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(data.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the user records into a single aggregated record.
+     *
+     * @param userRecords the user records
+     * @return data of the aggregated record
+     */
+    public static byte[] encode(final @Nonnull List<UserRecord> userRecords) {
+        final Map<String, Integer> partitionKeyTable = new LinkedHashMap<>();
+        userRecords.forEach(userRecord -> partitionKeyTable.putIfAbsent(userRecord.getPartitionKey(), partitionKeyTable.size()));
+
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        partitionKeyTable.keySet().forEach(partitionKey -> writeBytes(message, PARTITION_KEY_TABLE, partitionKey.getBytes(UTF_8)));
+        userRecords.forEach(userRecord -> {
+            final ByteArrayOutputStream record = new ByteArrayOutputStream();
+            writeTag(record, PARTITION_KEY_INDEX, WIRE_TYPE_VARINT);
+            writeVarint(record, partitionKeyTable.get(userRecord.getPartitionKey()));
+            writeBytes(record, DATA, userRecord.getData());
+            writeBytes(message, RECORDS, record.toByteArray());
+        });
+        final byte[] protobufMessage = message.toByteArray();
+
+        final ByteArrayOutputStream aggregated = new ByteArrayOutputStream(protobufMessage.length + OVERHEAD);
+        aggregated.write(MAGIC, 0, MAGIC.length);
+        aggregated.write(protobufMessage, 0, protobufMessage.length);
+        final byte[] checksum = md5(protobufMessage);
+        aggregated.write(checksum, 0, checksum.length);
+        return aggregated.toByteArray();
+    }
+
+    /**
+     * Returns the number of bytes that a user record is adding to an aggregated record.
+     *
+     * @param partitionKey the partition key of the user record
+     * @param dataLength the length of the data of the user record
+     * @return encoded size of the user record, including the size of the partition key
+     */
+    public static int encodedSize(final @Nonnull String partitionKey, final int dataLength) {
+        final int partitionKeyLength = partitionKey.getBytes(UTF_8).length;
+        final int recordLength = 1 + varintSize(Integer.MAX_VALUE) + 1 + varintSize(dataLength) + dataLength;
+        return 1 + varintSize(partitionKeyLength) + partitionKeyLength
+                + 1 + varintSize(recordLength) + recordLength;
+    }
+
+    /**
+     * Decodes an aggregated record into its user records.
+     *
+     * @param data the data of the aggregated record
+     * @return list of user records
+     * @throws IllegalArgumentException if the data is not a valid aggregated record
+     */
+    public static ImmutableList<UserRecord> decode(final @Nonnull ByteBuffer data) {
+        if (!isAggregated(data)) {
+            throw new IllegalArgumentException("Data is not an aggregated record");
+        }
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        final byte[] protobufMessage = Arrays.copyOfRange(bytes, MAGIC.length, bytes.length - CHECKSUM_LENGTH);
+        final byte[] checksum = Arrays.copyOfRange(bytes, bytes.length - CHECKSUM_LENGTH, bytes.length);
+        if (!Arrays.equals(checksum, md5(protobufMessage))) {
+            throw new IllegalArgumentException("Checksum of aggregated record does not match");
+        }
+
+        final List<String> partitionKeyTable = new ArrayList<>();
+        final List<ByteBuffer> records = new ArrayList<>();
+        final ByteBuffer message = ByteBuffer.wrap(protobufMessage);
+        while (message.hasRemaining()) {
+            final long tag = readVarint(message);
+            final int fieldNumber = (int) (tag >>> 3);
+            final int wireType = (int) (tag & 0x07);
+            if (fieldNumber == PARTITION_KEY_TABLE && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                partitionKeyTable.add(new String(readBytes(message), UTF_8));
+            } else if (fieldNumber == RECORDS && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                records.add(ByteBuffer.wrap(readBytes(message)));
+            } else {
+                skipField(message, wireType);
+            }
+        }
+
+        final ImmutableList.Builder<UserRecord> userRecords = ImmutableList.builder();
+        for (final ByteBuffer record : records) {
+            Integer partitionKeyIndex = null;
+            byte[] recordData = null;
+            while (record.hasRemaining()) {
+                final long tag = readVarint(record);
+                final int fieldNumber = (int) (tag >>> 3);
+                final int wireType = (int) (tag & 0x07);
+                if (fieldNumber == PARTITION_KEY_INDEX && wireType == WIRE_TYPE_VARINT) {
+                    partitionKeyIndex = (int) readVarint(record);
+                } else if (fieldNumber == DATA && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                    recordData = readBytes(record);
+                } else {
+                    skipField(record, wireType);
+                }
+            }
+            if (partitionKeyIndex == null || recordData == null || partitionKeyIndex >= partitionKeyTable.size()) {
+                throw new IllegalArgumentException("Invalid user record in aggregated record");
+            }
+            userRecords.add(new UserRecord(partitionKeyTable.get(partitionKeyIndex), recordData));
+        }
+        return userRecords.build();
+    }
+
+    private static void writeTag(final ByteArrayOutputStream out, final int fieldNumber, final int wireType) {
+        writeVarint(out, (fieldNumber << 3) | wireType);
+    }
+
+    private static void writeBytes(final ByteArrayOutputStream out, final int fieldNumber, final byte[] bytes) {
+        writeTag(out, fieldNumber, WIRE_TYPE_LENGTH_DELIMITED);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    private static int varintSize(final long value) {
+        int size = 1;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            ++size;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    private static long readVarint(final ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated varint in aggregated record");
+            }
+            final byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in aggregated record");
+    }
+
+    private static byte[] readBytes(final ByteBuffer in) {
+        final long length = readVarint(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Truncated field in aggregated record");
+        }
+        final byte[] bytes = new byte[(int) length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void skipField(final ByteBuffer in, final int wireType) {
+        switch (wireType) {
+            case WIRE_TYPE_VARINT:
+                readVarint(in);
+                break;
+            case WIRE_TYPE_FIXED64:
+                skip(in, 8);
+                break;
+            case WIRE_TYPE_LENGTH_DELIMITED:
+                readBytes(in);
+                break;
+            case WIRE_TYPE_FIXED32:
+                skip(in, 4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type " + wireType + " in aggregated record");
+        }
+    }
+
+    private static void skip(final ByteBuffer in, final int length) {
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("Truncated field in aggregated record");
+        }
+        in.position(in.position() + length);
+    }
+
+    private static byte[] md5(final byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(bytes);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A single user record contained in an aggregated record.
+     */
+    public static final class UserRecord {
+        private final String partitionKey;
+        private final byte[] data;
+
+        public UserRecord(final @Nonnull String partitionKey, final @Nonnull byte[] data) {
+            this.partitionKey = partitionKey;
+            this.data = data;
+        }
+
+        public String getPartitionKey() {
+            return partitionKey;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            UserRecord that = (UserRecord) o;
+            return Objects.equals(partitionKey, that.partitionKey) &&
+                    Arrays.equals(data, that.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(partitionKey) + Arrays.hashCode(data);
+        }
+
+        @Override
+        public String toString() {
+            return "UserRecord{" +
+                    "partitionKey='" + partitionKey + '\'' +
+                    ", data=" + data.length + " bytes" +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link KinesisPollingStrategy} that is adapting the delay between two polls to the state of the shard:
+ * <ul>
+ *     <li>If the last poll returned a full page, or if the reader is more than {@code catchUpThreshold} behind
+ *     the tip of the shard, the shard is polled again after {@code minDelay}.</li>
+ *     <li>If the last poll returned some records, the shard is polled again after {@code baseDelay}.</li>
+ *     <li>Consecutive empty polls are backing off exponentially, starting with {@code baseDelay} and
+ *     limited by {@code maxDelay}.</li>
+ *     <li>Consecutive throttled polls are backing off exponentially, independent of the number of empty polls,
+ *     waiting at least one second as
+ *     <a href="https://docs.aws.amazon.com/kinesis/latest/APIReference/API_GetRecords.html">documented by Amazon</a>.</li>
+ *     <li>After polls returning records, the shard is not polled again before the returned bytes could have been
+ *     read at the {@link #SHARD_READ_THROUGHPUT read throughput of the shard}. A poll returning 10 MB is
+ *     therefore followed by a delay of at least five seconds, instead of being throttled.</li>
+ * </ul>
+ * <p>
+ *     A random jitter of up to {@code jitter * delay} is added to or subtracted from every delay, so the
+ *     shards of a stream are not polled in lock-step.
+ * </p>
+ * <p>
+ *     The default {@code minDelay} of 200ms respects the limit of five GetRecords requests per second and
+ *     shard.
+ * </p>
+ */
+@ThreadSafe
+public class AdaptivePollingStrategy implements KinesisPollingStrategy {
+
+    public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(200);
+    public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_CATCH_UP_THRESHOLD = Duration.ofSeconds(10);
+    public static final double DEFAULT_JITTER = 0.1;
+
+    /**
+     * The maximum read throughput of a shard in bytes per second, shared by all consumers polling the shard.
+     */
+    public static final long SHARD_READ_THROUGHPUT = 2L * 1024 * 1024;
+
+    private static final Duration MIN_THROTTLING_DELAY = Duration.ofSeconds(1);
+    private static final int MAX_BACKOFF_EXPONENT = 16;
+
+    private final Duration minDelay;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Duration catchUpThreshold;
+    private final double jitter;
+
+    private AdaptivePollingStrategy(final Builder builder) {
+        checkArgument(!builder.minDelay.isNegative(), "minDelay must not be negative");
+        checkArgument(builder.baseDelay.compareTo(builder.minDelay) >= 0, "baseDelay must not be less than minDelay");
+        checkArgument(builder.maxDelay.compareTo(builder.baseDelay) >= 0, "maxDelay must not be less than baseDelay");
+        checkArgument(builder.jitter >= 0.0 && builder.jitter < 1.0, "jitter must be in [0.0, 1.0)");
+        this.minDelay = builder.minDelay;
+        this.baseDelay = builder.baseDelay;
+        this.maxDelay = builder.maxDelay;
+        this.catchUpThreshold = builder.catchUpThreshold;
+        this.jitter = builder.jitter;
+    }
+
+    /**
+     * @return AdaptivePollingStrategy using the default settings.
+     */
+    public static AdaptivePollingStrategy defaultPollingStrategy() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nonnull
+    @Override
+    public Duration nextPollDelay(final @Nonnull KinesisPollResult pollResult) {
+        if (pollResult.isThrottled()) {
+            return withJitter(atLeast(backoff(pollResult.getConsecutiveThrottledPolls()), MIN_THROTTLING_DELAY));
+        }
+        final Duration throughputDelay = throughputDelay(pollResult.getByteCount());
+        if (pollResult.isFullPage() || pollResult.getDurationBehind().compareTo(catchUpThreshold) > 0) {
+            return withJitter(atLeast(minDelay, throughputDelay));
+        }
+        if (pollResult.getRecordCount() > 0) {
+            return withJitter(atLeast(baseDelay, throughputDelay));
+        }
+        return withJitter(backoff(pollResult.getConsecutiveEmptyPolls()));
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public Duration getBaseDelay() {
+        return baseDelay;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public Duration getCatchUpThreshold() {
+        return catchUpThreshold;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    private Duration backoff(final int consecutivePolls) {
+        final int exponent = Math.min(Math.max(consecutivePolls - 1, 0), MAX_BACKOFF_EXPONENT);
+        final Duration delay = baseDelay.multipliedBy(1L << exponent);
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+
+    /**
+     * The time needed to read the given number of bytes at the read throughput of the shard.
+     */
+    private static Duration throughputDelay(final long byteCount) {
+        return Duration.ofMillis(byteCount * 1000 / SHARD_READ_THROUGHPUT);
+    }
+
+    private static Duration atLeast(final Duration delay, final Duration minimum) {
+        return delay.compareTo(minimum) < 0 ? minimum : delay;
+    }
+
+    private Duration withJitter(final Duration delay) {
+        if (jitter == 0.0 || delay.isZero()) {
+            return delay;
+        }
+        final long millis = delay.toMillis();
+        final long maxJitter = (long) (millis * jitter);
+        if (maxJitter == 0) {
+            return delay;
+        }
+        return Duration.ofMillis(millis + ThreadLocalRandom.current().nextLong(-maxJitter, maxJitter + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptivePollingStrategy{" +
+                "minDelay=" + minDelay +
+                ", baseDelay=" + baseDelay +
+                ", maxDelay=" + maxDelay +
+                ", catchUpThreshold=" + catchUpThreshold +
+                ", jitter=" + jitter +
+                '}';
+    }
+
+    public static final class Builder {
+        private Duration minDelay = DEFAULT_MIN_DELAY;
+        private Duration baseDelay = DEFAULT_BASE_DELAY;
+        private Duration maxDelay = DEFAULT_MAX_DELAY;
+        private Duration catchUpThreshold = DEFAULT_CATCH_UP_THRESHOLD;
+        private double jitter = DEFAULT_JITTER;
+
+        private Builder() {
+        }
+
+        public Builder withMinDelay(final Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        public Builder withBaseDelay(final Duration baseDelay) {
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        public Builder withMaxDelay(final Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public Builder withCatchUpThreshold(final Duration catchUpThreshold) {
+            this.catchUpThreshold = catchUpThreshold;
+            return this;
+        }
+
+        public Builder withJitter(final double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public AdaptivePollingStrategy build() {
+            return new AdaptivePollingStrategy(this);
+        }
+    }
+}
@@ -1,42 +1,128 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
+import com.google.common.collect.ImmutableList;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord.UserRecord;
 import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Key;
 import de.otto.synapse.message.TextMessage;
 import de.otto.synapse.translator.AbstractTextDecoder;
-import software.amazon.awssdk.core.SdkBytes;
+import org.slf4j.Logger;
 import software.amazon.awssdk.services.kinesis.model.Record;
 
-import java.util.function.Function;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
 
 import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.endpoint.receiver.kinesis.KinesisSequenceNumbers.subSequencePosition;
 import static de.otto.synapse.message.DefaultHeaderAttr.MSG_ARRIVAL_TS;
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static software.amazon.awssdk.core.SdkBytes.fromByteArray;
+import static org.slf4j.LoggerFactory.getLogger;
 
 public class KinesisDecoder extends AbstractTextDecoder<RecordWithShard> {
 
-    private static final SdkBytes EMPTY_SDK_BYTES_BUFFER = fromByteArray(new byte[]{});
-
-    private static final Function<SdkBytes, String> SDK_BYTES_STRING = sdkBytes -> {
-        if (sdkBytes == null || sdkBytes.equals(EMPTY_SDK_BYTES_BUFFER)) {
-            return null;
-        } else {
-            return sdkBytes.asString(UTF_8);
-        }
-    };
+    private static final Logger LOG = getLogger(KinesisDecoder.class);
 
     @Override
     public TextMessage apply(RecordWithShard recordWithShard) {
         final Record record = recordWithShard.getRecord();
-        final String shardName = recordWithShard.getShardName();
         return decode(
-                Key.of(record.partitionKey()),
+                recordWithShard.getShardName(),
+                record.approximateArrivalTimestamp(),
+                record.partitionKey(),
+                record.sequenceNumber(),
+                dataOf(record));
+    }
+
+    /**
+     * Decodes a Kinesis record into one or more messages.
+     * <p>
+     *     Records aggregated by the Kinesis Producer Library or a {@code KinesisMessageSender} are de-aggregated
+     *     into the contained user records. All other records are decoded into a single message using
+     *     {@link #apply(RecordWithShard)}.
+     * </p>
+     * <p>
+     *     The messages of an aggregated record have positions {@code <sequenceNumber>:<n>}, except the last message
+     *     that has the plain sequence number of the record as its position.
+     * </p>
+     *
+     * @param recordWithShard the Kinesis record
+     * @return list of decoded messages
+     */
+    public ImmutableList<TextMessage> decodeAll(final RecordWithShard recordWithShard) {
+        return decodeAll(recordWithShard, false);
+    }
+
+    /**
+     * Decodes a Kinesis record into one or more messages, like {@link #decodeAll(RecordWithShard)}, but the messages
+     * are decoded lazily: only the key of the messages is decoded, if it is requested; header and payload are
+     * decoded on first access.
+     *
+     * @param recordWithShard the Kinesis record
+     * @return list of lazily decoded messages
+     */
+    ImmutableList<TextMessage> decodeAllLazily(final RecordWithShard recordWithShard) {
+        return decodeAll(recordWithShard, true);
+    }
+
+    TextMessage decode(final String shardName,
+                       final Instant arrivalTimestamp,
+                       final String partitionKey,
+                       final String position,
+                       final ByteBuffer data) {
+        return decode(
+                Key.of(partitionKey),
                 Header.builder()
-                        .withAttribute(MSG_ARRIVAL_TS, record.approximateArrivalTimestamp())
-                        .withShardPosition(fromPosition(shardName, record.sequenceNumber())).build(),
-                SDK_BYTES_STRING.apply(record.data()));
+                        .withAttribute(MSG_ARRIVAL_TS, arrivalTimestamp)
+                        .withShardPosition(fromPosition(shardName, position)).build(),
+                data);
+    }
+
+    /**
+     * @return the key of the message, or null if the message must be decoded to get the key.
+     */
+    Key decodeKey(final String partitionKey,
+                  final ByteBuffer data) {
+        return decodeKey(Key.of(partitionKey), data);
     }
 
+    private ImmutableList<TextMessage> decodeAll(final RecordWithShard recordWithShard, final boolean lazy) {
+        final Record record = recordWithShard.getRecord();
+        final String shardName = recordWithShard.getShardName();
+        if (record.data() == null || !KinesisAggregatedRecord.isAggregated(record.data().asByteBuffer())) {
+            return ImmutableList.of(message(shardName, record, record.partitionKey(), record.sequenceNumber(), dataOf(record), lazy));
+        }
+        final List<UserRecord> userRecords;
+        try {
+            userRecords = KinesisAggregatedRecord.decode(record.data().asByteBuffer());
+        } catch (final IllegalArgumentException e) {
+            LOG.warn("Unable to de-aggregate record {} of shard {}: {}", record.sequenceNumber(), shardName, e.getMessage());
+            return ImmutableList.of(message(shardName, record, record.partitionKey(), record.sequenceNumber(), dataOf(record), lazy));
+        }
+        final ImmutableList.Builder<TextMessage> messages = ImmutableList.builder();
+        for (int i = 0; i < userRecords.size(); i++) {
+            final UserRecord userRecord = userRecords.get(i);
+            final String position = i < userRecords.size() - 1
+                    ? subSequencePosition(record.sequenceNumber(), i)
+                    : record.sequenceNumber();
+            messages.add(message(shardName, record, userRecord.getPartitionKey(), position, ByteBuffer.wrap(userRecord.getData()), lazy));
+        }
+        return messages.build();
+    }
+
+    private TextMessage message(final String shardName,
+                                final Record record,
+                                final String partitionKey,
+                                final String position,
+                                final ByteBuffer data,
+                                final boolean lazy) {
+        return lazy
+                ? new LazyTextMessage(this, shardName, record.approximateArrivalTimestamp(), partitionKey, position, data)
+                : decode(shardName, record.approximateArrivalTimestamp(), partitionKey, position, data);
+    }
+
+    private static ByteBuffer dataOf(final Record record) {
+        return record.data() != null ? record.data().asByteBuffer() : null;
+    }
 
 }
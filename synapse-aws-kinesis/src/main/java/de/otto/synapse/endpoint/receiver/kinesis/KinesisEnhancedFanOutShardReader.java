@@ -0,0 +1,466 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.ShardResponse;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.InternalFailureException;
+import software.amazon.awssdk.services.kinesis.model.LimitExceededException;
+import software.amazon.awssdk.services.kinesis.model.ResourceInUseException;
+import software.amazon.awssdk.services.kinesis.model.StartingPosition;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardEvent;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardEventStream;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardRequest;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardResponse;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardResponseHandler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.channel.ShardResponse.shardResponse;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.AFTER_SEQUENCE_NUMBER;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.AT_SEQUENCE_NUMBER;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.AT_TIMESTAMP;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.TRIM_HORIZON;
+
+/**
+ * A {@link ShardReader} that is using Kinesis enhanced fan-out to consume messages from a single shard.
+ * <p>
+ *     Instead of polling the shard using GetRecords, the reader is subscribed to the shard using
+ *     SubscribeToShard, so that records are pushed to the reader over HTTP/2 as soon as they arrive. Every
+ *     registered stream consumer has a dedicated read throughput of 2 MB/s per shard, instead of sharing the
+ *     throughput with all other consumers of the stream.
+ * </p>
+ * <p>
+ *     Kinesis is closing subscriptions after five minutes. The reader is then re-subscribing to the shard,
+ *     continuing at the continuation sequence number of the last received event, so that neither aggregated records
+ *     nor events without records are read twice or skipped.
+ * </p>
+ * <p>
+ *     Subscriptions failing with a retryable error (like {@link ResourceInUseException} while the previous
+ *     subscription is still active, or I/O errors of the HTTP/2 connection) are re-subscribed using a jittered,
+ *     exponential backoff. The reader only fails after {@value #MAX_RESUBSCRIBE_ATTEMPTS} consecutive failed
+ *     subscriptions, on non-retryable errors, or if the consumer is failing.
+ * </p>
+ * <p>
+ *     Events are received on the event-loop threads of the {@link KinesisAsyncClient}. They are handed over to the
+ *     thread of the {@link #consumeUntil(ShardPosition, Predicate, Consumer) consumeUntil} task using a bounded queue,
+ *     so consumers never block the event loop. Events are requested one by one, so the next event is only delivered
+ *     after the previous {@link ShardResponse} was consumed.
+ * </p>
+ */
+@ThreadSafe
+public class KinesisEnhancedFanOutShardReader implements ShardReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KinesisEnhancedFanOutShardReader.class);
+    /* Only a single event is requested at a time, so at most one event is waiting to be dispatched. */
+    private static final int EVENT_QUEUE_CAPACITY = 1;
+    private static final long EVENT_POLL_TIMEOUT_MILLIS = 100;
+    static final int MAX_RESUBSCRIBE_ATTEMPTS = 10;
+    private static final long RESUBSCRIBE_BASE_DELAY_MILLIS = 200;
+    private static final long RESUBSCRIBE_MAX_DELAY_MILLIS = 10000;
+
+    private final String shardName;
+    private final String channelName;
+    private final String consumerArn;
+    private final KinesisAsyncClient kinesisClient;
+    private final ExecutorService executorService;
+    private final AtomicBoolean stopSignal = new AtomicBoolean(false);
+    private final AtomicBoolean endOfShard = new AtomicBoolean(false);
+    private final AtomicReference<ShardSubscriber> currentSubscriber = new AtomicReference<>();
+
+    /**
+     * @param channelName the name of the Kinesis stream
+     * @param shardName the name of the shard
+     * @param consumerArn the ARN of the registered stream consumer
+     * @param kinesisClient the client used to subscribe to the shard
+     * @param executorService the executor used to consume the shard
+     */
+    public KinesisEnhancedFanOutShardReader(final @Nonnull String channelName,
+                                            final @Nonnull String shardName,
+                                            final @Nonnull String consumerArn,
+                                            final @Nonnull KinesisAsyncClient kinesisClient,
+                                            final @Nonnull ExecutorService executorService) {
+        this.shardName = shardName;
+        this.channelName = channelName;
+        this.consumerArn = consumerArn;
+        this.kinesisClient = kinesisClient;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public String getChannelName() {
+        return channelName;
+    }
+
+    @Override
+    public String getShardName() {
+        return shardName;
+    }
+
+    public String getConsumerArn() {
+        return consumerArn;
+    }
+
+    @Override
+    public CompletableFuture<ShardPosition> consumeUntil(final ShardPosition startFrom,
+                                                         final Predicate<ShardResponse> stopCondition,
+                                                         final Consumer<ShardResponse> responseConsumer) {
+        return CompletableFuture.supplyAsync(() -> {
+            MDC.put("channelName", channelName);
+            MDC.put("shardName", shardName);
+            LOG.info("Subscribing to channel={}, shard={}, position={}", channelName, shardName, startFrom);
+            try {
+                ShardPosition shardPosition = startFrom;
+                ShardPosition resumePosition = startFrom;
+                int failedSubscriptions = 0;
+                boolean stopRetrieval = false;
+                while (!stopRetrieval && !isStopping()) {
+                    final ShardSubscriber subscriber = new ShardSubscriber(shardPosition, stopCondition, responseConsumer);
+                    currentSubscriber.set(subscriber);
+                    kinesisClient
+                            .subscribeToShard(buildSubscribeToShardRequest(resumePosition), subscriber)
+                            .whenComplete((ignored, throwable) -> subscriber.subscriptionCompleted(throwable));
+                    try {
+                        stopRetrieval = subscriber.awaitCompletion();
+                        failedSubscriptions = 0;
+                    } catch (final RuntimeException e) {
+                        if (subscriber.hasReceivedEvents()) {
+                            failedSubscriptions = 0;
+                        }
+                        if (subscriber.isConsumerFailed() || !isRetryable(e) || ++failedSubscriptions >= MAX_RESUBSCRIBE_ATTEMPTS) {
+                            throw e;
+                        }
+                        LOG.warn("Subscription to shard {} failed, re-subscribing ({}/{}): {}", shardName, failedSubscriptions, MAX_RESUBSCRIBE_ATTEMPTS, e.getMessage());
+                        stopRetrieval = !waitBeforeResubscribe(failedSubscriptions);
+                    }
+                    shardPosition = subscriber.getShardPosition();
+                    resumePosition = subscriber.getResumePosition();
+                    LOG.debug("Subscription to shard {} completed at position {}", shardName, shardPosition);
+                }
+                return shardPosition;
+            } catch (final RuntimeException e) {
+                LOG.error("Failed to consume from Kinesis shard {}: {}, {}", channelName, shardName, e.getMessage());
+                // Stop all shards and shutdown if this shard is failing:
+                stop();
+                throw e;
+            } finally {
+                currentSubscriber.set(null);
+                MDC.remove("channelName");
+                MDC.remove("shardName");
+            }
+        }, executorService);
+    }
+
+    @Override
+    public void stop() {
+        LOG.info("Shard {} received stop signal.", shardName);
+        stopSignal.set(true);
+        final ShardSubscriber subscriber = currentSubscriber.get();
+        if (subscriber != null) {
+            subscriber.cancel();
+        }
+    }
+
+    @Override
+    public boolean isStopping() {
+        return stopSignal.get();
+    }
+
+    @Override
+    public boolean isEndOfShard() {
+        return endOfShard.get();
+    }
+
+    static boolean isRetryable(final Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        return cause instanceof ResourceInUseException
+                || cause instanceof LimitExceededException
+                || cause instanceof InternalFailureException
+                || cause instanceof SdkClientException
+                || cause instanceof IOException
+                || cause instanceof SdkServiceException && ((SdkServiceException) cause).statusCode() >= 500;
+    }
+
+    /**
+     * Waits before the shard is re-subscribed after a failed subscription, using a jittered, exponential backoff.
+     *
+     * @param failedSubscriptions the number of consecutive failed subscriptions
+     * @return true, if the shard should be re-subscribed, false if the reader was stopped or interrupted.
+     */
+    private boolean waitBeforeResubscribe(final int failedSubscriptions) {
+        final long delayMillis = Math.min(RESUBSCRIBE_BASE_DELAY_MILLIS << Math.min(failedSubscriptions - 1, 16), RESUBSCRIBE_MAX_DELAY_MILLIS);
+        final long resubscribeAt = System.currentTimeMillis() + delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+        try {
+            long remainingMillis;
+            while (!isStopping() && (remainingMillis = resubscribeAt - System.currentTimeMillis()) > 0) {
+                Thread.sleep(Math.min(remainingMillis, EVENT_POLL_TIMEOUT_MILLIS));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !isStopping();
+    }
+
+    private SubscribeToShardRequest buildSubscribeToShardRequest(final ShardPosition shardPosition) {
+        final StartingPosition.Builder startingPosition = StartingPosition.builder();
+        switch (shardPosition.startFrom()) {
+            case HORIZON:
+                startingPosition.type(TRIM_HORIZON);
+                break;
+            case POSITION:
+                startingPosition
+                        // Continue in the middle of an aggregated record at the aggregated record:
+                        .type(KinesisSequenceNumbers.isSubSequencePosition(shardPosition.position()) ? AT_SEQUENCE_NUMBER : AFTER_SEQUENCE_NUMBER)
+                        .sequenceNumber(KinesisSequenceNumbers.sequenceNumberOf(shardPosition.position()));
+                break;
+            case AT_POSITION:
+                startingPosition
+                        .type(AT_SEQUENCE_NUMBER)
+                        .sequenceNumber(KinesisSequenceNumbers.sequenceNumberOf(shardPosition.position()));
+                break;
+            case TIMESTAMP:
+                startingPosition
+                        .type(AT_TIMESTAMP)
+                        .timestamp(shardPosition.timestamp());
+                break;
+        }
+        return SubscribeToShardRequest.builder()
+                .consumerARN(consumerArn)
+                .shardId(shardName)
+                .startingPosition(startingPosition.build())
+                .build();
+    }
+
+    /**
+     * Handles a single subscription to the shard. The subscription is finished, if Kinesis is closing the
+     * subscription, if the stop condition is met or if the reader is stopped.
+     * <p>
+     *     Received events are queued by {@link #onNext(SubscribeToShardEventStream)} and dispatched to the consumer
+     *     by {@link #awaitCompletion()}, which is running on the thread of the reader.
+     * </p>
+     */
+    private class ShardSubscriber implements SubscribeToShardResponseHandler, Subscriber<SubscribeToShardEventStream> {
+
+        private final Predicate<ShardResponse> stopCondition;
+        private final Consumer<ShardResponse> responseConsumer;
+        private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+        private final BlockingQueue<SubscribeToShardEventStream> events = new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY);
+        private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+        private volatile ShardPosition shardPosition;
+        /* The start position, if the subscription started in the middle of an aggregated record that was not yet received. */
+        private volatile ShardPosition subSequenceStart;
+        /* The continuation sequence number of the last dispatched event. */
+        private volatile String continuationSequenceNumber;
+        private volatile boolean receivedEvents = false;
+        private volatile boolean consumerFailed = false;
+
+        private ShardSubscriber(final ShardPosition shardPosition,
+                                final Predicate<ShardResponse> stopCondition,
+                                final Consumer<ShardResponse> responseConsumer) {
+            this.shardPosition = shardPosition;
+            this.subSequenceStart = KinesisSequenceNumbers.isSubSequenceStart(shardPosition) ? shardPosition : null;
+            this.stopCondition = stopCondition;
+            this.responseConsumer = responseConsumer;
+        }
+
+        @Override
+        public void responseReceived(final SubscribeToShardResponse response) {
+            LOG.debug("Subscribed to shard {}", shardName);
+        }
+
+        @Override
+        public void onEventStream(final SdkPublisher<SubscribeToShardEventStream> publisher) {
+            publisher.subscribe(this);
+        }
+
+        @Override
+        public void exceptionOccurred(final Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void complete() {
+            completion.complete(false);
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription.set(subscription);
+            if (completion.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(final SubscribeToShardEventStream eventStream) {
+            if (!events.offer(eventStream)) {
+                completion.completeExceptionally(new IllegalStateException("Received more events than requested from shard " + shardName));
+                cancelSubscription();
+            }
+        }
+
+        private void dispatch(final SubscribeToShardEventStream eventStream) {
+            try {
+                boolean stopRetrieval = false;
+                if (eventStream instanceof SubscribeToShardEvent) {
+                    receivedEvents = true;
+                    final SubscribeToShardEvent event = (SubscribeToShardEvent) eventStream;
+                    if (!event.records().isEmpty()) {
+                        shardPosition = fromPosition(shardName, event.records().get(event.records().size() - 1).sequenceNumber());
+                    }
+                    final ShardResponse response = withoutConsumedSubSequences(KinesisShardResponse.kinesisShardResponse(shardPosition, event));
+                    try {
+                        responseConsumer.accept(response);
+                        stopRetrieval = stopCondition.test(response);
+                    } catch (final RuntimeException e) {
+                        consumerFailed = true;
+                        throw e;
+                    }
+                    continuationSequenceNumber = event.continuationSequenceNumber();
+                    if (event.continuationSequenceNumber() == null) {
+                        // Kinesis is not returning a continuation sequence number after the last record of a closed shard:
+                        LOG.info("Reached end of closed shard {} at position {}", shardName, shardPosition);
+                        endOfShard.set(true);
+                        stopRetrieval = true;
+                    }
+                }
+                if (stopRetrieval || isStopping()) {
+                    completion.complete(true);
+                    cancelSubscription();
+                } else {
+                    subscription.get().request(1);
+                }
+            } catch (final RuntimeException e) {
+                completion.completeExceptionally(e);
+                cancelSubscription();
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(false);
+        }
+
+        void subscriptionCompleted(final Throwable throwable) {
+            if (throwable != null) {
+                completion.completeExceptionally(throwable);
+            } else {
+                completion.complete(false);
+            }
+        }
+
+        void cancel() {
+            completion.complete(true);
+            cancelSubscription();
+        }
+
+        /**
+         * Dispatches received events to the consumer until the subscription is completed. Events that were received
+         * before Kinesis completed the subscription are dispatched, unless the subscription was stopped or failed.
+         *
+         * @return true, if consumption should be stopped, false if the shard should be re-subscribed.
+         */
+        boolean awaitCompletion() {
+            try {
+                while (!isStoppedOrFailed()) {
+                    final SubscribeToShardEventStream eventStream = events.poll(EVENT_POLL_TIMEOUT_MILLIS, MILLISECONDS);
+                    if (eventStream != null) {
+                        dispatch(eventStream);
+                    } else if (completion.isDone()) {
+                        break;
+                    }
+                }
+                return completion.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                return true;
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        private boolean isStoppedOrFailed() {
+            return completion.isCompletedExceptionally() || completion.getNow(false);
+        }
+
+        ShardPosition getShardPosition() {
+            return shardPosition;
+        }
+
+        /**
+         * Returns the position used to re-subscribe to the shard: the continuation sequence number of the last
+         * dispatched event, unless the subscription started in the middle of an aggregated record that was not
+         * yet received.
+         *
+         * @return position to continue consumption after this subscription
+         */
+        ShardPosition getResumePosition() {
+            final String continuation = continuationSequenceNumber;
+            return continuation != null && subSequenceStart == null
+                    ? fromPosition(shardName, continuation)
+                    : shardPosition;
+        }
+
+        boolean hasReceivedEvents() {
+            return receivedEvents;
+        }
+
+        boolean isConsumerFailed() {
+            return consumerFailed;
+        }
+
+        private ShardResponse withoutConsumedSubSequences(final ShardResponse response) {
+            final ShardPosition startFrom = subSequenceStart;
+            if (startFrom == null || response.getMessages().isEmpty()) {
+                return response;
+            }
+            subSequenceStart = null;
+            return shardResponse(
+                    response.getShardPosition(),
+                    response.getDurationBehind(),
+                    KinesisSequenceNumbers.withoutConsumedSubSequences(response.getMessages(), startFrom));
+        }
+
+        private void cancelSubscription() {
+            final Subscription current = subscription.get();
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.otto.synapse.channel.ChannelPosition;
 import de.otto.synapse.channel.ChannelResponse;
 import de.otto.synapse.channel.ShardPosition;
@@ -8,55 +10,108 @@ import de.otto.synapse.channel.ShardResponse;
 import org.slf4j.Logger;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.time.Clock;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static de.otto.synapse.channel.ChannelPosition.channelPosition;
 import static de.otto.synapse.channel.ChannelResponse.channelResponse;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Reads the messages of all shards of a Kinesis stream.
+ * <p>
+ *     Kinesis streams are resharded by splitting or merging shards. The parent shards are then closed, and new
+ *     records are written to the child shards. {@link #consumeUntil(ChannelPosition, Predicate, Consumer)} is
+ *     following the lineage of the shards: closed parent shards are drained before the consumption of their child
+ *     shards is started, so the order of messages having the same partition key is preserved. New shards are
+ *     discovered periodically using ListShards, so the stream can be resharded without restarting consumers.
+ * </p>
+ */
 public class KinesisMessageLogReader {
 
     private static final Logger LOG = getLogger(KinesisMessageLogReader.class);
 
+    private static final ScheduledExecutorService SHARD_DISCOVERY_SCHEDULER = newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("kinesis-shard-discovery-%d").setDaemon(true).build()
+    );
+
     private final String channelName;
     private final KinesisAsyncClient kinesisClient;
     private final ExecutorService executorService;
     private final Clock clock;
-    private final AtomicReference<List<KinesisShardReader>> kinesisShardReaders = new AtomicReference<>();
+    private final AtomicReference<List<ShardReader>> kinesisShardReaders = new AtomicReference<>();
+    private final AtomicReference<List<KinesisShardInfo>> kinesisShards = new AtomicReference<>();
+    private final KinesisStreamInfoProvider streamInfoProvider;
 
     public static final int SKIP_NEXT_PARTS = 8;
-    private final int waitingTimeOnEmptyRecords;
+    private final KinesisPollingStrategy pollingStrategy;
+    private final String enhancedFanOutConsumerName;
+    private final Duration shardDiscoveryInterval;
+    private final KinesisShardMultiplexer shardMultiplexer;
+    private volatile String enhancedFanOutConsumerArn;
+    private volatile boolean stopping = false;
 
 
     public KinesisMessageLogReader(final String channelName,
                                    final KinesisAsyncClient kinesisClient,
                                    final ExecutorService executorService,
                                    final Clock clock) {
-        this(channelName, kinesisClient, executorService, clock, 10000);
+        this(channelName, kinesisClient, executorService, clock, KinesisReceiverSettings.defaultReceiverSettings());
     }
 
     public KinesisMessageLogReader(final String channelName,
                                    final KinesisAsyncClient kinesisClient,
                                    final ExecutorService executorService,
                                    final Clock clock, final int waitingTimeOnEmptyRecords ) {
+        this(channelName, kinesisClient, executorService, clock, KinesisReceiverSettings.builder()
+                .withPollingStrategy(KinesisShardReader.pollingStrategyFor(waitingTimeOnEmptyRecords))
+                .build());
+    }
+
+    /**
+     * Creates a KinesisMessageLogReader.
+     *
+     * @param channelName the name of the Kinesis stream
+     * @param kinesisClient the Kinesis client
+     * @param executorService the executor used to read the shards of the stream
+     * @param clock the clock
+     * @param receiverSettings settings controlling how the shards of the stream are read
+     */
+    public KinesisMessageLogReader(final String channelName,
+                                   final KinesisAsyncClient kinesisClient,
+                                   final ExecutorService executorService,
+                                   final Clock clock,
+                                   final @Nonnull KinesisReceiverSettings receiverSettings) {
         this.channelName = channelName;
         this.kinesisClient = kinesisClient;
         this.executorService = executorService;
         this.clock = clock;
+        this.streamInfoProvider = new KinesisStreamInfoProvider(kinesisClient);
 
-        this.waitingTimeOnEmptyRecords = waitingTimeOnEmptyRecords;
+        this.pollingStrategy = receiverSettings.getPollingStrategy();
+        this.enhancedFanOutConsumerName = receiverSettings.getEnhancedFanOutConsumerName();
+        this.shardDiscoveryInterval = receiverSettings.getShardDiscoveryInterval();
+        this.shardMultiplexer = receiverSettings.getShardMultiplexer();
     }
 
     public String getChannelName() {
@@ -64,11 +119,8 @@ public class KinesisMessageLogReader {
     }
 
     public List<String> getOpenShards() {
-        if (kinesisShardReaders.get() == null) {
-            initShards();
-        }
-        return kinesisShardReaders.get().stream()
-                .map(KinesisShardReader::getShardName)
+        return getOpenShardReaders().stream()
+                .map(ShardReader::getShardName)
                 .collect(toList());
     }
 
@@ -77,7 +129,7 @@ public class KinesisMessageLogReader {
             initShards();
         }
         try {
-            final List<CompletableFuture<KinesisShardIterator>> futureShardPositions = kinesisShardReaders.get()
+            final List<CompletableFuture<KinesisShardIterator>> futureShardPositions = getOpenShardReaders()
                     .stream()
                     .map(shardReader -> supplyAsync(
                             () -> new KinesisShardIterator(kinesisClient, channelName, channelPosition.shard(shardReader.getShardName())),
@@ -100,8 +152,7 @@ public class KinesisMessageLogReader {
         }
         try {
 
-            final List<CompletableFuture<ShardResponse>> futureShardPositions = kinesisShardReaders
-                    .get()
+            final List<CompletableFuture<ShardResponse>> futureShardPositions = getOpenShardReaders()
                     .stream()
                     .map(shardReader -> supplyAsync(
                             () -> {
@@ -131,6 +182,13 @@ public class KinesisMessageLogReader {
     }
 
     /**
+     * Consumes the messages of all shards of the stream, until the stop condition is met for every shard, or
+     * until the reader is stopped.
+     * <p>
+     *     Closed parent shards are consumed until their end before the consumption of their child shards is
+     *     started. New shards are discovered while consuming the stream, and the resulting {@link ChannelPosition}
+     *     is extended by the positions of these shards.
+     * </p>
      *
      * @param startFrom starting position
      * @param stopCondition stop condition used to stop message consumption
@@ -144,22 +202,14 @@ public class KinesisMessageLogReader {
             initShards();
         }
         try {
-            final List<CompletableFuture<ShardPosition>> futureShardPositions = kinesisShardReaders
-                    .get()
-                    .stream()
-                    .map(shard -> shard.consumeUntil(startFrom.shard(shard.getShardName()), stopCondition, consumer))
-                    .collect(toList());
-            // don't chain futureShardPositions with CompletableFuture::join as lazy execution will prevent threads from
-            // running in parallel
-            return supplyAsync(() -> channelPosition(futureShardPositions
-                    .stream()
-                    .map(CompletableFuture::join)
-                    .collect(toList()))
-            ).exceptionally((throwable -> {
-                stop();
-                this.kinesisShardReaders.set(null);
-                throw new RuntimeException(throwable.getMessage(), throwable);
-            }));
+            final ChannelConsumption consumption = new ChannelConsumption(startFrom, stopCondition, consumer);
+            consumption.start();
+            return consumption.getChannelPosition()
+                    .exceptionally((throwable -> {
+                        stop();
+                        this.kinesisShardReaders.set(null);
+                        throw new RuntimeException(throwable.getMessage(), throwable);
+                    }));
         } catch (final RuntimeException e) {
             stop();
             this.kinesisShardReaders.set(null);
@@ -168,36 +218,255 @@ public class KinesisMessageLogReader {
     }
 
     private void initShards() {
-        final Set<String> openShards = retrieveAllOpenShards();
-        this.kinesisShardReaders.set(openShards
+        final List<KinesisShardInfo> shards = streamInfoProvider
+                .getStreamInfo(channelName)
+                .getShardInfo();
+        if (enhancedFanOutConsumerName != null) {
+            enhancedFanOutConsumerArn = new KinesisStreamConsumerProvider(kinesisClient)
+                    .getConsumerArn(channelName, enhancedFanOutConsumerName);
+        }
+        stopping = false;
+        this.kinesisShards.set(ImmutableList.copyOf(shards));
+        this.kinesisShardReaders.set(shards
                 .stream()
-                .map(shardName -> new KinesisShardReader(channelName, shardName, kinesisClient, executorService, clock, waitingTimeOnEmptyRecords))
+                .filter(shard -> isReadable(shard, shards))
+                .map(shard -> createShardReader(shard.getShardName()))
                 .collect(toList()));
     }
 
-    private Set<String> retrieveAllOpenShards() {
-        return new KinesisStreamInfoProvider(kinesisClient)
-                .getStreamInfo(channelName)
-                .getShardInfo()
+    /**
+     * Closed shards are only read if they are the parent of some other shard. Parents that have exceeded
+     * the retention period of the stream are not listed anymore.
+     */
+    private static boolean isReadable(final KinesisShardInfo shard, final List<KinesisShardInfo> allShards) {
+        return shard.isOpen() || allShards
+                .stream()
+                .anyMatch(other -> other.getParentShardNames().contains(shard.getShardName()));
+    }
+
+    private ShardReader createShardReader(final String shardName) {
+        if (enhancedFanOutConsumerArn != null) {
+            return new KinesisEnhancedFanOutShardReader(channelName, shardName, enhancedFanOutConsumerArn, kinesisClient, executorService);
+        } else if (shardMultiplexer != null) {
+            return shardMultiplexer.newShardReader(channelName, shardName, kinesisClient, executorService, pollingStrategy);
+        } else {
+            return new KinesisShardReader(channelName, shardName, kinesisClient, executorService, clock, pollingStrategy);
+        }
+    }
+
+    /**
+     * Updates the known shards of the stream and creates readers for new shards.
+     * <p>
+     *     The readers of new shards are created before the readers are replaced, so that the update itself is
+     *     free of side effects. If the readers were concurrently replaced, for example because the reader was
+     *     reset after a failure, the created readers are discarded.
+     * </p>
+     *
+     * @param shards the current shards of the stream
+     */
+    private void updateShards(final List<KinesisShardInfo> shards) {
+        kinesisShards.set(ImmutableList.copyOf(shards));
+        final List<ShardReader> readers = kinesisShardReaders.get();
+        if (readers == null) {
+            return;
+        }
+        final List<ShardReader> newReaders = shards.stream()
+                .filter(shard -> isReadable(shard, shards))
+                .filter(shard -> readers.stream().noneMatch(reader -> reader.getShardName().equals(shard.getShardName())))
+                .map(shard -> createShardReader(shard.getShardName()))
+                .collect(toList());
+        if (newReaders.isEmpty()) {
+            return;
+        }
+        final List<ShardReader> updated = ImmutableList.<ShardReader>builder().addAll(readers).addAll(newReaders).build();
+        if (kinesisShardReaders.compareAndSet(readers, updated)) {
+            newReaders.forEach(reader -> LOG.info("Discovered new shard {} of channel {}", reader.getShardName(), channelName));
+        }
+    }
+
+    @Nullable
+    private ShardReader getShardReader(final String shardName) {
+        final List<ShardReader> readers = kinesisShardReaders.get();
+        if (readers == null) {
+            return null;
+        }
+        return readers
                 .stream()
-                .filter(KinesisShardInfo::isOpen)
-                .map(KinesisShardInfo::getShardName)
-                .collect(toImmutableSet());
+                .filter(reader -> reader.getShardName().equals(shardName))
+                .findFirst()
+                .orElse(null);
     }
 
+    private List<ShardReader> getOpenShardReaders() {
+        if (kinesisShardReaders.get() == null) {
+            initShards();
+        }
+        final List<KinesisShardInfo> shards = kinesisShards.get();
+        return kinesisShardReaders.get()
+                .stream()
+                .filter(reader -> shards.stream().anyMatch(shard -> shard.isOpen() && shard.getShardName().equals(reader.getShardName())))
+                .collect(toList());
+    }
 
     public void stop() {
         LOG.info("Channel {} received stop signal.", getChannelName());
+        stopping = true;
         if (kinesisShardReaders.get() != null) {
-            this.kinesisShardReaders.get().forEach(KinesisShardReader::stop);
+            this.kinesisShardReaders.get().forEach(ShardReader::stop);
         }
     }
 
     @VisibleForTesting
-    List<KinesisShardReader> getCurrentKinesisShards() {
+    List<ShardReader> getCurrentKinesisShards() {
         if (kinesisShardReaders.get() == null) {
             initShards();
         }
         return kinesisShardReaders.get();
     }
+
+    /**
+     * The state of a single call of {@link #consumeUntil(ChannelPosition, Predicate, Consumer)}.
+     * <p>
+     *     A shard is started as soon as all of its parent shards are finished. A parent shard is finished,
+     *     <ul>
+     *         <li>if it was consumed until the end of the shard,</li>
+     *         <li>if it is not listed anymore because it has exceeded the retention period of the stream, or</li>
+     *         <li>if the starting position already contains one of its descendants, because the parent was
+     *         drained by some previous consumption.</li>
+     *     </ul>
+     *     The consumption is finished, if no shard is running anymore.
+     * </p>
+     */
+    private class ChannelConsumption {
+        private final ChannelPosition startFrom;
+        private final Predicate<ShardResponse> stopCondition;
+        private final Consumer<ShardResponse> consumer;
+        private final CompletableFuture<ChannelPosition> futureChannelPosition = new CompletableFuture<>();
+        /* The following fields are guarded by this. */
+        private final Map<String, ShardPosition> shardPositions = new LinkedHashMap<>();
+        private final Set<String> finishedShards = new HashSet<>();
+        private int runningShards = 0;
+        private ScheduledFuture<?> shardDiscovery;
+
+        private ChannelConsumption(final ChannelPosition startFrom,
+                                   final Predicate<ShardResponse> stopCondition,
+                                   final Consumer<ShardResponse> consumer) {
+            this.startFrom = startFrom;
+            this.stopCondition = stopCondition;
+            this.consumer = consumer;
+        }
+
+        void start() {
+            startShards();
+            synchronized (this) {
+                if (!futureChannelPosition.isDone() && !shardDiscoveryInterval.isZero() && !shardDiscoveryInterval.isNegative()) {
+                    shardDiscovery = SHARD_DISCOVERY_SCHEDULER.scheduleWithFixedDelay(
+                            this::discoverShards,
+                            shardDiscoveryInterval.toMillis(),
+                            shardDiscoveryInterval.toMillis(),
+                            MILLISECONDS);
+                }
+            }
+        }
+
+        CompletableFuture<ChannelPosition> getChannelPosition() {
+            return futureChannelPosition;
+        }
+
+        private void discoverShards() {
+            try {
+                updateShards(streamInfoProvider.listShards(channelName));
+                startShards();
+            } catch (final RuntimeException e) {
+                LOG.warn("Failed to discover shards of channel {}: {}", channelName, e.getMessage());
+            }
+        }
+
+        private synchronized void startShards() {
+            if (futureChannelPosition.isDone()) {
+                return;
+            }
+            // After a stop signal, only the initial shards are started, so that their positions are still returned:
+            if (!stopping || shardPositions.isEmpty()) {
+                final List<KinesisShardInfo> shards = kinesisShards.get();
+                shards.stream()
+                        .filter(shard -> !shardPositions.containsKey(shard.getShardName()))
+                        .filter(shard -> isReadable(shard, shards))
+                        .filter(shard -> !isDrainedBefore(shard, shards))
+                        .filter(shard -> shard.getParentShardNames().stream().allMatch(parent -> isFinished(parent, shards)))
+                        .forEach(this::startShard);
+            }
+            if (runningShards == 0) {
+                complete();
+            }
+        }
+
+        private void startShard(final KinesisShardInfo shard) {
+            final ShardReader shardReader = getShardReader(shard.getShardName());
+            if (shardReader == null || futureChannelPosition.isDone()) {
+                return;
+            }
+            final ShardPosition shardPosition = startFrom.shard(shard.getShardName());
+            shardPositions.put(shard.getShardName(), shardPosition);
+            ++runningShards;
+            shardReader
+                    .consumeUntil(shardPosition, stopCondition, consumer)
+                    .whenComplete((position, throwable) -> shardCompleted(shardReader, position, throwable));
+        }
+
+        private void shardCompleted(final ShardReader shardReader,
+                                    final ShardPosition position,
+                                    final Throwable throwable) {
+            final boolean discoverChildShards;
+            synchronized (this) {
+                --runningShards;
+                if (throwable != null) {
+                    cancelShardDiscovery();
+                    futureChannelPosition.completeExceptionally(throwable);
+                    return;
+                }
+                shardPositions.put(shardReader.getShardName(), position);
+                if (shardReader.isEndOfShard()) {
+                    finishedShards.add(shardReader.getShardName());
+                }
+                discoverChildShards = shardReader.isEndOfShard() && !stopping && kinesisShards.get()
+                        .stream()
+                        .noneMatch(shard -> shard.getParentShardNames().contains(shardReader.getShardName()));
+            }
+            if (discoverChildShards) {
+                // The shard was closed while it was consumed, so the child shards are not yet known:
+                discoverShards();
+            }
+            startShards();
+        }
+
+        private boolean isFinished(final String shardName, final List<KinesisShardInfo> shards) {
+            if (finishedShards.contains(shardName)) {
+                return true;
+            }
+            return shards.stream()
+                    .filter(shard -> shard.getShardName().equals(shardName))
+                    .findFirst()
+                    .map(shard -> isDrainedBefore(shard, shards))
+                    .orElse(true);
+        }
+
+        private boolean isDrainedBefore(final KinesisShardInfo shard, final List<KinesisShardInfo> shards) {
+            return !shard.isOpen() && shards
+                    .stream()
+                    .filter(child -> child.getParentShardNames().contains(shard.getShardName()))
+                    .anyMatch(child -> startFrom.shards().contains(child.getShardName()) || isDrainedBefore(child, shards));
+        }
+
+        private void complete() {
+            cancelShardDiscovery();
+            futureChannelPosition.complete(channelPosition(shardPositions.values()));
+        }
+
+        private void cancelShardDiscovery() {
+            if (shardDiscovery != null) {
+                shardDiscovery.cancel(false);
+            }
+        }
+    }
 }
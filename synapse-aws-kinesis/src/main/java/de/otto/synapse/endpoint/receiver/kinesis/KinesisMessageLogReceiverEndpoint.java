@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableMap;
 import de.otto.synapse.channel.ChannelDurationBehind;
 import de.otto.synapse.channel.ChannelPosition;
 import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.consumer.KeyOrderedDispatcher;
 import de.otto.synapse.consumer.MessageDispatcher;
 import de.otto.synapse.endpoint.InterceptorChain;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
@@ -23,13 +24,14 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static de.otto.synapse.channel.ChannelDurationBehind.copyOf;
 import static de.otto.synapse.channel.ChannelDurationBehind.unknown;
-import static de.otto.synapse.endpoint.EndpointType.RECEIVER;
 import static de.otto.synapse.info.MessageReceiverNotification.builder;
 import static de.otto.synapse.info.MessageReceiverStatus.*;
 import static de.otto.synapse.logging.LogHelper.info;
+import static java.util.stream.Collectors.toList;
 
 public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceiverEndpoint {
 
@@ -38,39 +40,66 @@ public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceive
 
     private static class KinesisShardResponseConsumer implements Consumer<ShardResponse> {
         private final AtomicReference<ChannelDurationBehind> channelDurationBehind = new AtomicReference<>();
-        private final MessageInterceptorRegistry interceptorRegistry;
+        private final Supplier<InterceptorChain> interceptorChain;
         private final String channelName;
         private final MessageDispatcher messageDispatcher;
+        private final KeyOrderedDispatcher keyOrderedDispatcher;
         private final ApplicationEventPublisher eventPublisher;
 
         private KinesisShardResponseConsumer(final String channelName,
                                              final List<String> shardNames,
-                                             final MessageInterceptorRegistry interceptorRegistry,
+                                             final Supplier<InterceptorChain> interceptorChain,
                                              final MessageDispatcher messageDispatcher,
+                                             final KeyOrderedDispatcher keyOrderedDispatcher,
                                              final ApplicationEventPublisher eventPublisher) {
             this.channelName = channelName;
             this.messageDispatcher = messageDispatcher;
-            this.interceptorRegistry = interceptorRegistry;
+            this.keyOrderedDispatcher = keyOrderedDispatcher;
+            this.interceptorChain = interceptorChain;
             this.eventPublisher = eventPublisher;
             channelDurationBehind.set(unknown(shardNames));
         }
 
         @Override
         public void accept(final ShardResponse response) {
-            final InterceptorChain interceptorChain = interceptorRegistry.getInterceptorChain(channelName, RECEIVER);
-            response.getMessages().forEach(message -> {
+            final InterceptorChain interceptorChain = this.interceptorChain.get();
+            // Messages are decoded lazily: if no interceptor has side effects, messages with keys that are not
+            // consumed at all can be skipped without decoding them.
+            final boolean skipUnconsumedMessages = interceptorChain.isSideEffectFree();
+            // With a concurrency > 1, messages are dispatched in parallel, ordered by partition key. The response
+            // is completed (and the position of the shard may be checkpointed) after all messages are dispatched.
+            final KeyOrderedDispatcher.Batch batch = keyOrderedDispatcher.newBatch();
+            if (interceptorChain.hasBatchInterceptors()) {
+                // Batch interceptors are intercepting all messages of the response at once:
                 try {
-                    LOG.debug("Processing message " + message.getKey());
-                    final TextMessage interceptedMessage = interceptorChain.intercept(message);
-                    if (interceptedMessage != null) {
-                        messageDispatcher.accept(interceptedMessage);
-                    } else {
-                        LOG.debug("Message {} dropped by interceptor", message.getKey());
-                    }
+                    interceptorChain
+                            .interceptAll(response.getMessages()
+                                    .stream()
+                                    .filter(message -> !skipUnconsumedMessages || isConsumed(message))
+                                    .collect(toList()))
+                            .forEach(batch::accept);
                 } catch (final Exception e) {
-                    LOG.error("Error processing message: " + e.getMessage(), e);
+                    LOG.error("Error processing messages of shard " + response.getShardName() + ": " + e.getMessage(), e);
                 }
-            });
+            } else {
+                response.getMessages().forEach(message -> {
+                    try {
+                        if (skipUnconsumedMessages && !isConsumed(message)) {
+                            return;
+                        }
+                        LOG.debug("Processing message " + message.getKey());
+                        final TextMessage interceptedMessage = interceptorChain.intercept(message);
+                        if (interceptedMessage != null) {
+                            batch.accept(interceptedMessage);
+                        } else {
+                            LOG.debug("Message {} dropped by interceptor", message.getKey());
+                        }
+                    } catch (final Exception e) {
+                        LOG.error("Error processing message: " + e.getMessage(), e);
+                    }
+                });
+            }
+            batch.await();
             channelDurationBehind.updateAndGet(behind -> copyOf(behind)
                     .with(response.getShardName(), response.getDurationBehind())
                     .build());
@@ -86,11 +115,18 @@ public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceive
 
         }
 
+        private boolean isConsumed(final TextMessage message) {
+            if (messageDispatcher.hasConsumerFor(message.getKey())) {
+                return true;
+            } else {
+                LOG.debug("Skipping message {}: no consumer for key", message.getKey());
+                return false;
+            }
+        }
     }
 
     private final KinesisMessageLogReader kinesisMessageLogReader;
     private final ApplicationEventPublisher eventPublisher;
-    private final MessageInterceptorRegistry interceptorRegistry;
 
 
     public KinesisMessageLogReceiverEndpoint(final String channelName,
@@ -110,7 +146,6 @@ public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceive
         super(channelName, interceptorRegistry, eventPublisher);
         this.eventPublisher = eventPublisher;
         this.kinesisMessageLogReader = new KinesisMessageLogReader(channelName, kinesisClient, executorService, clock);
-        this.interceptorRegistry = interceptorRegistry;
     }
 
     public KinesisMessageLogReceiverEndpoint(final String channelName,
@@ -122,7 +157,30 @@ public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceive
         super(channelName, interceptorRegistry, eventPublisher);
         this.eventPublisher = eventPublisher;
         this.kinesisMessageLogReader = new KinesisMessageLogReader(channelName, kinesisClient, executorService, clock, waitingTimeOnEmptyRecords);
-        this.interceptorRegistry = interceptorRegistry;
+    }
+
+    /**
+     * Creates a KinesisMessageLogReceiverEndpoint.
+     *
+     * @param channelName the name of the Kinesis stream
+     * @param interceptorRegistry registry used to intercept received messages
+     * @param kinesisClient the Kinesis client
+     * @param executorService the executor used to consume the shards of the stream
+     * @param eventPublisher publisher used to publish MessageReceiverNotifications
+     * @param clock the clock
+     * @param receiverSettings settings controlling how the shards of the stream are read, for example using
+     *                         enhanced fan-out or shared GetRecords requests
+     */
+    public KinesisMessageLogReceiverEndpoint(final String channelName,
+                                             final MessageInterceptorRegistry interceptorRegistry,
+                                             final KinesisAsyncClient kinesisClient,
+                                             final ExecutorService executorService,
+                                             final ApplicationEventPublisher eventPublisher,
+                                             final Clock clock,
+                                             final @Nonnull KinesisReceiverSettings receiverSettings) {
+        super(channelName, interceptorRegistry, eventPublisher);
+        this.eventPublisher = eventPublisher;
+        this.kinesisMessageLogReader = new KinesisMessageLogReader(channelName, kinesisClient, executorService, clock, receiverSettings);
     }
 
     @Nonnull
@@ -134,9 +192,11 @@ public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceive
 
             publishEvent(STARTED, "Received shards from Kinesis.", null);
 
-            final KinesisShardResponseConsumer consumer = new KinesisShardResponseConsumer(getChannelName(), shards, interceptorRegistry, getMessageDispatcher(), eventPublisher);
+            final KeyOrderedDispatcher keyOrderedDispatcher = getMessageDispatcher().keyOrdered("synapse-kinesis-dispatcher-" + getChannelName() + "-");
+            final KinesisShardResponseConsumer consumer = new KinesisShardResponseConsumer(getChannelName(), shards, this::getInterceptorChain, getMessageDispatcher(), keyOrderedDispatcher, eventPublisher);
 
             return kinesisMessageLogReader.consumeUntil(startFrom, stopCondition, consumer)
+                    .whenComplete((channelPosition, throwable) -> keyOrderedDispatcher.close())
                     .thenApply((channelPosition -> {
                         final long t2 = System.currentTimeMillis();
                         info(LOG, ImmutableMap.of("runtime", (t2-t1)), "Consume events from Kinesis", null);
@@ -160,7 +220,7 @@ public class KinesisMessageLogReceiverEndpoint extends AbstractMessageLogReceive
     }
 
     @VisibleForTesting
-    List<KinesisShardReader> getCurrentKinesisShards() {
+    List<ShardReader> getCurrentKinesisShards() {
         return kinesisMessageLogReader.getCurrentKinesisShards();
     }
 
@@ -10,6 +10,7 @@ import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import javax.annotation.Nonnull;
 import java.time.Clock;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 public class KinesisMessageLogReceiverEndpointFactory implements MessageLogReceiverEndpointFactory {
 
@@ -18,6 +19,7 @@ public class KinesisMessageLogReceiverEndpointFactory implements MessageLogRecei
     private final ApplicationEventPublisher eventPublisher;
     private final Clock clock;
     private final ExecutorService executorService;
+    private final Function<String, KinesisReceiverSettings> receiverSettings;
 
     @Autowired
     public KinesisMessageLogReceiverEndpointFactory(final MessageInterceptorRegistry interceptorRegistry,
@@ -32,16 +34,37 @@ public class KinesisMessageLogReceiverEndpointFactory implements MessageLogRecei
                                                     final ExecutorService kinesisMessageLogExecutorService,
                                                     final ApplicationEventPublisher eventPublisher,
                                                     final Clock clock) {
+        this(interceptorRegistry, kinesisClient, kinesisMessageLogExecutorService, eventPublisher, clock, channelName -> KinesisReceiverSettings.defaultReceiverSettings());
+    }
+
+    /**
+     * Creates a KinesisMessageLogReceiverEndpointFactory.
+     *
+     * @param interceptorRegistry registry used to intercept received messages
+     * @param kinesisClient the Kinesis client
+     * @param kinesisMessageLogExecutorService the executor used to consume the shards of the streams
+     * @param eventPublisher publisher used to publish MessageReceiverNotifications
+     * @param clock the clock
+     * @param receiverSettings function returning the settings of the endpoint consuming the stream with the
+     *                         given channel name
+     */
+    public KinesisMessageLogReceiverEndpointFactory(final MessageInterceptorRegistry interceptorRegistry,
+                                                    final KinesisAsyncClient kinesisClient,
+                                                    final ExecutorService kinesisMessageLogExecutorService,
+                                                    final ApplicationEventPublisher eventPublisher,
+                                                    final Clock clock,
+                                                    final @Nonnull Function<String, KinesisReceiverSettings> receiverSettings) {
         this.interceptorRegistry = interceptorRegistry;
         this.kinesisClient = kinesisClient;
         this.executorService = kinesisMessageLogExecutorService;
         this.eventPublisher = eventPublisher;
         this.clock = clock;
+        this.receiverSettings = receiverSettings;
     }
 
     @Override
     public MessageLogReceiverEndpoint create(@Nonnull String channelName) {
-        return new KinesisMessageLogReceiverEndpoint(channelName, interceptorRegistry, kinesisClient, executorService, eventPublisher, clock);
+        return new KinesisMessageLogReceiverEndpoint(channelName, interceptorRegistry, kinesisClient, executorService, eventPublisher, clock, receiverSettings.apply(channelName));
     }
 
 }
@@ -0,0 +1,148 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.ShardResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link ShardReader} that is sharing the GetRecords requests of a Kinesis shard with all other readers of the
+ * shard, that were created by the same {@link KinesisShardMultiplexer}.
+ * <p>
+ *     Every reader is consuming the shard using its own position and stop condition. Readers that are behind
+ *     the shared reads are catching up using their own GetRecords requests.
+ * </p>
+ */
+@ThreadSafe
+public class KinesisMultiplexedShardReader implements ShardReader {
+    private static final Logger LOG = LoggerFactory.getLogger(KinesisMultiplexedShardReader.class);
+
+    private final String channelName;
+    private final String shardName;
+    private final KinesisAsyncClient kinesisClient;
+    private final ExecutorService executorService;
+    private final KinesisPollingStrategy pollingStrategy;
+    private final KinesisShardMultiplexer shardMultiplexer;
+    private final AtomicBoolean stopSignal = new AtomicBoolean(false);
+    private final AtomicBoolean endOfShard = new AtomicBoolean(false);
+    private final AtomicLong sharedPageCount = new AtomicLong();
+    private final AtomicLong catchUpPageCount = new AtomicLong();
+
+    /**
+     * @param channelName the name of the Kinesis stream
+     * @param shardName the name of the shard
+     * @param kinesisClient the Kinesis client
+     * @param executorService the executor used to consume the shard
+     * @param pollingStrategy the strategy used to calculate the delay between two polls
+     * @param shardMultiplexer the multiplexer used to share the reads of the shard
+     */
+    public KinesisMultiplexedShardReader(final String channelName,
+                                        final String shardName,
+                                        final KinesisAsyncClient kinesisClient,
+                                        final ExecutorService executorService,
+                                        final KinesisPollingStrategy pollingStrategy,
+                                        final KinesisShardMultiplexer shardMultiplexer) {
+        this.channelName = channelName;
+        this.shardName = shardName;
+        this.kinesisClient = kinesisClient;
+        this.executorService = executorService;
+        this.pollingStrategy = pollingStrategy;
+        this.shardMultiplexer = shardMultiplexer;
+    }
+
+    @Override
+    public String getChannelName() {
+        return channelName;
+    }
+
+    @Override
+    public String getShardName() {
+        return shardName;
+    }
+
+    @Override
+    public CompletableFuture<ShardPosition> consumeUntil(final ShardPosition startFrom,
+                                                         final Predicate<ShardResponse> stopCondition,
+                                                         final Consumer<ShardResponse> responseConsumer) {
+        return CompletableFuture.supplyAsync(() -> {
+            MDC.put("channelName", channelName);
+            MDC.put("shardName", shardName);
+            LOG.info("Reading from channel={}, shard={}, position={} using shared reads", channelName, shardName, startFrom);
+            KinesisSharedShard.Subscription subscription = null;
+            try {
+                subscription = shardMultiplexer.subscribe(kinesisClient, channelName, shardName, pollingStrategy, startFrom);
+                ShardPosition shardPosition = startFrom;
+                boolean stopRetrieval;
+                do {
+                    final ShardResponse response = subscription.take(this::isStopping);
+                    if (response == null) {
+                        break;
+                    }
+                    responseConsumer.accept(response);
+                    shardPosition = response.getShardPosition();
+                    if (subscription.isLastPageOfShard(response)) {
+                        endOfShard.set(true);
+                    }
+
+                    stopRetrieval = stopCondition.test(response) || isStopping();
+
+                } while (!stopRetrieval);
+                return shardPosition;
+
+            } catch (final RuntimeException e) {
+                LOG.error("Failed to consume from Kinesis shard {}: {}, {}", channelName, shardName, e.getMessage());
+                // Stop all shards and shutdown if this shard is failing:
+                stop();
+                throw e;
+            } finally {
+                if (subscription != null) {
+                    sharedPageCount.addAndGet(subscription.getSharedPageCount());
+                    catchUpPageCount.addAndGet(subscription.getCatchUpPageCount());
+                    shardMultiplexer.unsubscribe(kinesisClient, channelName, shardName, subscription);
+                }
+                MDC.remove("channelName");
+                MDC.remove("shardName");
+            }
+        }, executorService);
+    }
+
+    /**
+     * @return the number of pages that were taken from the shared reads of the shard.
+     */
+    public long getSharedPageCount() {
+        return sharedPageCount.get();
+    }
+
+    /**
+     * @return the number of pages that were read by this reader while catching up with the shared reads.
+     */
+    public long getCatchUpPageCount() {
+        return catchUpPageCount.get();
+    }
+
+    @Override
+    public void stop() {
+        LOG.info("Shard {} received stop signal.", shardName);
+        stopSignal.set(true);
+    }
+
+    @Override
+    public boolean isStopping() {
+        return stopSignal.get();
+    }
+
+    @Override
+    public boolean isEndOfShard() {
+        return endOfShard.get();
+    }
+}
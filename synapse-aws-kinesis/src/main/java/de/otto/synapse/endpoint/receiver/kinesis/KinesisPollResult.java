@@ -0,0 +1,176 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Summary of a single GetRecords request issued by a {@link KinesisShardReader}. Used by
+ * {@link KinesisPollingStrategy polling strategies} to calculate the delay until the next poll.
+ */
+public final class KinesisPollResult {
+
+    private final int recordCount;
+    private final long byteCount;
+    private final Duration durationBehind;
+    private final int fetchRecordLimit;
+    private final int consecutiveEmptyPolls;
+    private final int consecutiveThrottledPolls;
+    private final boolean throttled;
+
+    private KinesisPollResult(final Builder builder) {
+        this.recordCount = builder.recordCount;
+        this.byteCount = builder.byteCount;
+        this.durationBehind = builder.durationBehind;
+        this.fetchRecordLimit = builder.fetchRecordLimit;
+        this.consecutiveEmptyPolls = builder.consecutiveEmptyPolls;
+        this.consecutiveThrottledPolls = builder.consecutiveThrottledPolls;
+        this.throttled = builder.throttled;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of records returned by the last poll
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the number of bytes of the record data returned by the last poll
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the duration behind the tip of the shard, as returned by the last poll
+     */
+    public Duration getDurationBehind() {
+        return durationBehind;
+    }
+
+    /**
+     * @return the maximum number of records requested by a single poll
+     */
+    public int getFetchRecordLimit() {
+        return fetchRecordLimit;
+    }
+
+    /**
+     * @return the number of consecutive polls, including the last one, that did not return any records. Throttled
+     * polls are not counted.
+     */
+    public int getConsecutiveEmptyPolls() {
+        return consecutiveEmptyPolls;
+    }
+
+    /**
+     * @return the number of consecutive polls, including the last one, that failed because the read throughput of
+     * the shard was exceeded.
+     */
+    public int getConsecutiveThrottledPolls() {
+        return consecutiveThrottledPolls;
+    }
+
+    /**
+     * @return true, if the last poll failed because the read throughput of the shard was exceeded.
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * @return true, if the last poll returned as many records as requested, so more records are immediately
+     * available.
+     */
+    public boolean isFullPage() {
+        return recordCount > 0 && recordCount >= fetchRecordLimit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        KinesisPollResult that = (KinesisPollResult) o;
+        return recordCount == that.recordCount &&
+                byteCount == that.byteCount &&
+                fetchRecordLimit == that.fetchRecordLimit &&
+                consecutiveEmptyPolls == that.consecutiveEmptyPolls &&
+                consecutiveThrottledPolls == that.consecutiveThrottledPolls &&
+                throttled == that.throttled &&
+                Objects.equals(durationBehind, that.durationBehind);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(recordCount, byteCount, durationBehind, fetchRecordLimit, consecutiveEmptyPolls, consecutiveThrottledPolls, throttled);
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisPollResult{" +
+                "recordCount=" + recordCount +
+                ", byteCount=" + byteCount +
+                ", durationBehind=" + durationBehind +
+                ", fetchRecordLimit=" + fetchRecordLimit +
+                ", consecutiveEmptyPolls=" + consecutiveEmptyPolls +
+                ", consecutiveThrottledPolls=" + consecutiveThrottledPolls +
+                ", throttled=" + throttled +
+                '}';
+    }
+
+    public static final class Builder {
+        private int recordCount;
+        private long byteCount;
+        private Duration durationBehind = Duration.ZERO;
+        private int fetchRecordLimit = KinesisShardIterator.FETCH_RECORDS_LIMIT;
+        private int consecutiveEmptyPolls;
+        private int consecutiveThrottledPolls;
+        private boolean throttled;
+
+        private Builder() {
+        }
+
+        public Builder withRecordCount(final int recordCount) {
+            this.recordCount = recordCount;
+            return this;
+        }
+
+        public Builder withByteCount(final long byteCount) {
+            this.byteCount = byteCount;
+            return this;
+        }
+
+        public Builder withDurationBehind(final Duration durationBehind) {
+            this.durationBehind = durationBehind;
+            return this;
+        }
+
+        public Builder withFetchRecordLimit(final int fetchRecordLimit) {
+            this.fetchRecordLimit = fetchRecordLimit;
+            return this;
+        }
+
+        public Builder withConsecutiveEmptyPolls(final int consecutiveEmptyPolls) {
+            this.consecutiveEmptyPolls = consecutiveEmptyPolls;
+            return this;
+        }
+
+        public Builder withConsecutiveThrottledPolls(final int consecutiveThrottledPolls) {
+            this.consecutiveThrottledPolls = consecutiveThrottledPolls;
+            return this;
+        }
+
+        public Builder withThrottled(final boolean throttled) {
+            this.throttled = throttled;
+            return this;
+        }
+
+        public KinesisPollResult build() {
+            return new KinesisPollResult(this);
+        }
+    }
+}
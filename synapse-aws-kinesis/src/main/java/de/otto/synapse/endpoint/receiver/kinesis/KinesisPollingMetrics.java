@@ -0,0 +1,84 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics about the polls of a single shard and the delays chosen by the {@link KinesisPollingStrategy}.
+ */
+@ThreadSafe
+public class KinesisPollingMetrics {
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong emptyPolls = new AtomicLong();
+    private final AtomicLong fullPagePolls = new AtomicLong();
+    private final AtomicLong throttledPolls = new AtomicLong();
+    private final AtomicLong totalDelayMillis = new AtomicLong();
+    private final AtomicLong maxDelayMillis = new AtomicLong();
+    private final AtomicLong lastDelayMillis = new AtomicLong();
+
+    void record(final KinesisPollResult pollResult, final Duration delay) {
+        final long delayMillis = delay.toMillis();
+        polls.incrementAndGet();
+        if (pollResult.isThrottled()) {
+            throttledPolls.incrementAndGet();
+        } else if (pollResult.getRecordCount() == 0) {
+            emptyPolls.incrementAndGet();
+        } else if (pollResult.isFullPage()) {
+            fullPagePolls.incrementAndGet();
+        }
+        totalDelayMillis.addAndGet(delayMillis);
+        maxDelayMillis.accumulateAndGet(delayMillis, Math::max);
+        lastDelayMillis.set(delayMillis);
+    }
+
+    /**
+     * @return the total number of polls, including throttled polls.
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    public long getEmptyPolls() {
+        return emptyPolls.get();
+    }
+
+    public long getFullPagePolls() {
+        return fullPagePolls.get();
+    }
+
+    public long getThrottledPolls() {
+        return throttledPolls.get();
+    }
+
+    public Duration getTotalDelay() {
+        return Duration.ofMillis(totalDelayMillis.get());
+    }
+
+    public Duration getMaxDelay() {
+        return Duration.ofMillis(maxDelayMillis.get());
+    }
+
+    public Duration getLastDelay() {
+        return Duration.ofMillis(lastDelayMillis.get());
+    }
+
+    public Duration getAverageDelay() {
+        final long count = polls.get();
+        return count == 0 ? Duration.ZERO : Duration.ofMillis(totalDelayMillis.get() / count);
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisPollingMetrics{" +
+                "polls=" + polls +
+                ", emptyPolls=" + emptyPolls +
+                ", fullPagePolls=" + fullPagePolls +
+                ", throttledPolls=" + throttledPolls +
+                ", averageDelay=" + getAverageDelay() +
+                ", maxDelay=" + getMaxDelay() +
+                ", lastDelay=" + getLastDelay() +
+                '}';
+    }
+}
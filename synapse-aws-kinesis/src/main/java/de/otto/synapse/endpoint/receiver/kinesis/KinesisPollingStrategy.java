@@ -0,0 +1,26 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+
+/**
+ * Strategy used by the {@link KinesisShardReader} to decide how long to wait before polling a shard again.
+ * <p>
+ *     Implementations must be thread-safe, as a single strategy is shared by all shards of a channel. State
+ *     that is specific to a shard, like the number of consecutive empty polls, is part of the
+ *     {@link KinesisPollResult}.
+ * </p>
+ */
+@FunctionalInterface
+public interface KinesisPollingStrategy {
+
+    /**
+     * Returns the delay before the next GetRecords request is issued.
+     *
+     * @param pollResult the result of the last poll
+     * @return delay before polling the shard again; {@link Duration#ZERO} to re-poll immediately.
+     */
+    @Nonnull
+    Duration nextPollDelay(@Nonnull KinesisPollResult pollResult);
+
+}
@@ -0,0 +1,139 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings of a {@link KinesisMessageLogReceiverEndpoint} and its {@link KinesisMessageLogReader}, controlling
+ * how the shards of a Kinesis stream are read.
+ * <p>
+ *     By default, every shard is polled on its own using GetRecords and the {@link AdaptivePollingStrategy}.
+ *     Alternatively, shards may be read using enhanced fan-out, or the GetRecords requests may be shared with
+ *     other readers of the same stream using a {@link KinesisShardMultiplexer}.
+ * </p>
+ */
+public final class KinesisReceiverSettings {
+
+    public static final Duration DEFAULT_SHARD_DISCOVERY_INTERVAL = Duration.ofSeconds(30);
+
+    private final KinesisPollingStrategy pollingStrategy;
+    private final String enhancedFanOutConsumerName;
+    private final Duration shardDiscoveryInterval;
+    private final KinesisShardMultiplexer shardMultiplexer;
+
+    private KinesisReceiverSettings(final Builder builder) {
+        checkArgument(!builder.shardDiscoveryInterval.isNegative(), "shardDiscoveryInterval must not be negative");
+        this.pollingStrategy = requireNonNull(builder.pollingStrategy, "pollingStrategy must not be null");
+        this.enhancedFanOutConsumerName = builder.enhancedFanOutConsumerName;
+        this.shardDiscoveryInterval = builder.shardDiscoveryInterval;
+        this.shardMultiplexer = builder.shardMultiplexer;
+    }
+
+    /**
+     * @return KinesisReceiverSettings using the default settings.
+     */
+    public static KinesisReceiverSettings defaultReceiverSettings() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the strategy used to calculate the delay between two polls of a shard. Not used if enhanced
+     * fan-out is enabled.
+     */
+    @Nonnull
+    public KinesisPollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    /**
+     * @return the name of the stream consumer used for enhanced fan-out, or null, if the shards are polled
+     * using GetRecords.
+     */
+    @Nullable
+    public String getEnhancedFanOutConsumerName() {
+        return enhancedFanOutConsumerName;
+    }
+
+    /**
+     * @return the interval used to discover new shards after the stream was resharded. If zero, new shards are
+     * not discovered while consuming messages.
+     */
+    @Nonnull
+    public Duration getShardDiscoveryInterval() {
+        return shardDiscoveryInterval;
+    }
+
+    /**
+     * @return the multiplexer used to share the GetRecords requests with other readers of the same stream, or
+     * null, if every reader is polling the shards on its own. Not used if enhanced fan-out is enabled.
+     */
+    @Nullable
+    public KinesisShardMultiplexer getShardMultiplexer() {
+        return shardMultiplexer;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisReceiverSettings{" +
+                "pollingStrategy=" + pollingStrategy +
+                ", enhancedFanOutConsumerName='" + enhancedFanOutConsumerName + '\'' +
+                ", shardDiscoveryInterval=" + shardDiscoveryInterval +
+                ", shardMultiplexer=" + shardMultiplexer +
+                '}';
+    }
+
+    public static final class Builder {
+        private KinesisPollingStrategy pollingStrategy = AdaptivePollingStrategy.defaultPollingStrategy();
+        private String enhancedFanOutConsumerName = null;
+        private Duration shardDiscoveryInterval = DEFAULT_SHARD_DISCOVERY_INTERVAL;
+        private KinesisShardMultiplexer shardMultiplexer = null;
+
+        private Builder() {
+        }
+
+        public Builder withPollingStrategy(final KinesisPollingStrategy pollingStrategy) {
+            this.pollingStrategy = pollingStrategy;
+            return this;
+        }
+
+        /**
+         * Reads the shards using enhanced fan-out instead of polling them.
+         *
+         * @param enhancedFanOutConsumerName the name of the stream consumer, or null, if the shards should be
+         *                                   polled using GetRecords.
+         * @return this
+         */
+        public Builder withEnhancedFanOut(final @Nullable String enhancedFanOutConsumerName) {
+            this.enhancedFanOutConsumerName = enhancedFanOutConsumerName;
+            return this;
+        }
+
+        public Builder withShardDiscoveryInterval(final Duration shardDiscoveryInterval) {
+            this.shardDiscoveryInterval = shardDiscoveryInterval;
+            return this;
+        }
+
+        /**
+         * Shares the GetRecords requests of the shards with all other readers using the same multiplexer.
+         *
+         * @param shardMultiplexer the multiplexer, or null, if the shards should not be shared.
+         * @return this
+         */
+        public Builder withShardMultiplexer(final @Nullable KinesisShardMultiplexer shardMultiplexer) {
+            this.shardMultiplexer = shardMultiplexer;
+            return this;
+        }
+
+        public KinesisReceiverSettings build() {
+            return new KinesisReceiverSettings(this);
+        }
+    }
+}
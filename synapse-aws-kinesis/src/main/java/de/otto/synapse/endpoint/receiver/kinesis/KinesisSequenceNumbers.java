@@ -0,0 +1,132 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import com.google.common.collect.ImmutableList;
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.StartFrom;
+import de.otto.synapse.message.TextMessage;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+/**
+ * Helper used to handle the positions of user records contained in aggregated Kinesis records.
+ * <p>
+ *     All user records of an aggregated record share the sequence number of the Kinesis record. In order to be
+ *     able to continue consumption in the middle of an aggregated record, the position of the n-th user record is
+ *     {@code <sequenceNumber>:<n>}. The last user record of an aggregated record has the plain sequence number
+ *     as position, so the position of a completely consumed aggregated record is the same as the position of a
+ *     regular record.
+ * </p>
+ */
+final class KinesisSequenceNumbers {
+
+    private static final char SUB_SEQUENCE_SEPARATOR = ':';
+
+    private KinesisSequenceNumbers() {
+    }
+
+    /**
+     * Returns the position of a user record in an aggregated record.
+     *
+     * @param sequenceNumber the sequence number of the Kinesis record
+     * @param subSequenceNumber the index of the user record
+     * @return position of the user record
+     */
+    static String subSequencePosition(final @Nonnull String sequenceNumber, final int subSequenceNumber) {
+        return sequenceNumber + SUB_SEQUENCE_SEPARATOR + subSequenceNumber;
+    }
+
+    /**
+     * @param position the position of a Kinesis record or user record
+     * @return true, if the position is referring to a user record in the middle of an aggregated record
+     */
+    static boolean isSubSequencePosition(final @Nonnull String position) {
+        return position.indexOf(SUB_SEQUENCE_SEPARATOR) > 0;
+    }
+
+    /**
+     * @param position the position of a Kinesis record or user record
+     * @return the sequence number of the Kinesis record
+     */
+    static String sequenceNumberOf(final @Nonnull String position) {
+        final int separator = position.indexOf(SUB_SEQUENCE_SEPARATOR);
+        return separator > 0 ? position.substring(0, separator) : position;
+    }
+
+    /**
+     * Compares two positions. Kinesis sequence numbers are increasing numeric strings of up to 128 digits; user
+     * records of the same aggregated record are ordered by their sub-sequence number, the plain sequence number
+     * being the last one.
+     */
+    static int compare(final @Nonnull String first, final @Nonnull String second) {
+        final int result = compareSequenceNumbers(sequenceNumberOf(first), sequenceNumberOf(second));
+        if (result != 0) {
+            return result;
+        }
+        return Long.compare(subSequenceNumberOf(first), subSequenceNumberOf(second));
+    }
+
+    /**
+     * Removes the user records of an aggregated record that were already consumed before the shard was read
+     * from {@code startFrom}.
+     * <p>
+     *     Kinesis iterators are only able to start at whole records, so reading from a position in the middle of an
+     *     aggregated record is starting at the aggregated record, and the leading user records must be skipped.
+     * </p>
+     *
+     * @param messages the messages of the first response read from {@code startFrom}
+     * @param startFrom the position, the shard was read from
+     * @return messages that were not consumed before
+     */
+    static ImmutableList<TextMessage> withoutConsumedSubSequences(final @Nonnull ImmutableList<TextMessage> messages,
+                                                                  final @Nonnull ShardPosition startFrom) {
+        if (!isSubSequenceStart(startFrom)) {
+            return messages;
+        }
+        final String sequenceNumber = sequenceNumberOf(startFrom.position());
+        final boolean inclusive = startFrom.startFrom() == StartFrom.AT_POSITION;
+        return messages
+                .stream()
+                .filter(message -> message.getHeader().getShardPosition()
+                        .map(ShardPosition::position)
+                        .map(position -> !sequenceNumberOf(position).equals(sequenceNumber)
+                                || (inclusive
+                                        ? compare(position, startFrom.position()) >= 0
+                                        : compare(position, startFrom.position()) > 0))
+                        .orElse(true))
+                .collect(toImmutableList());
+    }
+
+    /**
+     * @param shardPosition a shard position
+     * @return true, if the position is referring to a user record in the middle of an aggregated record
+     */
+    static boolean isSubSequenceStart(final @Nonnull ShardPosition shardPosition) {
+        return (shardPosition.startFrom() == StartFrom.POSITION || shardPosition.startFrom() == StartFrom.AT_POSITION)
+                && isSubSequencePosition(shardPosition.position());
+    }
+
+    private static long subSequenceNumberOf(final String position) {
+        final int separator = position.indexOf(SUB_SEQUENCE_SEPARATOR);
+        if (separator > 0) {
+            try {
+                return Long.parseLong(position.substring(separator + 1));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("Illegal sub-sequence position " + position, e);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static int compareSequenceNumbers(final String first, final String second) {
+        if (first.length() != second.length() && isNumeric(first) && isNumeric(second)) {
+            return Integer.compare(first.length(), second.length());
+        }
+        return first.compareTo(second);
+    }
+
+    private static boolean isNumeric(final String sequenceNumber) {
+        return !sequenceNumber.isEmpty() && sequenceNumber.chars().allMatch(Character::isDigit);
+    }
+}
@@ -1,14 +1,35 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
 import java.util.Objects;
 
 public class KinesisShardInfo {
     private final String shardName;
     private final boolean open;
+    private final String parentShardName;
+    private final String adjacentParentShardName;
 
     public KinesisShardInfo(final String shardName, final boolean open) {
+        this(shardName, open, null, null);
+    }
+
+    /**
+     * @param shardName the name of the shard
+     * @param open true, if the shard is open, false if the shard was closed by a split or merge of shards
+     * @param parentShardName the name of the parent shard, or null, if the shard has no parent
+     * @param adjacentParentShardName the name of the adjacent parent shard, if the shard was created by merging
+     *                                two shards; null otherwise
+     */
+    public KinesisShardInfo(final String shardName,
+                            final boolean open,
+                            final @Nullable String parentShardName,
+                            final @Nullable String adjacentParentShardName) {
         this.shardName = shardName;
         this.open = open;
+        this.parentShardName = parentShardName;
+        this.adjacentParentShardName = adjacentParentShardName;
     }
 
     public String getShardName() {
@@ -19,18 +40,47 @@ public class KinesisShardInfo {
         return open;
     }
 
+    @Nullable
+    public String getParentShardName() {
+        return parentShardName;
+    }
+
+    @Nullable
+    public String getAdjacentParentShardName() {
+        return adjacentParentShardName;
+    }
+
+    /**
+     * Returns the names of the parent shards. Shards created by a split have a single parent; shards created
+     * by a merge have two parents.
+     *
+     * @return list of parent shard names, empty if the shard has no parents
+     */
+    public ImmutableList<String> getParentShardNames() {
+        final ImmutableList.Builder<String> parents = ImmutableList.builder();
+        if (parentShardName != null) {
+            parents.add(parentShardName);
+        }
+        if (adjacentParentShardName != null) {
+            parents.add(adjacentParentShardName);
+        }
+        return parents.build();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         KinesisShardInfo that = (KinesisShardInfo) o;
         return open == that.open &&
-                Objects.equals(shardName, that.shardName);
+                Objects.equals(shardName, that.shardName) &&
+                Objects.equals(parentShardName, that.parentShardName) &&
+                Objects.equals(adjacentParentShardName, that.adjacentParentShardName);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(shardName, open);
+        return Objects.hash(shardName, open, parentShardName, adjacentParentShardName);
     }
 
     @Override
@@ -38,6 +88,8 @@ public class KinesisShardInfo {
         return "KinesisShardInfo{" +
                 "shardName='" + shardName + '\'' +
                 ", open=" + open +
+                ", parentShardName='" + parentShardName + '\'' +
+                ", adjacentParentShardName='" + adjacentParentShardName + '\'' +
                 '}';
     }
 }
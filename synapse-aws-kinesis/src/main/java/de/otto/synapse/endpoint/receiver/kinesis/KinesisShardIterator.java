@@ -11,10 +11,13 @@ import software.amazon.awssdk.services.kinesis.model.GetShardIteratorRequest;
 import software.amazon.awssdk.services.kinesis.model.ProvisionedThroughputExceededException;
 
 import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.channel.ShardResponse.shardResponse;
 import static java.lang.String.format;
+import static java.util.Collections.emptyList;
 import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.*;
 
 /**
@@ -38,8 +41,11 @@ public class KinesisShardIterator {
     private final String channelName;
     private final int fetchRecordLimit;
     private final AtomicBoolean stopSignal = new AtomicBoolean(false);
-    private String id;
-    private ShardPosition shardPosition;
+    private volatile String id;
+    private volatile ShardPosition shardPosition;
+    private volatile long lastFetchedBytes;
+    /* The start position, if reading started in the middle of an aggregated record that was not yet fetched. */
+    private volatile ShardPosition subSequenceStart;
 
     public KinesisShardIterator(final @Nonnull KinesisAsyncClient kinesisClient,
                                 final @Nonnull String channelName,
@@ -55,6 +61,7 @@ public class KinesisShardIterator {
         this.fetchRecordLimit = fetchRecordLimit;
         this.channelName = channelName;
         this.shardPosition = shardPosition;
+        this.subSequenceStart = KinesisSequenceNumbers.isSubSequenceStart(shardPosition) ? shardPosition : null;
         this.id = kinesisClient
                 .getShardIterator(buildIteratorShardRequest(shardPosition))
                 .join()
@@ -74,6 +81,13 @@ public class KinesisShardIterator {
         return fetchRecordLimit;
     }
 
+    /**
+     * @return the number of bytes of record data returned by the last call of {@link #next()}.
+     */
+    public long getLastFetchedBytes() {
+        return lastFetchedBytes;
+    }
+
     /**
      * The shard iterator has returned an id that is matching {@link #POISON_SHARD_ITER}.
      * <p>
@@ -87,7 +101,21 @@ public class KinesisShardIterator {
      * @return true if the iterator is poisonous, false otherwise.
      */
     boolean isPoison() {
-        return this.id.equals(POISON_SHARD_ITER);
+        return POISON_SHARD_ITER.equals(this.id);
+    }
+
+    /**
+     * Returns true, if all records of a closed shard were fetched.
+     * <p>
+     *     Shards are closed if the stream is resharded. After the last record of a closed shard was
+     *     fetched, Kinesis does not return a next shard iterator anymore, and consumption must continue with
+     *     the child shards.
+     * </p>
+     *
+     * @return true if the end of a closed shard is reached, false otherwise.
+     */
+    public boolean isEndOfShard() {
+        return this.id == null;
     }
 
     public void stop() {
@@ -96,13 +124,44 @@ public class KinesisShardIterator {
 
     public ShardResponse next() {
         if (!stopSignal.get()) {
-            GetRecordsResponse recordsResponse = tryNext();
-            return KinesisShardResponse.kinesisShardResponse(shardPosition, recordsResponse);
+            GetRecordsResponse recordsResponse = isEndOfShard() ? endOfShardResponse() : tryNext();
+            return toShardResponse(recordsResponse);
         } else {
             throw new IllegalStateException(format("Cannot iterate on shard '%s' after stop signal was received", shardPosition.shardName()));
         }
     }
 
+    /**
+     * Asynchronously fetches the next records of the shard.
+     * <p>
+     *     The returned future is completed after the state of the iterator was updated, so the next call of
+     *     {@link #nextAsync()} or {@link #next()} must not be issued before the future is completed.
+     * </p>
+     *
+     * @return future ShardResponse
+     */
+    public CompletableFuture<ShardResponse> nextAsync() {
+        if (stopSignal.get()) {
+            final CompletableFuture<ShardResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException(format("Cannot iterate on shard '%s' after stop signal was received", shardPosition.shardName())));
+            return failed;
+        }
+        if (isEndOfShard()) {
+            return CompletableFuture.completedFuture(KinesisShardResponse.kinesisShardResponse(shardPosition, endOfShardResponse()));
+        }
+        try {
+            return kinesisClient.getRecords(buildGetRecordsRequest())
+                    .thenApply(recordsResponse -> {
+                        handleResponse(recordsResponse);
+                        return toShardResponse(recordsResponse);
+                    });
+        } catch (final RuntimeException e) {
+            final CompletableFuture<ShardResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
     private GetShardIteratorRequest buildIteratorShardRequest(final ShardPosition shardPosition) {
         final GetShardIteratorRequest.Builder shardRequestBuilder = GetShardIteratorRequest
                 .builder()
@@ -114,12 +173,17 @@ public class KinesisShardIterator {
                 shardRequestBuilder.shardIteratorType(TRIM_HORIZON);
                 break;
             case POSITION:
-                shardRequestBuilder.shardIteratorType(AFTER_SEQUENCE_NUMBER);
-                shardRequestBuilder.startingSequenceNumber(shardPosition.position());
+                if (KinesisSequenceNumbers.isSubSequencePosition(shardPosition.position())) {
+                    // Continue in the middle of an aggregated record:
+                    shardRequestBuilder.shardIteratorType(AT_SEQUENCE_NUMBER);
+                } else {
+                    shardRequestBuilder.shardIteratorType(AFTER_SEQUENCE_NUMBER);
+                }
+                shardRequestBuilder.startingSequenceNumber(KinesisSequenceNumbers.sequenceNumberOf(shardPosition.position()));
                 break;
             case AT_POSITION:
                 shardRequestBuilder.shardIteratorType(AT_SEQUENCE_NUMBER);
-                shardRequestBuilder.startingSequenceNumber(shardPosition.position());
+                shardRequestBuilder.startingSequenceNumber(KinesisSequenceNumbers.sequenceNumberOf(shardPosition.position()));
                 break;
             case TIMESTAMP:
                 shardRequestBuilder
@@ -130,13 +194,47 @@ public class KinesisShardIterator {
         return shardRequestBuilder.build();
     }
 
+    private ShardResponse toShardResponse(final GetRecordsResponse recordsResponse) {
+        final ShardResponse response = KinesisShardResponse.kinesisShardResponse(shardPosition, recordsResponse);
+        final ShardPosition startFrom = subSequenceStart;
+        if (startFrom == null || recordsResponse.records().isEmpty()) {
+            return response;
+        }
+        subSequenceStart = null;
+        return shardResponse(
+                response.getShardPosition(),
+                response.getDurationBehind(),
+                KinesisSequenceNumbers.withoutConsumedSubSequences(response.getMessages(), startFrom));
+    }
+
     private GetRecordsResponse tryNext() {
-        GetRecordsResponse response = kinesisClient.getRecords(GetRecordsRequest.builder()
+        GetRecordsResponse response = kinesisClient.getRecords(buildGetRecordsRequest())
+                .join();
+        handleResponse(response);
+        return response;
+    }
+
+    private GetRecordsResponse endOfShardResponse() {
+        this.lastFetchedBytes = 0;
+        return GetRecordsResponse.builder()
+                .records(emptyList())
+                .millisBehindLatest(0L)
+                .build();
+    }
+
+    private GetRecordsRequest buildGetRecordsRequest() {
+        return GetRecordsRequest.builder()
                 .shardIterator(id)
                 .limit(fetchRecordLimit)
-                .build())
-                .join();
+                .build();
+    }
+
+    private void handleResponse(final GetRecordsResponse response) {
         this.id = response.nextShardIterator();
+        this.lastFetchedBytes = response.records()
+                .stream()
+                .mapToLong(record -> record.data() != null ? record.data().asByteBuffer().remaining() : 0)
+                .sum();
         LOG.debug("next() with id " + this.id + " returned " + response.records().size() + " records");
         if (!response.records().isEmpty()) {
             this.shardPosition = fromPosition(
@@ -144,7 +242,6 @@ public class KinesisShardIterator {
                     response.records().get(response.records().size()-1).sequenceNumber()
             );
         }
-        return response;
     }
 
 }
@@ -0,0 +1,161 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardPosition;
+import org.slf4j.Logger;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.ProvisionedThroughputExceededException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Multiplexes the GetRecords requests of all readers of the same Kinesis shard.
+ * <p>
+ *     If several EventSources (or the CompactionService) are consuming the same Kinesis stream in one JVM, every
+ *     consumer is polling every shard on its own. This multiplies the number of GetShardIterator and GetRecords
+ *     requests and may result in a {@link ProvisionedThroughputExceededException}. The readers created by a
+ *     KinesisShardMultiplexer are sharing the reads of a shard instead: every shard is read only once, and the
+ *     {@link de.otto.synapse.channel.ShardResponse shard responses} are fanned out to all
+ *     {@link KinesisMultiplexedShardReader readers} of the shard. Every reader has its own position and stop
+ *     condition.
+ * </p>
+ * <p>
+ *     Readers starting behind the shared reads, and readers that are too slow to keep up with the shared reads,
+ *     are catching up using their own GetRecords requests until they have reached the shared position. Readers
+ *     at the tip of the shard are therefore not slowed down by readers that are behind.
+ * </p>
+ * <p>
+ *     Use {@link #sharedShardMultiplexer()} to share the reads of all consumers in the JVM.
+ * </p>
+ */
+@ThreadSafe
+public class KinesisShardMultiplexer {
+
+    private static final Logger LOG = getLogger(KinesisShardMultiplexer.class);
+
+    /**
+     * The default maximum number of shared pages that are waiting to be consumed by a single reader. Readers
+     * are detached from the shared reads, if they are falling further behind.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_PAGES = 16;
+
+    private static final KinesisShardMultiplexer SHARED_SHARD_MULTIPLEXER = new KinesisShardMultiplexer(DEFAULT_MAX_BUFFERED_PAGES);
+
+    private final ConcurrentMap<SharedShardKey, KinesisSharedShard> sharedShards = new ConcurrentHashMap<>();
+    private final int maxBufferedPages;
+
+    /**
+     * @param maxBufferedPages the maximum number of shared pages that are waiting to be consumed by a single
+     *                         reader, before the reader is detached from the shared reads.
+     */
+    public KinesisShardMultiplexer(final int maxBufferedPages) {
+        checkArgument(maxBufferedPages > 0, "maxBufferedPages must be greater than zero");
+        this.maxBufferedPages = maxBufferedPages;
+    }
+
+    /**
+     * @return the JVM-wide KinesisShardMultiplexer
+     */
+    public static KinesisShardMultiplexer sharedShardMultiplexer() {
+        return SHARED_SHARD_MULTIPLEXER;
+    }
+
+    /**
+     * Creates a {@link ShardReader} that is sharing the reads of the shard with all other readers of the same
+     * shard that were created by this multiplexer using the same {@link KinesisAsyncClient}.
+     *
+     * @param channelName the name of the Kinesis stream
+     * @param shardName the name of the shard
+     * @param kinesisClient the Kinesis client
+     * @param executorService the executor used to consume the shard
+     * @param pollingStrategy the strategy used to calculate the delay between two polls of the shard
+     * @return shard reader
+     */
+    public ShardReader newShardReader(final @Nonnull String channelName,
+                                      final @Nonnull String shardName,
+                                      final @Nonnull KinesisAsyncClient kinesisClient,
+                                      final @Nonnull ExecutorService executorService,
+                                      final @Nonnull KinesisPollingStrategy pollingStrategy) {
+        return new KinesisMultiplexedShardReader(channelName, shardName, kinesisClient, executorService, pollingStrategy, this);
+    }
+
+    public int getMaxBufferedPages() {
+        return maxBufferedPages;
+    }
+
+    /**
+     * Subscribes to the shared reads of a shard. The shard is read using the polling strategy of the first
+     * subscriber.
+     */
+    KinesisSharedShard.Subscription subscribe(final KinesisAsyncClient kinesisClient,
+                                              final String channelName,
+                                              final String shardName,
+                                              final KinesisPollingStrategy pollingStrategy,
+                                              final ShardPosition startFrom) {
+        final SharedShardKey key = new SharedShardKey(kinesisClient, channelName, shardName);
+        final AtomicReference<KinesisSharedShard.Subscription> subscription = new AtomicReference<>();
+        sharedShards.compute(key, (k, sharedShard) -> {
+            final KinesisSharedShard shard = sharedShard != null
+                    ? sharedShard
+                    : new KinesisSharedShard(channelName, shardName, kinesisClient, pollingStrategy, maxBufferedPages);
+            subscription.set(shard.newSubscription(startFrom, pollingStrategy));
+            return shard;
+        });
+        LOG.debug("Subscribed to shared reads of channel={}, shard={}", channelName, shardName);
+        subscription.get().start();
+        return subscription.get();
+    }
+
+    void unsubscribe(final KinesisAsyncClient kinesisClient,
+                     final String channelName,
+                     final String shardName,
+                     final KinesisSharedShard.Subscription subscription) {
+        sharedShards.computeIfPresent(
+                new SharedShardKey(kinesisClient, channelName, shardName),
+                (k, sharedShard) -> sharedShard.removeSubscription(subscription) ? null : sharedShard);
+    }
+
+    /**
+     * @return the number of shards currently having at least one subscription.
+     */
+    int getSharedShardCount() {
+        return sharedShards.size();
+    }
+
+    private static final class SharedShardKey {
+        private final KinesisAsyncClient kinesisClient;
+        private final String channelName;
+        private final String shardName;
+
+        private SharedShardKey(final KinesisAsyncClient kinesisClient,
+                               final String channelName,
+                               final String shardName) {
+            this.kinesisClient = kinesisClient;
+            this.channelName = channelName;
+            this.shardName = shardName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SharedShardKey that = (SharedShardKey) o;
+            return kinesisClient == that.kinesisClient &&
+                    Objects.equals(channelName, that.channelName) &&
+                    Objects.equals(shardName, that.shardName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(kinesisClient), channelName, shardName);
+        }
+    }
+}
@@ -1,35 +1,69 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.otto.synapse.channel.ShardPosition;
 import de.otto.synapse.channel.ShardResponse;
-import de.otto.synapse.message.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.ProvisionedThroughputExceededException;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.time.Clock;
 import java.time.Duration;
-import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A {@link ShardReader} that is polling a single Kinesis shard using GetRecords.
+ * <p>
+ *     Fetching and dispatching of records is pipelined: while the {@link ShardResponse} of page N is processed
+ *     by the response consumer, the GetRecords request for page N+1 is already in flight. Fetched pages are
+ *     buffered in a bounded per-shard queue of {@code prefetchSize} pages. If the consumer is slower than
+ *     Kinesis, fetching is paused until the consumer has taken a page from the queue.
+ * </p>
+ * <p>
+ *     The delay between two GetRecords requests is calculated by the {@link KinesisPollingStrategy}.
+ * </p>
+ */
 @ThreadSafe
-public class KinesisShardReader {
+public class KinesisShardReader implements ShardReader {
     private static final Logger LOG = LoggerFactory.getLogger(KinesisShardReader.class);
 
+    public static final int DEFAULT_PREFETCH_SIZE = 2;
+
+    /**
+     * Scheduler used to issue delayed GetRecords requests. The scheduled tasks are only issuing asynchronous
+     * requests, so a single thread is sufficient for all shards.
+     */
+    private static final ScheduledExecutorService FETCH_SCHEDULER = newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("kinesis-shard-fetch-%d").setDaemon(true).build()
+    );
+
+    private static final Object NO_MORE_PAGES = new Object();
+
     private final String shardName;
     private final String channelName;
     private final KinesisAsyncClient kinesisClient;
     private final ExecutorService executorService;
     private final Clock clock;
     private final AtomicBoolean stopSignal = new AtomicBoolean(false);
-    private final int waitingTimeOnEmptyRecords;
+    private final AtomicBoolean endOfShard = new AtomicBoolean(false);
+    private final KinesisPollingStrategy pollingStrategy;
+    private final int prefetchSize;
+    private final KinesisPollingMetrics pollingMetrics = new KinesisPollingMetrics();
 
     public KinesisShardReader(final String channelName,
                               final String shardName,
@@ -45,22 +79,75 @@ public class KinesisShardReader {
                               final ExecutorService executorService,
                               final Clock clock,
                               final int waitingTimeOnEmptyRecords) {
+        this(channelName, shardName, kinesisClient, executorService, clock, pollingStrategyFor(waitingTimeOnEmptyRecords));
+    }
+
+    public KinesisShardReader(final String channelName,
+                              final String shardName,
+                              final KinesisAsyncClient kinesisClient,
+                              final ExecutorService executorService,
+                              final Clock clock,
+                              final KinesisPollingStrategy pollingStrategy) {
+        this(channelName, shardName, kinesisClient, executorService, clock, pollingStrategy, DEFAULT_PREFETCH_SIZE);
+    }
+
+    /**
+     * @param channelName the name of the Kinesis stream
+     * @param shardName the name of the shard
+     * @param kinesisClient the Kinesis client
+     * @param executorService the executor used to consume the shard
+     * @param clock the clock
+     * @param pollingStrategy the strategy used to calculate the delay between two polls
+     * @param prefetchSize the maximum number of fetched pages that are waiting to be consumed
+     */
+    public KinesisShardReader(final String channelName,
+                              final String shardName,
+                              final KinesisAsyncClient kinesisClient,
+                              final ExecutorService executorService,
+                              final Clock clock,
+                              final KinesisPollingStrategy pollingStrategy,
+                              final int prefetchSize) {
+        checkArgument(prefetchSize > 0, "prefetchSize must be greater than zero");
         this.shardName = shardName;
         this.channelName = channelName;
         this.kinesisClient = kinesisClient;
         this.executorService = executorService;
         this.clock = clock;
-        this.waitingTimeOnEmptyRecords = waitingTimeOnEmptyRecords;
+        this.pollingStrategy = pollingStrategy;
+        this.prefetchSize = prefetchSize;
     }
 
+    /**
+     * Creates an {@link AdaptivePollingStrategy} that is waiting at most {@code waitingTimeOnEmptyRecords}
+     * milliseconds between two polls.
+     *
+     * @param waitingTimeOnEmptyRecords maximum number of milliseconds to wait after empty polls
+     * @return polling strategy
+     */
+    static KinesisPollingStrategy pollingStrategyFor(final int waitingTimeOnEmptyRecords) {
+        final Duration maxDelay = Duration.ofMillis(waitingTimeOnEmptyRecords);
+        return AdaptivePollingStrategy.builder()
+                .withMinDelay(min(AdaptivePollingStrategy.DEFAULT_MIN_DELAY, maxDelay))
+                .withBaseDelay(min(AdaptivePollingStrategy.DEFAULT_BASE_DELAY, maxDelay))
+                .withMaxDelay(maxDelay)
+                .build();
+    }
+
+    private static Duration min(final Duration first, final Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    @Override
     public String getChannelName() {
         return channelName;
     }
 
+    @Override
     public String getShardName() {
         return shardName;
     }
 
+    @Override
     public CompletableFuture<ShardPosition> consumeUntil(final ShardPosition startFrom,
                                                          final Predicate<ShardResponse> stopCondition,
                                                          final Consumer<ShardResponse> responseConsumer) {
@@ -68,26 +155,37 @@ public class KinesisShardReader {
             MDC.put("channelName", channelName);
             MDC.put("shardName", shardName);
             LOG.info("Reading from channel={}, shard={}, position={}", channelName, shardName, startFrom);
+            ShardPrefetcher prefetcher = null;
             try {
                 final KinesisShardIterator kinesisShardIterator = new KinesisShardIterator(kinesisClient, channelName, startFrom);
+                ShardPosition shardPosition = kinesisShardIterator.getShardPosition();
+                /*
+                Poison-Pill injected by a test. This is helpful, if you want to write tests that should terminate
+                after a number of iterated shards.
+                 */
+                if (kinesisShardIterator.isPoison()) {
+                    LOG.warn("Received Poison-Pill - This should only happen during tests!");
+                    return shardPosition;
+                }
+                prefetcher = new ShardPrefetcher(kinesisShardIterator);
+                prefetcher.start();
                 boolean stopRetrieval;
                 do {
-                    /*
-                    Poison-Pill injected by a test. This is helpful, if you want to write tests that should terminate
-                    after a number of iterated shards.
-                     */
-                    if (kinesisShardIterator.isPoison()) {
-                        LOG.warn("Received Poison-Pill - This should only happen during tests!");
+                    final ShardResponse response = prefetcher.take();
+                    if (response == null) {
                         break;
                     }
-
-                    final ShardResponse response = kinesisShardIterator.next();
                     responseConsumer.accept(response);
+                    shardPosition = response.getShardPosition();
+                    if (prefetcher.isLastPageOfShard(response)) {
+                        LOG.info("Reached end of closed shard {} at position {}", shardName, shardPosition);
+                        endOfShard.set(true);
+                    }
 
-                    stopRetrieval = stopCondition.test(response) || isStopping() || waitABit(response.getDurationBehind());
+                    stopRetrieval = stopCondition.test(response) || isStopping();
 
                 } while (!stopRetrieval);
-                return kinesisShardIterator.getShardPosition();
+                return shardPosition;
 
             } catch (final RuntimeException e) {
                 LOG.error("Failed to consume from Kinesis shard {}: {}, {}", channelName, shardName, e.getMessage());
@@ -95,33 +193,205 @@ public class KinesisShardReader {
                 stop();
                 throw e;
             } finally {
+                if (prefetcher != null) {
+                    prefetcher.stop();
+                }
                 MDC.remove("channelName");
                 MDC.remove("shardName");
             }
         }, executorService);
     }
 
-    private boolean waitABit(Duration durationBehind) {
-        try {
-            /*Wait one second as documented by amazon: https://docs.aws.amazon.com/kinesis/latest/APIReference/API_GetRecords.html*/
-            if (durationBehind.getSeconds() > 10) {
-                Thread.sleep(1000);
-            } else {
-                Thread.sleep(waitingTimeOnEmptyRecords);
-            }
-        } catch (final InterruptedException e) {
-            LOG.warn("Thread got interrupted");
+    static boolean isThrottled(final Throwable throwable) {
+        if (throwable instanceof ProvisionedThroughputExceededException) {
             return true;
         }
-        return false;
+        return throwable instanceof CompletionException && throwable.getCause() instanceof ProvisionedThroughputExceededException;
     }
 
+    public KinesisPollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    /**
+     * @return metrics about the polls of the shard and the chosen delays between the polls.
+     */
+    public KinesisPollingMetrics getPollingMetrics() {
+        return pollingMetrics;
+    }
+
+    @Override
     public void stop() {
         LOG.info("Shard {} received stop signal.", shardName);
         stopSignal.set(true);
     }
 
+    @Override
     public boolean isStopping() {
         return stopSignal.get();
     }
+
+    @Override
+    public boolean isEndOfShard() {
+        return endOfShard.get();
+    }
+
+    /**
+     * Fetches the pages of the shard into a bounded queue.
+     * <p>
+     *     Only a single GetRecords request is in flight at any time, because every request requires the shard
+     *     iterator returned by the previous request. The next request is issued after the delay calculated by
+     *     the {@link KinesisPollingStrategy}, or - if the queue is full - after the consumer has taken the next
+     *     page from the queue.
+     * </p>
+     */
+    private class ShardPrefetcher {
+        private final KinesisShardIterator shardIterator;
+        /* Contains ShardResponses, Throwables or NO_MORE_PAGES. */
+        private final BlockingQueue<Object> pages = new LinkedBlockingQueue<>();
+        private final Object lock = new Object();
+        private boolean stopped = false;
+        private boolean fetchDeferred = false;
+        private long deferredFetchAt;
+        private int consecutiveEmptyPolls = 0;
+        private int consecutiveThrottledPolls = 0;
+        private int pagesTaken = 0;
+        private volatile ShardResponse lastPageOfShard;
+
+        private ShardPrefetcher(final KinesisShardIterator shardIterator) {
+            this.shardIterator = shardIterator;
+        }
+
+        void start() {
+            fetch();
+        }
+
+        void stop() {
+            synchronized (lock) {
+                stopped = true;
+            }
+        }
+
+        /**
+         * Takes the next page from the queue, waiting for the page if necessary. The first page is always
+         * awaited, so at least one response is consumed - even if the reader was already stopped.
+         *
+         * @return the next page, or null if the end of the shard was reached or the reader was stopped.
+         */
+        ShardResponse take() {
+            Object page = null;
+            try {
+                while (page == null && !(isStopping() && pagesTaken > 0)) {
+                    page = pages.poll(100, MILLISECONDS);
+                }
+            } catch (final InterruptedException e) {
+                LOG.warn("Thread got interrupted");
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (page == null || page == NO_MORE_PAGES) {
+                return null;
+            }
+            if (page instanceof Throwable) {
+                final Throwable throwable = (Throwable) page;
+                throw throwable instanceof RuntimeException
+                        ? (RuntimeException) throwable
+                        : new CompletionException(throwable);
+            }
+            ++pagesTaken;
+            resumeDeferredFetch();
+            return (ShardResponse) page;
+        }
+
+        boolean isLastPageOfShard(final ShardResponse response) {
+            return response == lastPageOfShard;
+        }
+
+        private void fetch() {
+            synchronized (lock) {
+                if (stopped) {
+                    return;
+                }
+            }
+            shardIterator.nextAsync().whenComplete(this::onFetched);
+        }
+
+        private void onFetched(final ShardResponse response, final Throwable throwable) {
+            synchronized (lock) {
+                if (stopped) {
+                    return;
+                }
+            }
+            final KinesisPollResult pollResult;
+            if (throwable != null) {
+                if (!isThrottled(throwable)) {
+                    pages.add(throwable);
+                    return;
+                }
+                LOG.warn("Read throughput of shard {} exceeded: {}", shardName, throwable.getMessage());
+                pollResult = KinesisPollResult.builder()
+                        .withFetchRecordLimit(shardIterator.getFetchRecordLimit())
+                        .withConsecutiveEmptyPolls(consecutiveEmptyPolls)
+                        .withConsecutiveThrottledPolls(++consecutiveThrottledPolls)
+                        .withThrottled(true)
+                        .build();
+            } else {
+                consecutiveEmptyPolls = response.getMessages().isEmpty() ? consecutiveEmptyPolls + 1 : 0;
+                consecutiveThrottledPolls = 0;
+                pollResult = KinesisPollResult.builder()
+                        .withRecordCount(response.getMessages().size())
+                        .withByteCount(shardIterator.getLastFetchedBytes())
+                        .withDurationBehind(response.getDurationBehind())
+                        .withFetchRecordLimit(shardIterator.getFetchRecordLimit())
+                        .withConsecutiveEmptyPolls(consecutiveEmptyPolls)
+                        .build();
+                if (shardIterator.isEndOfShard()) {
+                    lastPageOfShard = response;
+                }
+                pages.add(response);
+                if (shardIterator.isPoison() || shardIterator.isEndOfShard()) {
+                    if (shardIterator.isPoison()) {
+                        LOG.warn("Received Poison-Pill - This should only happen during tests!");
+                    }
+                    pages.add(NO_MORE_PAGES);
+                    return;
+                }
+            }
+            final Duration delay = pollingStrategy.nextPollDelay(pollResult);
+            pollingMetrics.record(pollResult, delay);
+            LOG.debug("Polling shard {} again in {}ms after {}", shardName, delay.toMillis(), pollResult);
+            synchronized (lock) {
+                if (pages.size() >= prefetchSize) {
+                    fetchDeferred = true;
+                    deferredFetchAt = System.currentTimeMillis() + delay.toMillis();
+                    return;
+                }
+            }
+            schedule(delay.toMillis());
+        }
+
+        private void resumeDeferredFetch() {
+            final long delayMillis;
+            synchronized (lock) {
+                if (!fetchDeferred || stopped || pages.size() >= prefetchSize) {
+                    return;
+                }
+                fetchDeferred = false;
+                delayMillis = deferredFetchAt - System.currentTimeMillis();
+            }
+            schedule(delayMillis);
+        }
+
+        private void schedule(final long delayMillis) {
+            if (delayMillis <= 0) {
+                fetch();
+            } else {
+                FETCH_SCHEDULER.schedule(this::fetch, delayMillis, MILLISECONDS);
+            }
+        }
+    }
 }
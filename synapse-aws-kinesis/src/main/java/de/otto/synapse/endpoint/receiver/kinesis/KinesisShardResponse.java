@@ -1,8 +1,14 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
+import com.google.common.collect.ImmutableList;
 import de.otto.synapse.channel.ShardPosition;
 import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.message.TextMessage;
 import software.amazon.awssdk.services.kinesis.model.GetRecordsResponse;
+import software.amazon.awssdk.services.kinesis.model.Record;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardEvent;
+
+import java.util.List;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static de.otto.synapse.channel.ShardResponse.shardResponse;
@@ -12,15 +18,33 @@ public class KinesisShardResponse {
 
     public static ShardResponse kinesisShardResponse(final ShardPosition shardPosition,
                                                      final GetRecordsResponse recordsResponse) {
-        final KinesisDecoder kinesisDecoder = new KinesisDecoder();
         return shardResponse(
                 shardPosition,
                 ofMillis(recordsResponse.millisBehindLatest()),
-                recordsResponse.records()
-                        .stream()
-                        .map(record -> kinesisDecoder.apply(new RecordWithShard(shardPosition.shardName(), record)))
-                        .collect(toImmutableList())
+                decode(shardPosition.shardName(), recordsResponse.records())
         );
     }
 
+    public static ShardResponse kinesisShardResponse(final ShardPosition shardPosition,
+                                                     final SubscribeToShardEvent subscribeToShardEvent) {
+        final Long millisBehindLatest = subscribeToShardEvent.millisBehindLatest();
+        return shardResponse(
+                shardPosition,
+                ofMillis(millisBehindLatest != null ? millisBehindLatest : 0L),
+                decode(shardPosition.shardName(), subscribeToShardEvent.records())
+        );
+    }
+
+    /**
+     * Decodes the messages contained in the records. The messages are decoded lazily, so messages that are not
+     * consumed at all are never decoded.
+     */
+    private static ImmutableList<TextMessage> decode(final String shardName, final List<Record> records) {
+        final KinesisDecoder kinesisDecoder = new KinesisDecoder();
+        return records
+                .stream()
+                .flatMap(record -> kinesisDecoder.decodeAllLazily(new RecordWithShard(shardName, record)).stream())
+                .collect(toImmutableList());
+    }
+
 }
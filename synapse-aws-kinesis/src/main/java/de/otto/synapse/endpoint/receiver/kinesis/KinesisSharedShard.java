@@ -0,0 +1,519 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.channel.StartFrom;
+import de.otto.synapse.message.TextMessage;
+import org.slf4j.Logger;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BooleanSupplier;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static de.otto.synapse.channel.ShardResponse.shardResponse;
+import static de.otto.synapse.endpoint.receiver.kinesis.KinesisShardReader.isThrottled;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A single Kinesis shard that is read once and shared by several {@link Subscription subscriptions}.
+ * <p>
+ *     The shared reads are started at the position of the first subscription. Subscriptions that are starting
+ *     at the shared position are attached to the shared reads; all other subscriptions are catching up using their
+ *     own shard iterator, until they have reached the shared position. Attached subscriptions that are not able
+ *     to keep up with the shared reads are detached, as soon as more than {@code maxBufferedPages} pages are
+ *     waiting to be consumed. They are then catching up on their own, so slow subscriptions do not slow down the
+ *     shared reads.
+ * </p>
+ * <p>
+ *     The shared reads are stopped if no subscription is attached anymore. The next subscription that is
+ *     catching up is then handing over its shard iterator and continues the shared reads.
+ * </p>
+ */
+@ThreadSafe
+class KinesisSharedShard {
+
+    private static final Logger LOG = getLogger(KinesisSharedShard.class);
+
+    /**
+     * Scheduler used to issue delayed GetRecords requests for the shared reads.
+     */
+    private static final ScheduledExecutorService FETCH_SCHEDULER = newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("kinesis-shared-shard-fetch-%d").setDaemon(true).build()
+    );
+
+    private static final Object END_OF_SHARD = new Object();
+    private static final Object NO_MORE_PAGES = new Object();
+
+    private final String channelName;
+    private final String shardName;
+    private final KinesisAsyncClient kinesisClient;
+    private final KinesisPollingStrategy pollingStrategy;
+    private final int maxBufferedPages;
+    private final KinesisPollingMetrics pollingMetrics = new KinesisPollingMetrics();
+
+    private final Object lock = new Object();
+    /* The following fields are guarded by lock. */
+    private final Set<Subscription> subscriptions = new HashSet<>();
+    private final List<Subscription> attached = new ArrayList<>();
+    private boolean running = false;
+    private ShardPosition sharedPosition;
+    private KinesisShardIterator sharedIterator;
+    private int consecutiveEmptyPolls = 0;
+    private int consecutiveThrottledPolls = 0;
+
+    KinesisSharedShard(final String channelName,
+                       final String shardName,
+                       final KinesisAsyncClient kinesisClient,
+                       final KinesisPollingStrategy pollingStrategy,
+                       final int maxBufferedPages) {
+        this.channelName = channelName;
+        this.shardName = shardName;
+        this.kinesisClient = kinesisClient;
+        this.pollingStrategy = pollingStrategy;
+        this.maxBufferedPages = maxBufferedPages;
+    }
+
+    /**
+     * Creates a new subscription of the shard. The subscription is not consuming the shard, before it is
+     * {@link Subscription#start() started}.
+     *
+     * @param startFrom the position of the subscription
+     * @param pollingStrategy the strategy used to delay the catch-up reads of the subscription
+     * @return subscription
+     */
+    Subscription newSubscription(final ShardPosition startFrom, final KinesisPollingStrategy pollingStrategy) {
+        synchronized (lock) {
+            final Subscription subscription = new Subscription(startFrom, pollingStrategy);
+            subscriptions.add(subscription);
+            return subscription;
+        }
+    }
+
+    /**
+     * Removes a subscription from the shard.
+     *
+     * @param subscription the subscription
+     * @return true, if the shard does not have any subscriptions anymore.
+     */
+    boolean removeSubscription(final Subscription subscription) {
+        synchronized (lock) {
+            subscriptions.remove(subscription);
+            attached.remove(subscription);
+            return subscriptions.isEmpty();
+        }
+    }
+
+    String getChannelName() {
+        return channelName;
+    }
+
+    String getShardName() {
+        return shardName;
+    }
+
+    /**
+     * @return metrics about the shared polls of the shard.
+     */
+    KinesisPollingMetrics getPollingMetrics() {
+        return pollingMetrics;
+    }
+
+    private void startSharedReads(final KinesisShardIterator handedOverIterator, final ShardPosition startFrom) {
+        final KinesisShardIterator iterator;
+        try {
+            iterator = handedOverIterator != null
+                    ? handedOverIterator
+                    : new KinesisShardIterator(kinesisClient, channelName, startFrom);
+        } catch (final RuntimeException e) {
+            failAttached(e);
+            return;
+        }
+        synchronized (lock) {
+            sharedIterator = iterator;
+            consecutiveEmptyPolls = 0;
+            consecutiveThrottledPolls = 0;
+        }
+        if (iterator.isPoison()) {
+            LOG.warn("Received Poison-Pill - This should only happen during tests!");
+            finishAttached(NO_MORE_PAGES);
+            return;
+        }
+        fetch();
+    }
+
+    private void fetch() {
+        final KinesisShardIterator iterator;
+        synchronized (lock) {
+            if (attached.isEmpty()) {
+                LOG.info("Stopped shared reads of channel={}, shard={}: no subscription attached", channelName, shardName);
+                running = false;
+                sharedIterator = null;
+                return;
+            }
+            iterator = sharedIterator;
+        }
+        iterator.nextAsync().whenComplete((response, throwable) -> onFetched(iterator, response, throwable));
+    }
+
+    private void onFetched(final KinesisShardIterator iterator,
+                           final ShardResponse response,
+                           final Throwable throwable) {
+        final KinesisPollResult pollResult;
+        if (throwable != null) {
+            if (!isThrottled(throwable)) {
+                failAttached(throwable);
+                return;
+            }
+            LOG.warn("Read throughput of shard {} exceeded: {}", shardName, throwable.getMessage());
+            synchronized (lock) {
+                pollResult = KinesisPollResult.builder()
+                        .withFetchRecordLimit(iterator.getFetchRecordLimit())
+                        .withConsecutiveEmptyPolls(consecutiveEmptyPolls)
+                        .withConsecutiveThrottledPolls(++consecutiveThrottledPolls)
+                        .withThrottled(true)
+                        .build();
+            }
+        } else {
+            synchronized (lock) {
+                consecutiveEmptyPolls = response.getMessages().isEmpty() ? consecutiveEmptyPolls + 1 : 0;
+                consecutiveThrottledPolls = 0;
+                pollResult = KinesisPollResult.builder()
+                        .withRecordCount(response.getMessages().size())
+                        .withByteCount(iterator.getLastFetchedBytes())
+                        .withDurationBehind(response.getDurationBehind())
+                        .withFetchRecordLimit(iterator.getFetchRecordLimit())
+                        .withConsecutiveEmptyPolls(consecutiveEmptyPolls)
+                        .build();
+                sharedPosition = response.getShardPosition();
+                final Object lastPage = iterator.isEndOfShard()
+                        ? END_OF_SHARD
+                        : iterator.isPoison() ? NO_MORE_PAGES : null;
+                for (final Iterator<Subscription> it = attached.iterator(); it.hasNext(); ) {
+                    final Subscription subscription = it.next();
+                    if (!subscription.offer(response, lastPage)) {
+                        LOG.info("Subscription of channel={}, shard={} is too slow for shared reads and will catch up on its own", channelName, shardName);
+                        it.remove();
+                    }
+                }
+                if (lastPage != null) {
+                    if (iterator.isPoison()) {
+                        LOG.warn("Received Poison-Pill - This should only happen during tests!");
+                    }
+                    attached.clear();
+                    running = false;
+                    sharedIterator = null;
+                    return;
+                }
+            }
+        }
+        final Duration delay = pollingStrategy.nextPollDelay(pollResult);
+        pollingMetrics.record(pollResult, delay);
+        LOG.debug("Polling shared shard {} again in {}ms after {}", shardName, delay.toMillis(), pollResult);
+        if (delay.toMillis() <= 0) {
+            fetch();
+        } else {
+            FETCH_SCHEDULER.schedule(this::fetch, delay.toMillis(), MILLISECONDS);
+        }
+    }
+
+    private void failAttached(final Throwable throwable) {
+        synchronized (lock) {
+            attached.forEach(subscription -> subscription.pages.add(throwable));
+            attached.clear();
+            running = false;
+            sharedIterator = null;
+        }
+    }
+
+    private void finishAttached(final Object marker) {
+        synchronized (lock) {
+            attached.forEach(subscription -> subscription.pages.add(marker));
+            attached.clear();
+            running = false;
+            sharedIterator = null;
+        }
+    }
+
+    /**
+     * Returns true, if a subscription at {@code position} has consumed all messages up to the shared position, so
+     * it can be attached to the shared reads without missing any message.
+     */
+    private static boolean isAtOrAfter(final ShardPosition position, final ShardPosition sharedPosition) {
+        if (sharedPosition.startFrom() == StartFrom.POSITION) {
+            return position.startFrom() == StartFrom.POSITION
+                    && KinesisSequenceNumbers.compare(position.position(), sharedPosition.position()) >= 0;
+        }
+        return position.equals(sharedPosition);
+    }
+
+    /**
+     * The consumption of the shared shard by a single {@link KinesisMultiplexedShardReader}.
+     * <p>
+     *     Pages are either taken from the shared reads, if the subscription is attached, or they are read using
+     *     the subscription's own shard iterator while the subscription is catching up. {@link #take(BooleanSupplier)}
+     *     must only be called by a single thread.
+     * </p>
+     */
+    class Subscription {
+        /* Contains ShardResponses, Throwables, END_OF_SHARD or NO_MORE_PAGES. */
+        private final BlockingQueue<Object> pages = new LinkedBlockingQueue<>();
+        private final KinesisPollingStrategy catchUpPollingStrategy;
+        private final ShardPosition startFrom;
+        private volatile boolean attachedToSharedReads = false;
+        /* The following fields are only accessed by the consuming thread. */
+        private ShardPosition position;
+        private KinesisShardIterator catchUpIterator;
+        private Object finished;
+        private ShardResponse lastPageOfShard;
+        private int pagesTaken = 0;
+        private int consecutiveEmptyCatchUpPolls = 0;
+        private long sharedPageCount = 0;
+        private long catchUpPageCount = 0;
+
+        private Subscription(final ShardPosition startFrom, final KinesisPollingStrategy catchUpPollingStrategy) {
+            this.startFrom = startFrom;
+            this.position = startFrom;
+            this.catchUpPollingStrategy = catchUpPollingStrategy;
+        }
+
+        /**
+         * Starts the subscription. If the shared reads are not yet running, they are started at the position of
+         * this subscription.
+         */
+        void start() {
+            final boolean startSharedReads;
+            synchronized (lock) {
+                startSharedReads = !running;
+                if (startSharedReads) {
+                    running = true;
+                    sharedPosition = startFrom;
+                    attach();
+                } else if (isAtOrAfter(startFrom, sharedPosition)) {
+                    attach();
+                }
+            }
+            if (startSharedReads) {
+                LOG.info("Starting shared reads of channel={}, shard={}, position={}", channelName, shardName, startFrom);
+                startSharedReads(null, startFrom);
+            }
+        }
+
+        /**
+         * Takes the next page of the shard. The first page is always awaited, so at least one response is
+         * consumed - even if the reader was already stopped.
+         *
+         * @param stopping supplier returning true if the consuming reader was stopped
+         * @return the next page, or null if the end of the shard was reached or the reader was stopped.
+         */
+        ShardResponse take(final BooleanSupplier stopping) {
+            try {
+                while (finished == null && !(stopping.getAsBoolean() && pagesTaken > 0)) {
+                    final ShardResponse response = attachedToSharedReads || !pages.isEmpty()
+                            ? takeSharedPage()
+                            : takeCatchUpPage();
+                    if (response != null) {
+                        ++pagesTaken;
+                        position = response.getShardPosition();
+                        return response;
+                    }
+                }
+                if (finished == END_OF_SHARD) {
+                    LOG.info("Reached end of closed shard {} at position {}", shardName, position);
+                }
+                return null;
+            } catch (final InterruptedException e) {
+                LOG.warn("Thread got interrupted");
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        boolean isLastPageOfShard(final ShardResponse response) {
+            return response == lastPageOfShard;
+        }
+
+        boolean isAttached() {
+            return attachedToSharedReads;
+        }
+
+        /**
+         * @return the number of pages taken from the shared reads.
+         */
+        long getSharedPageCount() {
+            return sharedPageCount;
+        }
+
+        /**
+         * @return the number of pages read by this subscription while catching up.
+         */
+        long getCatchUpPageCount() {
+            return catchUpPageCount;
+        }
+
+        private ShardResponse takeSharedPage() throws InterruptedException {
+            final Object page = pages.poll(100, MILLISECONDS);
+            if (page == null) {
+                return null;
+            }
+            if (page == END_OF_SHARD || page == NO_MORE_PAGES) {
+                finished = page;
+                return null;
+            }
+            if (page instanceof Throwable) {
+                final Throwable throwable = (Throwable) page;
+                throw throwable instanceof RuntimeException
+                        ? (RuntimeException) throwable
+                        : new CompletionException(throwable);
+            }
+            final ShardResponse response = withoutConsumedMessages((ShardResponse) page);
+            final Object next = pages.peek();
+            if (next == END_OF_SHARD) {
+                lastPageOfShard = response;
+            }
+            ++sharedPageCount;
+            return response;
+        }
+
+        private ShardResponse takeCatchUpPage() throws InterruptedException {
+            if (catchUpIterator == null) {
+                LOG.info("Catching up channel={}, shard={} from position={}", channelName, shardName, position);
+                catchUpIterator = new KinesisShardIterator(kinesisClient, channelName, position);
+                if (catchUpIterator.isPoison()) {
+                    LOG.warn("Received Poison-Pill - This should only happen during tests!");
+                    finished = NO_MORE_PAGES;
+                    return null;
+                }
+            }
+            final ShardResponse response;
+            try {
+                response = catchUpIterator.next();
+            } catch (final RuntimeException e) {
+                if (!isThrottled(e)) {
+                    throw e;
+                }
+                LOG.warn("Read throughput of shard {} exceeded while catching up: {}", shardName, e.getMessage());
+                sleep(catchUpPollingStrategy.nextPollDelay(KinesisPollResult.builder()
+                        .withFetchRecordLimit(catchUpIterator.getFetchRecordLimit())
+                        .withConsecutiveEmptyPolls(++consecutiveEmptyCatchUpPolls)
+                        .withThrottled(true)
+                        .build()));
+                return null;
+            }
+            ++catchUpPageCount;
+            if (catchUpIterator.isEndOfShard()) {
+                lastPageOfShard = response;
+                finished = END_OF_SHARD;
+                return response;
+            }
+            if (catchUpIterator.isPoison()) {
+                LOG.warn("Received Poison-Pill - This should only happen during tests!");
+                finished = NO_MORE_PAGES;
+                return response;
+            }
+            if (!tryAttach(response.getShardPosition()) && response.getMessages().isEmpty()) {
+                sleep(catchUpPollingStrategy.nextPollDelay(KinesisPollResult.builder()
+                        .withDurationBehind(response.getDurationBehind())
+                        .withFetchRecordLimit(catchUpIterator.getFetchRecordLimit())
+                        .withConsecutiveEmptyPolls(++consecutiveEmptyCatchUpPolls)
+                        .build()));
+            } else {
+                consecutiveEmptyCatchUpPolls = 0;
+            }
+            return response;
+        }
+
+        /**
+         * Tries to attach the subscription to the shared reads after a catch-up read. If the shared reads are not
+         * running, the catch-up iterator is handed over, and the shared reads are continued at the position of
+         * this subscription.
+         */
+        private boolean tryAttach(final ShardPosition caughtUpPosition) {
+            final KinesisShardIterator handedOverIterator;
+            synchronized (lock) {
+                if (running) {
+                    if (!isAtOrAfter(caughtUpPosition, sharedPosition)) {
+                        return false;
+                    }
+                    handedOverIterator = null;
+                    catchUpIterator.stop();
+                } else {
+                    running = true;
+                    sharedPosition = caughtUpPosition;
+                    handedOverIterator = catchUpIterator;
+                }
+                catchUpIterator = null;
+                attach();
+            }
+            LOG.info("Caught up channel={}, shard={} at position={}", channelName, shardName, caughtUpPosition);
+            if (handedOverIterator != null) {
+                startSharedReads(handedOverIterator, caughtUpPosition);
+            }
+            return true;
+        }
+
+        /* Must be called while holding the lock. */
+        private void attach() {
+            attachedToSharedReads = true;
+            attached.add(this);
+        }
+
+        /**
+         * Offers a page of the shared reads to this subscription. Must be called while holding the lock.
+         *
+         * @return false, if the subscription was detached because too many pages are waiting to be consumed.
+         */
+        private boolean offer(final ShardResponse response, final Object lastPage) {
+            if (pages.size() >= maxBufferedPages) {
+                attachedToSharedReads = false;
+                return false;
+            }
+            pages.add(response);
+            if (lastPage != null) {
+                pages.add(lastPage);
+            }
+            return true;
+        }
+
+        /**
+         * Removes messages that were already consumed by this subscription before it was attached to the
+         * shared reads.
+         */
+        private ShardResponse withoutConsumedMessages(final ShardResponse response) {
+            if (position.startFrom() != StartFrom.POSITION) {
+                return response;
+            }
+            final ImmutableList<TextMessage> messages = response.getMessages()
+                    .stream()
+                    .filter(message -> message.getHeader().getShardPosition()
+                            .map(p -> KinesisSequenceNumbers.compare(p.position(), position.position()) > 0)
+                            .orElse(true))
+                    .collect(toImmutableList());
+            final boolean positionAdvanced = isAtOrAfter(response.getShardPosition(), position);
+            if (messages.size() == response.getMessages().size() && positionAdvanced) {
+                return response;
+            }
+            return shardResponse(positionAdvanced ? response.getShardPosition() : position, response.getDurationBehind(), messages);
+        }
+
+        private void sleep(final Duration delay) throws InterruptedException {
+            if (!delay.isZero() && !delay.isNegative()) {
+                Thread.sleep(delay.toMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.Consumer;
+import software.amazon.awssdk.services.kinesis.model.ConsumerDescription;
+import software.amazon.awssdk.services.kinesis.model.ConsumerStatus;
+import software.amazon.awssdk.services.kinesis.model.DescribeStreamConsumerRequest;
+import software.amazon.awssdk.services.kinesis.model.RegisterStreamConsumerRequest;
+import software.amazon.awssdk.services.kinesis.model.ResourceInUseException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static java.lang.String.format;
+
+/**
+ * Registers stream consumers used for Kinesis enhanced fan-out.
+ * <p>
+ *     Stream consumers are identified by their name. If the consumer is already registered for the stream,
+ *     the existing consumer is used.
+ * </p>
+ */
+public class KinesisStreamConsumerProvider {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KinesisStreamConsumerProvider.class);
+
+    private static final int MAX_STATUS_CHECKS = 60;
+
+    private final KinesisAsyncClient kinesisAsyncClient;
+    private final Duration statusCheckInterval;
+
+    public KinesisStreamConsumerProvider(final KinesisAsyncClient kinesisAsyncClient) {
+        this(kinesisAsyncClient, Duration.ofSeconds(1));
+    }
+
+    public KinesisStreamConsumerProvider(final KinesisAsyncClient kinesisAsyncClient,
+                                         final Duration statusCheckInterval) {
+        this.kinesisAsyncClient = kinesisAsyncClient;
+        this.statusCheckInterval = statusCheckInterval;
+    }
+
+    /**
+     * Returns the ARN of the stream consumer with the given name, registering the consumer if necessary.
+     * <p>
+     *     The method is blocking until the consumer is active.
+     * </p>
+     *
+     * @param channelName the name of the Kinesis stream
+     * @param consumerName the name of the stream consumer
+     * @return ARN of the active stream consumer
+     * @throws IllegalArgumentException if the stream does not exist
+     * @throws IllegalStateException if the consumer does not become active
+     */
+    public String getConsumerArn(final String channelName, final String consumerName) {
+        final String streamArn = new KinesisStreamInfoProvider(kinesisAsyncClient)
+                .getStreamInfo(channelName)
+                .getArn();
+        ConsumerDescription consumer = registerOrDescribe(streamArn, consumerName);
+        int statusChecks = 0;
+        while (consumer.consumerStatus() != ConsumerStatus.ACTIVE) {
+            if (++statusChecks > MAX_STATUS_CHECKS) {
+                throw new IllegalStateException(format("Stream consumer %s of Kinesis channel %s did not become active: %s", consumerName, channelName, consumer.consumerStatus()));
+            }
+            LOG.info("Waiting for stream consumer {} of channel {} to become active", consumerName, channelName);
+            waitForStatusCheck();
+            consumer = describe(streamArn, consumerName);
+        }
+        LOG.info("Using stream consumer {} of channel {}", consumer.consumerARN(), channelName);
+        return consumer.consumerARN();
+    }
+
+    private ConsumerDescription registerOrDescribe(final String streamArn, final String consumerName) {
+        try {
+            final Consumer consumer = kinesisAsyncClient.registerStreamConsumer(RegisterStreamConsumerRequest.builder()
+                    .streamARN(streamArn)
+                    .consumerName(consumerName)
+                    .build())
+                    .join()
+                    .consumer();
+            LOG.info("Registered stream consumer {} for stream {}", consumerName, streamArn);
+            return ConsumerDescription.builder()
+                    .consumerName(consumer.consumerName())
+                    .consumerARN(consumer.consumerARN())
+                    .consumerStatus(consumer.consumerStatus())
+                    .streamARN(streamArn)
+                    .build();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof ResourceInUseException) {
+                LOG.info("Stream consumer {} is already registered for stream {}", consumerName, streamArn);
+                return describe(streamArn, consumerName);
+            }
+            throw e;
+        } catch (final ResourceInUseException e) {
+            LOG.info("Stream consumer {} is already registered for stream {}", consumerName, streamArn);
+            return describe(streamArn, consumerName);
+        }
+    }
+
+    private ConsumerDescription describe(final String streamArn, final String consumerName) {
+        return kinesisAsyncClient.describeStreamConsumer(DescribeStreamConsumerRequest.builder()
+                .streamARN(streamArn)
+                .consumerName(consumerName)
+                .build())
+                .join()
+                .consumerDescription();
+    }
+
+    private void waitForStatusCheck() {
+        try {
+            Thread.sleep(statusCheckInterval.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for stream consumer to become active", e);
+        }
+    }
+}
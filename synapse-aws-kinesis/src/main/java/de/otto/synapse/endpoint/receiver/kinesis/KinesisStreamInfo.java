@@ -106,6 +106,11 @@ public class KinesisStreamInfo {
             return this;
         }
 
+        public Builder withShard(final KinesisShardInfo shard) {
+            shardInfo.add(shard);
+            return this;
+        }
+
         public KinesisStreamInfo build() {
             return new KinesisStreamInfo(this);
         }
@@ -1,10 +1,13 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
+import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.model.DescribeStreamRequest;
 import software.amazon.awssdk.services.kinesis.model.DescribeStreamResponse;
+import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
 import software.amazon.awssdk.services.kinesis.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.kinesis.model.Shard;
 
@@ -67,16 +70,59 @@ public class KinesisStreamInfoProvider {
                 .stream()
                 .forEach(shard -> {
                     lastShardId.set(shard.shardId());
-                    streamInfoBuilder.withShard(shard.shardId(), isShardOpen(shard));
+                    streamInfoBuilder.withShard(toShardInfo(shard));
                 });
         return lastShardId.get();
     }
 
+    /**
+     * Returns the shards of the given Kinesis stream, including closed shards that are still within the
+     * retention period of the stream.
+     * <p>
+     *     In contrast to {@link #getStreamInfo(String)}, the shards are retrieved using ListShards. ListShards
+     *     has a much higher rate limit than DescribeStream, so this method can be used to periodically discover
+     *     new shards after a stream was resharded.
+     * </p>
+     *
+     * @param channelName the name of the stream
+     * @return list of shards
+     * @throws IllegalArgumentException if the stream does not exist
+     */
+    public ImmutableList<KinesisShardInfo> listShards(final String channelName) {
+        try {
+            final ImmutableList.Builder<KinesisShardInfo> shards = ImmutableList.builder();
+            ListShardsResponse response = kinesisAsyncClient.listShards(ListShardsRequest.builder()
+                    .streamName(channelName)
+                    .build())
+                    .join();
+            response.shards().forEach(shard -> shards.add(toShardInfo(shard)));
+            while (response.nextToken() != null) {
+                // streamName must not be specified together with nextToken:
+                response = kinesisAsyncClient.listShards(ListShardsRequest.builder()
+                        .nextToken(response.nextToken())
+                        .build())
+                        .join();
+                response.shards().forEach(shard -> shards.add(toShardInfo(shard)));
+            }
+            return shards.build();
+        } catch (final ResourceNotFoundException e) {
+            throw new IllegalArgumentException(format("Kinesis channel %s does not exist: %s", channelName, e.getMessage()));
+        }
+    }
+
+    private KinesisShardInfo toShardInfo(final Shard shard) {
+        return new KinesisShardInfo(
+                shard.shardId(),
+                isShardOpen(shard),
+                shard.parentShardId(),
+                shard.adjacentParentShardId());
+    }
+
     private boolean isShardOpen(Shard shard) {
         if (shard.sequenceNumberRange().endingSequenceNumber() == null) {
             return true;
         } else {
-            LOG.warn("Shard with id {} is closed. Cannot retrieve data.", shard.shardId());
+            LOG.debug("Shard with id {} is closed.", shard.shardId());
             return false;
         }
     }
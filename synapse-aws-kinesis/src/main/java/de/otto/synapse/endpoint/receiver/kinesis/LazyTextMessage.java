@@ -0,0 +1,121 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.message.Header;
+import de.otto.synapse.message.Key;
+import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.PayloadProjection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * A {@link TextMessage} contained in a Kinesis record that is decoded on first access.
+ * <p>
+ *     {@link #getKey()} only decodes the key of the message, so consumers are able to skip messages with keys they
+ *     are not interested in, without decoding header and payload.
+ * </p>
+ */
+final class LazyTextMessage extends TextMessage {
+
+    private static final long serialVersionUID = 6529685098267757321L;
+    private static final Header NO_HEADER = Header.of();
+
+    private final transient KinesisDecoder decoder;
+    private final String shardName;
+    private final Instant arrivalTimestamp;
+    private final String partitionKey;
+    private final String position;
+    private final transient ByteBuffer data;
+    private transient volatile Key key;
+    private transient volatile TextMessage decoded;
+
+    LazyTextMessage(final KinesisDecoder decoder,
+                    final String shardName,
+                    final Instant arrivalTimestamp,
+                    final String partitionKey,
+                    final String position,
+                    final ByteBuffer data) {
+        super(Key.NO_KEY, NO_HEADER, null);
+        this.decoder = decoder;
+        this.shardName = shardName;
+        this.arrivalTimestamp = arrivalTimestamp;
+        this.partitionKey = partitionKey;
+        this.position = position;
+        this.data = data;
+    }
+
+    @Nonnull
+    @Override
+    public Key getKey() {
+        final TextMessage message = decoded;
+        if (message != null) {
+            return message.getKey();
+        }
+        Key result = key;
+        if (result == null) {
+            result = decoder.decodeKey(partitionKey, data);
+            if (result == null) {
+                result = decoded().getKey();
+            }
+            key = result;
+        }
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public Header getHeader() {
+        return decoded().getHeader();
+    }
+
+    @Nullable
+    @Override
+    public String getPayload() {
+        return decoded().getPayload();
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getPayloadAsByteBuffer() {
+        return decoded().getPayloadAsByteBuffer();
+    }
+
+    @Nullable
+    @Override
+    public <T> T getPayloadAs(final @Nonnull Class<T> payloadType) throws IOException {
+        return decoded().getPayloadAs(payloadType);
+    }
+
+    @Nullable
+    @Override
+    public <T> T getPayloadAs(final @Nonnull Class<T> payloadType,
+                              final @Nullable PayloadProjection projection) throws IOException {
+        return decoded().getPayloadAs(payloadType, projection);
+    }
+
+    @Nonnull
+    @Override
+    public TextMessage withHeader(final @Nonnull Header header) {
+        return decoded().withHeader(header);
+    }
+
+    boolean isDecoded() {
+        return decoded != null;
+    }
+
+    private TextMessage decoded() {
+        TextMessage message = decoded;
+        if (message == null) {
+            message = decoder.decode(shardName, arrivalTimestamp, partitionKey, position, data);
+            decoded = message;
+        }
+        return message;
+    }
+
+    private Object writeReplace() {
+        return TextMessage.of(getKey(), getHeader(), getPayload());
+    }
+}
@@ -0,0 +1,47 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.ShardResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads the messages of a single Kinesis shard and propagates them as {@link ShardResponse shard responses}.
+ * <p>
+ *     Implementations are either polling the shard using GetRecords ({@link KinesisShardReader}), or they
+ *     are subscribed to the shard using enhanced fan-out ({@link KinesisEnhancedFanOutShardReader}).
+ * </p>
+ */
+public interface ShardReader {
+
+    String getChannelName();
+
+    String getShardName();
+
+    /**
+     * Consumes the messages of the shard, starting at the given position, until the stop condition is met or
+     * the reader is {@link #stop() stopped}.
+     *
+     * @param startFrom the position to start consumption
+     * @param stopCondition stop condition used to stop message consumption
+     * @param responseConsumer the consumer used to process the {@link ShardResponse shard responses}
+     * @return completable future containing the shard position of the last consumed message
+     */
+    CompletableFuture<ShardPosition> consumeUntil(ShardPosition startFrom,
+                                                  Predicate<ShardResponse> stopCondition,
+                                                  Consumer<ShardResponse> responseConsumer);
+
+    void stop();
+
+    boolean isStopping();
+
+    /**
+     * Returns true, if the reader has consumed all records of a closed shard. Shards are closed if the stream
+     * is resharded; consumption must then continue with the child shards.
+     *
+     * @return true, if the end of the closed shard was reached, false otherwise.
+     */
+    boolean isEndOfShard();
+}
@@ -0,0 +1,100 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics about the PutRecords requests packed by a {@link KinesisMessageSender}.
+ * <p>
+ *     The utilization metrics are indicating how well the requests are packed, compared to the limits of
+ *     {@link KinesisMessageSender#MAX_RECORDS_PER_REQUEST} records and {@link KinesisMessageSender#MAX_REQUEST_SIZE}
+ *     bytes per request. Retries of failed records are not included.
+ * </p>
+ */
+@ThreadSafe
+public class KinesisBatchingMetrics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong maxRequestBytes = new AtomicLong();
+    private final AtomicLong oversizedRecords = new AtomicLong();
+
+    void recordRequest(final int recordCount, final long requestBytes) {
+        requests.incrementAndGet();
+        records.addAndGet(recordCount);
+        bytes.addAndGet(requestBytes);
+        maxRequestBytes.accumulateAndGet(requestBytes, Math::max);
+    }
+
+    void recordOversizedRecord() {
+        oversizedRecords.incrementAndGet();
+    }
+
+    /**
+     * @return the number of packed PutRecords requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * @return the number of bytes of all packed records, including partition keys.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getMaxRequestBytes() {
+        return maxRequestBytes.get();
+    }
+
+    /**
+     * @return the number of records that exceeded the maximum record size and were passed to the
+     * {@link OversizedRecordHandler}.
+     */
+    public long getOversizedRecords() {
+        return oversizedRecords.get();
+    }
+
+    public double getAverageRecordsPerRequest() {
+        final long count = requests.get();
+        return count == 0 ? 0.0 : (double) records.get() / count;
+    }
+
+    public double getAverageBytesPerRequest() {
+        final long count = requests.get();
+        return count == 0 ? 0.0 : (double) bytes.get() / count;
+    }
+
+    /**
+     * @return the average number of records per request, as a fraction of the maximum number of records per request.
+     */
+    public double getRecordUtilization() {
+        return getAverageRecordsPerRequest() / KinesisMessageSender.MAX_RECORDS_PER_REQUEST;
+    }
+
+    /**
+     * @return the average size of the requests, as a fraction of the maximum request size.
+     */
+    public double getByteUtilization() {
+        return getAverageBytesPerRequest() / KinesisMessageSender.MAX_REQUEST_SIZE;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisBatchingMetrics{" +
+                "requests=" + requests +
+                ", records=" + records +
+                ", bytes=" + bytes +
+                ", maxRequestBytes=" + maxRequestBytes +
+                ", oversizedRecords=" + oversizedRecords +
+                ", recordUtilization=" + getRecordUtilization() +
+                ", byteUtilization=" + getByteUtilization() +
+                '}';
+    }
+}
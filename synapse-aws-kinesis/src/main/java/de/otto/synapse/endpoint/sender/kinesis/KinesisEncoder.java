@@ -1,28 +1,53 @@
 package de.otto.synapse.endpoint.sender.kinesis;
 
 import de.otto.synapse.message.Message;
+import de.otto.synapse.translator.BinaryEnvelope;
+import de.otto.synapse.translator.CompressionCodec;
 import de.otto.synapse.translator.Encoder;
 import de.otto.synapse.translator.MessageFormat;
 import de.otto.synapse.translator.TextEncoder;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
 
+import javax.annotation.Nullable;
+
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 class KinesisEncoder implements Encoder<PutRecordsRequestEntry> {
 
     private final TextEncoder textEncoder;
+    private final boolean binaryEnvelope;
 
     KinesisEncoder(final MessageFormat messageFormat) {
-        this.textEncoder = new TextEncoder(messageFormat);
+        this(messageFormat, null, TextEncoder.DEFAULT_MIN_COMPRESSION_SIZE);
+    }
+
+    KinesisEncoder(final MessageFormat messageFormat,
+                   final @Nullable CompressionCodec compressionCodec,
+                   final int minCompressionSize) {
+        this(messageFormat, compressionCodec, minCompressionSize, false);
+    }
+
+    KinesisEncoder(final MessageFormat messageFormat,
+                   final @Nullable CompressionCodec compressionCodec,
+                   final int minCompressionSize,
+                   final boolean trustJsonPayloads) {
+        this.textEncoder = new TextEncoder(messageFormat, compressionCodec, minCompressionSize, trustJsonPayloads);
+        // Compressed messages are wrapped into a text envelope, so only uncompressed V3 messages are sent as binary:
+        this.binaryEnvelope = messageFormat == MessageFormat.V3 && compressionCodec == null;
     }
 
     @Override
     public PutRecordsRequestEntry apply(final Message<String> message) {
-        final String encodedMessage = textEncoder.apply(message);
-        final SdkBytes sdkBytes = encodedMessage != null
-                ? SdkBytes.fromString(encodedMessage, UTF_8)
-                : SdkBytes.fromByteArray(new byte[]{});
+        final SdkBytes sdkBytes;
+        if (binaryEnvelope) {
+            sdkBytes = SdkBytes.fromByteArray(BinaryEnvelope.encode(message));
+        } else {
+            final String encodedMessage = textEncoder.apply(message);
+            sdkBytes = encodedMessage != null
+                    ? SdkBytes.fromString(encodedMessage, UTF_8)
+                    : SdkBytes.fromByteArray(new byte[]{});
+        }
 
         return PutRecordsRequestEntry.builder()
                 .partitionKey(message.getKey().partitionKey())
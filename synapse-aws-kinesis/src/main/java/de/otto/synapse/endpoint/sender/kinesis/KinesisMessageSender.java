@@ -1,8 +1,12 @@
 package de.otto.synapse.endpoint.sender.kinesis;
 
-import com.google.common.collect.Lists;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.otto.synapse.channel.ShardPosition;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.sender.AbstractMessageSenderEndpoint;
+import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
 import de.otto.synapse.translator.MessageFormat;
 import de.otto.synapse.translator.MessageTranslator;
@@ -10,28 +14,103 @@ import org.slf4j.Logger;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.model.PutRecordsRequest;
 import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResponse;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResultEntry;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toCollection;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Sender endpoint used to send messages to a Kinesis stream using PutRecords.
+ * <p>
+ *     Messages are sent asynchronously: the returned futures are completed, after all records were acknowledged by
+ *     Kinesis. Up to {@link KinesisSenderSettings#getMaxInFlightBatches()} PutRecords requests are sent
+ *     concurrently. A request containing a partition key is only sent after all previously sent requests
+ *     containing the same partition key were completed, so the messages of a partition key are written in the
+ *     order they were sent. If more than {@link KinesisSenderSettings#getMaxQueuedBatches()} requests would be
+ *     waiting to be sent, the returned future fails with a {@link RejectedExecutionException} and nothing is
+ *     sent.
+ * </p>
+ * <p>
+ *     Requests are packed with up to {@link #MAX_RECORDS_PER_REQUEST} records and {@link #MAX_REQUEST_SIZE} bytes.
+ *     Records exceeding {@link #MAX_RECORD_SIZE} are passed to the {@link OversizedRecordHandler} before anything is
+ *     sent; by default, sending then fails with a {@link RecordTooLargeException}.
+ * </p>
+ * <p>
+ *     If some records of a request could not be written, the failed records are retried using a jittered,
+ *     exponential backoff, together with all following records of the request having the same partition key.
+ *     Records following a failed record may already have been written before the retry, but the retried records
+ *     are written again afterwards, so the last records of every partition key are written in the order they
+ *     were sent.
+ * </p>
+ */
 public class KinesisMessageSender extends AbstractMessageSenderEndpoint {
 
     private static final Logger LOG = getLogger(KinesisMessageSender.class);
 
-    private static final int PUT_RECORDS_BATCH_SIZE = 500;
-    private static final int MAX_RETRIES = 15;
-    private static final long RETRY_DELAY_MS = 1000L;
+    /**
+     * The maximum number of records of a single PutRecords request.
+     */
+    public static final int MAX_RECORDS_PER_REQUEST = 500;
+    /**
+     * The maximum size of a single PutRecords request, including partition keys.
+     */
+    public static final int MAX_REQUEST_SIZE = 5 * 1024 * 1024;
+    /**
+     * The maximum size of a single record, including the partition key.
+     */
+    public static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private static final int MAX_BACKOFF_EXPONENT = 16;
+
+    private static final ScheduledExecutorService RETRY_SCHEDULER = newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("kinesis-sender-retry-%d").setDaemon(true).build()
+    );
 
     private final KinesisAsyncClient kinesisAsyncClient;
     private final KinesisEncoder encoder;
+    private final KinesisRecordAggregator recordAggregator;
+    private final KinesisSenderSettings senderSettings;
+    private final KinesisBatchingMetrics batchingMetrics = new KinesisBatchingMetrics();
+
+    private final Object lock = new Object();
+    /* The last request containing a partition key; guarded by lock. */
+    private final Map<String, CompletableFuture<KinesisSendResult>> pendingPartitionKeys = new HashMap<>();
+    /* Requests waiting for a free slot; guarded by lock. */
+    private final Deque<Runnable> waitingBatches = new ArrayDeque<>();
+    private int batchesInFlight = 0;
+    /* Requests that are either in flight or waiting to be sent; guarded by lock. */
+    private int pendingBatches = 0;
 
     public KinesisMessageSender(final String channelName,
                                 final MessageInterceptorRegistry interceptorRegistry,
@@ -45,54 +124,177 @@ public class KinesisMessageSender extends AbstractMessageSenderEndpoint {
                                 final MessageTranslator<TextMessage> messageTranslator,
                                 final KinesisAsyncClient kinesisClient,
                                 final MessageFormat messageFormat) {
+        this(channelName, interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(messageFormat)
+                .build());
+    }
+
+    /**
+     * @param channelName the name of the Kinesis stream
+     * @param interceptorRegistry registry used to intercept sent messages
+     * @param messageTranslator the translator used to translate messages into TextMessages
+     * @param kinesisClient the client used to put records
+     * @param senderSettings settings used to control the encoding and aggregation of records, concurrent
+     *                       requests and retries
+     */
+    public KinesisMessageSender(final String channelName,
+                                final MessageInterceptorRegistry interceptorRegistry,
+                                final MessageTranslator<TextMessage> messageTranslator,
+                                final KinesisAsyncClient kinesisClient,
+                                final @Nonnull KinesisSenderSettings senderSettings) {
+        this(channelName, interceptorRegistry, messageTranslator, kinesisClient, senderSettings, senderSettings.isAggregateRecords()
+                ? new KinesisRecordAggregator(channelName, kinesisClient, senderSettings.getMaxAggregatedRecordSize(), KinesisRecordAggregator.DEFAULT_SHARD_MAP_REFRESH_INTERVAL, Clock.systemDefaultZone())
+                : null);
+    }
+
+    @VisibleForTesting
+    KinesisMessageSender(final String channelName,
+                         final MessageInterceptorRegistry interceptorRegistry,
+                         final MessageTranslator<TextMessage> messageTranslator,
+                         final KinesisAsyncClient kinesisClient,
+                         final @Nonnull KinesisSenderSettings senderSettings,
+                         final @Nullable KinesisRecordAggregator recordAggregator) {
         super(channelName, interceptorRegistry, messageTranslator);
         this.kinesisAsyncClient = kinesisClient;
-        this.encoder = new KinesisEncoder(messageFormat);
+        this.encoder = new KinesisEncoder(senderSettings.getMessageFormat(), senderSettings.getCompressionCodec(), senderSettings.getMinCompressionSize(), senderSettings.isTrustJsonPayloads());
+        this.recordAggregator = recordAggregator;
+        this.senderSettings = senderSettings;
+    }
+
+    /**
+     * Sends a stream of messages to the Kinesis stream, like {@link #sendBatch(Stream)}, and returns the result
+     * containing the sequence numbers of the written records.
+     *
+     * @param batch a stream of messages
+     * @param <T> the type of the message payload
+     * @return future result, completed after all records were acknowledged by Kinesis
+     */
+    public <T> CompletableFuture<KinesisSendResult> sendBatchWithResult(final @Nonnull Stream<Message<T>> batch) {
+        return sendRecords(translateAndInterceptBatch(batch));
+    }
+
+    /**
+     * @return metrics about the packing of PutRecords requests.
+     */
+    public KinesisBatchingMetrics getBatchingMetrics() {
+        return batchingMetrics;
     }
 
     @Override
     protected CompletableFuture<Void> doSend(@Nonnull TextMessage message) {
-        // TODO: Introduce a response object and return it instead of Void
-        // Just because we need a CompletableFuture<Void>, no CompletableFuture<SendMessageBatchResponse>:
         return doSendBatch(Stream.of(message));
     }
 
     @Override
     protected CompletableFuture<Void> doSendBatch(@Nonnull Stream<TextMessage> messageStream) {
-        // TODO: Introduce a response object and return it instead of Void
-        // Just because we need a CompletableFuture<Void>, no CompletableFuture<SendMessageBatchResponse>:
-        final List<PutRecordsRequestEntry> entries = createPutRecordRequestEntries(messageStream);
-        if (!entries.isEmpty()) {
-            Lists.partition(entries, PUT_RECORDS_BATCH_SIZE)
-                    .forEach(this::blockingSendBatchWithRetries);
-        }
-        return CompletableFuture.completedFuture(null);
+        return sendRecords(messageStream).thenApply(result -> null);
     }
 
-    private void blockingSendBatchWithRetries(List<PutRecordsRequestEntry> batch) {
+    private CompletableFuture<KinesisSendResult> sendRecords(final Stream<TextMessage> messageStream) {
+        final List<PendingRecord> records;
         try {
-            int currentRetry = 0;
-            while (!blockingSendBatch(batch)) {
-                currentRetry++;
-                LOG.warn("retry to send batch of size '{}' to kinesis for nth time: {}", batch.size(), currentRetry);
-                if (currentRetry >= MAX_RETRIES) {
-                    throw new RetryLimitExceededException("Exceeded maximum number of retries.", MAX_RETRIES);
+            records = createPendingRecords(messageStream);
+        } catch (final RuntimeException e) {
+            final CompletableFuture<KinesisSendResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (records.isEmpty()) {
+            return completedFuture(KinesisSendResult.emptyResult());
+        }
+        final List<List<PendingRecord>> packedBatches = packBatches(records);
+        if (!tryReserve(packedBatches.size())) {
+            final CompletableFuture<KinesisSendResult> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new RejectedExecutionException(format(
+                    "Unable to send %d PutRecords requests to %s: too many requests are waiting to be sent",
+                    packedBatches.size(), getChannelName())));
+            return rejected;
+        }
+        final List<CompletableFuture<KinesisSendResult>> batches = packedBatches
+                .stream()
+                .map(this::sendBatchInOrder)
+                .collect(toList());
+        return allOf(batches.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> batches
+                        .stream()
+                        .map(CompletableFuture::join)
+                        .reduce(KinesisSendResult.emptyResult(), KinesisSendResult::merge));
+    }
+
+    /**
+     * Sends a batch of records after all previously sent batches containing the same partition keys were completed.
+     */
+    private CompletableFuture<KinesisSendResult> sendBatchInOrder(final List<PendingRecord> batch) {
+        final CompletableFuture<KinesisSendResult> result = new CompletableFuture<>();
+        final Set<String> partitionKeys = new LinkedHashSet<>();
+        batch.forEach(record -> partitionKeys.addAll(record.partitionKeys));
+        final Set<CompletableFuture<KinesisSendResult>> predecessors = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (lock) {
+            partitionKeys.forEach(partitionKey -> {
+                final CompletableFuture<KinesisSendResult> predecessor = pendingPartitionKeys.put(partitionKey, result);
+                if (predecessor != null) {
+                    predecessors.add(predecessor);
                 }
-                Thread.sleep(RETRY_DELAY_MS);
+            });
+        }
+        result.whenComplete((ignored, throwable) -> {
+            synchronized (lock) {
+                partitionKeys.forEach(partitionKey -> pendingPartitionKeys.remove(partitionKey, result));
+                --pendingBatches;
+            }
+        });
+        // A failed predecessor must not prevent this batch from being sent:
+        allOf(predecessors.stream().map(predecessor -> predecessor.handle((r, t) -> null)).toArray(CompletableFuture<?>[]::new))
+                .thenRun(() -> whenSlotAvailable(() -> new BatchSend(batch, result).attempt(allIndexes(batch.size()), 0)));
+        return result;
+    }
+
+    /**
+     * Reserves capacity for the given number of requests, if the number of requests waiting to be sent would not
+     * exceed {@link KinesisSenderSettings#getMaxQueuedBatches()}. Requests of a single call exceeding the limit are
+     * accepted, if no other requests are pending.
+     */
+    private boolean tryReserve(final int numberOfBatches) {
+        synchronized (lock) {
+            final int limit = senderSettings.getMaxInFlightBatches() + senderSettings.getMaxQueuedBatches();
+            if (pendingBatches > 0 && pendingBatches + numberOfBatches > limit) {
+                return false;
+            }
+            pendingBatches += numberOfBatches;
+            return true;
+        }
+    }
+
+    private void whenSlotAvailable(final Runnable task) {
+        synchronized (lock) {
+            if (batchesInFlight >= senderSettings.getMaxInFlightBatches()) {
+                waitingBatches.add(task);
+                return;
+            }
+            ++batchesInFlight;
+        }
+        task.run();
+    }
+
+    private void releaseSlot() {
+        final Runnable next;
+        synchronized (lock) {
+            next = waitingBatches.poll();
+            if (next == null) {
+                --batchesInFlight;
             }
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
+        }
+        if (next != null) {
+            next.run();
         }
     }
 
-    private boolean blockingSendBatch(List<PutRecordsRequestEntry> batch) throws ExecutionException, InterruptedException {
-        AtomicBoolean isSuccessful = new AtomicBoolean(true);
-        kinesisAsyncClient.putRecords(createPutRecordsRequest(batch))
-                .thenApply(response -> {
-                    isSuccessful.set(response.failedRecordCount() == 0);
-                    return response;
-                }).get();
-        return isSuccessful.get();
+    private Duration retryDelay(final int retry) {
+        final Duration delay = senderSettings.getRetryBaseDelay().multipliedBy(1L << Math.min(retry, MAX_BACKOFF_EXPONENT));
+        final long millis = (delay.compareTo(senderSettings.getRetryMaxDelay()) > 0
+                ? senderSettings.getRetryMaxDelay()
+                : delay).toMillis();
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
     }
 
     private PutRecordsRequest createPutRecordsRequest(final List<PutRecordsRequestEntry> batch) {
@@ -102,10 +304,209 @@ public class KinesisMessageSender extends AbstractMessageSenderEndpoint {
                 .build();
     }
 
-    private ArrayList<PutRecordsRequestEntry> createPutRecordRequestEntries(final @Nonnull Stream<TextMessage> messageStream) {
-        return messageStream
+    /**
+     * Packs the records into batches of up to {@link #MAX_RECORDS_PER_REQUEST} records and {@link #MAX_REQUEST_SIZE}
+     * bytes, keeping the order of the records.
+     */
+    private List<List<PendingRecord>> packBatches(final List<PendingRecord> records) {
+        final List<List<PendingRecord>> batches = new ArrayList<>();
+        List<PendingRecord> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (final PendingRecord record : records) {
+            if (!batch.isEmpty() && (batch.size() >= MAX_RECORDS_PER_REQUEST || batchSize + record.size > MAX_REQUEST_SIZE)) {
+                batchingMetrics.recordRequest(batch.size(), batchSize);
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+            batch.add(record);
+            batchSize += record.size;
+        }
+        batchingMetrics.recordRequest(batch.size(), batchSize);
+        batches.add(batch);
+        return batches;
+    }
+
+    private List<PendingRecord> createPendingRecords(final @Nonnull Stream<TextMessage> messageStream) {
+        final List<PutRecordsRequestEntry> entries = messageStream
                 .map(encoder::apply)
-                .collect(toCollection(ArrayList::new));
+                .map(this::withoutOversizedRecord)
+                .collect(toList());
+        if (recordAggregator == null) {
+            return entries
+                    .stream()
+                    .map(entry -> new PendingRecord(entry, singletonList(entry.partitionKey())))
+                    .collect(toList());
+        }
+        return recordAggregator.pack(entries)
+                .stream()
+                .map(packedEntries -> new PendingRecord(
+                        recordAggregator.toEntry(packedEntries),
+                        packedEntries.stream().map(PutRecordsRequestEntry::partitionKey).distinct().collect(toList())))
+                .collect(toList());
+    }
+
+    private PutRecordsRequestEntry withoutOversizedRecord(final PutRecordsRequestEntry entry) {
+        final int size = sizeOf(entry);
+        if (size <= MAX_RECORD_SIZE) {
+            return entry;
+        }
+        batchingMetrics.recordOversizedRecord();
+        final PutRecordsRequestEntry handledEntry = senderSettings.getOversizedRecordHandler().handle(getChannelName(), entry, size);
+        final int handledSize = sizeOf(handledEntry);
+        if (handledSize > MAX_RECORD_SIZE) {
+            throw new RecordTooLargeException(format("Record with partition key '%s' still has %d bytes after handling the oversized record", handledEntry.partitionKey(), handledSize), handledSize, MAX_RECORD_SIZE);
+        }
+        return handledEntry;
+    }
+
+    /**
+     * Kinesis is counting the size of the data and the partition key against the limits of records and requests.
+     */
+    private static int sizeOf(final PutRecordsRequestEntry entry) {
+        final int dataSize = entry.data() != null ? entry.data().asByteBuffer().remaining() : 0;
+        return dataSize + entry.partitionKey().getBytes(UTF_8).length;
+    }
+
+    private static List<Integer> allIndexes(final int size) {
+        final List<Integer> indexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    private static Throwable unwrap(final Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+    }
+
+    /**
+     * A record that is sent to Kinesis, together with the partition keys of the contained messages.
+     */
+    private static final class PendingRecord {
+        private final PutRecordsRequestEntry entry;
+        private final List<String> partitionKeys;
+        private final int size;
+
+        private PendingRecord(final PutRecordsRequestEntry entry, final List<String> partitionKeys) {
+            this.entry = entry;
+            this.partitionKeys = partitionKeys;
+            this.size = sizeOf(entry);
+        }
+    }
+
+    /**
+     * Sends a single batch of records, retrying the failed records until all records were written.
+     */
+    private final class BatchSend {
+        private final List<PendingRecord> batch;
+        private final CompletableFuture<KinesisSendResult> result;
+        private final ShardPosition[] shardPositions;
+        private volatile int retriedRecordCount = 0;
+
+        private BatchSend(final List<PendingRecord> batch, final CompletableFuture<KinesisSendResult> result) {
+            this.batch = batch;
+            this.result = result;
+            this.shardPositions = new ShardPosition[batch.size()];
+        }
+
+        private void attempt(final List<Integer> indexes, final int retry) {
+            try {
+                final List<PutRecordsRequestEntry> entries = indexes
+                        .stream()
+                        .map(index -> batch.get(index).entry)
+                        .collect(toList());
+                kinesisAsyncClient.putRecords(createPutRecordsRequest(entries))
+                        .whenComplete((response, throwable) -> {
+                            if (throwable != null) {
+                                complete(null, unwrap(throwable));
+                            } else {
+                                handleResponse(indexes, retry, response);
+                            }
+                        });
+            } catch (final RuntimeException e) {
+                complete(null, e);
+            }
+        }
+
+        private void handleResponse(final List<Integer> indexes, final int retry, final PutRecordsResponse response) {
+            final List<Integer> failedIndexes = withFollowingRecordsOfSamePartitionKeys(indexes, failedIndexes(indexes, response));
+            if (failedIndexes.isEmpty()) {
+                final ImmutableList.Builder<ShardPosition> positions = ImmutableList.builder();
+                for (final ShardPosition shardPosition : shardPositions) {
+                    if (shardPosition != null) {
+                        positions.add(shardPosition);
+                    }
+                }
+                complete(new KinesisSendResult(positions.build(), retriedRecordCount), null);
+            } else if (retry >= senderSettings.getMaxRetries()) {
+                complete(null, new RetryLimitExceededException("Exceeded maximum number of retries.", senderSettings.getMaxRetries()));
+            } else {
+                retriedRecordCount += failedIndexes.size();
+                LOG.warn("retry to send '{}' of '{}' records to kinesis for nth time: {}", failedIndexes.size(), batch.size(), retry + 1);
+                RETRY_SCHEDULER.schedule(() -> attempt(failedIndexes, retry + 1), retryDelay(retry).toMillis(), MILLISECONDS);
+            }
+        }
+
+        /**
+         * Returns the indexes of the records that could not be written, and remembers the positions of all
+         * written records.
+         */
+        private List<Integer> failedIndexes(final List<Integer> indexes, final PutRecordsResponse response) {
+            final List<PutRecordsResultEntry> resultEntries = response.records();
+            final boolean hasFailedRecords = response.failedRecordCount() != null && response.failedRecordCount() > 0;
+            if (resultEntries.size() != indexes.size()) {
+                // Unable to match results to records:
+                return hasFailedRecords ? indexes : Collections.emptyList();
+            }
+            final List<Integer> failedIndexes = new ArrayList<>();
+            for (int i = 0; i < indexes.size(); i++) {
+                final PutRecordsResultEntry resultEntry = resultEntries.get(i);
+                if (resultEntry.errorCode() != null) {
+                    failedIndexes.add(indexes.get(i));
+                } else if (resultEntry.shardId() != null && resultEntry.sequenceNumber() != null) {
+                    shardPositions[indexes.get(i)] = fromPosition(resultEntry.shardId(), resultEntry.sequenceNumber());
+                }
+            }
+            if (failedIndexes.isEmpty() && hasFailedRecords) {
+                // Kinesis reported failures without error codes:
+                return indexes;
+            }
+            return failedIndexes;
+        }
+
+        /**
+         * Returns the failed records together with all following records sharing a partition key with a failed
+         * record, so the retry is re-writing the records of the partition key in order.
+         */
+        private List<Integer> withFollowingRecordsOfSamePartitionKeys(final List<Integer> indexes,
+                                                                      final List<Integer> failedIndexes) {
+            if (failedIndexes.isEmpty() || failedIndexes.size() == indexes.size()) {
+                return failedIndexes;
+            }
+            final Set<Integer> failed = new HashSet<>(failedIndexes);
+            final Set<String> failedPartitionKeys = new HashSet<>();
+            final List<Integer> retriedIndexes = new ArrayList<>();
+            for (final Integer index : indexes) {
+                final List<String> partitionKeys = batch.get(index).partitionKeys;
+                if (failed.contains(index) || partitionKeys.stream().anyMatch(failedPartitionKeys::contains)) {
+                    failedPartitionKeys.addAll(partitionKeys);
+                    retriedIndexes.add(index);
+                }
+            }
+            return retriedIndexes;
+        }
+
+        private void complete(final KinesisSendResult sendResult, final Throwable throwable) {
+            releaseSlot();
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(sendResult);
+            }
+        }
     }
 
 }
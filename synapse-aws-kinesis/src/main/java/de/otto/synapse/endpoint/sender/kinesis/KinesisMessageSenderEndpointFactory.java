@@ -17,17 +17,31 @@ public class KinesisMessageSenderEndpointFactory implements MessageSenderEndpoin
     private final MessageInterceptorRegistry registry;
     private final MessageTranslator<TextMessage> messageTranslator;
     private final KinesisAsyncClient kinesisClient;
+    private final KinesisSenderSettings senderSettings;
 
     public KinesisMessageSenderEndpointFactory(final MessageInterceptorRegistry registry,
                                                final KinesisAsyncClient kinesisClient) {
+        this(registry, kinesisClient, KinesisSenderSettings.defaultSenderSettings());
+    }
+
+    /**
+     * @param registry registry used to intercept sent messages
+     * @param kinesisClient the client used to put records
+     * @param senderSettings settings of the senders, like the message format, the payload codec and the
+     *                       aggregation of records
+     */
+    public KinesisMessageSenderEndpointFactory(final MessageInterceptorRegistry registry,
+                                               final KinesisAsyncClient kinesisClient,
+                                               final @Nonnull KinesisSenderSettings senderSettings) {
         this.registry = registry;
-        this.messageTranslator = new TextMessageTranslator();
+        this.messageTranslator = new TextMessageTranslator(senderSettings.getPayloadCodec());
         this.kinesisClient = kinesisClient;
+        this.senderSettings = senderSettings;
     }
 
     @Override
     public MessageSenderEndpoint create(final @Nonnull String channelName) {
-        return new KinesisMessageSender(channelName, registry, messageTranslator, kinesisClient);
+        return new KinesisMessageSender(channelName, registry, messageTranslator, kinesisClient, senderSettings);
     }
 
     @Override
@@ -0,0 +1,300 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+import com.google.common.collect.ImmutableList;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord.UserRecord;
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Aggregates the {@link PutRecordsRequestEntry entries} of a batch into Kinesis records using the
+ * {@link KinesisAggregatedRecord aggregation format} of the Kinesis Producer Library.
+ * <p>
+ *     Kinesis is limiting the number of records per shard to 1000 records per second. Producers sending many small
+ *     messages are therefore limited by the number of records, not by the 1 MB per second and shard. Aggregating
+ *     the messages sent to the same shard into a single Kinesis record is increasing the throughput of such
+ *     producers.
+ * </p>
+ * <p>
+ *     Only messages that are sent to the same shard are aggregated. The shard of a message is determined using
+ *     the hash key ranges of the open shards of the stream. The shards are retrieved asynchronously using
+ *     ListShards and refreshed after {@code shardMapRefreshInterval}, so senders are never blocked by ListShards:
+ *     messages are aggregated using the last known shards, and are not aggregated at all until the shards were
+ *     retrieved for the first time. The order of the messages sent to a shard is maintained.
+ * </p>
+ */
+@ThreadSafe
+public class KinesisRecordAggregator {
+
+    private static final Logger LOG = getLogger(KinesisRecordAggregator.class);
+
+    /**
+     * The default maximum size of aggregated records, as used by the Kinesis Producer Library.
+     */
+    public static final int DEFAULT_MAX_AGGREGATED_RECORD_SIZE = 51200;
+    public static final Duration DEFAULT_SHARD_MAP_REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private final String channelName;
+    private final KinesisAsyncClient kinesisClient;
+    private final int maxAggregatedRecordSize;
+    private final Duration shardMapRefreshInterval;
+    private final Clock clock;
+    private final AtomicLong userRecordCount = new AtomicLong();
+    private final AtomicLong kinesisRecordCount = new AtomicLong();
+    private final AtomicBoolean refreshingShardMap = new AtomicBoolean(false);
+    /* The last known shards of the stream, or null if the shards were not yet retrieved. */
+    private volatile ImmutableList<ShardHashKeyRange> shardMap = null;
+    private volatile Instant shardMapExpiry = Instant.MIN;
+
+    public KinesisRecordAggregator(final @Nonnull String channelName,
+                                   final @Nonnull KinesisAsyncClient kinesisClient) {
+        this(channelName, kinesisClient, DEFAULT_MAX_AGGREGATED_RECORD_SIZE, DEFAULT_SHARD_MAP_REFRESH_INTERVAL, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param channelName the name of the Kinesis stream
+     * @param kinesisClient the client used to list the shards of the stream
+     * @param maxAggregatedRecordSize the maximum number of bytes of an aggregated record
+     * @param shardMapRefreshInterval the interval used to refresh the hash key ranges of the shards
+     * @param clock the clock used to expire the hash key ranges of the shards
+     */
+    public KinesisRecordAggregator(final @Nonnull String channelName,
+                                   final @Nonnull KinesisAsyncClient kinesisClient,
+                                   final int maxAggregatedRecordSize,
+                                   final @Nonnull Duration shardMapRefreshInterval,
+                                   final @Nonnull Clock clock) {
+        checkArgument(maxAggregatedRecordSize > KinesisAggregatedRecord.OVERHEAD && maxAggregatedRecordSize <= MAX_RECORD_SIZE,
+                "maxAggregatedRecordSize must be in (%s, %s]", KinesisAggregatedRecord.OVERHEAD, MAX_RECORD_SIZE);
+        this.channelName = channelName;
+        this.kinesisClient = kinesisClient;
+        this.maxAggregatedRecordSize = maxAggregatedRecordSize;
+        this.shardMapRefreshInterval = shardMapRefreshInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Aggregates the entries sent to the same shard.
+     * <p>
+     *     Entries are packed into aggregated records of up to {@code maxAggregatedRecordSize} bytes. Entries that
+     *     can not be aggregated with other entries are returned unchanged.
+     * </p>
+     *
+     * @param entries the entries of a batch
+     * @return list of entries, containing aggregated records
+     */
+    public List<PutRecordsRequestEntry> aggregate(final @Nonnull List<PutRecordsRequestEntry> entries) {
+        final List<PutRecordsRequestEntry> result = new ArrayList<>();
+        pack(entries).forEach(packedEntries -> result.add(toEntry(packedEntries)));
+        return result;
+    }
+
+    /**
+     * Packs the entries sent to the same shard into groups of up to {@code maxAggregatedRecordSize} bytes. Every
+     * group is sent as a single Kinesis record, created using {@link #toEntry(List)}.
+     *
+     * @param entries the entries of a batch
+     * @return list of groups of entries, in the order of the entries per shard
+     */
+    public List<List<PutRecordsRequestEntry>> pack(final @Nonnull List<PutRecordsRequestEntry> entries) {
+        userRecordCount.addAndGet(entries.size());
+        final List<List<PutRecordsRequestEntry>> result = new ArrayList<>();
+        final ImmutableList<ShardHashKeyRange> shards = entries.size() < 2 ? null : shardMap();
+        if (shards == null) {
+            entries.forEach(entry -> result.add(singletonList(entry)));
+        } else {
+            final Map<String, List<PutRecordsRequestEntry>> entriesPerShard = new LinkedHashMap<>();
+            entries.forEach(entry -> entriesPerShard
+                    .computeIfAbsent(shardOf(entry, shards), shard -> new ArrayList<>())
+                    .add(entry));
+            entriesPerShard.values().forEach(shardEntries -> pack(shardEntries, result));
+        }
+        kinesisRecordCount.addAndGet(result.size());
+        return result;
+    }
+
+    /**
+     * Creates the entry of a Kinesis record containing the packed entries. A single entry is returned unchanged,
+     * multiple entries are aggregated.
+     *
+     * @param packedEntries a group of entries returned by {@link #pack(List)}
+     * @return entry of a Kinesis record
+     */
+    public PutRecordsRequestEntry toEntry(final @Nonnull List<PutRecordsRequestEntry> packedEntries) {
+        final PutRecordsRequestEntry first = packedEntries.get(0);
+        if (packedEntries.size() == 1) {
+            return first;
+        }
+        final List<UserRecord> userRecords = new ArrayList<>(packedEntries.size());
+        packedEntries.forEach(entry -> userRecords.add(new UserRecord(entry.partitionKey(), dataOf(entry))));
+        // All entries are sent to the same shard, so the aggregated record is routed using the first entry:
+        return PutRecordsRequestEntry.builder()
+                .partitionKey(first.partitionKey())
+                .explicitHashKey(first.explicitHashKey())
+                .data(SdkBytes.fromByteArray(KinesisAggregatedRecord.encode(userRecords)))
+                .build();
+    }
+
+    public int getMaxAggregatedRecordSize() {
+        return maxAggregatedRecordSize;
+    }
+
+    /**
+     * @return the number of entries passed to {@link #pack(List)}.
+     */
+    public long getUserRecordCount() {
+        return userRecordCount.get();
+    }
+
+    /**
+     * @return the number of Kinesis records created from the entries passed to {@link #pack(List)}.
+     */
+    public long getKinesisRecordCount() {
+        return kinesisRecordCount.get();
+    }
+
+    private void pack(final List<PutRecordsRequestEntry> shardEntries, final List<List<PutRecordsRequestEntry>> result) {
+        List<PutRecordsRequestEntry> current = new ArrayList<>();
+        int currentSize = KinesisAggregatedRecord.OVERHEAD;
+        for (final PutRecordsRequestEntry entry : shardEntries) {
+            final int size = KinesisAggregatedRecord.encodedSize(entry.partitionKey(), dataOf(entry).length);
+            if (!current.isEmpty() && currentSize + size > maxAggregatedRecordSize) {
+                result.add(current);
+                current = new ArrayList<>();
+                currentSize = KinesisAggregatedRecord.OVERHEAD;
+            }
+            current.add(entry);
+            currentSize += size;
+        }
+        if (!current.isEmpty()) {
+            result.add(current);
+        }
+    }
+
+    private static byte[] dataOf(final PutRecordsRequestEntry entry) {
+        return entry.data() != null ? entry.data().asByteArray() : new byte[0];
+    }
+
+    private static String shardOf(final PutRecordsRequestEntry entry, final List<ShardHashKeyRange> shards) {
+        if (!shards.isEmpty()) {
+            final BigInteger hashKey = entry.explicitHashKey() != null
+                    ? new BigInteger(entry.explicitHashKey())
+                    : hashKeyOf(entry.partitionKey());
+            for (final ShardHashKeyRange shard : shards) {
+                if (shard.contains(hashKey)) {
+                    return shard.shardId;
+                }
+            }
+        }
+        return "partitionKey:" + entry.partitionKey();
+    }
+
+    /**
+     * Kinesis is mapping partition keys to 128 bit hash keys using MD5.
+     */
+    private static BigInteger hashKeyOf(final String partitionKey) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("MD5").digest(partitionKey.getBytes(UTF_8)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the last known shards of the stream, and starts refreshing the shards, if they are expired.
+     *
+     * @return shards, or null if the shards were not yet retrieved
+     */
+    private ImmutableList<ShardHashKeyRange> shardMap() {
+        final Instant now = clock.instant();
+        if (now.isAfter(shardMapExpiry) && refreshingShardMap.compareAndSet(false, true)) {
+            CompletableFuture<ImmutableList<ShardHashKeyRange>> openShards;
+            try {
+                openShards = listOpenShards(ListShardsRequest.builder().streamName(channelName).build(), ImmutableList.builder());
+            } catch (final RuntimeException e) {
+                openShards = new CompletableFuture<>();
+                openShards.completeExceptionally(e);
+            }
+            openShards.whenComplete((shards, throwable) -> {
+                if (throwable != null) {
+                    LOG.warn("Unable to list shards of channel {}, aggregating messages using the last known shards: {}", channelName, throwable.getMessage());
+                } else {
+                    shardMap = shards;
+                }
+                shardMapExpiry = now.plus(shardMapRefreshInterval);
+                refreshingShardMap.set(false);
+            });
+        }
+        return shardMap;
+    }
+
+    private CompletableFuture<ImmutableList<ShardHashKeyRange>> listOpenShards(final ListShardsRequest request,
+                                                                             final ImmutableList.Builder<ShardHashKeyRange> shards) {
+        return kinesisClient.listShards(request).thenCompose(response -> {
+            addOpenShards(response, shards);
+            if (response.nextToken() != null) {
+                // streamName must not be specified together with nextToken:
+                return listOpenShards(ListShardsRequest.builder().nextToken(response.nextToken()).build(), shards);
+            }
+            return completedFuture(shards.build());
+        });
+    }
+
+    private static void addOpenShards(final ListShardsResponse response,
+                                      final ImmutableList.Builder<ShardHashKeyRange> shards) {
+        for (final Shard shard : response.shards()) {
+            if (shard.sequenceNumberRange() == null || shard.sequenceNumberRange().endingSequenceNumber() == null) {
+                shards.add(new ShardHashKeyRange(
+                        shard.shardId(),
+                        new BigInteger(shard.hashKeyRange().startingHashKey()),
+                        new BigInteger(shard.hashKeyRange().endingHashKey())));
+            }
+        }
+    }
+
+    private static final class ShardHashKeyRange {
+        private final String shardId;
+        private final BigInteger startingHashKey;
+        private final BigInteger endingHashKey;
+
+        private ShardHashKeyRange(final String shardId,
+                                  final BigInteger startingHashKey,
+                                  final BigInteger endingHashKey) {
+            this.shardId = shardId;
+            this.startingHashKey = startingHashKey;
+            this.endingHashKey = endingHashKey;
+        }
+
+        private boolean contains(final BigInteger hashKey) {
+            return hashKey.compareTo(startingHashKey) >= 0 && hashKey.compareTo(endingHashKey) <= 0;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+import com.google.common.collect.ImmutableList;
+import de.otto.synapse.channel.ShardPosition;
+
+import java.util.Objects;
+
+/**
+ * The result of sending messages to a Kinesis stream using a {@link KinesisMessageSender}.
+ */
+public final class KinesisSendResult {
+
+    private static final KinesisSendResult EMPTY = new KinesisSendResult(ImmutableList.of(), 0);
+
+    private final ImmutableList<ShardPosition> shardPositions;
+    private final int retriedRecordCount;
+
+    KinesisSendResult(final ImmutableList<ShardPosition> shardPositions,
+                      final int retriedRecordCount) {
+        this.shardPositions = shardPositions;
+        this.retriedRecordCount = retriedRecordCount;
+    }
+
+    static KinesisSendResult emptyResult() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the shard and sequence number of every Kinesis record written to the stream, in the order the
+     * records were sent. If messages were aggregated, multiple messages are sharing a single Kinesis record.
+     *
+     * @return list of shard positions
+     */
+    public ImmutableList<ShardPosition> getShardPositions() {
+        return shardPositions;
+    }
+
+    /**
+     * @return the number of Kinesis records that had to be retried, because they could not be written in the first
+     * attempt.
+     */
+    public int getRetriedRecordCount() {
+        return retriedRecordCount;
+    }
+
+    KinesisSendResult merge(final KinesisSendResult other) {
+        return new KinesisSendResult(
+                ImmutableList.<ShardPosition>builder().addAll(shardPositions).addAll(other.shardPositions).build(),
+                retriedRecordCount + other.retriedRecordCount);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        KinesisSendResult that = (KinesisSendResult) o;
+        return retriedRecordCount == that.retriedRecordCount &&
+                Objects.equals(shardPositions, that.shardPositions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(shardPositions, retriedRecordCount);
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisSendResult{" +
+                "shardPositions=" + shardPositions +
+                ", retriedRecordCount=" + retriedRecordCount +
+                '}';
+    }
+}
@@ -0,0 +1,302 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+import de.otto.synapse.translator.CompressionCodec;
+import de.otto.synapse.translator.MessageFormat;
+import de.otto.synapse.translator.PayloadCodec;
+import de.otto.synapse.translator.PayloadCodecs;
+import de.otto.synapse.translator.TextEncoder;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings of a {@link KinesisMessageSender}, controlling how messages are encoded, how many PutRecords requests
+ * are sent concurrently, how failed records are retried, and how records exceeding the maximum record size are
+ * handled.
+ * <p>
+ *     Failed records are retried using an exponential backoff, starting with {@code retryBaseDelay} and limited by
+ *     {@code retryMaxDelay}. Half of every delay is randomized, so retries of concurrent senders are spread.
+ * </p>
+ */
+public final class KinesisSenderSettings {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+    public static final int DEFAULT_MAX_QUEUED_BATCHES = 1024;
+    public static final int DEFAULT_MAX_RETRIES = 15;
+    public static final Duration DEFAULT_RETRY_BASE_DELAY = Duration.ofMillis(100);
+    public static final Duration DEFAULT_RETRY_MAX_DELAY = Duration.ofSeconds(5);
+
+    private final MessageFormat messageFormat;
+    private final PayloadCodec payloadCodec;
+    private final boolean aggregateRecords;
+    private final int maxAggregatedRecordSize;
+    private final int maxInFlightBatches;
+    private final int maxQueuedBatches;
+    private final int maxRetries;
+    private final Duration retryBaseDelay;
+    private final Duration retryMaxDelay;
+    private final OversizedRecordHandler oversizedRecordHandler;
+    private final CompressionCodec compressionCodec;
+    private final int minCompressionSize;
+    private final boolean trustJsonPayloads;
+
+    private KinesisSenderSettings(final Builder builder) {
+        this.messageFormat = requireNonNull(builder.messageFormat, "messageFormat must not be null");
+        this.payloadCodec = requireNonNull(builder.payloadCodec, "payloadCodec must not be null");
+        checkArgument(messageFormat != MessageFormat.V1 || PayloadCodecs.JSON.equals(payloadCodec),
+                "Payload codec %s requires message format V2 or V3: V1 messages have no header to transport the codec", payloadCodec.name());
+        checkArgument(builder.maxInFlightBatches > 0, "maxInFlightBatches must be greater than zero");
+        checkArgument(builder.maxQueuedBatches >= 0, "maxQueuedBatches must not be negative");
+        checkArgument(builder.maxRetries >= 0, "maxRetries must not be negative");
+        checkArgument(!builder.retryBaseDelay.isNegative(), "retryBaseDelay must not be negative");
+        checkArgument(builder.retryMaxDelay.compareTo(builder.retryBaseDelay) >= 0, "retryMaxDelay must not be less than retryBaseDelay");
+        this.aggregateRecords = builder.aggregateRecords;
+        this.maxAggregatedRecordSize = builder.maxAggregatedRecordSize;
+        this.maxInFlightBatches = builder.maxInFlightBatches;
+        this.maxQueuedBatches = builder.maxQueuedBatches;
+        this.maxRetries = builder.maxRetries;
+        this.retryBaseDelay = builder.retryBaseDelay;
+        this.retryMaxDelay = builder.retryMaxDelay;
+        this.oversizedRecordHandler = requireNonNull(builder.oversizedRecordHandler, "oversizedRecordHandler must not be null");
+        checkArgument(builder.minCompressionSize >= 0, "minCompressionSize must not be negative");
+        this.compressionCodec = builder.compressionCodec;
+        this.minCompressionSize = builder.minCompressionSize;
+        this.trustJsonPayloads = builder.trustJsonPayloads;
+    }
+
+    /**
+     * @return KinesisSenderSettings using the default settings.
+     */
+    public static KinesisSenderSettings defaultSenderSettings() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the format used to encode messages.
+     */
+    public MessageFormat getMessageFormat() {
+        return messageFormat;
+    }
+
+    /**
+     * @return the default codec used to encode the payloads of messages. Used by the
+     * {@link KinesisMessageSenderEndpointFactory} to create the MessageTranslator of the senders.
+     */
+    public PayloadCodec getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    /**
+     * @return true, if messages sent in batches are aggregated into KPL-compatible aggregated records.
+     */
+    public boolean isAggregateRecords() {
+        return aggregateRecords;
+    }
+
+    /**
+     * @return the maximum number of bytes of an aggregated record.
+     */
+    public int getMaxAggregatedRecordSize() {
+        return maxAggregatedRecordSize;
+    }
+
+    /**
+     * @return the maximum number of PutRecords requests that are sent concurrently by a single sender.
+     */
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    /**
+     * @return the maximum number of PutRecords requests of a single sender that are waiting to be sent, because
+     * {@link #getMaxInFlightBatches()} requests are in flight or because of pending requests containing the same
+     * partition keys. If more requests would be waiting, sending fails with a
+     * {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    public int getMaxQueuedBatches() {
+        return maxQueuedBatches;
+    }
+
+    /**
+     * @return the maximum number of retries of failed records, before sending fails with a
+     * {@link RetryLimitExceededException}.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public Duration getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public Duration getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    /**
+     * @return the handler of records exceeding the maximum record size. By default, such records are rejected.
+     */
+    public OversizedRecordHandler getOversizedRecordHandler() {
+        return oversizedRecordHandler;
+    }
+
+    /**
+     * @return the codec used to compress records, or null if records are not compressed.
+     */
+    @Nullable
+    public CompressionCodec getCompressionCodec() {
+        return compressionCodec;
+    }
+
+    /**
+     * @return the minimum number of characters of encoded messages that are compressed.
+     */
+    public int getMinCompressionSize() {
+        return minCompressionSize;
+    }
+
+    /**
+     * @return true, if JSON payloads are embedded into V2 records without checking them.
+     */
+    public boolean isTrustJsonPayloads() {
+        return trustJsonPayloads;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisSenderSettings{" +
+                "messageFormat=" + messageFormat +
+                ", payloadCodec=" + payloadCodec.name() +
+                ", aggregateRecords=" + aggregateRecords +
+                ", maxAggregatedRecordSize=" + maxAggregatedRecordSize +
+                ", maxInFlightBatches=" + maxInFlightBatches +
+                ", maxQueuedBatches=" + maxQueuedBatches +
+                ", maxRetries=" + maxRetries +
+                ", retryBaseDelay=" + retryBaseDelay +
+                ", retryMaxDelay=" + retryMaxDelay +
+                ", oversizedRecordHandler=" + oversizedRecordHandler +
+                ", compressionCodec=" + compressionCodec +
+                ", minCompressionSize=" + minCompressionSize +
+                ", trustJsonPayloads=" + trustJsonPayloads +
+                '}';
+    }
+
+    public static final class Builder {
+        private MessageFormat messageFormat = MessageFormat.V1;
+        private PayloadCodec payloadCodec = PayloadCodecs.JSON;
+        private boolean aggregateRecords = false;
+        private int maxAggregatedRecordSize = KinesisRecordAggregator.DEFAULT_MAX_AGGREGATED_RECORD_SIZE;
+        private int maxInFlightBatches = DEFAULT_MAX_IN_FLIGHT_BATCHES;
+        private int maxQueuedBatches = DEFAULT_MAX_QUEUED_BATCHES;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private Duration retryBaseDelay = DEFAULT_RETRY_BASE_DELAY;
+        private Duration retryMaxDelay = DEFAULT_RETRY_MAX_DELAY;
+        private OversizedRecordHandler oversizedRecordHandler = OversizedRecordHandler.rejectOversizedRecords();
+        private CompressionCodec compressionCodec = null;
+        private int minCompressionSize = TextEncoder.DEFAULT_MIN_COMPRESSION_SIZE;
+        private boolean trustJsonPayloads = false;
+
+        private Builder() {
+        }
+
+        public Builder withMessageFormat(final MessageFormat messageFormat) {
+            this.messageFormat = messageFormat;
+            return this;
+        }
+
+        /**
+         * @param payloadCodec the default codec used to encode the payloads of messages. Codecs other than JSON
+         *                     require message format V2 or V3.
+         * @return this
+         */
+        public Builder withPayloadCodec(final PayloadCodec payloadCodec) {
+            this.payloadCodec = payloadCodec;
+            return this;
+        }
+
+        /**
+         * Aggregates the messages of batches into KPL-compatible aggregated records.
+         *
+         * @param aggregateRecords true, if records should be aggregated
+         * @param maxAggregatedRecordSize the maximum number of bytes of an aggregated record
+         * @return this
+         */
+        public Builder withRecordAggregation(final boolean aggregateRecords, final int maxAggregatedRecordSize) {
+            this.aggregateRecords = aggregateRecords;
+            this.maxAggregatedRecordSize = maxAggregatedRecordSize;
+            return this;
+        }
+
+        public Builder withMaxInFlightBatches(final int maxInFlightBatches) {
+            this.maxInFlightBatches = maxInFlightBatches;
+            return this;
+        }
+
+        public Builder withMaxQueuedBatches(final int maxQueuedBatches) {
+            this.maxQueuedBatches = maxQueuedBatches;
+            return this;
+        }
+
+        public Builder withMaxRetries(final int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder withRetryBaseDelay(final Duration retryBaseDelay) {
+            this.retryBaseDelay = retryBaseDelay;
+            return this;
+        }
+
+        public Builder withRetryMaxDelay(final Duration retryMaxDelay) {
+            this.retryMaxDelay = retryMaxDelay;
+            return this;
+        }
+
+        public Builder withOversizedRecordHandler(final OversizedRecordHandler oversizedRecordHandler) {
+            this.oversizedRecordHandler = oversizedRecordHandler;
+            return this;
+        }
+
+        /**
+         * Compresses records using the given codec. Records are decompressed automatically by Synapse receivers.
+         * <p>
+         *     Compressed records are Base64-encoded text envelopes, as created by
+         *     {@link de.otto.synapse.translator.TextCompression}, so compression is only reducing the size of records
+         *     that compress to less than three quarters of their size. Other records are sent uncompressed.
+         * </p>
+         *
+         * @param compressionCodec the codec, or null if records should not be compressed
+         * @param minCompressionSize the minimum number of characters of encoded messages that are compressed
+         * @return this
+         */
+        public Builder withCompression(final @Nullable CompressionCodec compressionCodec, final int minCompressionSize) {
+            this.compressionCodec = compressionCodec;
+            this.minCompressionSize = minCompressionSize;
+            return this;
+        }
+
+        /**
+         * Embeds payloads looking like JSON objects or arrays into V2 records without checking that they are
+         * valid JSON.
+         *
+         * @param trustJsonPayloads true, if all payloads are known to be valid JSON
+         * @return this
+         * @see TextEncoder#TextEncoder(de.otto.synapse.translator.MessageFormat, CompressionCodec, int, boolean)
+         */
+        public Builder withTrustedJsonPayloads(final boolean trustJsonPayloads) {
+            this.trustJsonPayloads = trustJsonPayloads;
+            return this;
+        }
+
+        public KinesisSenderSettings build() {
+            return new KinesisSenderSettings(this);
+        }
+    }
+}
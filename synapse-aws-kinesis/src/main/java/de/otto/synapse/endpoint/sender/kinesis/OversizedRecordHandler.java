@@ -0,0 +1,43 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
+
+import javax.annotation.Nonnull;
+
+import static java.lang.String.format;
+
+/**
+ * Handles records exceeding the maximum record size of Kinesis, before they are sent by a
+ * {@link KinesisMessageSender}.
+ * <p>
+ *     Implementations may, for example, offload the payload to some other storage and return a small record
+ *     referring to the offloaded payload, or throw an exception to reject the record.
+ * </p>
+ */
+@FunctionalInterface
+public interface OversizedRecordHandler {
+
+    /**
+     * Handles a single oversized record.
+     *
+     * @param channelName the name of the Kinesis stream
+     * @param entry the oversized record
+     * @param size the size of the record in bytes, including the partition key
+     * @return the record that is sent instead of the oversized record
+     * @throws RecordTooLargeException if the record is rejected
+     */
+    @Nonnull
+    PutRecordsRequestEntry handle(@Nonnull String channelName, @Nonnull PutRecordsRequestEntry entry, int size);
+
+    /**
+     * @return OversizedRecordHandler that is rejecting all oversized records with a {@link RecordTooLargeException}.
+     */
+    static OversizedRecordHandler rejectOversizedRecords() {
+        return (channelName, entry, size) -> {
+            throw new RecordTooLargeException(
+                    format("Record with partition key '%s' has %d bytes, exceeding the maximum record size of Kinesis channel '%s'", entry.partitionKey(), size, channelName),
+                    size,
+                    KinesisMessageSender.MAX_RECORD_SIZE);
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+public class RecordTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = -3158271453376254921L;
+
+    private final int size;
+    private final int limit;
+
+    public RecordTooLargeException(String message, int size, int limit) {
+        super(message);
+        this.size = size;
+        this.limit = limit;
+    }
+
+    /**
+     * @return the size of the record in bytes, including the partition key.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,86 @@
+package de.otto.synapse.endpoint.kinesis;
+
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord.UserRecord;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class KinesisAggregatedRecordTest {
+
+    @Test
+    public void shouldEncodeAndDecodeUserRecords() {
+        // given
+        final List<UserRecord> userRecords = asList(
+                new UserRecord("first", "{\"foo\":\"bar\"}".getBytes(UTF_8)),
+                new UserRecord("second", "ßome dätä".getBytes(UTF_8)),
+                new UserRecord("first", new byte[0]));
+
+        // when
+        final byte[] aggregated = KinesisAggregatedRecord.encode(userRecords);
+
+        // then
+        assertThat(KinesisAggregatedRecord.isAggregated(ByteBuffer.wrap(aggregated)), is(true));
+        assertThat(KinesisAggregatedRecord.decode(ByteBuffer.wrap(aggregated)), contains(userRecords.toArray()));
+    }
+
+    @Test
+    public void shouldEncodeKplCompatibleFormat() {
+        // when
+        final byte[] aggregated = KinesisAggregatedRecord.encode(asList(
+                new UserRecord("a", "x".getBytes(UTF_8)),
+                new UserRecord("a", "y".getBytes(UTF_8))));
+
+        // then
+        final byte[] expectedMessage = new byte[]{
+                0x0A, 0x01, 'a',                             // partition_key_table: "a"
+                0x1A, 0x05, 0x08, 0x00, 0x1A, 0x01, 'x',     // records: {partition_key_index: 0, data: "x"}
+                0x1A, 0x05, 0x08, 0x00, 0x1A, 0x01, 'y'};    // records: {partition_key_index: 0, data: "y"}
+        assertThat(aggregated.length, is(4 + expectedMessage.length + 16));
+        for (int i = 0; i < expectedMessage.length; i++) {
+            assertThat(aggregated[4 + i], is(expectedMessage[i]));
+        }
+    }
+
+    @Test
+    public void shouldNotDetectRegularRecordsAsAggregated() {
+        assertThat(KinesisAggregatedRecord.isAggregated(ByteBuffer.wrap("{\"foo\":\"bar\"}".getBytes(UTF_8))), is(false));
+        assertThat(KinesisAggregatedRecord.isAggregated(ByteBuffer.wrap(new byte[0])), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectRecordWithInvalidChecksum() {
+        // given
+        final byte[] aggregated = KinesisAggregatedRecord.encode(asList(
+                new UserRecord("a", "x".getBytes(UTF_8)),
+                new UserRecord("b", "y".getBytes(UTF_8))));
+        aggregated[aggregated.length - 1] ^= 0x01;
+
+        // when
+        KinesisAggregatedRecord.decode(ByteBuffer.wrap(aggregated));
+    }
+
+    @Test
+    public void shouldNotUnderestimateEncodedSize() {
+        // given
+        final List<UserRecord> userRecords = asList(
+                new UserRecord("some-partition-key", new byte[300]),
+                new UserRecord("other-partition-key", new byte[20000]));
+
+        // when
+        final byte[] aggregated = KinesisAggregatedRecord.encode(userRecords);
+
+        // then
+        final int estimatedSize = KinesisAggregatedRecord.OVERHEAD
+                + KinesisAggregatedRecord.encodedSize("some-partition-key", 300)
+                + KinesisAggregatedRecord.encodedSize("other-partition-key", 20000);
+        assertThat(aggregated.length, is(lessThanOrEqualTo(estimatedSize)));
+    }
+}
@@ -0,0 +1,176 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class AdaptivePollingStrategyTest {
+
+    private final AdaptivePollingStrategy strategy = AdaptivePollingStrategy.builder()
+            .withMinDelay(ofMillis(0))
+            .withBaseDelay(ofMillis(500))
+            .withMaxDelay(ofSeconds(10))
+            .withCatchUpThreshold(ofSeconds(10))
+            .withJitter(0.0)
+            .build();
+
+    @Test
+    public void shouldPollImmediatelyAfterFullPage() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withRecordCount(100)
+                .withFetchRecordLimit(100)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(Duration.ZERO));
+    }
+
+    @Test
+    public void shouldPollImmediatelyWhileCatchingUp() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withRecordCount(0)
+                .withConsecutiveEmptyPolls(3)
+                .withDurationBehind(ofSeconds(11))
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(Duration.ZERO));
+    }
+
+    @Test
+    public void shouldUseBaseDelayAfterPartialPage() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withRecordCount(5)
+                .withFetchRecordLimit(100)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(ofMillis(500)));
+    }
+
+    @Test
+    public void shouldBackOffExponentiallyOnEmptyPolls() {
+        assertThat(strategy.nextPollDelay(emptyPolls(1)), is(ofMillis(500)));
+        assertThat(strategy.nextPollDelay(emptyPolls(2)), is(ofMillis(1000)));
+        assertThat(strategy.nextPollDelay(emptyPolls(3)), is(ofMillis(2000)));
+        assertThat(strategy.nextPollDelay(emptyPolls(5)), is(ofMillis(8000)));
+    }
+
+    @Test
+    public void shouldLimitBackOffToMaxDelay() {
+        assertThat(strategy.nextPollDelay(emptyPolls(6)), is(ofSeconds(10)));
+        assertThat(strategy.nextPollDelay(emptyPolls(1000)), is(ofSeconds(10)));
+    }
+
+    @Test
+    public void shouldWaitAtLeastOneSecondIfThrottled() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withThrottled(true)
+                .withConsecutiveThrottledPolls(1)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(ofSeconds(1)));
+    }
+
+    @Test
+    public void shouldBackOffExponentiallyIfThrottledRepeatedly() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withThrottled(true)
+                .withConsecutiveThrottledPolls(4)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(ofSeconds(4)));
+    }
+
+    @Test
+    public void shouldNotBackOffThrottledPollsUsingEmptyPolls() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withThrottled(true)
+                .withConsecutiveEmptyPolls(5)
+                .withConsecutiveThrottledPolls(1)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(ofSeconds(1)));
+    }
+
+    @Test
+    public void shouldDelayPollsUntilFetchedBytesCouldHaveBeenRead() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withRecordCount(100)
+                .withFetchRecordLimit(100)
+                .withByteCount(10 * 1024 * 1024)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(ofSeconds(5)));
+    }
+
+    @Test
+    public void shouldUseBaseDelayIfFetchedBytesAreReadFaster() {
+        // given
+        final KinesisPollResult pollResult = KinesisPollResult.builder()
+                .withRecordCount(5)
+                .withFetchRecordLimit(100)
+                .withByteCount(1024)
+                .build();
+        // when
+        final Duration delay = strategy.nextPollDelay(pollResult);
+        // then
+        assertThat(delay, is(ofMillis(500)));
+    }
+
+    @Test
+    public void shouldAddJitter() {
+        // given
+        final AdaptivePollingStrategy strategyWithJitter = AdaptivePollingStrategy.builder()
+                .withBaseDelay(ofMillis(1000))
+                .withJitter(0.2)
+                .build();
+        // when
+        for (int i = 0; i < 100; ++i) {
+            final Duration delay = strategyWithJitter.nextPollDelay(emptyPolls(1));
+            // then
+            assertThat(delay.toMillis(), is(allOf(greaterThanOrEqualTo(800L), lessThanOrEqualTo(1200L))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMaxDelayLessThanBaseDelay() {
+        AdaptivePollingStrategy.builder()
+                .withBaseDelay(ofSeconds(2))
+                .withMaxDelay(ofSeconds(1))
+                .build();
+    }
+
+    private KinesisPollResult emptyPolls(final int consecutiveEmptyPolls) {
+        return KinesisPollResult.builder()
+                .withRecordCount(0)
+                .withConsecutiveEmptyPolls(consecutiveEmptyPolls)
+                .build();
+    }
+}
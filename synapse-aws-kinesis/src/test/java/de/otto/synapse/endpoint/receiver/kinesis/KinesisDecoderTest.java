@@ -1,18 +1,27 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
+import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord.UserRecord;
+import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
+import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.BinaryEnvelope;
 import org.junit.Test;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.kinesis.model.Record;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import static de.otto.synapse.channel.ShardPosition.fromPosition;
 import static de.otto.synapse.message.DefaultHeaderAttr.MSG_ARRIVAL_TS;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -60,6 +69,27 @@ public class KinesisDecoderTest {
         assertThat(message.getHeader().get("attr"), is("value"));
     }
 
+    @Test
+    public void shouldBuildKinesisMessageV3() {
+        final TextMessage sentMessage = TextMessage.of(Key.of("1", "2"), Header.of(ImmutableMap.of("attr", "value")), "{\"some\":\"payload\"}");
+
+        final Instant now = Instant.now();
+        final Record record = Record.builder()
+                .partitionKey("1")
+                .data(SdkBytes.fromByteArray(BinaryEnvelope.encode(sentMessage)))
+                .approximateArrivalTimestamp(now)
+                .sequenceNumber("00001")
+                .build();
+        final Message<String> message = decoder.apply(new RecordWithShard(
+                "some-shard",
+                record));
+        assertThat(message.getKey(), is(Key.of("1", "2")));
+        assertThat(message.getPayload(), is("{\"some\":\"payload\"}"));
+        assertThat(message.getHeader().getAsInstant(MSG_ARRIVAL_TS), is(now));
+        assertThat(message.getHeader().getShardPosition(), is(Optional.of(fromPosition("some-shard", "00001"))));
+        assertThat(message.getHeader().get("attr"), is("value"));
+    }
+
     @Test
     public void shouldBuildKinesisMessageV2WithCompoundKey() {
         final String json = "{\"_synapse_msg_format\":\"v2\","
@@ -149,4 +179,112 @@ public class KinesisDecoderTest {
         assertThat(message.getHeader().getAsInstant(MSG_ARRIVAL_TS), is(now));
     }
 
+    @Test
+    public void shouldDeaggregateAggregatedRecord() {
+        final Instant now = Instant.now();
+        final byte[] aggregated = KinesisAggregatedRecord.encode(asList(
+                new UserRecord("1", "first".getBytes(UTF_8)),
+                new UserRecord("2", "second".getBytes(UTF_8)),
+                new UserRecord("1", "third".getBytes(UTF_8))));
+        final Record record = Record.builder()
+                .partitionKey("1")
+                .data(SdkBytes.fromByteArray(aggregated))
+                .approximateArrivalTimestamp(now)
+                .sequenceNumber("00001")
+                .build();
+
+        final List<TextMessage> messages = decoder.decodeAll(new RecordWithShard("some-shard", record));
+
+        assertThat(messages, hasSize(3));
+        assertThat(messages.get(0).getKey(), is(Key.of("1")));
+        assertThat(messages.get(0).getPayload(), is("first"));
+        assertThat(messages.get(0).getHeader().getShardPosition(), is(Optional.of(fromPosition("some-shard", "00001:0"))));
+        assertThat(messages.get(0).getHeader().getAsInstant(MSG_ARRIVAL_TS), is(now));
+        assertThat(messages.get(1).getKey(), is(Key.of("2")));
+        assertThat(messages.get(1).getPayload(), is("second"));
+        assertThat(messages.get(1).getHeader().getShardPosition(), is(Optional.of(fromPosition("some-shard", "00001:1"))));
+        assertThat(messages.get(2).getKey(), is(Key.of("1")));
+        assertThat(messages.get(2).getPayload(), is("third"));
+        assertThat(messages.get(2).getHeader().getShardPosition(), is(Optional.of(fromPosition("some-shard", "00001"))));
+    }
+
+    @Test
+    public void shouldDecodeRegularRecordAsSingleMessage() {
+        final Record record = Record.builder()
+                .partitionKey("42")
+                .data(SdkBytes.fromString("some data", UTF_8))
+                .approximateArrivalTimestamp(Instant.now())
+                .sequenceNumber("00001")
+                .build();
+
+        final List<TextMessage> messages = decoder.decodeAll(new RecordWithShard("some-shard", record));
+
+        assertThat(messages, hasSize(1));
+        assertThat(messages.get(0).getPayload(), is("some data"));
+        assertThat(messages.get(0).getHeader().getShardPosition(), is(Optional.of(fromPosition("some-shard", "00001"))));
+    }
+
+    @Test
+    public void shouldDecodeOnlyKeyOfLazyMessages() {
+        final String json = "{\"_synapse_msg_format\":\"v2\","
+                + "\"_synapse_msg_key\":{\"partitionKey\":\"1\",\"compactionKey\":\"2\"},"
+                + "\"_synapse_msg_headers\":{\"attr\":\"value\"},"
+                + "\"_synapse_msg_payload\":{\"some\":\"payload\"}}";
+        final Record record = Record.builder()
+                .partitionKey("1")
+                .data(SdkBytes.fromString(json, UTF_8))
+                .approximateArrivalTimestamp(Instant.now())
+                .sequenceNumber("00001")
+                .build();
+
+        final List<TextMessage> messages = decoder.decodeAllLazily(new RecordWithShard("some-shard", record));
+        final LazyTextMessage message = (LazyTextMessage) messages.get(0);
+
+        assertThat(message.getKey(), is(Key.of("1", "2")));
+        assertThat(message.isDecoded(), is(false));
+        assertThat(message.getHeader().getAsString("attr"), is("value"));
+        assertThat(message.isDecoded(), is(true));
+        assertThat(message, is(decoder.decodeAll(new RecordWithShard("some-shard", record)).get(0)));
+    }
+
+    @Test
+    public void shouldDecodeKeyOfLazyV1AndV3Messages() {
+        final TextMessage sentMessage = TextMessage.of(Key.of("1", "2"), Header.of(), "{}");
+        final Record v1 = Record.builder()
+                .partitionKey("42")
+                .data(SdkBytes.fromString("{\"some\":\"payload\"}", UTF_8))
+                .sequenceNumber("00001")
+                .build();
+        final Record v3 = Record.builder()
+                .partitionKey("1")
+                .data(SdkBytes.fromByteArray(BinaryEnvelope.encode(sentMessage)))
+                .sequenceNumber("00002")
+                .build();
+
+        final LazyTextMessage v1Message = (LazyTextMessage) decoder.decodeAllLazily(new RecordWithShard("some-shard", v1)).get(0);
+        final LazyTextMessage v3Message = (LazyTextMessage) decoder.decodeAllLazily(new RecordWithShard("some-shard", v3)).get(0);
+
+        assertThat(v1Message.getKey(), is(Key.of("42")));
+        assertThat(v3Message.getKey(), is(Key.of("1", "2")));
+        assertThat(v1Message.isDecoded(), is(false));
+        assertThat(v3Message.isDecoded(), is(false));
+    }
+
+    @Test
+    public void shouldDeaggregateAggregatedRecordLazily() {
+        final byte[] aggregated = KinesisAggregatedRecord.encode(asList(
+                new UserRecord("1", "first".getBytes(UTF_8)),
+                new UserRecord("2", "second".getBytes(UTF_8))));
+        final Record record = Record.builder()
+                .partitionKey("1")
+                .data(SdkBytes.fromByteArray(aggregated))
+                .approximateArrivalTimestamp(Instant.now())
+                .sequenceNumber("00001")
+                .build();
+
+        final List<TextMessage> messages = decoder.decodeAllLazily(new RecordWithShard("some-shard", record));
+
+        assertThat(messages, is(decoder.decodeAll(new RecordWithShard("some-shard", record))));
+        assertThat(messages.get(1).getHeader().getShardPosition(), is(Optional.of(fromPosition("some-shard", "00001"))));
+    }
 }
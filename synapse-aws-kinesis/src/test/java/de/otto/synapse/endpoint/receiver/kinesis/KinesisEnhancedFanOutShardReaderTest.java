@@ -0,0 +1,360 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.ShardResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.LimitExceededException;
+import software.amazon.awssdk.services.kinesis.model.Record;
+import software.amazon.awssdk.services.kinesis.model.ResourceInUseException;
+import software.amazon.awssdk.services.kinesis.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardEvent;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardEventStream;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardRequest;
+import software.amazon.awssdk.services.kinesis.model.SubscribeToShardResponseHandler;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static de.otto.synapse.channel.ShardPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.channel.StopCondition.emptyResponse;
+import static de.otto.synapse.channel.StopCondition.shutdown;
+import static de.otto.synapse.endpoint.receiver.kinesis.KinesisEnhancedFanOutShardReader.isRetryable;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.AFTER_SEQUENCE_NUMBER;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.TRIM_HORIZON;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KinesisEnhancedFanOutShardReaderTest {
+
+    @Mock
+    private KinesisAsyncClient kinesisClient;
+
+    @Mock
+    private Consumer<ShardResponse> consumer;
+
+    private ExecutorService executorService;
+    private KinesisEnhancedFanOutShardReader shardReader;
+
+    @Before
+    public void setUp() {
+        executorService = newSingleThreadExecutor();
+        shardReader = new KinesisEnhancedFanOutShardReader("someChannel", "someShard", "someConsumerArn", kinesisClient, executorService);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldSubscribeToShardFromHorizon() throws Exception {
+        // given
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(publishing(event()));
+
+        // when
+        shardReader.consumeUntil(fromHorizon("someShard"), emptyResponse(), consumer).get(1, TimeUnit.SECONDS);
+
+        // then
+        final ArgumentCaptor<SubscribeToShardRequest> requestCaptor = ArgumentCaptor.forClass(SubscribeToShardRequest.class);
+        verify(kinesisClient).subscribeToShard(requestCaptor.capture(), any(SubscribeToShardResponseHandler.class));
+        final SubscribeToShardRequest request = requestCaptor.getValue();
+        assertThat(request.consumerARN(), is("someConsumerArn"));
+        assertThat(request.shardId(), is("someShard"));
+        assertThat(request.startingPosition().type(), is(TRIM_HORIZON));
+    }
+
+    @Test
+    public void shouldConsumeEventsUntilStopCondition() throws Exception {
+        // given
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(publishing(event(record("1"), record("2")), event(record("3")), event(), event(record("4"))));
+
+        // when
+        final ShardPosition shardPosition = shardReader
+                .consumeUntil(fromHorizon("someShard"), emptyResponse(), consumer)
+                .get(1, TimeUnit.SECONDS);
+
+        // then
+        final ArgumentCaptor<ShardResponse> responseCaptor = ArgumentCaptor.forClass(ShardResponse.class);
+        verify(consumer, times(3)).accept(responseCaptor.capture());
+        final List<ShardResponse> responses = responseCaptor.getAllValues();
+        assertThat(responses.get(0).getMessages(), hasSize(2));
+        assertThat(responses.get(0).getShardPosition(), is(fromPosition("someShard", "2")));
+        assertThat(responses.get(1).getMessages().get(0).getKey().partitionKey(), is("3"));
+        assertThat(responses.get(2).getMessages(), hasSize(0));
+        assertThat(shardPosition, is(fromPosition("someShard", "3")));
+    }
+
+    @Test
+    public void shouldResubscribeAtContinuationSequenceNumberWhenSubscriptionIsCompleted() throws Exception {
+        // given
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(publishing(event(record("1")).toBuilder().continuationSequenceNumber("3").build()))
+                .thenAnswer(publishing(event()));
+
+        // when
+        final ShardPosition shardPosition = shardReader
+                .consumeUntil(fromHorizon("someShard"), emptyResponse(), consumer)
+                .get(1, TimeUnit.SECONDS);
+
+        // then
+        final ArgumentCaptor<SubscribeToShardRequest> requestCaptor = ArgumentCaptor.forClass(SubscribeToShardRequest.class);
+        verify(kinesisClient, times(2)).subscribeToShard(requestCaptor.capture(), any(SubscribeToShardResponseHandler.class));
+        final SubscribeToShardRequest secondRequest = requestCaptor.getAllValues().get(1);
+        assertThat(secondRequest.startingPosition().type(), is(AFTER_SEQUENCE_NUMBER));
+        assertThat(secondRequest.startingPosition().sequenceNumber(), is("3"));
+        assertThat(shardPosition, is(fromPosition("someShard", "1")));
+    }
+
+    @Test
+    public void shouldResubscribeAfterRetryableSubscriptionError() throws Exception {
+        // given
+        final CompletableFuture<Void> failedSubscription = new CompletableFuture<>();
+        failedSubscription.completeExceptionally(ResourceInUseException.builder().message("forced test exception").build());
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenReturn(failedSubscription)
+                .thenAnswer(publishing(event(record("1")), event()));
+
+        // when
+        final ShardPosition shardPosition = shardReader
+                .consumeUntil(fromHorizon("someShard"), emptyResponse(), consumer)
+                .get(5, TimeUnit.SECONDS);
+
+        // then
+        final ArgumentCaptor<SubscribeToShardRequest> requestCaptor = ArgumentCaptor.forClass(SubscribeToShardRequest.class);
+        verify(kinesisClient, times(2)).subscribeToShard(requestCaptor.capture(), any(SubscribeToShardResponseHandler.class));
+        assertThat(requestCaptor.getAllValues().get(1).startingPosition().type(), is(TRIM_HORIZON));
+        verify(consumer, times(2)).accept(any(ShardResponse.class));
+        assertThat(shardPosition, is(fromPosition("someShard", "1")));
+        assertThat(shardReader.isStopping(), is(false));
+    }
+
+    @Test
+    public void shouldOnlyRetryRetryableErrors() {
+        assertThat(isRetryable(ResourceInUseException.builder().build()), is(true));
+        assertThat(isRetryable(LimitExceededException.builder().build()), is(true));
+        assertThat(isRetryable(new CompletionException(SdkClientException.builder().message("connection reset").build())), is(true));
+        assertThat(isRetryable(new CompletionException(new IOException("connection reset"))), is(true));
+        assertThat(isRetryable(ResourceNotFoundException.builder().build()), is(false));
+        assertThat(isRetryable(new IllegalStateException("some error")), is(false));
+    }
+
+    @Test
+    public void shouldStopConsumptionOnStopSignal() {
+        // given
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(publishing());
+
+        // when
+        final CompletableFuture<ShardPosition> futureShardPosition = shardReader.consumeUntil(fromPosition("someShard", "42"), shutdown(), consumer);
+        await().atMost(1, TimeUnit.SECONDS).until(() -> subscriptionCount() > 0);
+        shardReader.stop();
+
+        // then
+        await().atMost(1, TimeUnit.SECONDS).until(futureShardPosition::isDone);
+        assertThat(futureShardPosition.join(), is(fromPosition("someShard", "42")));
+    }
+
+    @Test
+    public void shouldStopReaderIfSubscriptionFails() {
+        // given
+        final CompletableFuture<Void> failedSubscription = new CompletableFuture<>();
+        failedSubscription.completeExceptionally(new IllegalStateException("forced test exception"));
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenReturn(failedSubscription);
+
+        // when
+        final CompletableFuture<ShardPosition> futureShardPosition = shardReader.consumeUntil(fromHorizon("someShard"), shutdown(), consumer);
+
+        // then
+        try {
+            futureShardPosition.get(1, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("forced test exception"));
+        } catch (final Exception e) {
+            throw new AssertionError(e);
+        }
+        assertThat(shardReader.isStopping(), is(true));
+    }
+
+    @Test
+    public void shouldStopReaderIfConsumerFails() {
+        // given
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(publishing(event(record("1"))));
+        final Consumer<ShardResponse> failingConsumer = response -> {
+            throw new IllegalStateException("forced test exception");
+        };
+
+        // when
+        final CompletableFuture<ShardPosition> futureShardPosition = shardReader.consumeUntil(fromHorizon("someShard"), shutdown(), failingConsumer);
+
+        // then
+        await().atMost(1, TimeUnit.SECONDS).until(futureShardPosition::isDone);
+        assertThat(futureShardPosition.isCompletedExceptionally(), is(true));
+        assertThat(shardReader.isStopping(), is(true));
+    }
+
+    @Test
+    public void shouldStopAtEndOfClosedShard() throws Exception {
+        // given
+        final SubscribeToShardEvent lastEvent = event(record("1"))
+                .toBuilder()
+                .continuationSequenceNumber(null)
+                .build();
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(publishing(lastEvent, event(record("2"))));
+
+        // when
+        final ShardPosition shardPosition = shardReader
+                .consumeUntil(fromHorizon("someShard"), shutdown(), consumer)
+                .get(1, TimeUnit.SECONDS);
+
+        // then
+        verify(consumer).accept(any(ShardResponse.class));
+        assertThat(shardPosition, is(fromPosition("someShard", "1")));
+        assertThat(shardReader.isEndOfShard(), is(true));
+    }
+
+    @Test
+    public void shouldNotConsumeEventsOnEventLoopThread() throws Exception {
+        // given
+        when(kinesisClient.subscribeToShard(any(SubscribeToShardRequest.class), any(SubscribeToShardResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    final Thread eventLoop = new Thread(() -> {
+                        try {
+                            publishing(event(record("1")), event()).answer(invocation);
+                        } catch (final Throwable e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }, "someEventLoop");
+                    eventLoop.start();
+                    return new CompletableFuture<>();
+                });
+        final List<String> consumingThreads = new CopyOnWriteArrayList<>();
+
+        // when
+        shardReader
+                .consumeUntil(fromHorizon("someShard"), emptyResponse(), response -> consumingThreads.add(Thread.currentThread().getName()))
+                .get(1, TimeUnit.SECONDS);
+
+        // then
+        assertThat(consumingThreads, hasSize(2));
+        assertThat(consumingThreads, not(hasItem("someEventLoop")));
+    }
+
+    private final List<EventPublisher> publishers = new ArrayList<>();
+
+    private int subscriptionCount() {
+        synchronized (publishers) {
+            return publishers.size();
+        }
+    }
+
+    private Answer<CompletableFuture<Void>> publishing(final SubscribeToShardEventStream... events) {
+        return invocation -> {
+            final SubscribeToShardResponseHandler handler = invocation.getArgument(1);
+            final EventPublisher publisher = new EventPublisher(asList(events), events.length > 0);
+            synchronized (publishers) {
+                publishers.add(publisher);
+            }
+            handler.onEventStream(SdkPublisher.adapt(publisher));
+            return new CompletableFuture<>();
+        };
+    }
+
+    private static SubscribeToShardEvent event(final Record... records) {
+        return SubscribeToShardEvent.builder()
+                .records(records.length > 0 ? asList(records) : emptyList())
+                .millisBehindLatest(0L)
+                .continuationSequenceNumber(records.length > 0 ? records[records.length - 1].sequenceNumber() : "42")
+                .build();
+    }
+
+    private static Record record(final String sequenceNumber) {
+        return Record.builder()
+                .sequenceNumber(sequenceNumber)
+                .partitionKey(sequenceNumber)
+                .approximateArrivalTimestamp(Instant.now())
+                .data(SdkBytes.fromUtf8String("{\"data\":\"" + sequenceNumber + "\"}"))
+                .build();
+    }
+
+    /**
+     * Publishes the given events on request. If completeStream is true, the stream is completed after the
+     * last event, otherwise the subscription stays open until it is cancelled.
+     */
+    private static class EventPublisher implements Publisher<SubscribeToShardEventStream> {
+        private final Iterator<SubscribeToShardEventStream> events;
+        private final boolean completeStream;
+
+        private EventPublisher(final List<SubscribeToShardEventStream> events, final boolean completeStream) {
+            this.events = events.iterator();
+            this.completeStream = completeStream;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super SubscribeToShardEventStream> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private boolean cancelled = false;
+                private boolean completed = false;
+
+                @Override
+                public void request(final long n) {
+                    if (cancelled || completed) {
+                        return;
+                    }
+                    if (events.hasNext()) {
+                        subscriber.onNext(events.next());
+                    } else if (completeStream) {
+                        completed = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+}
@@ -75,7 +75,7 @@ public class KinesisMessageLogReaderTest {
         logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
 
         // when
-        List<KinesisShardReader> shards = logReader.getCurrentKinesisShards();
+        List<ShardReader> shards = logReader.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(0));
@@ -88,13 +88,37 @@ public class KinesisMessageLogReaderTest {
         logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
 
         // when
-        List<KinesisShardReader> shards = logReader.getCurrentKinesisShards();
+        List<ShardReader> shards = logReader.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(1));
         assertThat(shards.get(0).getShardName(), is("shard1"));
     }
 
+    @Test
+    public void shouldUseEnhancedFanOutShardReadersIfConsumerNameIsConfigured() {
+        // given
+        describeStreamResponse(of(someShard("shard1", true)));
+        when(kinesisClient.registerStreamConsumer(any(RegisterStreamConsumerRequest.class))).thenReturn(completedFuture(RegisterStreamConsumerResponse.builder()
+                .consumer(software.amazon.awssdk.services.kinesis.model.Consumer.builder()
+                        .consumerName("someConsumer")
+                        .consumerARN("someConsumerArn")
+                        .consumerStatus(ConsumerStatus.ACTIVE)
+                        .build())
+                .build()));
+        logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock, KinesisReceiverSettings.builder()
+                .withEnhancedFanOut("someConsumer")
+                .build());
+
+        // when
+        List<ShardReader> shards = logReader.getCurrentKinesisShards();
+
+        // then
+        assertThat(shards, hasSize(1));
+        assertThat(shards.get(0), is(instanceOf(KinesisEnhancedFanOutShardReader.class)));
+        assertThat(((KinesisEnhancedFanOutShardReader) shards.get(0)).getConsumerArn(), is("someConsumerArn"));
+    }
+
     @Test
     public void shouldGetOpenShards() {
         // given
@@ -124,7 +148,7 @@ public class KinesisMessageLogReaderTest {
         logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
 
         // when
-        List<KinesisShardReader> shards = logReader.getCurrentKinesisShards();
+        List<ShardReader> shards = logReader.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(2));
@@ -146,7 +170,7 @@ public class KinesisMessageLogReaderTest {
         logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
 
         // when
-        List<KinesisShardReader> shards = logReader.getCurrentKinesisShards();
+        List<ShardReader> shards = logReader.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(4));
@@ -170,7 +194,7 @@ public class KinesisMessageLogReaderTest {
         logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
 
         // when
-        List<KinesisShardReader> shards = logReader.getCurrentKinesisShards();
+        List<ShardReader> shards = logReader.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(2));
@@ -477,6 +501,73 @@ public class KinesisMessageLogReaderTest {
         verify(responseConsumer, times(8)).accept(responseArgumentCaptor.capture());
     }
 
+    @Test
+    public void shouldConsumeParentShardBeforeChildShards() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                of(
+                        someShard("shard1", false),
+                        someChildShard("shard2", "shard1"),
+                        someChildShard("shard3", "shard1"))
+        );
+        describeRecordsForClosedShard("shard1");
+        describeRecordsForShard("shard2", true);
+        describeRecordsForShard("shard3", true);
+        logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
+
+        // when
+        final ChannelPosition channelPosition = logReader.consumeUntil(fromHorizon(), shutdown(), responseConsumer).get();
+
+        // then
+        verify(responseConsumer, times(9)).accept(responseArgumentCaptor.capture());
+        final List<ShardResponse> responses = responseArgumentCaptor.getAllValues();
+        assertThat(responses.get(0).getShardName(), is("shard1"));
+        assertThat(responses.stream().skip(1).map(ShardResponse::getShardName).collect(toSet()), containsInAnyOrder("shard2", "shard3"));
+        assertThat(channelPosition.shards(), containsInAnyOrder("shard1", "shard2", "shard3"));
+    }
+
+    @Test
+    public void shouldNotConsumeParentShardThatWasDrainedBefore() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                of(
+                        someShard("shard1", false),
+                        someChildShard("shard2", "shard1"))
+        );
+        describeRecordsForShard("shard2", true);
+        logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
+
+        // when
+        final ChannelPosition channelPosition = logReader.consumeUntil(channelPosition(fromPosition("shard2", "42")), shutdown(), responseConsumer).get();
+
+        // then
+        verify(kinesisClient, never()).getShardIterator(argThat((GetShardIteratorRequest request) -> request != null && request.shardId().equals("shard1")));
+        assertThat(channelPosition.shards(), containsInAnyOrder("shard2"));
+    }
+
+    @Test
+    public void shouldDiscoverChildShardsIfShardIsClosedWhileConsuming() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                of(
+                        someShard("shard1", true))
+        );
+        when(kinesisClient.listShards(any(ListShardsRequest.class))).thenReturn(completedFuture(ListShardsResponse.builder()
+                .shards(someShard("shard1", false), someChildShard("shard2", "shard1"))
+                .build()));
+        describeRecordsForClosedShard("shard1");
+        describeRecordsForShard("shard2", true);
+        logReader = new KinesisMessageLogReader("channelName", kinesisClient, executorService, clock);
+
+        // when
+        final ChannelPosition channelPosition = logReader.consumeUntil(fromHorizon(), shutdown(), responseConsumer).get();
+
+        // then
+        verify(responseConsumer, times(5)).accept(responseArgumentCaptor.capture());
+        assertThat(channelPosition.shards(), contains("shard1", "shard2"));
+        assertThat(logReader.getOpenShards(), containsInAnyOrder("shard2"));
+    }
+
     private Shard someShard(String shardId, boolean open) {
         return Shard.builder()
                 .shardId(shardId)
@@ -487,6 +578,13 @@ public class KinesisMessageLogReaderTest {
                 .build();
     }
 
+    private Shard someChildShard(String shardId, String parentShardId) {
+        return someShard(shardId, true)
+                .toBuilder()
+                .parentShardId(parentShardId)
+                .build();
+    }
+
     private void describeStreamResponse(List<Shard> shards) {
         DescribeStreamResponse response = createResponseForShards(shards, false);
 
@@ -541,6 +639,22 @@ public class KinesisMessageLogReaderTest {
                         completedFuture(response3));
     }
 
+    private void describeRecordsForClosedShard(final String shardName) {
+        when(kinesisClient
+                .getShardIterator(argThat((GetShardIteratorRequest req1) -> req1 != null && req1.shardId().equals(shardName))))
+                .thenReturn(completedFuture(GetShardIteratorResponse.builder().shardIterator(shardName + "-iter").build()));
+
+        // Kinesis does not return a next shard iterator after the last record of a closed shard:
+        GetRecordsResponse lastResponse = GetRecordsResponse.builder()
+                .records(createRecord("red"))
+                .millisBehindLatest(0L)
+                .nextShardIterator(null)
+                .build();
+
+        when(kinesisClient.getRecords(argThat((GetRecordsRequest req) -> isShardIter(shardName, req))))
+                .thenReturn(completedFuture(lastResponse));
+    }
+
     private boolean isShardIter(String shardName, GetRecordsRequest req) {
         return req != null && req.shardIterator().contains(shardName) && !req.shardIterator().contains("failing");
     }
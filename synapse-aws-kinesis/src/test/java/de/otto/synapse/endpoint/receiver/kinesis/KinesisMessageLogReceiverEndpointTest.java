@@ -3,6 +3,7 @@ package de.otto.synapse.endpoint.receiver.kinesis;
 import com.google.common.collect.ImmutableList;
 import de.otto.synapse.channel.ChannelPosition;
 import de.otto.synapse.consumer.MessageConsumer;
+import de.otto.synapse.endpoint.BatchMessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.info.MessageReceiverNotification;
@@ -78,7 +79,7 @@ public class KinesisMessageLogReceiverEndpointTest {
         kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("channelName", new MessageInterceptorRegistry(), kinesisClient, executorService, null);
 
         // when
-        List<KinesisShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
+        List<ShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(0));
@@ -91,7 +92,7 @@ public class KinesisMessageLogReceiverEndpointTest {
         kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("channelName", new MessageInterceptorRegistry(), kinesisClient, executorService, null);
 
         // when
-        List<KinesisShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
+        List<ShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(1));
@@ -109,7 +110,7 @@ public class KinesisMessageLogReceiverEndpointTest {
         kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("channelName", new MessageInterceptorRegistry(), kinesisClient, executorService, null);
 
         // when
-        List<KinesisShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
+        List<ShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(2));
@@ -130,7 +131,7 @@ public class KinesisMessageLogReceiverEndpointTest {
         kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("channelName", new MessageInterceptorRegistry(), kinesisClient, executorService, null);
 
         // when
-        List<KinesisShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
+        List<ShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(4));
@@ -153,7 +154,7 @@ public class KinesisMessageLogReceiverEndpointTest {
         kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("channelName", new MessageInterceptorRegistry(), kinesisClient, executorService, null);
 
         // when
-        List<KinesisShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
+        List<ShardReader> shards = kinesisMessageLog.getCurrentKinesisShards();
 
         // then
         assertThat(shards, hasSize(2));
@@ -211,6 +212,29 @@ public class KinesisMessageLogReceiverEndpointTest {
     }
 
 
+    @Test
+    public void shouldConsumeAllMessagesFromMultipleShardsInParallel() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                ImmutableList.of(
+                        someShard("shard1", true),
+                        someShard("shard2", true))
+        );
+        describeRecordsForShard("shard1", true);
+        describeRecordsForShard("shard2", true);
+
+        kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("channelName", new MessageInterceptorRegistry(), kinesisClient, executorService, null);
+        kinesisMessageLog.getMessageDispatcher().setConcurrency(4);
+        kinesisMessageLog.register(messageConsumer);
+
+        // when
+        final ChannelPosition finalChannelPosition = kinesisMessageLog.consume(fromHorizon()).get();
+
+        // then
+        verify(messageConsumer, times(6)).accept(messageArgumentCaptor.capture());
+        assertThat(finalChannelPosition.shards(), containsInAnyOrder("shard1", "shard2"));
+    }
+
     @Test
     public void shouldInterceptMessages() throws ExecutionException, InterruptedException {
         // given
@@ -247,6 +271,38 @@ public class KinesisMessageLogReceiverEndpointTest {
         assertThat(finalChannelPosition.shard("shard1").position(), is("2"));
     }
 
+    @Test
+    public void shouldInterceptShardResponsesWithBatchInterceptor() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                ImmutableList.of(
+                        someShard("shard1", true)));
+        describeRecordsForShard("shard1", true);
+
+        final MessageInterceptorRegistry registry = new MessageInterceptorRegistry();
+        kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("testStream", registry, kinesisClient, executorService, null);
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final BatchMessageInterceptor interceptor = messages -> {
+            batchSizes.add(messages.size());
+            return messages.subList(1, messages.size());
+        };
+
+        registry.register(matchingReceiverChannelsWith("testStream", interceptor));
+        kinesisMessageLog.register(messageConsumer);
+
+        // when
+        final ChannelPosition finalChannelPosition = kinesisMessageLog.consume(fromHorizon()).get();
+
+        // then
+        assertThat(batchSizes, contains(1, 2));
+
+        verify(messageConsumer).accept(messageArgumentCaptor.capture());
+        List<Message<String>> messages = messageArgumentCaptor.getAllValues();
+
+        assertThat(messages.get(0).getPayload(), is("{\"data\":\"green\"}"));
+        assertThat(finalChannelPosition.shard("shard1").position(), is("2"));
+    }
+
     @Test
     public void shouldNotConsumeMessagesDroppedByInterceptor() throws ExecutionException, InterruptedException {
         // given
@@ -274,7 +330,10 @@ public class KinesisMessageLogReceiverEndpointTest {
         // then
         verify(interceptor, atLeast(3)).intercept(any(TextMessage.class));
 
-        verifyZeroInteractions(messageConsumer);
+        // the key pattern and payload projection are resolved on registration:
+        verify(messageConsumer).keyPattern();
+        verify(messageConsumer).payloadProjection();
+        verifyNoMoreInteractions(messageConsumer);
         List<Message<String>> messages = messageArgumentCaptor.getAllValues();
 
         assertThat(messages, is(empty()));
@@ -434,9 +493,8 @@ public class KinesisMessageLogReceiverEndpointTest {
         DescribeStreamResponse secondResponse = createResponseForShards(secondShardBatch, false);
 
         when(kinesisClient.describeStream(any(DescribeStreamRequest.class)))
-                .thenReturn(
-                        completedFuture(firstResponse),
-                        completedFuture(secondResponse));
+                .thenReturn(completedFuture(firstResponse))
+                .thenReturn(completedFuture(secondResponse));
     }
 
     private void describeRecordsForShard(final String shardName, boolean withPoison) {
@@ -470,11 +528,10 @@ public class KinesisMessageLogReceiverEndpointTest {
                 .thenThrow(new RuntimeException("boo!"));
 
         when(kinesisClient.getRecords(argThat((GetRecordsRequest req) -> isShardIter(shardName, req))))
-                .thenReturn(
-                        completedFuture(response0),
-                        completedFuture(response1),
-                        completedFuture(response2),
-                        completedFuture(response3));
+                .thenReturn(completedFuture(response0))
+                .thenReturn(completedFuture(response1))
+                .thenReturn(completedFuture(response2))
+                .thenReturn(completedFuture(response3));
     }
 
     private boolean isShardIter(String shardName, GetRecordsRequest req) {
@@ -517,4 +574,67 @@ public class KinesisMessageLogReceiverEndpointTest {
         return record;
     }
 
+    @Test
+    public void shouldSkipUnconsumedMessagesIfInterceptorsAreSideEffectFree() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                ImmutableList.of(
+                        someShard("shard1", true)));
+        describeRecordsForShard("shard1", true);
+        when(messageConsumer.keyPattern()).thenReturn(Pattern.compile("green"));
+
+        final MessageInterceptorRegistry registry = new MessageInterceptorRegistry();
+        kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("testStream", registry, kinesisClient, executorService, null);
+        // no lambda used in order to make Mockito happy...
+        final MessageInterceptor interceptor = spy(new MessageInterceptor() {
+            @Override
+            public TextMessage intercept(TextMessage message) {
+                return message;
+            }
+
+            @Override
+            public boolean isSideEffectFree() {
+                return true;
+            }
+        });
+        registry.register(matchingReceiverChannelsWith("testStream", interceptor));
+        kinesisMessageLog.register(messageConsumer);
+
+        // when
+        kinesisMessageLog.consume(fromHorizon()).get();
+
+        // then
+        verify(interceptor, times(1)).intercept(any(TextMessage.class));
+        verify(messageConsumer, times(1)).accept(messageArgumentCaptor.capture());
+        assertThat(messageArgumentCaptor.getValue().getPayload(), is("{\"data\":\"green\"}"));
+    }
+
+    @Test
+    public void shouldInterceptUnconsumedMessagesIfInterceptorsHaveSideEffects() throws ExecutionException, InterruptedException {
+        // given
+        describeStreamResponse(
+                ImmutableList.of(
+                        someShard("shard1", true)));
+        describeRecordsForShard("shard1", true);
+        when(messageConsumer.keyPattern()).thenReturn(Pattern.compile("green"));
+
+        final MessageInterceptorRegistry registry = new MessageInterceptorRegistry();
+        kinesisMessageLog = new KinesisMessageLogReceiverEndpoint("testStream", registry, kinesisClient, executorService, null);
+        // no lambda used in order to make Mockito happy...
+        final MessageInterceptor interceptor = spy(new MessageInterceptor() {
+            @Override
+            public TextMessage intercept(TextMessage message) {
+                return message;
+            }
+        });
+        registry.register(matchingReceiverChannelsWith("testStream", interceptor));
+        kinesisMessageLog.register(messageConsumer);
+
+        // when
+        kinesisMessageLog.consume(fromHorizon()).get();
+
+        // then
+        verify(interceptor, times(3)).intercept(any(TextMessage.class));
+        verify(messageConsumer, times(1)).accept(any());
+    }
 }
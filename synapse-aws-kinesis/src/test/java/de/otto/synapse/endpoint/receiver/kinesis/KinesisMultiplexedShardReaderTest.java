@@ -0,0 +1,127 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.ShardResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import static de.otto.synapse.channel.ShardPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.channel.StopCondition.shutdown;
+import static java.time.Instant.now;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KinesisMultiplexedShardReaderTest {
+
+    @Mock
+    private KinesisAsyncClient kinesisClient;
+
+    @Mock
+    private Consumer<ShardResponse> firstConsumer;
+
+    @Mock
+    private Consumer<ShardResponse> secondConsumer;
+
+    private ExecutorService executorService;
+    private KinesisShardMultiplexer multiplexer;
+
+    @Before
+    public void setUp() {
+        executorService = newFixedThreadPool(2);
+        multiplexer = new KinesisShardMultiplexer(16);
+        when(kinesisClient.getShardIterator(any(GetShardIteratorRequest.class))).thenReturn(completedFuture(GetShardIteratorResponse.builder()
+                .shardIterator("someShardIterator")
+                .build()));
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldConsumeShardWithSeveralReaders() throws ExecutionException, InterruptedException {
+        // given
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(recordsResponse("1", KinesisShardIterator.POISON_SHARD_ITER)));
+        final ShardReader first = multiplexer.newShardReader("someChannel", "someShard", kinesisClient, executorService, noDelay());
+        final ShardReader second = multiplexer.newShardReader("someChannel", "someShard", kinesisClient, executorService, noDelay());
+
+        // when
+        final CompletableFuture<ShardPosition> firstPosition = first.consumeUntil(fromHorizon("someShard"), shutdown(), firstConsumer);
+        final CompletableFuture<ShardPosition> secondPosition = second.consumeUntil(fromHorizon("someShard"), shutdown(), secondConsumer);
+
+        // then
+        assertThat(firstPosition.get(), is(fromPosition("someShard", "1")));
+        assertThat(secondPosition.get(), is(fromPosition("someShard", "1")));
+        verifyConsumedSingleMessage(firstConsumer);
+        verifyConsumedSingleMessage(secondConsumer);
+        assertThat(multiplexer.getSharedShardCount(), is(0));
+    }
+
+    @Test
+    public void shouldStopAtEndOfClosedShard() throws ExecutionException, InterruptedException {
+        // given
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(recordsResponse("1", null)));
+        final ShardReader shardReader = multiplexer.newShardReader("someChannel", "someShard", kinesisClient, executorService, noDelay());
+
+        // when
+        final ShardPosition shardPosition = shardReader.consumeUntil(fromHorizon("someShard"), shutdown(), firstConsumer).get();
+
+        // then
+        assertThat(shardPosition, is(fromPosition("someShard", "1")));
+        assertThat(shardReader.isEndOfShard(), is(true));
+        verifyConsumedSingleMessage(firstConsumer);
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void shouldPropagateException() throws ExecutionException, InterruptedException {
+        // given
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenThrow(RuntimeException.class);
+        final ShardReader shardReader = multiplexer.newShardReader("someChannel", "someShard", kinesisClient, executorService, noDelay());
+
+        // when
+        shardReader.consumeUntil(fromHorizon("someShard"), shutdown(), firstConsumer).get();
+    }
+
+    private void verifyConsumedSingleMessage(final Consumer<ShardResponse> consumer) {
+        final ArgumentCaptor<ShardResponse> responseCaptor = ArgumentCaptor.forClass(ShardResponse.class);
+        verify(consumer).accept(responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getMessages(), hasSize(1));
+    }
+
+    private static KinesisPollingStrategy noDelay() {
+        return pollResult -> Duration.ZERO;
+    }
+
+    private static GetRecordsResponse recordsResponse(final String sequenceNumber, final String nextShardIterator) {
+        return GetRecordsResponse.builder()
+                .records(Record.builder()
+                        .sequenceNumber(sequenceNumber)
+                        .partitionKey(sequenceNumber)
+                        .approximateArrivalTimestamp(now())
+                        .build())
+                .nextShardIterator(nextShardIterator)
+                .millisBehindLatest(0L)
+                .build();
+    }
+}
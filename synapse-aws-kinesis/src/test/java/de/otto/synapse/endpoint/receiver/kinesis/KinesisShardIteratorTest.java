@@ -1,12 +1,15 @@
 package de.otto.synapse.endpoint.receiver.kinesis;
 
 import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord.UserRecord;
 import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.model.*;
 
@@ -15,7 +18,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
 import static de.otto.synapse.channel.ShardPosition.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.Instant.now;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
@@ -26,6 +31,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static software.amazon.awssdk.services.kinesis.model.Record.builder;
+import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.AT_SEQUENCE_NUMBER;
 import static software.amazon.awssdk.services.kinesis.model.ShardIteratorType.TRIM_HORIZON;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -263,6 +269,43 @@ public class KinesisShardIteratorTest {
     }
 
 
+    @Test
+    public void shouldContinueInTheMiddleOfAggregatedRecord() {
+        // given
+        final Record record = Record.builder()
+                .sequenceNumber("42")
+                .approximateArrivalTimestamp(now())
+                .partitionKey("someKey")
+                .data(SdkBytes.fromByteArray(KinesisAggregatedRecord.encode(asList(
+                        new UserRecord("someKey", "first".getBytes(UTF_8)),
+                        new UserRecord("someKey", "second".getBytes(UTF_8)),
+                        new UserRecord("someKey", "third".getBytes(UTF_8))))))
+                .build();
+        final KinesisAsyncClient kinesisClient = someKinesisClient();
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(GetRecordsResponse.builder()
+                .records(record)
+                .nextShardIterator("nextShardIterator")
+                .millisBehindLatest(0L)
+                .build()));
+
+        // when
+        final KinesisShardIterator iterator = new KinesisShardIterator(kinesisClient, "someStream", fromPosition("someShard", "42:0"));
+        final ShardResponse shardResponse = iterator.next();
+
+        // then
+        verify(kinesisClient).getShardIterator(GetShardIteratorRequest.builder()
+                .streamName("someStream")
+                .shardId("someShard")
+                .shardIteratorType(AT_SEQUENCE_NUMBER)
+                .startingSequenceNumber("42")
+                .build());
+        assertThat(shardResponse.getMessages(), hasSize(2));
+        assertThat(shardResponse.getMessages().get(0).getPayload(), is("second"));
+        assertThat(shardResponse.getMessages().get(0).getHeader().getShardPosition().get(), is(fromPosition("someShard", "42:1")));
+        assertThat(shardResponse.getMessages().get(1).getPayload(), is("third"));
+        assertThat(shardResponse.getShardPosition(), is(fromPosition("someShard", "42")));
+    }
+
     private static KinesisAsyncClient someKinesisClient() {
         final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
         when(kinesisClient.getShardIterator(any(GetShardIteratorRequest.class))).thenReturn(completedFuture(GetShardIteratorResponse
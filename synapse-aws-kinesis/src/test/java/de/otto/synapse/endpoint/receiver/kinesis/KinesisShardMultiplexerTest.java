@@ -0,0 +1,196 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.message.TextMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.OngoingStubbing;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.*;
+
+import java.time.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static de.otto.synapse.channel.ShardPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static java.time.Instant.now;
+import static java.util.Arrays.stream;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KinesisShardMultiplexerTest {
+
+    @Mock
+    private KinesisAsyncClient kinesisClient;
+
+    private final Map<String, CompletableFuture<GetRecordsResponse>> pages = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenAnswer(invocation -> {
+            final GetRecordsRequest request = invocation.getArgument(0);
+            return pages.computeIfAbsent(request.shardIterator(), iterator -> new CompletableFuture<>());
+        });
+    }
+
+    @Test
+    public void shouldShareReadsOfSubscriptionsStartingAtSamePosition() {
+        // given
+        givenShardIterators("shared-iterator");
+        final KinesisShardMultiplexer multiplexer = new KinesisShardMultiplexer(16);
+
+        // when
+        final KinesisSharedShard.Subscription first = subscribe(multiplexer);
+        final KinesisSharedShard.Subscription second = subscribe(multiplexer);
+        page("shared-iterator").complete(recordsResponse("shared-iterator-2", "1", "2"));
+
+        // then
+        assertThat(sequenceNumbers(first.take(() -> false)), contains("1", "2"));
+        assertThat(sequenceNumbers(second.take(() -> false)), contains("1", "2"));
+        assertThat(first.isAttached(), is(true));
+        assertThat(second.isAttached(), is(true));
+        verify(kinesisClient, times(1)).getShardIterator(any(GetShardIteratorRequest.class));
+    }
+
+    @Test
+    public void shouldCatchUpSubscriptionStartingBehindSharedReads() {
+        // given
+        givenShardIterators("shared-iterator", "catch-up-iterator");
+        final KinesisShardMultiplexer multiplexer = new KinesisShardMultiplexer(16);
+        final KinesisSharedShard.Subscription first = subscribe(multiplexer);
+        page("shared-iterator").complete(recordsResponse("shared-iterator-2", "1", "2"));
+        first.take(() -> false);
+        page("catch-up-iterator").complete(recordsResponse("catch-up-iterator-2", "1", "2", "3"));
+
+        // when
+        final KinesisSharedShard.Subscription second = subscribe(multiplexer);
+        final ShardResponse caughtUp = second.take(() -> false);
+
+        // then
+        assertThat(sequenceNumbers(caughtUp), contains("1", "2", "3"));
+        assertThat(second.isAttached(), is(true));
+        assertThat(second.getCatchUpPageCount(), is(1L));
+    }
+
+    @Test
+    public void shouldNotDispatchMessagesTwiceAfterCatchingUp() {
+        // given
+        givenShardIterators("shared-iterator", "catch-up-iterator");
+        final KinesisShardMultiplexer multiplexer = new KinesisShardMultiplexer(16);
+        final KinesisSharedShard.Subscription first = subscribe(multiplexer);
+        page("shared-iterator").complete(recordsResponse("shared-iterator-2", "1", "2"));
+        first.take(() -> false);
+        page("catch-up-iterator").complete(recordsResponse("catch-up-iterator-2", "1", "2", "3"));
+        final KinesisSharedShard.Subscription second = subscribe(multiplexer);
+        second.take(() -> false);
+
+        // when
+        page("shared-iterator-2").complete(recordsResponse("shared-iterator-3", "3", "4"));
+
+        // then
+        assertThat(sequenceNumbers(first.take(() -> false)), contains("3", "4"));
+        final ShardResponse shared = second.take(() -> false);
+        assertThat(sequenceNumbers(shared), contains("4"));
+        assertThat(shared.getShardPosition(), is(fromPosition("someShard", "4")));
+        assertThat(second.getSharedPageCount(), is(1L));
+    }
+
+    @Test
+    public void shouldDetachSlowSubscription() {
+        // given
+        givenShardIterators("shared-iterator", "catch-up-iterator");
+        final KinesisShardMultiplexer multiplexer = new KinesisShardMultiplexer(1);
+        final KinesisSharedShard.Subscription fast = subscribe(multiplexer);
+        final KinesisSharedShard.Subscription slow = subscribe(multiplexer);
+        page("shared-iterator").complete(recordsResponse("shared-iterator-2", "1"));
+        fast.take(() -> false);
+
+        // when
+        page("shared-iterator-2").complete(recordsResponse("shared-iterator-3", "2"));
+
+        // then
+        assertThat(sequenceNumbers(fast.take(() -> false)), contains("2"));
+        assertThat(slow.isAttached(), is(false));
+        assertThat(sequenceNumbers(slow.take(() -> false)), contains("1"));
+        page("catch-up-iterator").complete(recordsResponse("catch-up-iterator-2", "2"));
+        assertThat(sequenceNumbers(slow.take(() -> false)), contains("2"));
+        assertThat(slow.isAttached(), is(true));
+    }
+
+    @Test
+    public void shouldRemoveSharedShardWithoutSubscriptions() {
+        // given
+        givenShardIterators("shared-iterator");
+        final KinesisShardMultiplexer multiplexer = new KinesisShardMultiplexer(16);
+        final KinesisSharedShard.Subscription first = subscribe(multiplexer);
+        final KinesisSharedShard.Subscription second = subscribe(multiplexer);
+
+        // when
+        multiplexer.unsubscribe(kinesisClient, "someChannel", "someShard", first);
+        final int sharedShardsAfterFirstUnsubscribe = multiplexer.getSharedShardCount();
+        multiplexer.unsubscribe(kinesisClient, "someChannel", "someShard", second);
+
+        // then
+        assertThat(sharedShardsAfterFirstUnsubscribe, is(1));
+        assertThat(multiplexer.getSharedShardCount(), is(0));
+    }
+
+    private KinesisSharedShard.Subscription subscribe(final KinesisShardMultiplexer multiplexer) {
+        return multiplexer.subscribe(kinesisClient, "someChannel", "someShard", noDelay(), fromHorizon("someShard"));
+    }
+
+    private void givenShardIterators(final String first, final String... more) {
+        OngoingStubbing<CompletableFuture<GetShardIteratorResponse>> stubbing = when(kinesisClient.getShardIterator(any(GetShardIteratorRequest.class)))
+                .thenReturn(shardIteratorResponse(first));
+        for (final String shardIterator : more) {
+            stubbing = stubbing.thenReturn(shardIteratorResponse(shardIterator));
+        }
+    }
+
+    private CompletableFuture<GetShardIteratorResponse> shardIteratorResponse(final String shardIterator) {
+        return completedFuture(GetShardIteratorResponse.builder().shardIterator(shardIterator).build());
+    }
+
+    private CompletableFuture<GetRecordsResponse> page(final String shardIterator) {
+        return pages.computeIfAbsent(shardIterator, iterator -> new CompletableFuture<>());
+    }
+
+    private static List<String> sequenceNumbers(final ShardResponse response) {
+        return response.getMessages()
+                .stream()
+                .map(TextMessage::getHeader)
+                .map(header -> header.getShardPosition().get().position())
+                .collect(toList());
+    }
+
+    private static KinesisPollingStrategy noDelay() {
+        return pollResult -> Duration.ZERO;
+    }
+
+    private static GetRecordsResponse recordsResponse(final String nextShardIterator, final String... sequenceNumbers) {
+        return GetRecordsResponse.builder()
+                .records(stream(sequenceNumbers)
+                        .map(sequenceNumber -> Record.builder()
+                                .sequenceNumber(sequenceNumber)
+                                .partitionKey(sequenceNumber)
+                                .approximateArrivalTimestamp(now())
+                                .build())
+                        .collect(toList()))
+                .nextShardIterator(nextShardIterator)
+                .millisBehindLatest(0L)
+                .build();
+    }
+}
@@ -10,15 +10,19 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.model.*;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
@@ -32,6 +36,7 @@ import static java.time.temporal.ChronoUnit.SECONDS;
 import static java.util.Collections.emptyList;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
@@ -243,6 +248,189 @@ public class KinesisShardReaderTest {
         assertThat(shardPosition.position(), is("42"));
     }
 
+    @Test
+    public void shouldCalculateDelayUsingPollingStrategy() throws ExecutionException, InterruptedException {
+        // given
+        final KinesisPollingStrategy pollingStrategy = mock(KinesisPollingStrategy.class);
+        when(pollingStrategy.nextPollDelay(any(KinesisPollResult.class))).thenReturn(Duration.ZERO);
+        final KinesisShardReader shardReader = new KinesisShardReader("someChannel", "someShard", kinesisClient, executorService, clock, pollingStrategy);
+        final GetRecordsResponse response1 = GetRecordsResponse.builder()
+                .records(Record.builder()
+                        .sequenceNumber("1")
+                        .partitionKey("first")
+                        .approximateArrivalTimestamp(now())
+                        .data(SdkBytes.fromUtf8String("0123456789"))
+                        .build())
+                .nextShardIterator("nextShardIterator")
+                .millisBehindLatest(1234L)
+                .build();
+        final GetRecordsResponse response2 = GetRecordsResponse.builder()
+                .records(emptyList())
+                .nextShardIterator("nextShardIterator")
+                .millisBehindLatest(0L)
+                .build();
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(response1))
+                .thenReturn(completedFuture(response2));
+
+        // when
+        shardReader.consumeUntil(fromHorizon("someShard"), endOfChannel(), consumer).get();
+
+        // then
+        final ArgumentCaptor<KinesisPollResult> pollResultCaptor = ArgumentCaptor.forClass(KinesisPollResult.class);
+        verify(pollingStrategy, atLeastOnce()).nextPollDelay(pollResultCaptor.capture());
+        final KinesisPollResult pollResult = pollResultCaptor.getAllValues().get(0);
+        assertThat(pollResult.getRecordCount(), is(1));
+        assertThat(pollResult.getByteCount(), is(10L));
+        assertThat(pollResult.getDurationBehind(), is(ofMillis(1234L)));
+        assertThat(pollResult.getConsecutiveEmptyPolls(), is(0));
+        assertThat(pollResult.isThrottled(), is(false));
+        assertThat(shardReader.getPollingMetrics().getPolls(), is((long) pollResultCaptor.getAllValues().size()));
+    }
+
+    @Test
+    public void shouldRetryThrottledPolls() throws ExecutionException, InterruptedException {
+        // given
+        final KinesisPollingStrategy pollingStrategy = mock(KinesisPollingStrategy.class);
+        when(pollingStrategy.nextPollDelay(any(KinesisPollResult.class))).thenReturn(Duration.ZERO);
+        final KinesisShardReader shardReader = new KinesisShardReader("someChannel", "someShard", kinesisClient, executorService, clock, pollingStrategy);
+        final CompletableFuture<GetRecordsResponse> throttledResponse = new CompletableFuture<>();
+        throttledResponse.completeExceptionally(ProvisionedThroughputExceededException.builder().message("forced test exception").build());
+        final GetRecordsResponse response = GetRecordsResponse.builder()
+                .records(emptyList())
+                .nextShardIterator("nextShardIterator")
+                .millisBehindLatest(0L)
+                .build();
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(throttledResponse)
+                .thenReturn(completedFuture(response));
+
+        // when
+        final ShardPosition shardPosition = shardReader.consumeUntil(fromHorizon("someShard"), endOfChannel(), consumer).get();
+
+        // then
+        final ArgumentCaptor<KinesisPollResult> pollResultCaptor = ArgumentCaptor.forClass(KinesisPollResult.class);
+        verify(pollingStrategy, atLeastOnce()).nextPollDelay(pollResultCaptor.capture());
+        assertThat(pollResultCaptor.getAllValues().get(0).isThrottled(), is(true));
+        assertThat(pollResultCaptor.getAllValues().get(0).getConsecutiveThrottledPolls(), is(1));
+        assertThat(pollResultCaptor.getAllValues().get(0).getConsecutiveEmptyPolls(), is(0));
+        verify(consumer).accept(any(ShardResponse.class));
+        assertThat(shardPosition, is(fromHorizon("someShard")));
+        assertThat(shardReader.getPollingMetrics().getThrottledPolls(), is(1L));
+    }
+
+    @Test
+    public void shouldFetchNextPageWhileConsumingResponse() throws ExecutionException, InterruptedException {
+        // given
+        final KinesisShardReader shardReader = new KinesisShardReader("someChannel", "someShard", kinesisClient, executorService, clock, noDelay());
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(recordsResponse("1", 1000L)))
+                .thenReturn(completedFuture(recordsResponse("2", 0L)));
+        final CountDownLatch firstResponseConsumed = new CountDownLatch(1);
+        final Consumer<ShardResponse> blockingConsumer = response -> {
+            if (response.getShardPosition().position().equals("1")) {
+                await().atMost(1, TimeUnit.SECONDS).untilAsserted(() -> verify(kinesisClient, atLeast(2)).getRecords(any(GetRecordsRequest.class)));
+                firstResponseConsumed.countDown();
+            }
+        };
+
+        // when
+        final ShardPosition shardPosition = shardReader.consumeUntil(fromHorizon("someShard"), endOfChannel(), blockingConsumer).get();
+
+        // then
+        assertThat(firstResponseConsumed.getCount(), is(0L));
+        assertThat(shardPosition, is(fromPosition("someShard", "2")));
+    }
+
+    @Test
+    public void shouldConsumePrefetchedPagesInOrder() throws ExecutionException, InterruptedException {
+        // given
+        final KinesisShardReader shardReader = new KinesisShardReader("someChannel", "someShard", kinesisClient, executorService, clock, noDelay(), 3);
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(recordsResponse("1", 1000L)))
+                .thenReturn(completedFuture(recordsResponse("2", 1000L)))
+                .thenReturn(completedFuture(recordsResponse("3", 1000L)))
+                .thenReturn(completedFuture(recordsResponse("4", 0L)));
+
+        // when
+        final ShardPosition shardPosition = shardReader.consumeUntil(fromHorizon("someShard"), endOfChannel(), consumer).get();
+
+        // then
+        final ArgumentCaptor<ShardResponse> argumentCaptor = ArgumentCaptor.forClass(ShardResponse.class);
+        verify(consumer, times(4)).accept(argumentCaptor.capture());
+        final List<ShardResponse> responses = argumentCaptor.getAllValues();
+        for (int i = 0; i < 4; i++) {
+            assertThat(responses.get(i).getShardPosition(), is(fromPosition("someShard", String.valueOf(i + 1))));
+        }
+        assertThat(shardPosition, is(fromPosition("someShard", "4")));
+    }
+
+    @Test
+    public void shouldStopFetchingIfPrefetchQueueIsFull() throws ExecutionException, InterruptedException {
+        // given
+        final KinesisShardReader shardReader = new KinesisShardReader("someChannel", "someShard", kinesisClient, executorService, clock, noDelay(), 2);
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(recordsResponse("1", 1000L)));
+        final CountDownLatch consumerBlocked = new CountDownLatch(1);
+        final CountDownLatch releaseConsumer = new CountDownLatch(1);
+        final Consumer<ShardResponse> blockingConsumer = response -> {
+            consumerBlocked.countDown();
+            try {
+                releaseConsumer.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // when
+        final CompletableFuture<ShardPosition> futurePosition = shardReader.consumeUntil(fromHorizon("someShard"), shutdown(), blockingConsumer);
+        consumerBlocked.await(1, TimeUnit.SECONDS);
+        Thread.sleep(100);
+
+        // then
+        // one page is consumed, two pages are waiting in the queue:
+        verify(kinesisClient, times(3)).getRecords(any(GetRecordsRequest.class));
+        shardReader.stop();
+        releaseConsumer.countDown();
+        assertThat(futurePosition.get(), is(fromPosition("someShard", "1")));
+    }
+
+    @Test
+    public void shouldStopAtEndOfClosedShard() throws ExecutionException, InterruptedException {
+        // given
+        final GetRecordsResponse lastResponse = GetRecordsResponse.builder()
+                .records(Record.builder()
+                        .sequenceNumber("1")
+                        .partitionKey("first")
+                        .approximateArrivalTimestamp(now())
+                        .build())
+                .nextShardIterator(null)
+                .millisBehindLatest(0L)
+                .build();
+        when(kinesisClient.getRecords(any(GetRecordsRequest.class))).thenReturn(completedFuture(lastResponse));
+
+        // when
+        final ShardPosition shardPosition = kinesisShardReader.consumeUntil(fromHorizon("someShard"), shutdown(), consumer).get();
+
+        // then
+        verify(consumer).accept(any(ShardResponse.class));
+        verify(kinesisClient).getRecords(any(GetRecordsRequest.class));
+        assertThat(shardPosition, is(fromPosition("someShard", "1")));
+        assertThat(kinesisShardReader.isEndOfShard(), is(true));
+        assertThat(kinesisShardReader.isStopping(), is(false));
+    }
+
+    private static KinesisPollingStrategy noDelay() {
+        return pollResult -> Duration.ZERO;
+    }
+
+    private static GetRecordsResponse recordsResponse(final String sequenceNumber, final long millisBehindLatest) {
+        return GetRecordsResponse.builder()
+                .records(Record.builder()
+                        .sequenceNumber(sequenceNumber)
+                        .partitionKey(sequenceNumber)
+                        .approximateArrivalTimestamp(now())
+                        .build())
+                .nextShardIterator("nextShardIterator")
+                .millisBehindLatest(millisBehindLatest)
+                .build();
+    }
+
     @Test(expected = ExecutionException.class)
     public void shouldPropagateException() throws ExecutionException, InterruptedException {
         // given
@@ -0,0 +1,120 @@
+package de.otto.synapse.endpoint.receiver.kinesis;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KinesisStreamConsumerProviderTest {
+
+    @Mock
+    private KinesisAsyncClient kinesisClient;
+
+    private KinesisStreamConsumerProvider consumerProvider;
+
+    @Before
+    public void setUp() {
+        consumerProvider = new KinesisStreamConsumerProvider(kinesisClient, Duration.ZERO);
+        when(kinesisClient.describeStream(any(DescribeStreamRequest.class))).thenReturn(completedFuture(DescribeStreamResponse.builder()
+                .streamDescription(StreamDescription.builder()
+                        .streamName("someChannel")
+                        .streamARN("someStreamArn")
+                        .shards(emptyList())
+                        .hasMoreShards(false)
+                        .build())
+                .build()));
+    }
+
+    @Test
+    public void shouldRegisterStreamConsumer() {
+        // given
+        when(kinesisClient.registerStreamConsumer(any(RegisterStreamConsumerRequest.class)))
+                .thenReturn(completedFuture(registerResponse(ConsumerStatus.ACTIVE)));
+
+        // when
+        final String consumerArn = consumerProvider.getConsumerArn("someChannel", "someConsumer");
+
+        // then
+        final ArgumentCaptor<RegisterStreamConsumerRequest> requestCaptor = ArgumentCaptor.forClass(RegisterStreamConsumerRequest.class);
+        verify(kinesisClient).registerStreamConsumer(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().streamARN(), is("someStreamArn"));
+        assertThat(requestCaptor.getValue().consumerName(), is("someConsumer"));
+        assertThat(consumerArn, is("someConsumerArn"));
+    }
+
+    @Test
+    public void shouldWaitUntilRegisteredConsumerIsActive() {
+        // given
+        when(kinesisClient.registerStreamConsumer(any(RegisterStreamConsumerRequest.class)))
+                .thenReturn(completedFuture(registerResponse(ConsumerStatus.CREATING)));
+        when(kinesisClient.describeStreamConsumer(any(DescribeStreamConsumerRequest.class)))
+                .thenReturn(completedFuture(describeResponse(ConsumerStatus.CREATING)))
+                .thenReturn(completedFuture(describeResponse(ConsumerStatus.ACTIVE)));
+
+        // when
+        final String consumerArn = consumerProvider.getConsumerArn("someChannel", "someConsumer");
+
+        // then
+        verify(kinesisClient, times(2)).describeStreamConsumer(any(DescribeStreamConsumerRequest.class));
+        assertThat(consumerArn, is("someConsumerArn"));
+    }
+
+    @Test
+    public void shouldUseAlreadyRegisteredConsumer() {
+        // given
+        final CompletableFuture<RegisterStreamConsumerResponse> alreadyRegistered = new CompletableFuture<>();
+        alreadyRegistered.completeExceptionally(ResourceInUseException.builder().message("already registered").build());
+        when(kinesisClient.registerStreamConsumer(any(RegisterStreamConsumerRequest.class)))
+                .thenReturn(alreadyRegistered);
+        when(kinesisClient.describeStreamConsumer(any(DescribeStreamConsumerRequest.class)))
+                .thenReturn(completedFuture(describeResponse(ConsumerStatus.ACTIVE)));
+
+        // when
+        final String consumerArn = consumerProvider.getConsumerArn("someChannel", "someConsumer");
+
+        // then
+        final ArgumentCaptor<DescribeStreamConsumerRequest> requestCaptor = ArgumentCaptor.forClass(DescribeStreamConsumerRequest.class);
+        verify(kinesisClient).describeStreamConsumer(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().streamARN(), is("someStreamArn"));
+        assertThat(requestCaptor.getValue().consumerName(), is("someConsumer"));
+        assertThat(consumerArn, is("someConsumerArn"));
+    }
+
+    private RegisterStreamConsumerResponse registerResponse(final ConsumerStatus status) {
+        return RegisterStreamConsumerResponse.builder()
+                .consumer(Consumer.builder()
+                        .consumerName("someConsumer")
+                        .consumerARN("someConsumerArn")
+                        .consumerStatus(status)
+                        .consumerCreationTimestamp(Instant.now())
+                        .build())
+                .build();
+    }
+
+    private DescribeStreamConsumerResponse describeResponse(final ConsumerStatus status) {
+        return DescribeStreamConsumerResponse.builder()
+                .consumerDescription(ConsumerDescription.builder()
+                        .consumerName("someConsumer")
+                        .consumerARN("someConsumerArn")
+                        .consumerStatus(status)
+                        .streamARN("someStreamArn")
+                        .build())
+                .build();
+    }
+}
@@ -3,15 +3,19 @@ package de.otto.synapse.endpoint.receiver.kinesis;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.model.*;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class KinesisStreamInfoProviderTest {
@@ -77,23 +81,22 @@ public class KinesisStreamInfoProviderTest {
         //given
         when(kinesisAsyncClient
                 .describeStream(any(DescribeStreamRequest.class)))
-                .thenReturn(
-                        completedFuture(DescribeStreamResponse.builder()
-                                .streamDescription(StreamDescription.builder()
-                                        .streamName("someChannelName")
-                                        .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
-                                        .shards(someOpenShard("firstShard"))
-                                        .hasMoreShards(true)
-                                        .build())
-                                .build()),
-                        completedFuture(DescribeStreamResponse.builder()
-                                .streamDescription(StreamDescription.builder()
-                                        .streamName("someChannelName")
-                                        .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
-                                        .shards(someOpenShard("secondShard"))
-                                        .hasMoreShards(false)
-                                        .build())
-                                .build()));
+                .thenReturn(completedFuture(DescribeStreamResponse.builder()
+                        .streamDescription(StreamDescription.builder()
+                                .streamName("someChannelName")
+                                .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
+                                .shards(someOpenShard("firstShard"))
+                                .hasMoreShards(true)
+                                .build())
+                        .build()))
+                .thenReturn(completedFuture(DescribeStreamResponse.builder()
+                        .streamDescription(StreamDescription.builder()
+                                .streamName("someChannelName")
+                                .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
+                                .shards(someOpenShard("secondShard"))
+                                .hasMoreShards(false)
+                                .build())
+                        .build()));
 
         //when
         KinesisStreamInfo kinesisStreamInfo = testee.getStreamInfo("someChannelName");
@@ -111,23 +114,22 @@ public class KinesisStreamInfoProviderTest {
         //given
         when(kinesisAsyncClient
                 .describeStream(any(DescribeStreamRequest.class)))
-                .thenReturn(
-                        completedFuture(DescribeStreamResponse.builder()
-                                .streamDescription(StreamDescription.builder()
-                                        .streamName("someChannelName")
-                                        .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
-                                        .shards(someClosedShard("firstShard"))
-                                        .hasMoreShards(true)
-                                        .build())
-                                .build()),
-                        completedFuture(DescribeStreamResponse.builder()
-                                .streamDescription(StreamDescription.builder()
-                                        .streamName("someChannelName")
-                                        .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
-                                        .shards(someOpenShard("secondShard"))
-                                        .hasMoreShards(false)
-                                        .build())
-                                .build()));
+                .thenReturn(completedFuture(DescribeStreamResponse.builder()
+                        .streamDescription(StreamDescription.builder()
+                                .streamName("someChannelName")
+                                .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
+                                .shards(someClosedShard("firstShard"))
+                                .hasMoreShards(true)
+                                .build())
+                        .build()))
+                .thenReturn(completedFuture(DescribeStreamResponse.builder()
+                        .streamDescription(StreamDescription.builder()
+                                .streamName("someChannelName")
+                                .streamARN("arn:aws:kinesis:eu-central-1:123456789012:stream/someChannelName")
+                                .shards(someOpenShard("secondShard"))
+                                .hasMoreShards(false)
+                                .build())
+                        .build()));
 
         //when
         KinesisStreamInfo kinesisStreamInfo = testee.getStreamInfo("someChannelName");
@@ -140,6 +142,34 @@ public class KinesisStreamInfoProviderTest {
                 new KinesisShardInfo("secondShard", true))));
     }
 
+    @Test
+    public void shouldListShardsIncludingParentShards() {
+        //given
+        when(kinesisAsyncClient
+                .listShards(any(ListShardsRequest.class)))
+                .thenReturn(completedFuture(ListShardsResponse.builder()
+                        .shards(someClosedShard("firstShard"))
+                        .nextToken("someToken")
+                        .build()))
+                .thenReturn(completedFuture(ListShardsResponse.builder()
+                        .shards(someOpenShard("secondShard").toBuilder().parentShardId("firstShard").build())
+                        .build()));
+
+        //when
+        ImmutableList<KinesisShardInfo> shards = testee.listShards("someChannelName");
+
+        //then
+        final ArgumentCaptor<ListShardsRequest> requestCaptor = ArgumentCaptor.forClass(ListShardsRequest.class);
+        verify(kinesisAsyncClient, times(2)).listShards(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(0).streamName(), is("someChannelName"));
+        assertThat(requestCaptor.getAllValues().get(1).streamName(), is(nullValue()));
+        assertThat(requestCaptor.getAllValues().get(1).nextToken(), is("someToken"));
+        assertThat(shards, is(ImmutableList.of(
+                new KinesisShardInfo("firstShard", false),
+                new KinesisShardInfo("secondShard", true, "firstShard", null))));
+        assertThat(shards.get(1).getParentShardNames(), is(ImmutableList.of("firstShard")));
+    }
+
     private Shard someOpenShard(final String shardName) {
         return Shard.builder().shardId(shardName).sequenceNumberRange(SequenceNumberRange.builder().startingSequenceNumber("0").endingSequenceNumber(null).build()).build();
     }
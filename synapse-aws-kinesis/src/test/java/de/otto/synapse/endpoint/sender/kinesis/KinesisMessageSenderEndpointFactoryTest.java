@@ -7,6 +7,8 @@ import de.otto.synapse.endpoint.MessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptorRegistration;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.sender.MessageSenderEndpoint;
+import de.otto.synapse.translator.MessageFormat;
+import de.otto.synapse.translator.PayloadCodec;
 import org.junit.Test;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.model.ListStreamsResponse;
@@ -66,4 +68,30 @@ public class KinesisMessageSenderEndpointFactoryTest {
 
         assertThat(sender.getInterceptorChain().getInterceptors(), contains(interceptor));
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPayloadCodecWithMessageFormatV1() {
+        final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
+        final PayloadCodec payloadCodec = mock(PayloadCodec.class);
+        when(payloadCodec.name()).thenReturn("cbor");
+
+        new KinesisMessageSenderEndpointFactory(new MessageInterceptorRegistry(), kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V1)
+                .withPayloadCodec(payloadCodec)
+                .build());
+    }
+
+    @Test
+    public void shouldAcceptPayloadCodecWithMessageFormatV2() {
+        final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
+        final PayloadCodec payloadCodec = mock(PayloadCodec.class);
+        when(payloadCodec.name()).thenReturn("cbor");
+
+        final KinesisMessageSenderEndpointFactory factory = new KinesisMessageSenderEndpointFactory(new MessageInterceptorRegistry(), kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V2)
+                .withPayloadCodec(payloadCodec)
+                .build());
+
+        assertThat(factory.create("foo-stream"), is(instanceOf(KinesisMessageSender.class)));
+    }
+}
@@ -3,10 +3,16 @@ package de.otto.synapse.endpoint.sender.kinesis;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
+import de.otto.synapse.message.Header;
+import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.BinaryEnvelope;
+import de.otto.synapse.translator.CompressionCodecs;
 import de.otto.synapse.translator.MessageFormat;
 import de.otto.synapse.translator.MessageTranslator;
+import de.otto.synapse.translator.TextCompression;
+import de.otto.synapse.translator.TextDecoder;
 import de.otto.synapse.translator.TextMessageTranslator;
 import org.junit.Before;
 import org.junit.Test;
@@ -24,6 +30,9 @@ import software.amazon.awssdk.services.kinesis.model.PutRecordsResultEntry;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -31,10 +40,14 @@ import static de.otto.synapse.endpoint.MessageInterceptorRegistration.matchingSe
 import static de.otto.synapse.message.Message.message;
 import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
 import static java.lang.String.valueOf;
+import static java.util.Collections.singletonList;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -229,6 +242,147 @@ public class KinesisMessageSenderV1Test {
         assertThat(putRecordsRequestCaptor.getValue().records().get(0).data(), is(SdkBytes.fromByteBuffer(ByteBuffer.allocateDirect(0))));
     }
 
+    @Test
+    public void shouldAggregateBatchIfRecordAggregatorIsConfigured() {
+        // given
+        final KinesisRecordAggregator recordAggregator = mock(KinesisRecordAggregator.class);
+        final PutRecordsRequestEntry aggregatedEntry = PutRecordsRequestEntry.builder()
+                .partitionKey("0")
+                .data(SdkBytes.fromUtf8String("aggregated"))
+                .build();
+        when(recordAggregator.pack(anyList())).thenAnswer(invocation -> singletonList(invocation.getArgument(0)));
+        when(recordAggregator.toEntry(anyList())).thenReturn(aggregatedEntry);
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class))).thenReturn(completedFuture(PutRecordsResponse.builder()
+                .failedRecordCount(0)
+                .records(PutRecordsResultEntry.builder().build())
+                .build()));
+        final KinesisMessageSender aggregatingSender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.defaultSenderSettings(), recordAggregator);
+
+        // when
+        aggregatingSender.sendBatch(someEvents(3));
+
+        // then
+        verify(recordAggregator).pack(argThat(entries -> entries.size() == 3));
+        verify(kinesisClient).putRecords(putRecordsRequestCaptor.capture());
+        assertThat(putRecordsRequestCaptor.getValue().records(), is(singletonList(aggregatedEntry)));
+    }
+
+    @Test
+    public void shouldPackBatchesByRequestSize() {
+        // given
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class))).thenReturn(completedFuture(PutRecordsResponse.builder()
+                .failedRecordCount(0)
+                .build()));
+        final String largePayload = someString(900 * 1024);
+
+        // when
+        kinesisMessageSender.sendBatch(IntStream.range(0, 6).mapToObj(i -> message(valueOf(i), largePayload))).join();
+
+        // then
+        verify(kinesisClient, times(2)).putRecords(putRecordsRequestCaptor.capture());
+        assertThat(putRecordsRequestCaptor.getAllValues().get(0).records(), hasSize(5));
+        assertThat(putRecordsRequestCaptor.getAllValues().get(1).records(), hasSize(1));
+        final KinesisBatchingMetrics metrics = kinesisMessageSender.getBatchingMetrics();
+        assertThat(metrics.getRequests(), is(2L));
+        assertThat(metrics.getRecords(), is(6L));
+        assertThat(metrics.getBytes(), is(6L * (900 * 1024 + 1)));
+        assertThat(metrics.getMaxRequestBytes(), is(5L * (900 * 1024 + 1)));
+    }
+
+    @Test
+    public void shouldSendBinaryV3Records() {
+        // given
+        final KinesisMessageSender v3Sender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, MessageFormat.V3);
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class))).thenReturn(completedFuture(PutRecordsResponse.builder()
+                .failedRecordCount(0)
+                .build()));
+
+        // when
+        v3Sender.send(message("someKey", "{\"some\":\"payload\"}")).join();
+
+        // then
+        verify(kinesisClient).putRecords(putRecordsRequestCaptor.capture());
+        final ByteBuffer data = putRecordsRequestCaptor.getValue().records().get(0).data().asByteBuffer();
+        assertThat(BinaryEnvelope.isBinaryEnvelope(data), is(true));
+        final TextMessage decoded = BinaryEnvelope.decode(Key.of(), Header.of(), data);
+        assertThat(decoded.getKey(), is(Key.of("someKey")));
+        assertThat(decoded.getPayload(), is("{\"some\":\"payload\"}"));
+    }
+
+    @Test
+    public void shouldCompressRecords() {
+        // given
+        final KinesisMessageSender compressingSender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V2)
+                .withCompression(CompressionCodecs.GZIP, 100)
+                .build());
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class))).thenReturn(completedFuture(PutRecordsResponse.builder()
+                .failedRecordCount(0)
+                .build()));
+        final String payload = "{\"value\":\"" + someString(10 * 1024) + "\"}";
+
+        // when
+        compressingSender.send(message("someKey", payload)).join();
+
+        // then
+        verify(kinesisClient).putRecords(putRecordsRequestCaptor.capture());
+        final String data = putRecordsRequestCaptor.getValue().records().get(0).data().asUtf8String();
+        assertThat(TextCompression.isCompressed(data), is(true));
+        assertThat(data.length(), is(lessThan(payload.length())));
+        final TextMessage decoded = new TextDecoder().apply(data);
+        assertThat(decoded.getKey().partitionKey(), is("someKey"));
+        assertThat(decoded.getPayload(), is(payload));
+    }
+
+    @Test
+    public void shouldRejectOversizedRecordsBeforeSending() {
+        // given
+        final String oversizedPayload = someString(KinesisMessageSender.MAX_RECORD_SIZE);
+
+        // when
+        final CompletableFuture<Void> future = kinesisMessageSender.sendBatch(Stream.of(
+                message("someKey", "some payload"),
+                message("otherKey", oversizedPayload)));
+
+        // then
+        try {
+            future.join();
+            fail("Expected RecordTooLargeException");
+        } catch (final CompletionException e) {
+            assertThat(e.getCause(), is(instanceOf(RecordTooLargeException.class)));
+            assertThat(((RecordTooLargeException) e.getCause()).getSize(), is(KinesisMessageSender.MAX_RECORD_SIZE + "otherKey".length()));
+        }
+        verify(kinesisClient, never()).putRecords(any(PutRecordsRequest.class));
+        assertThat(kinesisMessageSender.getBatchingMetrics().getOversizedRecords(), is(1L));
+    }
+
+    @Test
+    public void shouldOffloadOversizedRecords() {
+        // given
+        final KinesisMessageSender offloadingSender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V1)
+                .withOversizedRecordHandler((channelName, entry, size) -> entry.toBuilder()
+                        .data(SdkBytes.fromUtf8String("offloaded " + size + " bytes"))
+                        .build())
+                .build());
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class))).thenReturn(completedFuture(PutRecordsResponse.builder()
+                .failedRecordCount(0)
+                .build()));
+
+        // when
+        offloadingSender.send(message("someKey", someString(KinesisMessageSender.MAX_RECORD_SIZE))).join();
+
+        // then
+        verify(kinesisClient).putRecords(putRecordsRequestCaptor.capture());
+        assertThat(putRecordsRequestCaptor.getValue().records().get(0).data().asUtf8String(), is("offloaded 1048583 bytes"));
+    }
+
+    private static String someString(final int length) {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
     private Stream<Message<String>> someEvents(int n) {
         return IntStream.range(0, n)
                 .mapToObj(i -> message(valueOf(i), Integer.toString(i)));
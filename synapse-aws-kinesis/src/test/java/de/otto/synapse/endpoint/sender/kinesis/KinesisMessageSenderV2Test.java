@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.endpoint.BatchMessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Key;
@@ -27,11 +28,17 @@ import software.amazon.awssdk.services.kinesis.model.PutRecordsResultEntry;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.ImmutableMap.of;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
 import static de.otto.synapse.endpoint.MessageInterceptorRegistration.matchingSenderChannelsWith;
 import static de.otto.synapse.endpoint.MessageInterceptorRegistration.senderChannelsWith;
 import static de.otto.synapse.message.Message.message;
@@ -61,7 +68,11 @@ public class KinesisMessageSenderV2Test {
     @Before
     public void setUp() {
         interceptorRegistry = new MessageInterceptorRegistry();
-        kinesisMessageSender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, MessageFormat.V2);
+        kinesisMessageSender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V2)
+                .withRetryBaseDelay(Duration.ofMillis(1))
+                .withRetryMaxDelay(Duration.ofMillis(2))
+                .build());
     }
 
     @Test
@@ -371,7 +382,103 @@ public class KinesisMessageSenderV2Test {
     }
 
     @Test
-    public void shouldRetryFullBatchIfSentRecordsFailureCountIsGreaterThanZero() {
+    public void shouldRetryOnlyFailedRecords() {
+        // given
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(completedFuture(PutRecordsResponse.builder()
+                        .failedRecordCount(1)
+                        .records(
+                                PutRecordsResultEntry.builder().shardId("shard-1").sequenceNumber("1").build(),
+                                PutRecordsResultEntry.builder().errorCode("ProvisionedThroughputExceededException").build(),
+                                PutRecordsResultEntry.builder().shardId("shard-1").sequenceNumber("2").build())
+                        .build()))
+                .thenReturn(completedFuture(PutRecordsResponse.builder()
+                        .failedRecordCount(0)
+                        .records(PutRecordsResultEntry.builder().shardId("shard-2").sequenceNumber("3").build())
+                        .build()));
+
+        // when
+        final KinesisSendResult result = kinesisMessageSender.sendBatchWithResult(someEvents(3)).join();
+
+        // then
+        verify(kinesisClient, times(2)).putRecords(putRecordsRequestCaptor.capture());
+        assertThat(putRecordsRequestCaptor.getAllValues().get(0).records(), hasSize(3));
+        assertThat(putRecordsRequestCaptor.getAllValues().get(1).records(), hasSize(1));
+        assertThat(putRecordsRequestCaptor.getAllValues().get(1).records().get(0).partitionKey(), is("1"));
+        assertThat(result.getShardPositions(), contains(
+                fromPosition("shard-1", "1"),
+                fromPosition("shard-2", "3"),
+                fromPosition("shard-1", "2")));
+        assertThat(result.getRetriedRecordCount(), is(1));
+    }
+
+    @Test
+    public void shouldRetryFollowingRecordsOfSamePartitionKeyWithFailedRecord() {
+        // given
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(completedFuture(PutRecordsResponse.builder()
+                        .failedRecordCount(1)
+                        .records(
+                                PutRecordsResultEntry.builder().errorCode("ProvisionedThroughputExceededException").build(),
+                                PutRecordsResultEntry.builder().shardId("shard-1").sequenceNumber("1").build(),
+                                PutRecordsResultEntry.builder().shardId("shard-2").sequenceNumber("2").build())
+                        .build()))
+                .thenReturn(completedFuture(PutRecordsResponse.builder()
+                        .failedRecordCount(0)
+                        .records(
+                                PutRecordsResultEntry.builder().shardId("shard-2").sequenceNumber("3").build(),
+                                PutRecordsResultEntry.builder().shardId("shard-2").sequenceNumber("4").build())
+                        .build()));
+
+        // when
+        final KinesisSendResult result = kinesisMessageSender.sendBatchWithResult(Stream.of(
+                message("A", "first"),
+                message("B", "second"),
+                message("A", "third"))).join();
+
+        // then
+        verify(kinesisClient, times(2)).putRecords(putRecordsRequestCaptor.capture());
+        final PutRecordsRequest retry = putRecordsRequestCaptor.getAllValues().get(1);
+        assertThat(retry.records(), hasSize(2));
+        assertThat(retry.records().get(0).partitionKey(), is("A"));
+        assertThat(retry.records().get(1).partitionKey(), is("A"));
+        assertThat(result.getShardPositions(), contains(
+                fromPosition("shard-2", "3"),
+                fromPosition("shard-1", "1"),
+                fromPosition("shard-2", "4")));
+        assertThat(result.getRetriedRecordCount(), is(2));
+    }
+
+    @Test
+    public void shouldInterceptBatchWithResultUsingBatchInterceptors() {
+        // given
+        final AtomicInteger interceptedBatches = new AtomicInteger();
+        final BatchMessageInterceptor dropFirst = messages -> {
+            interceptedBatches.incrementAndGet();
+            return messages.subList(1, messages.size());
+        };
+        interceptorRegistry.register(senderChannelsWith(dropFirst));
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(completedFuture(PutRecordsResponse.builder()
+                        .failedRecordCount(0)
+                        .records(
+                                PutRecordsResultEntry.builder().shardId("shard-1").sequenceNumber("1").build(),
+                                PutRecordsResultEntry.builder().shardId("shard-1").sequenceNumber("2").build())
+                        .build()));
+
+        // when
+        final KinesisSendResult result = kinesisMessageSender.sendBatchWithResult(someEvents(3)).join();
+
+        // then
+        assertThat(interceptedBatches.get(), is(1));
+        verify(kinesisClient).putRecords(putRecordsRequestCaptor.capture());
+        assertThat(putRecordsRequestCaptor.getValue().records(), hasSize(2));
+        assertThat(putRecordsRequestCaptor.getValue().records().get(0).partitionKey(), is("1"));
+        assertThat(result.getShardPositions(), hasSize(2));
+    }
+
+    @Test
+    public void shouldRetryFullBatchIfFailedRecordsAreUnknown() {
         // given
         when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
                 .thenReturn(completedFuture(PutRecordsResponse.builder()
@@ -416,8 +523,8 @@ public class KinesisMessageSenderV2Test {
 
     }
 
-    @Test(expected = RetryLimitExceededException.class)
-    public void shouldThrowRetryLimitExceededExceptionOnTooManyRetriesForBatch() {
+    @Test
+    public void shouldFailWithRetryLimitExceededExceptionOnTooManyRetriesForBatch() {
         // given
         when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
                 .thenReturn(completedFuture(PutRecordsResponse.builder()
@@ -426,11 +533,15 @@ public class KinesisMessageSenderV2Test {
                         .build()));
 
         // when
-        kinesisMessageSender.sendBatch(someEvents(10)).join();
+        final CompletableFuture<Void> future = kinesisMessageSender.sendBatch(someEvents(10));
+
+        // then
+        assertThat(failureOf(future), is(instanceOf(RetryLimitExceededException.class)));
+        verify(kinesisClient, times(KinesisSenderSettings.DEFAULT_MAX_RETRIES + 1)).putRecords(any(PutRecordsRequest.class));
     }
 
-    @Test(expected = RetryLimitExceededException.class)
-    public void shouldThrowRetryLimitExceededExceptionOnTooManyRetriesForSingleMessage() {
+    @Test
+    public void shouldFailWithRetryLimitExceededExceptionOnTooManyRetriesForSingleMessage() {
         // given
         when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
                 .thenReturn(completedFuture(PutRecordsResponse.builder()
@@ -439,7 +550,134 @@ public class KinesisMessageSenderV2Test {
                         .build()));
 
         // when
-        kinesisMessageSender.send(message("someKey", null)).join();
+        final CompletableFuture<Void> future = kinesisMessageSender.send(message("someKey", null));
+
+        // then
+        assertThat(failureOf(future), is(instanceOf(RetryLimitExceededException.class)));
+    }
+
+    @Test
+    public void shouldNotBlockWhileSending() {
+        // given
+        final CompletableFuture<PutRecordsResponse> pendingResponse = new CompletableFuture<>();
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class))).thenReturn(pendingResponse);
+
+        // when
+        final CompletableFuture<Void> future = kinesisMessageSender.sendBatch(someEvents(10));
+
+        // then
+        assertThat(future.isDone(), is(false));
+        pendingResponse.complete(PutRecordsResponse.builder().failedRecordCount(0).build());
+        assertThat(future.isDone(), is(true));
+    }
+
+    @Test
+    public void shouldSendBatchesOfDifferentPartitionKeysConcurrently() {
+        // given
+        final CompletableFuture<PutRecordsResponse> firstResponse = new CompletableFuture<>();
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(firstResponse)
+                .thenReturn(completedFuture(PutRecordsResponse.builder().failedRecordCount(0).build()));
+
+        // when
+        final CompletableFuture<Void> first = kinesisMessageSender.send(message("first", "1"));
+        final CompletableFuture<Void> second = kinesisMessageSender.send(message("second", "2"));
+
+        // then
+        verify(kinesisClient, times(2)).putRecords(any(PutRecordsRequest.class));
+        assertThat(first.isDone(), is(false));
+        assertThat(second.isDone(), is(true));
+    }
+
+    @Test
+    public void shouldKeepOrderOfPartitionKey() {
+        // given
+        final CompletableFuture<PutRecordsResponse> firstResponse = new CompletableFuture<>();
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(firstResponse)
+                .thenReturn(completedFuture(PutRecordsResponse.builder().failedRecordCount(0).build()));
+
+        // when
+        final CompletableFuture<Void> first = kinesisMessageSender.send(message("someKey", "1"));
+        final CompletableFuture<Void> second = kinesisMessageSender.send(message("someKey", "2"));
+
+        // then
+        verify(kinesisClient, times(1)).putRecords(any(PutRecordsRequest.class));
+        assertThat(second.isDone(), is(false));
+
+        // and when
+        firstResponse.complete(PutRecordsResponse.builder().failedRecordCount(0).build());
+
+        // then
+        verify(kinesisClient, times(2)).putRecords(any(PutRecordsRequest.class));
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(true));
+    }
+
+    @Test
+    public void shouldLimitBatchesInFlight() {
+        // given
+        final KinesisMessageSender sender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V2)
+                .withMaxInFlightBatches(1)
+                .build());
+        final CompletableFuture<PutRecordsResponse> firstResponse = new CompletableFuture<>();
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(firstResponse)
+                .thenReturn(completedFuture(PutRecordsResponse.builder().failedRecordCount(0).build()));
+
+        // when
+        sender.send(message("first", "1"));
+        final CompletableFuture<Void> second = sender.send(message("second", "2"));
+
+        // then
+        verify(kinesisClient, times(1)).putRecords(any(PutRecordsRequest.class));
+
+        // and when
+        firstResponse.complete(PutRecordsResponse.builder().failedRecordCount(0).build());
+
+        // then
+        verify(kinesisClient, times(2)).putRecords(any(PutRecordsRequest.class));
+        assertThat(second.isDone(), is(true));
+    }
+
+    @Test
+    public void shouldRejectBatchesIfTooManyBatchesAreQueued() {
+        // given
+        final KinesisMessageSender sender = new KinesisMessageSender("test", interceptorRegistry, messageTranslator, kinesisClient, KinesisSenderSettings.builder()
+                .withMessageFormat(MessageFormat.V2)
+                .withMaxInFlightBatches(1)
+                .withMaxQueuedBatches(1)
+                .build());
+        final CompletableFuture<PutRecordsResponse> firstResponse = new CompletableFuture<>();
+        when(kinesisClient.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(firstResponse)
+                .thenReturn(completedFuture(PutRecordsResponse.builder().failedRecordCount(0).build()));
+        sender.send(message("first", "1"));
+        final CompletableFuture<Void> second = sender.send(message("second", "2"));
+
+        // when
+        final CompletableFuture<Void> third = sender.send(message("third", "3"));
+
+        // then
+        assertThat(failureOf(third), is(instanceOf(RejectedExecutionException.class)));
+
+        // and when
+        firstResponse.complete(PutRecordsResponse.builder().failedRecordCount(0).build());
+
+        // then
+        assertThat(second.isDone(), is(true));
+        assertThat(sender.send(message("fourth", "4")).isDone(), is(true));
+        verify(kinesisClient, times(3)).putRecords(any(PutRecordsRequest.class));
+    }
+
+    private static Throwable failureOf(final CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("Expected future to fail");
     }
 
     private Stream<Message<String>> someEvents(int n) {
@@ -0,0 +1,269 @@
+package de.otto.synapse.endpoint.sender.kinesis;
+
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord;
+import de.otto.synapse.endpoint.kinesis.KinesisAggregatedRecord.UserRecord;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.HashKeyRange;
+import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
+import software.amazon.awssdk.services.kinesis.model.SequenceNumberRange;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+import java.math.BigInteger;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KinesisRecordAggregatorTest {
+
+    private static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+    private static final BigInteger HALF_HASH_KEY = BigInteger.ONE.shiftLeft(127);
+
+    @Test
+    public void shouldAggregateEntriesOfSameShard() {
+        // given
+        final KinesisAsyncClient kinesisClient = kinesisClientWithShards(
+                shard("closed-shard", BigInteger.ZERO, MAX_HASH_KEY, "100"),
+                shard("open-shard", BigInteger.ZERO, MAX_HASH_KEY, null));
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+
+        // when
+        final List<PutRecordsRequestEntry> entries = aggregator.aggregate(asList(
+                entry("first", "1"),
+                entry("second", "2"),
+                entry("third", "3")));
+
+        // then
+        assertThat(entries, hasSize(1));
+        assertThat(entries.get(0).partitionKey(), is("first"));
+        assertThat(KinesisAggregatedRecord.decode(entries.get(0).data().asByteBuffer()), contains(
+                userRecord("first", "1"),
+                userRecord("second", "2"),
+                userRecord("third", "3")));
+        assertThat(aggregator.getUserRecordCount(), is(3L));
+        assertThat(aggregator.getKinesisRecordCount(), is(1L));
+    }
+
+    @Test
+    public void shouldAggregateEntriesPerShard() {
+        // given
+        final KinesisAsyncClient kinesisClient = kinesisClientWithShards(
+                shard("lower-shard", BigInteger.ZERO, HALF_HASH_KEY.subtract(BigInteger.ONE), null),
+                shard("upper-shard", HALF_HASH_KEY, MAX_HASH_KEY, null));
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+
+        // when
+        final List<PutRecordsRequestEntry> entries = aggregator.aggregate(asList(
+                entry("a", "1", BigInteger.ONE),
+                entry("b", "2", HALF_HASH_KEY),
+                entry("c", "3", BigInteger.TEN),
+                entry("d", "4", MAX_HASH_KEY)));
+
+        // then
+        assertThat(entries, hasSize(2));
+        assertThat(entries.get(0).explicitHashKey(), is("1"));
+        assertThat(KinesisAggregatedRecord.decode(entries.get(0).data().asByteBuffer()), contains(
+                userRecord("a", "1"),
+                userRecord("c", "3")));
+        assertThat(entries.get(1).explicitHashKey(), is(HALF_HASH_KEY.toString()));
+        assertThat(KinesisAggregatedRecord.decode(entries.get(1).data().asByteBuffer()), contains(
+                userRecord("b", "2"),
+                userRecord("d", "4")));
+    }
+
+    @Test
+    public void shouldLimitSizeOfAggregatedRecords() {
+        // given
+        final KinesisAsyncClient kinesisClient = kinesisClientWithShards(shard("some-shard", BigInteger.ZERO, MAX_HASH_KEY, null));
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient, 1000, Duration.ofMinutes(1), Clock.systemDefaultZone());
+        final String data = new String(new char[400]).replace('\0', 'x');
+
+        // when
+        final List<PutRecordsRequestEntry> entries = aggregator.aggregate(asList(
+                entry("a", data),
+                entry("b", data),
+                entry("c", data)));
+
+        // then
+        assertThat(entries, hasSize(2));
+        assertThat(KinesisAggregatedRecord.decode(entries.get(0).data().asByteBuffer()), hasSize(2));
+        assertThat(entries.get(0).data().asByteArray().length <= 1000, is(true));
+        assertThat(entries.get(1).partitionKey(), is("c"));
+        assertThat(entries.get(1).data().asUtf8String(), is(data));
+    }
+
+    @Test
+    public void shouldNotAggregateSingleEntry() {
+        // given
+        final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+        final PutRecordsRequestEntry singleEntry = entry("a", "1");
+
+        // when
+        final List<PutRecordsRequestEntry> entries = aggregator.aggregate(asList(singleEntry));
+
+        // then
+        assertThat(entries, hasSize(1));
+        assertThat(entries.get(0), is(sameInstance(singleEntry)));
+        verify(kinesisClient, never()).listShards(any(ListShardsRequest.class));
+    }
+
+    @Test
+    public void shouldAggregateByPartitionKeyIfStreamHasNoOpenShards() {
+        // given
+        final KinesisAsyncClient kinesisClient = kinesisClientWithShards();
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+
+        // when
+        final List<PutRecordsRequestEntry> entries = aggregator.aggregate(asList(
+                entry("a", "1"),
+                entry("b", "2"),
+                entry("a", "3")));
+
+        // then
+        assertThat(entries, hasSize(2));
+        assertThat(KinesisAggregatedRecord.decode(entries.get(0).data().asByteBuffer()), contains(
+                userRecord("a", "1"),
+                userRecord("a", "3")));
+        assertThat(entries.get(1).data().asUtf8String(), is("2"));
+    }
+
+    @Test
+    public void shouldNotAggregateUntilShardsAreAvailable() {
+        // given
+        final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
+        final CompletableFuture<ListShardsResponse> pendingShards = new CompletableFuture<>();
+        when(kinesisClient.listShards(any(ListShardsRequest.class))).thenReturn(pendingShards);
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+
+        // when
+        final List<PutRecordsRequestEntry> entriesBeforeShardsAreAvailable = aggregator.aggregate(asList(entry("a", "1"), entry("b", "2")));
+        pendingShards.complete(ListShardsResponse.builder()
+                .shards(shard("some-shard", BigInteger.ZERO, MAX_HASH_KEY, null))
+                .build());
+        final List<PutRecordsRequestEntry> entriesAfterShardsAreAvailable = aggregator.aggregate(asList(entry("a", "1"), entry("b", "2")));
+
+        // then
+        assertThat(entriesBeforeShardsAreAvailable, hasSize(2));
+        assertThat(entriesAfterShardsAreAvailable, hasSize(1));
+        verify(kinesisClient, times(1)).listShards(any(ListShardsRequest.class));
+    }
+
+    @Test
+    public void shouldAggregateUsingLastKnownShardsIfRefreshFails() {
+        // given
+        final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
+        final CompletableFuture<ListShardsResponse> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("some error"));
+        when(kinesisClient.listShards(any(ListShardsRequest.class)))
+                .thenReturn(completedFuture(ListShardsResponse.builder()
+                        .shards(shard("some-shard", BigInteger.ZERO, MAX_HASH_KEY, null))
+                        .build()))
+                .thenReturn(failed);
+        final Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(Instant.ofEpochSecond(0), Instant.ofEpochSecond(120));
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient, 1000, Duration.ofMinutes(1), clock);
+
+        // when
+        aggregator.aggregate(asList(entry("a", "1"), entry("b", "2")));
+        final List<PutRecordsRequestEntry> entries = aggregator.aggregate(asList(entry("a", "1"), entry("b", "2")));
+
+        // then
+        assertThat(entries, hasSize(1));
+        verify(kinesisClient, times(2)).listShards(any(ListShardsRequest.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPackEntriesPerShard() {
+        // given
+        final KinesisAsyncClient kinesisClient = kinesisClientWithShards();
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+        final PutRecordsRequestEntry first = entry("a", "1");
+        final PutRecordsRequestEntry second = entry("b", "2");
+        final PutRecordsRequestEntry third = entry("a", "3");
+
+        // when
+        final List<List<PutRecordsRequestEntry>> packedEntries = aggregator.pack(asList(first, second, third));
+
+        // then
+        assertThat(packedEntries, contains(asList(first, third), asList(second)));
+        assertThat(aggregator.toEntry(packedEntries.get(1)), is(sameInstance(second)));
+    }
+
+    @Test
+    public void shouldCacheShards() {
+        // given
+        final KinesisAsyncClient kinesisClient = kinesisClientWithShards(shard("some-shard", BigInteger.ZERO, MAX_HASH_KEY, null));
+        final KinesisRecordAggregator aggregator = new KinesisRecordAggregator("some-stream", kinesisClient);
+
+        // when
+        aggregator.aggregate(asList(entry("a", "1"), entry("b", "2")));
+        aggregator.aggregate(asList(entry("a", "1"), entry("b", "2")));
+
+        // then
+        verify(kinesisClient, times(1)).listShards(any(ListShardsRequest.class));
+    }
+
+    private static KinesisAsyncClient kinesisClientWithShards(final Shard... shards) {
+        final KinesisAsyncClient kinesisClient = mock(KinesisAsyncClient.class);
+        when(kinesisClient.listShards(any(ListShardsRequest.class))).thenReturn(completedFuture(ListShardsResponse.builder()
+                .shards(shards)
+                .build()));
+        return kinesisClient;
+    }
+
+    private static Shard shard(final String shardId,
+                               final BigInteger startingHashKey,
+                               final BigInteger endingHashKey,
+                               final String endingSequenceNumber) {
+        return Shard.builder()
+                .shardId(shardId)
+                .hashKeyRange(HashKeyRange.builder()
+                        .startingHashKey(startingHashKey.toString())
+                        .endingHashKey(endingHashKey.toString())
+                        .build())
+                .sequenceNumberRange(SequenceNumberRange.builder()
+                        .startingSequenceNumber("0")
+                        .endingSequenceNumber(endingSequenceNumber)
+                        .build())
+                .build();
+    }
+
+    private static PutRecordsRequestEntry entry(final String partitionKey, final String data) {
+        return PutRecordsRequestEntry.builder()
+                .partitionKey(partitionKey)
+                .data(SdkBytes.fromString(data, UTF_8))
+                .build();
+    }
+
+    private static PutRecordsRequestEntry entry(final String partitionKey, final String data, final BigInteger explicitHashKey) {
+        return entry(partitionKey, data).toBuilder()
+                .explicitHashKey(explicitHashKey.toString())
+                .build();
+    }
+
+    private static UserRecord userRecord(final String partitionKey, final String data) {
+        return new UserRecord(partitionKey, data.getBytes(UTF_8));
+    }
+}
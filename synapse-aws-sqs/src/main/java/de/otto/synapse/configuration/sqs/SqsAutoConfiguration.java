@@ -1,6 +1,7 @@
 package de.otto.synapse.configuration.sqs;
 
 import de.otto.synapse.configuration.SynapseAutoConfiguration;
+import de.otto.synapse.configuration.SynapseProperties;
 import de.otto.synapse.configuration.aws.AwsProperties;
 import de.otto.synapse.configuration.aws.SynapseAwsAuthConfiguration;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
@@ -69,17 +70,21 @@ public class SqsAutoConfiguration {
     @ConditionalOnMissingBean(name = "messageQueueSenderEndpointFactory")
     public MessageSenderEndpointFactory messageQueueSenderEndpointFactory(final MessageInterceptorRegistry registry,
                                                                           final SqsAsyncClient sqsAsyncClient,
+                                                                          final SynapseProperties synapseProperties,
                                                                           final @Value("${spring.application.name:Synapse Service}") String messageSenderName) {
-        return new SqsMessageSenderEndpointFactory(registry, sqsAsyncClient);
+        final SynapseProperties.Sender sender = synapseProperties.getSender();
+        final SynapseProperties.Sender.Compression compression = sender.getCompression();
+        return new SqsMessageSenderEndpointFactory(registry, sqsAsyncClient, sender.getMessageFormat(), compression.toCompressionCodec(), compression.getMinSize(), sender.isTrustJsonPayloads(), sender.toPayloadCodec());
     }
 
     @Bean
     @ConditionalOnMissingBean(name = "messageQueueReceiverEndpointFactory")
     public MessageQueueReceiverEndpointFactory messageQueueReceiverEndpointFactory(final MessageInterceptorRegistry registry,
                                                                                    final SqsAsyncClient sqsAsyncClient,
+                                                                                   final SynapseProperties synapseProperties,
                                                                                    final ApplicationEventPublisher eventPublisher) {
-
-        return new SqsMessageQueueReceiverEndpointFactory(registry, sqsAsyncClient, eventPublisher);
+        final SynapseProperties.Receiver.MessageQueue messageQueue = synapseProperties.getReceiver().getMessageQueue();
+        return new SqsMessageQueueReceiverEndpointFactory(registry, sqsAsyncClient, eventPublisher, messageQueue.getMaxBatchSize(), messageQueue.getLingerTime());
     }
 
 }
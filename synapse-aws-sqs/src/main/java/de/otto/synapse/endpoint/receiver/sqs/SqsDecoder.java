@@ -0,0 +1,62 @@
+package de.otto.synapse.endpoint.receiver.sqs;
+
+import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.message.Header;
+import de.otto.synapse.message.Key;
+import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.AbstractTextDecoder;
+import org.slf4j.Logger;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+
+import static de.otto.synapse.endpoint.sender.sqs.SqsMessageSender.MSG_KEY_ATTR;
+import static de.otto.synapse.message.Key.NO_KEY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Decodes SQS messages into {@link TextMessage TextMessages}.
+ * <p>
+ *     The key and the header attributes of the message are taken from the SQS message attributes. If the body of
+ *     the message is encoded using {@link de.otto.synapse.translator.MessageFormat#V2} or
+ *     {@link de.otto.synapse.translator.MessageFormat#V3}, or if it is compressed, the body is decoded and the key
+ *     and header attributes contained in the body are merged with the message attributes.
+ * </p>
+ */
+class SqsDecoder extends AbstractTextDecoder<Message> {
+
+    private static final Logger LOG = getLogger(SqsDecoder.class);
+
+    private static final MessageAttributeValue EMPTY_STRING_ATTR = MessageAttributeValue.builder().dataType("String").stringValue("").build();
+
+    @Override
+    public TextMessage apply(final Message sqsMessage) {
+        return decode(
+                messageKeyOf(sqsMessage),
+                Header.of(null, messageAttributesOf(sqsMessage)),
+                sqsMessage.body());
+    }
+
+    private Key messageKeyOf(final Message sqsMessage) {
+        return sqsMessage.messageAttributes() != null
+                ? Key.of(sqsMessage.messageAttributes().getOrDefault(MSG_KEY_ATTR, EMPTY_STRING_ATTR).stringValue())
+                : NO_KEY;
+    }
+
+    private ImmutableMap<String, String> messageAttributesOf(final Message sqsMessage) {
+        if (sqsMessage.messageAttributes() != null) {
+            final ImmutableMap.Builder<String, String> attributeBuilder = ImmutableMap.builder();
+            sqsMessage.messageAttributes().entrySet().forEach(entry -> {
+                switch (entry.getValue().dataType()) {
+                    case "String":
+                        attributeBuilder.put(entry.getKey(), entry.getValue().stringValue());
+                        break;
+                    default:
+                        LOG.warn("Ignoring messageAttribute {} with dataType {}: Not yet implemented this type.", entry.getKey(), entry.getValue().dataType());
+                }
+            });
+            return attributeBuilder.build();
+        } else {
+            return ImmutableMap.of();
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package de.otto.synapse.endpoint.receiver.sqs;
 
-import com.google.common.collect.ImmutableMap;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.receiver.AbstractMessageReceiverEndpoint;
 import de.otto.synapse.endpoint.receiver.MessageQueueReceiverEndpoint;
-import de.otto.synapse.message.Header;
-import de.otto.synapse.message.Key;
 import de.otto.synapse.message.TextMessage;
 import org.slf4j.Logger;
 import org.springframework.context.ApplicationEventPublisher;
@@ -15,15 +12,30 @@ import software.amazon.awssdk.services.sqs.model.*;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import static de.otto.synapse.message.Key.NO_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.time.Duration.ofMillis;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * A {@link MessageQueueReceiverEndpoint} receiving messages from an SQS queue.
+ * <p>
+ *     By default, every received message is dispatched and deleted separately. If a {@code maxBatchSize} greater
+ *     than 1 is configured, up to {@code maxBatchSize} messages are received, waiting at most {@code lingerTime}
+ *     for more messages after the first message of a batch has arrived. The messages of a batch are dispatched using
+ *     {@link de.otto.synapse.consumer.MessageDispatcher#acceptAll(List)}, so
+ *     {@link de.otto.synapse.consumer.BatchMessageConsumer batch consumers} are able to process them at once.
+ *     After the batch is processed, the messages are deleted using batch requests. If the batch could not be
+ *     processed, none of the messages is deleted.
+ * </p>
+ */
 public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndpoint implements MessageQueueReceiverEndpoint {
 
     private static final Logger LOG = getLogger(SqsMessageQueueReceiverEndpoint.class);
@@ -39,21 +51,32 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
      * Duration for long-polling calls to the SQS service
      */
     private static final int WAIT_TIME_SECONDS = 2;
+    /**
+     * The maximum linger time of batches. Messages of a batch are invisible for VISIBILITY_TIMEOUT seconds after
+     * they were received, so the linger time (plus less than a second of rounding up the wait time of the last
+     * receiveMessage request) must leave enough time to process the batch.
+     */
+    static final Duration MAX_LINGER_TIME = Duration.ofSeconds(WAIT_TIME_SECONDS);
     /**
      * Duration to wait during stop(), until the receiver thread has to stop.
      *
      * Should be greater than WAIT_TIME_SECONDS
      */
     private static final int STOP_TIMEOUT_SECONDS = 3;
-
-    private static final MessageAttributeValue EMPTY_STRING_ATTR = MessageAttributeValue.builder().dataType("String").stringValue("").build();
-    private static final String MSG_KEY_ATTR = "synapse_msg_key";
+    /**
+     * The maximum number of messages returned by a single receiveMessage request, or deleted by a single
+     * deleteMessageBatch request.
+     */
+    private static final int MAX_NUMBER_OF_MESSAGES = 10;
 
     @Nonnull
     private final SqsAsyncClient sqsAsyncClient;
     @Nonnull
     private final ExecutorService executorService;
     private final String queueUrl;
+    private final int maxBatchSize;
+    private final Duration lingerTime;
+    private final SqsDecoder decoder = new SqsDecoder();
     private final AtomicBoolean stopSignal = new AtomicBoolean(false);
     private final CompletableFuture<Void> stopped = new CompletableFuture<>();
 
@@ -62,9 +85,35 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
                                            final @Nonnull SqsAsyncClient sqsAsyncClient,
                                            final @Nonnull ExecutorService executorService,
                                            final @Nullable ApplicationEventPublisher eventPublisher) {
+        this(channelName, interceptorRegistry, sqsAsyncClient, executorService, eventPublisher, 1, Duration.ZERO);
+    }
+
+    /**
+     * @param channelName the name of the SQS queue
+     * @param interceptorRegistry registry used to determine the receiver interceptors of the endpoint
+     * @param sqsAsyncClient the client used to access SQS
+     * @param executorService the executor used to receive messages
+     * @param eventPublisher the publisher of MessageReceiverNotifications, or null
+     * @param maxBatchSize the maximum number of messages dispatched at once
+     * @param lingerTime the maximum time to wait for more messages, before an incomplete batch is dispatched.
+     *                   Must not exceed {@link #MAX_LINGER_TIME}.
+     */
+    public SqsMessageQueueReceiverEndpoint(final @Nonnull String channelName,
+                                           final @Nonnull MessageInterceptorRegistry interceptorRegistry,
+                                           final @Nonnull SqsAsyncClient sqsAsyncClient,
+                                           final @Nonnull ExecutorService executorService,
+                                           final @Nullable ApplicationEventPublisher eventPublisher,
+                                           final int maxBatchSize,
+                                           final @Nonnull Duration lingerTime) {
         super(channelName, interceptorRegistry, eventPublisher);
+        checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than 0");
+        checkArgument(!lingerTime.isNegative(), "lingerTime must not be negative");
+        checkArgument(lingerTime.compareTo(MAX_LINGER_TIME) <= 0,
+                "lingerTime must not exceed %s, as messages must be processed within the visibility timeout of %s seconds", MAX_LINGER_TIME, VISIBILITY_TIMEOUT);
         this.sqsAsyncClient = sqsAsyncClient;
         this.executorService = executorService;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerTime = lingerTime;
         try {
             this.queueUrl = sqsAsyncClient.getQueueUrl(GetQueueUrlRequest
                     .builder()
@@ -86,7 +135,11 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
         return CompletableFuture.runAsync(() -> {
             try {
                 do {
-                    receiveAndProcess();
+                    if (maxBatchSize > 1) {
+                        receiveAndProcessBatch();
+                    } else {
+                        receiveAndProcess();
+                    }
                 } while (!stopSignal.get());
             } finally {
                 stopped.complete(null);
@@ -111,6 +164,79 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
         }
     }
 
+    private void receiveAndProcessBatch() {
+        final List<software.amazon.awssdk.services.sqs.model.Message> sqsMessages = new ArrayList<>();
+        long lingerUntil = Long.MAX_VALUE;
+        do {
+            // The remaining linger time is rounded up to whole seconds: rounding down would busy-loop using
+            // short polls during sub-second linger times.
+            final int waitTimeSeconds = sqsMessages.isEmpty()
+                    ? WAIT_TIME_SECONDS
+                    : (int) Math.min(WAIT_TIME_SECONDS, Math.max(1, (lingerUntil - System.currentTimeMillis() + 999) / 1000));
+            final List<software.amazon.awssdk.services.sqs.model.Message> received = receive(
+                    Math.min(MAX_NUMBER_OF_MESSAGES, maxBatchSize - sqsMessages.size()),
+                    waitTimeSeconds);
+            if (received.isEmpty()) {
+                break;
+            }
+            if (sqsMessages.isEmpty()) {
+                lingerUntil = System.currentTimeMillis() + lingerTime.toMillis();
+            }
+            sqsMessages.addAll(received);
+        } while (sqsMessages.size() < maxBatchSize
+                && System.currentTimeMillis() < lingerUntil
+                && !stopSignal.get());
+        if (!sqsMessages.isEmpty()) {
+            LOG.debug("Received batch of {} messages from SQS.", sqsMessages.size());
+            processBatch(sqsMessages);
+        }
+    }
+
+    private List<software.amazon.awssdk.services.sqs.model.Message> receive(final int maxNumberOfMessages,
+                                                                          final int waitTimeSeconds) {
+        try {
+            LOG.debug("Sending receiveMessage request...");
+            final ReceiveMessageResponse response = sqsAsyncClient.receiveMessage(ReceiveMessageRequest.builder()
+                    .queueUrl(queueUrl)
+                    .visibilityTimeout(VISIBILITY_TIMEOUT)
+                    .messageAttributeNames(".*")
+                    .maxNumberOfMessages(maxNumberOfMessages)
+                    .waitTimeSeconds(waitTimeSeconds)
+                    .build())
+                    .join();
+            return response.messages() != null ? response.messages() : new ArrayList<>();
+        } catch (Exception e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void processBatch(final List<software.amazon.awssdk.services.sqs.model.Message> sqsMessages) {
+        final List<TextMessage> messages = new ArrayList<>(sqsMessages.size());
+        final List<software.amazon.awssdk.services.sqs.model.Message> processedSqsMessages = new ArrayList<>(sqsMessages.size());
+        for (final software.amazon.awssdk.services.sqs.model.Message sqsMessage : sqsMessages) {
+            LOG.debug("Processing message from channel={}: messageId={} receiptHandle={}, messageAttributes={}", getChannelName(), sqsMessage.messageId(), sqsMessage.receiptHandle(), sqsMessage.messageAttributes());
+            try {
+                final TextMessage interceptedMessage = intercept(decoder.apply(sqsMessage));
+                if (interceptedMessage != null) {
+                    messages.add(interceptedMessage);
+                }
+                processedSqsMessages.add(sqsMessage);
+            } catch (final Exception e) {
+                LOG.error("Failed to process SQS message " + sqsMessage);
+            }
+        }
+        try {
+            if (!messages.isEmpty()) {
+                LOG.debug("Dispatching batch of {} messages", messages.size());
+                getMessageDispatcher().acceptAll(messages);
+            }
+            deleteMessages(processedSqsMessages);
+        } catch (final Exception e) {
+            LOG.error("Failed to process batch of " + sqsMessages.size() + " SQS messages: " + e.getMessage(), e);
+        }
+    }
+
     private void processResponse(ReceiveMessageResponse response) {
         if (response.messages() != null) {
             LOG.debug("Received {} messages from SQS.", response.messages().size());
@@ -122,10 +248,7 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
     private void processMessage(software.amazon.awssdk.services.sqs.model.Message sqsMessage) {
         LOG.debug("Processing message from channel={}: messageId={} receiptHandle={}, messageAttributes={}", getChannelName(), sqsMessage.messageId(), sqsMessage.receiptHandle(), sqsMessage.messageAttributes());
         try {
-            final TextMessage message = TextMessage.of(
-                    messageKeyOf(sqsMessage),
-                    Header.of(null, messageAttributesOf(sqsMessage)),
-                    sqsMessage.body());
+            final TextMessage message = decoder.apply(sqsMessage);
 
             final TextMessage interceptedMessage = intercept(message);
             if (interceptedMessage != null) {
@@ -138,30 +261,6 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
         }
     }
 
-    private Key messageKeyOf(software.amazon.awssdk.services.sqs.model.Message sqsMessage) {
-        return sqsMessage.messageAttributes() != null
-                ? Key.of(sqsMessage.messageAttributes().getOrDefault(MSG_KEY_ATTR, EMPTY_STRING_ATTR).stringValue())
-                : NO_KEY;
-    }
-
-    private ImmutableMap<String, String> messageAttributesOf(software.amazon.awssdk.services.sqs.model.Message sqsMessage) {
-        if (sqsMessage.messageAttributes() != null) {
-            final ImmutableMap.Builder<String, String> attributeBuilder = ImmutableMap.builder();
-            sqsMessage.messageAttributes().entrySet().forEach(entry -> {
-                switch (entry.getValue().dataType()) {
-                    case "String":
-                        attributeBuilder.put(entry.getKey(), entry.getValue().stringValue());
-                        break;
-                    default:
-                        LOG.warn("Ignoring messageAttribute {} with dataType {}: Not yet implemented this type.", entry.getKey(), entry.getValue().dataType());
-                }
-            });
-            return attributeBuilder.build();
-        } else {
-            return ImmutableMap.of();
-        }
-    }
-
     private void deleteMessage(software.amazon.awssdk.services.sqs.model.Message sqsMessage) {
         try {
             LOG.debug("Deleting message with receiptHandle={}", sqsMessage.receiptHandle());
@@ -185,6 +284,35 @@ public class SqsMessageQueueReceiverEndpoint extends AbstractMessageReceiverEndp
         }
     }
 
+    private void deleteMessages(final List<software.amazon.awssdk.services.sqs.model.Message> sqsMessages) {
+        for (int from = 0; from < sqsMessages.size(); from += MAX_NUMBER_OF_MESSAGES) {
+            final List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(MAX_NUMBER_OF_MESSAGES);
+            for (int i = from; i < Math.min(from + MAX_NUMBER_OF_MESSAGES, sqsMessages.size()); i++) {
+                entries.add(DeleteMessageBatchRequestEntry.builder()
+                        .id(String.valueOf(i))
+                        .receiptHandle(sqsMessages.get(i).receiptHandle())
+                        .build());
+            }
+            LOG.debug("Deleting batch of {} messages", entries.size());
+            sqsAsyncClient
+                    .deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                            .queueUrl(queueUrl)
+                            .entries(entries)
+                            .build())
+                    .handle((response, throwable) -> {
+                        if (response != null) {
+                            if (response.failed() != null && !response.failed().isEmpty()) {
+                                LOG.warn("Failed to delete {} messages: {}", response.failed().size(), response.failed());
+                            }
+                            return response;
+                        } else {
+                            LOG.info("Received exception while deleting messages: " + throwable.getMessage());
+                            throw new RuntimeException(throwable);
+                        }
+                    });
+        }
+    }
+
     /**
      * Stops consumption of messages and shuts down the {@code MessageQueueReceiverEndpoint}.
      */
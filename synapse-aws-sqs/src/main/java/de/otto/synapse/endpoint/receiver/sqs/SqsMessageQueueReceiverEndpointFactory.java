@@ -9,6 +9,7 @@ import org.springframework.context.ApplicationEventPublisher;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 
 import javax.annotation.Nonnull;
+import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 
 import static java.util.concurrent.Executors.newCachedThreadPool;
@@ -21,13 +22,25 @@ public class SqsMessageQueueReceiverEndpointFactory implements MessageQueueRecei
     private final MessageInterceptorRegistry registry;
     private final SqsAsyncClient sqsAsyncClient;
     private final ApplicationEventPublisher eventPublisher;
+    private final int maxBatchSize;
+    private final Duration lingerTime;
 
     public SqsMessageQueueReceiverEndpointFactory(final MessageInterceptorRegistry registry,
                                                   final SqsAsyncClient sqsAsyncClient,
                                                   final ApplicationEventPublisher eventPublisher) {
+        this(registry, sqsAsyncClient, eventPublisher, 1, Duration.ZERO);
+    }
+
+    public SqsMessageQueueReceiverEndpointFactory(final MessageInterceptorRegistry registry,
+                                                  final SqsAsyncClient sqsAsyncClient,
+                                                  final ApplicationEventPublisher eventPublisher,
+                                                  final int maxBatchSize,
+                                                  final Duration lingerTime) {
         this.registry = registry;
         this.sqsAsyncClient = sqsAsyncClient;
         this.eventPublisher = eventPublisher;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerTime = lingerTime;
     }
 
     @Override
@@ -36,6 +49,6 @@ public class SqsMessageQueueReceiverEndpointFactory implements MessageQueueRecei
         final ExecutorService executorService = newCachedThreadPool(
                 new ThreadFactoryBuilder().setNameFormat("sqs-message-queue-%d").build()
         );
-        return new SqsMessageQueueReceiverEndpoint(channelName, registry, sqsAsyncClient, executorService, eventPublisher);
+        return new SqsMessageQueueReceiverEndpoint(channelName, registry, sqsAsyncClient, executorService, eventPublisher, maxBatchSize, lingerTime);
     }
 }
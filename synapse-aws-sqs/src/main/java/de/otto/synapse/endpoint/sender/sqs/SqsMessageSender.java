@@ -4,13 +4,17 @@ import com.google.common.collect.ImmutableMap;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.sender.AbstractMessageSenderEndpoint;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.CompressionCodec;
+import de.otto.synapse.translator.MessageFormat;
 import de.otto.synapse.translator.MessageTranslator;
+import de.otto.synapse.translator.TextEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.model.*;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -27,15 +31,41 @@ public class SqsMessageSender extends AbstractMessageSenderEndpoint {
 
     private final String queueUrl;
     private final SqsAsyncClient sqsAsyncClient;
+    private final TextEncoder encoder;
 
     public SqsMessageSender(final String channelName,
                             final String queueUrl,
                             final MessageInterceptorRegistry interceptorRegistry,
                             final MessageTranslator<TextMessage> messageTranslator,
                             final SqsAsyncClient sqsAsyncClient) {
+        this(channelName, queueUrl, interceptorRegistry, messageTranslator, sqsAsyncClient, MessageFormat.V1, null, TextEncoder.DEFAULT_MIN_COMPRESSION_SIZE, false);
+    }
+
+    /**
+     * @param channelName the name of the channel
+     * @param queueUrl the url of the SQS queue
+     * @param interceptorRegistry registry used to intercept sent messages
+     * @param messageTranslator the translator used to translate messages into TextMessages
+     * @param sqsAsyncClient the client used to send messages
+     * @param messageFormat the format used to encode message bodies. Key and header attributes are always sent
+     *                      as SQS message attributes, using V2 or V3 they are additionally contained in the body.
+     * @param compressionCodec the codec used to compress message bodies, or null if bodies should not be compressed
+     * @param minCompressionSize the minimum number of characters of message bodies that are compressed
+     * @param trustJsonPayloads true, if JSON payloads should be embedded into V2 bodies without checking them
+     */
+    public SqsMessageSender(final String channelName,
+                            final String queueUrl,
+                            final MessageInterceptorRegistry interceptorRegistry,
+                            final MessageTranslator<TextMessage> messageTranslator,
+                            final SqsAsyncClient sqsAsyncClient,
+                            final MessageFormat messageFormat,
+                            final @Nullable CompressionCodec compressionCodec,
+                            final int minCompressionSize,
+                            final boolean trustJsonPayloads) {
         super(channelName, interceptorRegistry, messageTranslator);
         this.queueUrl = queueUrl;
         this.sqsAsyncClient = sqsAsyncClient;
+        this.encoder = new TextEncoder(messageFormat, compressionCodec, minCompressionSize, trustJsonPayloads);
     }
 
     @Override
@@ -70,7 +100,7 @@ public class SqsMessageSender extends AbstractMessageSenderEndpoint {
                         messageStream.map(message -> SendMessageBatchRequestEntry.builder()
                                 .id(valueOf(id.getAndIncrement()))
                                 .messageAttributes(of(message))
-                                .messageBody(message.getPayload())
+                                .messageBody(bodyOf(message))
                                 .build()).collect(toList())
                 )
                 .build();
@@ -80,10 +110,14 @@ public class SqsMessageSender extends AbstractMessageSenderEndpoint {
         return SendMessageRequest.builder()
                 .queueUrl(queueUrl)
                 .messageAttributes(of(message))
-                .messageBody(message.getPayload())
+                .messageBody(bodyOf(message))
                 .build();
     }
 
+    private String bodyOf(final @Nonnull TextMessage message) {
+        return encoder.apply(message);
+    }
+
     private ImmutableMap<String, MessageAttributeValue> of(@Nonnull TextMessage message) {
         final ImmutableMap.Builder<String, MessageAttributeValue> messageAttributes = ImmutableMap.builder();
         message.getHeader().getAll().entrySet().forEach(entry -> {
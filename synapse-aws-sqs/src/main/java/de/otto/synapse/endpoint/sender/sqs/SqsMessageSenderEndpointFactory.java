@@ -6,30 +6,85 @@ import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.sender.MessageSenderEndpoint;
 import de.otto.synapse.endpoint.sender.MessageSenderEndpointFactory;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.CompressionCodec;
+import de.otto.synapse.translator.MessageFormat;
 import de.otto.synapse.translator.MessageTranslator;
+import de.otto.synapse.translator.TextEncoder;
+import de.otto.synapse.translator.PayloadCodec;
+import de.otto.synapse.translator.PayloadCodecs;
 import de.otto.synapse.translator.TextMessageTranslator;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 public class SqsMessageSenderEndpointFactory implements MessageSenderEndpointFactory {
 
     private final MessageInterceptorRegistry registry;
     private final MessageTranslator<TextMessage> messageTranslator;
     private final SqsAsyncClient sqsAsyncClient;
+    private final MessageFormat messageFormat;
+    private final CompressionCodec compressionCodec;
+    private final int minCompressionSize;
+    private final boolean trustJsonPayloads;
 
     public SqsMessageSenderEndpointFactory(final MessageInterceptorRegistry registry,
                                            final SqsAsyncClient sqsAsyncClient) {
+        this(registry, sqsAsyncClient, MessageFormat.V1, null, TextEncoder.DEFAULT_MIN_COMPRESSION_SIZE, false);
+    }
+
+    /**
+     * @param registry registry used to intercept sent messages
+     * @param sqsAsyncClient the client used to send messages
+     * @param messageFormat the format used to encode message bodies
+     * @param compressionCodec the codec used to compress message bodies, or null if bodies should not be compressed
+     * @param minCompressionSize the minimum number of characters of message bodies that are compressed
+     * @param trustJsonPayloads true, if JSON payloads should be embedded into V2 bodies without checking them
+     */
+    public SqsMessageSenderEndpointFactory(final MessageInterceptorRegistry registry,
+                                           final SqsAsyncClient sqsAsyncClient,
+                                           final MessageFormat messageFormat,
+                                           final @Nullable CompressionCodec compressionCodec,
+                                           final int minCompressionSize,
+                                           final boolean trustJsonPayloads) {
+        this(registry, sqsAsyncClient, messageFormat, compressionCodec, minCompressionSize, trustJsonPayloads, PayloadCodecs.JSON);
+    }
+
+    /**
+     * @param registry registry used to intercept sent messages
+     * @param sqsAsyncClient the client used to send messages
+     * @param messageFormat the format used to encode message bodies
+     * @param compressionCodec the codec used to compress message bodies, or null if bodies should not be compressed
+     * @param minCompressionSize the minimum number of characters of message bodies that are compressed
+     * @param trustJsonPayloads true, if JSON payloads should be embedded into V2 bodies without checking them
+     * @param payloadCodec the default codec used to encode the payloads of messages
+     * @throws IllegalArgumentException if a codec other than JSON is used together with {@link MessageFormat#V1}
+     */
+    public SqsMessageSenderEndpointFactory(final MessageInterceptorRegistry registry,
+                                           final SqsAsyncClient sqsAsyncClient,
+                                           final MessageFormat messageFormat,
+                                           final @Nullable CompressionCodec compressionCodec,
+                                           final int minCompressionSize,
+                                           final boolean trustJsonPayloads,
+                                           final PayloadCodec payloadCodec) {
+        checkArgument(messageFormat != MessageFormat.V1 || PayloadCodecs.JSON.equals(payloadCodec),
+                "Payload codec %s requires message format V2 or V3: V1 messages have no header to transport the codec", payloadCodec.name());
         this.registry = registry;
-        this.messageTranslator = new TextMessageTranslator();
+        this.messageTranslator = new TextMessageTranslator(payloadCodec);
         this.sqsAsyncClient = sqsAsyncClient;
+        this.messageFormat = messageFormat;
+        this.compressionCodec = compressionCodec;
+        this.minCompressionSize = minCompressionSize;
+        this.trustJsonPayloads = trustJsonPayloads;
     }
 
     @Override
     public MessageSenderEndpoint create(final @Nonnull String channelName) {
         try {
-            return new SqsMessageSender(channelName, urlOf(channelName), registry, messageTranslator, sqsAsyncClient);
+            return new SqsMessageSender(channelName, urlOf(channelName), registry, messageTranslator, sqsAsyncClient, messageFormat, compressionCodec, minCompressionSize, trustJsonPayloads);
         } catch (Exception e) {
             throw new RuntimeException("Failed to get queueUrl for channel=" + channelName + ": " + e.getMessage(), e);
         }
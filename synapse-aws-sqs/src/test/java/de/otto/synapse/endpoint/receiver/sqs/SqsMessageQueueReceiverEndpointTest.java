@@ -2,11 +2,18 @@ package de.otto.synapse.endpoint.receiver.sqs;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.consumer.BatchMessageConsumer;
 import de.otto.synapse.consumer.MessageConsumer;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
+import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.CompressionCodecs;
+import de.otto.synapse.translator.MessageFormat;
+import de.otto.synapse.translator.TextCompression;
+import de.otto.synapse.translator.TextEncoder;
 import org.awaitility.Duration;
 import org.junit.After;
 import org.junit.Before;
@@ -119,6 +126,42 @@ public class SqsMessageQueueReceiverEndpointTest {
         assertThat(messages.get(2).getPayload(), is(PAYLOAD_3));
     }
 
+    @Test
+    public void shouldDecompressCompressedMessages() {
+        // given:
+        addSqsMessagesToQueue(
+                sqsMessage("first", TextCompression.compress(PAYLOAD_1, CompressionCodecs.GZIP)),
+                sqsMessage("second", PAYLOAD_2));
+
+        // when: consumption is started
+        sqsQueueReceiver.consume();
+
+        // then:
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .until(() -> messages.size() >= 2);
+        assertThat(messages.get(0).getPayload(), is(PAYLOAD_1));
+        assertThat(messages.get(1).getPayload(), is(PAYLOAD_2));
+    }
+
+    @Test
+    public void shouldDecodeV3Messages() {
+        // given:
+        final String body = new TextEncoder(MessageFormat.V3).apply(TextMessage.of(Key.of("first"), Header.of(ImmutableMap.of("attr", "value")), PAYLOAD_1));
+        addSqsMessagesToQueue(sqsMessage("first", body));
+
+        // when: consumption is started
+        sqsQueueReceiver.consume();
+
+        // then:
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .until(() -> messages.size() >= 1);
+        assertThat(messages.get(0).getKey(), is(Key.of("first")));
+        assertThat(messages.get(0).getPayload(), is(PAYLOAD_1));
+        assertThat(messages.get(0).getHeader().getAsString("attr"), is("value"));
+    }
+
     public static class TestFoo {
         public TestFoo() {
         }
@@ -314,6 +357,89 @@ public class SqsMessageQueueReceiverEndpointTest {
         verify(sqsAsyncClient, times(2)).deleteMessage(any(DeleteMessageRequest.class));
     }
 
+    @Test
+    public void shouldDispatchBatchesOfMessages() {
+        // given:
+        final List<List<Message<String>>> batches = synchronizedList(new ArrayList<>());
+        when(sqsAsyncClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenReturn(completedFuture(DeleteMessageBatchResponse.builder().build()));
+        addSqsMessagesToQueue(
+                sqsMessage("first", PAYLOAD_1),
+                sqsMessage("second", PAYLOAD_2),
+                sqsMessage("third", PAYLOAD_3));
+
+        sqsQueueReceiver = new SqsMessageQueueReceiverEndpoint("channelName", new MessageInterceptorRegistry(), sqsAsyncClient, newSingleThreadExecutor(), null, 10, java.time.Duration.ZERO);
+        sqsQueueReceiver.register(BatchMessageConsumer.of(".*", String.class, batches::add));
+
+        // when: consumption is started
+        sqsQueueReceiver.consume();
+
+        // then:
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .until(() -> batches.size() >= 1);
+        assertThat(batches.get(0).size(), is(3));
+        assertThat(batches.get(0).get(0).getPayload(), is(PAYLOAD_1));
+        assertThat(batches.get(0).get(2).getPayload(), is(PAYLOAD_3));
+
+        // and: all messages are deleted using a single batch request
+        final ArgumentCaptor<DeleteMessageBatchRequest> deleteRequestCaptor = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+        verify(sqsAsyncClient, timeout(1000)).deleteMessageBatch(deleteRequestCaptor.capture());
+        assertThat(deleteRequestCaptor.getValue().queueUrl(), is(QUEUE_URL));
+        assertThat(deleteRequestCaptor.getValue().entries().size(), is(3));
+        verify(sqsAsyncClient, never()).deleteMessage(any(DeleteMessageRequest.class));
+    }
+
+    @Test
+    public void shouldNotDeleteBatchIfConsumerFails() {
+        // given:
+        addSqsMessagesToQueue(
+                sqsMessage("first", PAYLOAD_1),
+                sqsMessage("second", PAYLOAD_2));
+
+        final List<Integer> attempts = synchronizedList(new ArrayList<>());
+        sqsQueueReceiver = new SqsMessageQueueReceiverEndpoint("channelName", new MessageInterceptorRegistry(), sqsAsyncClient, newSingleThreadExecutor(), null, 10, java.time.Duration.ZERO);
+        sqsQueueReceiver.register(BatchMessageConsumer.of(".*", String.class, messages -> {
+            attempts.add(messages.size());
+            throw new IllegalStateException("forced test exception");
+        }));
+
+        // when: consumption is started
+        sqsQueueReceiver.consume();
+
+        // then:
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .until(() -> attempts.size() >= 1);
+        verify(sqsAsyncClient, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIllegalBatchSize() {
+        new SqsMessageQueueReceiverEndpoint("channelName", new MessageInterceptorRegistry(), sqsAsyncClient, newSingleThreadExecutor(), null, 0, java.time.Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectLingerTimeExceedingMaxLingerTime() {
+        new SqsMessageQueueReceiverEndpoint("channelName", new MessageInterceptorRegistry(), sqsAsyncClient, newSingleThreadExecutor(), null, 10, SqsMessageQueueReceiverEndpoint.MAX_LINGER_TIME.plusMillis(1));
+    }
+
+    @Test
+    public void shouldRoundUpRemainingLingerTime() {
+        // given:
+        when(sqsAsyncClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenReturn(completedFuture(DeleteMessageBatchResponse.builder().build()));
+        addSqsMessagesToQueue(sqsMessage("first", PAYLOAD_1));
+        sqsQueueReceiver = new SqsMessageQueueReceiverEndpoint("channelName", new MessageInterceptorRegistry(), sqsAsyncClient, newSingleThreadExecutor(), null, 10, java.time.Duration.ofMillis(500));
+        sqsQueueReceiver.register(BatchMessageConsumer.of(".*", String.class, batch -> {}));
+
+        // when: consumption is started
+        sqsQueueReceiver.consume();
+
+        // then: the second request is waiting for more messages instead of short polling
+        final ArgumentCaptor<ReceiveMessageRequest> requestCaptor = ArgumentCaptor.forClass(ReceiveMessageRequest.class);
+        verify(sqsAsyncClient, timeout(1000).atLeast(2)).receiveMessage(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(1).waitTimeSeconds(), is(1));
+    }
+
     @Test(expected = RuntimeException.class)
     public void shouldShutdownServiceOnRuntimeExceptionOnConsume() throws Throwable {
         //given
@@ -7,6 +7,8 @@ import de.otto.synapse.endpoint.MessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptorRegistration;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.endpoint.sender.MessageSenderEndpoint;
+import de.otto.synapse.translator.MessageFormat;
+import de.otto.synapse.translator.PayloadCodec;
 import org.junit.Test;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
@@ -69,4 +71,13 @@ public class SqsMessageSenderEndpointFactoryTest {
 
         assertThat(sender.getInterceptorChain().getInterceptors(), contains(interceptor));
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPayloadCodecWithMessageFormatV1() {
+        final SqsAsyncClient sqsAsyncClient = mock(SqsAsyncClient.class);
+        final PayloadCodec payloadCodec = mock(PayloadCodec.class);
+        when(payloadCodec.name()).thenReturn("cbor");
+
+        new SqsMessageSenderEndpointFactory(new MessageInterceptorRegistry(), sqsAsyncClient, MessageFormat.V1, null, 1024, false, payloadCodec);
+    }
+}
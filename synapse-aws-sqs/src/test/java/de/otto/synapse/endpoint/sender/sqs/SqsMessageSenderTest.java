@@ -1,11 +1,16 @@
 package de.otto.synapse.endpoint.sender.sqs;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Strings;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.CompressionCodecs;
+import de.otto.synapse.translator.MessageFormat;
 import de.otto.synapse.translator.MessageTranslator;
+import de.otto.synapse.translator.TextCompression;
+import de.otto.synapse.translator.TextDecoder;
 import de.otto.synapse.translator.TextMessageTranslator;
 import org.junit.Before;
 import org.junit.Test;
@@ -70,6 +75,53 @@ public class SqsMessageSenderTest {
         assertThat(capturedRequest.messageBody(), is("{\"value\":\"banana\"}"));
     }
 
+    @Test
+    public void shouldSendCompressedEvent() {
+        // given
+        sqsMessageSender = new SqsMessageSender("test", "https://example.com/test", interceptorRegistry, messageTranslator, sqsAsyncClient, MessageFormat.V1, CompressionCodecs.GZIP, 100, false);
+        final String value = Strings.repeat("banana", 100);
+        final Message<ExampleJsonObject> message = message("some-of", new ExampleJsonObject(value));
+
+        when(sqsAsyncClient.sendMessage(any(SendMessageRequest.class))).thenReturn(completedFuture(SendMessageResponse.builder()
+                .sequenceNumber("42")
+                .messageId("some-id")
+                .build()));
+
+        // when
+        sqsMessageSender.send(message).join();
+
+        // then
+        verify(sqsAsyncClient).sendMessage(requestArgumentCaptor.capture());
+        final SendMessageRequest capturedRequest = requestArgumentCaptor.getValue();
+
+        assertThat(TextCompression.isCompressed(capturedRequest.messageBody()), is(true));
+        assertThat(TextCompression.decompress(capturedRequest.messageBody()), is("{\"value\":\"" + value + "\"}"));
+        assertThat(capturedRequest.messageAttributes().get(SqsMessageSender.MSG_KEY_ATTR).stringValue(), is("some-of"));
+    }
+
+    @Test
+    public void shouldSendEventInV3Format() {
+        // given
+        sqsMessageSender = new SqsMessageSender("test", "https://example.com/test", interceptorRegistry, messageTranslator, sqsAsyncClient, MessageFormat.V3, null, 0, false);
+        final Message<ExampleJsonObject> message = message("some-of", new ExampleJsonObject("banana"));
+
+        when(sqsAsyncClient.sendMessage(any(SendMessageRequest.class))).thenReturn(completedFuture(SendMessageResponse.builder()
+                .sequenceNumber("42")
+                .messageId("some-id")
+                .build()));
+
+        // when
+        sqsMessageSender.send(message).join();
+
+        // then
+        verify(sqsAsyncClient).sendMessage(requestArgumentCaptor.capture());
+        final SendMessageRequest capturedRequest = requestArgumentCaptor.getValue();
+
+        assertThat(MessageFormat.versionOf(capturedRequest.messageBody()), is(MessageFormat.V3));
+        assertThat(new TextDecoder().apply(capturedRequest.messageBody()).getPayload(), is("{\"value\":\"banana\"}"));
+        assertThat(capturedRequest.messageAttributes().get(SqsMessageSender.MSG_KEY_ATTR).stringValue(), is("some-of"));
+    }
+
     @Test
     public void shouldSendKeyAsMessageHeader() {
         // given
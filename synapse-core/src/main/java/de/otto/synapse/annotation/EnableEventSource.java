@@ -80,4 +80,49 @@ public @interface EnableEventSource {
      */
     String messageLogReceiverEndpoint() default "";
 
+    /**
+     * The number of threads used to dispatch messages of the channel to the consumers of the EventSource.
+     * <p>
+     *     Messages having the same {@link de.otto.synapse.message.Key#partitionKey() partition key} are always
+     *     dispatched in order. With a concurrency greater than 1, messages with different partition keys are
+     *     dispatched in parallel, so the consumers of the EventSource must be thread-safe. The position of a
+     *     channel only advances after all earlier messages are dispatched.
+     * </p>
+     * <p>
+     *     Resolving placeholders like "${my.channel.concurrency}" is supported for this property.
+     * </p>
+     *
+     * @return number of threads, defaults to 1
+     */
+    String concurrency() default "1";
+
+    /**
+     * The maximum number of messages per dispatcher thread that are processed by
+     * {@link de.otto.synapse.consumer.AsyncMessageConsumer asynchronous consumers} at the same time, for example
+     * consumer methods returning {@code CompletableFuture<Void>}.
+     * <p>
+     *     Resolving placeholders like "${my.channel.max-in-flight}" is supported for this property.
+     * </p>
+     *
+     * @return max number of messages in flight, defaults to 16
+     */
+    String maxInFlight() default "16";
+
+    /**
+     * Enables checkpoints of the EventSource.
+     * <p>
+     *     If enabled, the position of the consumed channel is periodically saved into the configured
+     *     {@link de.otto.synapse.checkpoint.CheckpointStore}, using the name of the EventSource bean as key. After
+     *     a restart, the EventSource resumes from this position instead of reading the latest snapshot. This is
+     *     only safe if the consumers of the EventSource keep their state in a persistent
+     *     {@link de.otto.synapse.state.StateRepository}.
+     * </p>
+     * <p>
+     *     Resolving placeholders like "${my.channel.checkpoint}" is supported for this property.
+     * </p>
+     *
+     * @return "true" or "false", defaults to "false"
+     */
+    String checkpoint() default "false";
+
 }
@@ -73,13 +73,16 @@ public class EventSourceBeanRegistrar implements ImportBeanDefinitionRegistrar,
             final String messageLogBeanName = Objects.toString(
                     emptyToNull(annotationAttributes.getString("messageLogReceiverEndpoint")),
                     beanNameForMessageLogReceiverEndpoint(channelName));
+            final int concurrency = positiveIntOf(eventSourceBeanName, "concurrency", annotationAttributes.getString("concurrency"));
+            final int maxInFlight = positiveIntOf(eventSourceBeanName, "maxInFlight", annotationAttributes.getString("maxInFlight"));
+            final boolean checkpoint = booleanOf(eventSourceBeanName, "checkpoint", annotationAttributes.getString("checkpoint"));
             if (!registry.containsBeanDefinition(messageLogBeanName)) {
                 registerMessageLogBeanDefinition(registry, messageLogBeanName, channelName);
             } else {
                 throw new BeanCreationException(messageLogBeanName, format("MessageLogReceiverEndpoint %s is already registered.", messageLogBeanName));
             }
             if (!registry.containsBeanDefinition(eventSourceBeanName)) {
-                registerEventSourceBeanDefinition(registry, eventSourceBeanName, messageLogBeanName, channelName);
+                registerEventSourceBeanDefinition(registry, eventSourceBeanName, messageLogBeanName, channelName, concurrency, maxInFlight, checkpoint);
             } else {
                 throw new BeanCreationException(eventSourceBeanName, format("EventSource %s is already registered.", eventSourceBeanName));
             }
@@ -101,13 +104,17 @@ public class EventSourceBeanRegistrar implements ImportBeanDefinitionRegistrar,
                     emptyToNull(eventSourceAttr.getFirst("messageLogReceiverEndpoint").toString()),
                     beanNameForMessageLogReceiverEndpoint(channelName));
 
+            final int concurrency = positiveIntOf(eventSourceBeanName, "concurrency", eventSourceAttr.getFirst("concurrency").toString());
+            final int maxInFlight = positiveIntOf(eventSourceBeanName, "maxInFlight", eventSourceAttr.getFirst("maxInFlight").toString());
+            final boolean checkpoint = booleanOf(eventSourceBeanName, "checkpoint", eventSourceAttr.getFirst("checkpoint").toString());
+
             if (!registry.containsBeanDefinition(messageLogBeanName)) {
                 registerMessageLogBeanDefinition(registry, messageLogBeanName, channelName);
             } else {
                 throw new BeanCreationException(messageLogBeanName, format("MessageLogReceiverEndpoint %s is already registered.", messageLogBeanName));
             }
             if (!registry.containsBeanDefinition(eventSourceBeanName)) {
-                registerEventSourceBeanDefinition(registry, eventSourceBeanName, messageLogBeanName, channelName);
+                registerEventSourceBeanDefinition(registry, eventSourceBeanName, messageLogBeanName, channelName, concurrency, maxInFlight, checkpoint);
             } else {
                 throw new BeanCreationException(eventSourceBeanName, format("EventSource %s is already registered.", eventSourceBeanName));
             }
@@ -133,15 +140,42 @@ public class EventSourceBeanRegistrar implements ImportBeanDefinitionRegistrar,
     private void registerEventSourceBeanDefinition(final BeanDefinitionRegistry registry,
                                                    final String beanName,
                                                    final String messageLogBeanName,
-                                                   final String channelName) {
+                                                   final String channelName,
+                                                   final int concurrency,
+                                                   final int maxInFlight,
+                                                   final boolean checkpoint) {
         registry.registerBeanDefinition(
                 beanName,
                 genericBeanDefinition(DelegateEventSource.class)
                         .addConstructorArgValue(messageLogBeanName)
+                        .addConstructorArgValue(concurrency)
+                        .addConstructorArgValue(maxInFlight)
+                        .addConstructorArgValue(checkpoint ? beanName : null)
                         .setDependencyCheck(DEPENDENCY_CHECK_ALL)
                         .getBeanDefinition()
         );
-        LOG.info("Registered EventSource {} with for channelName {}", beanName, channelName);
+        LOG.info("Registered EventSource {} with for channelName {}, concurrency {}, maxInFlight {} and checkpoint {}", beanName, channelName, concurrency, maxInFlight, checkpoint);
+    }
+
+    private boolean booleanOf(final String eventSourceBeanName, final String attributeName, final String value) {
+        final String resolved = environment.resolvePlaceholders(value).trim();
+        if (resolved.equalsIgnoreCase("true") || resolved.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(resolved);
+        }
+        throw new BeanCreationException(eventSourceBeanName, format("Illegal %s '%s' of EventSource %s: must be 'true' or 'false'", attributeName, resolved, eventSourceBeanName));
+    }
+
+    private int positiveIntOf(final String eventSourceBeanName, final String attributeName, final String value) {
+        final String resolved = environment.resolvePlaceholders(value);
+        try {
+            final int result = Integer.parseInt(resolved.trim());
+            if (result < 1) {
+                throw new NumberFormatException(attributeName + " must be greater than 0");
+            }
+            return result;
+        } catch (final NumberFormatException e) {
+            throw new BeanCreationException(eventSourceBeanName, format("Illegal %s '%s' of EventSource %s: %s", attributeName, resolved, eventSourceBeanName, e.getMessage()));
+        }
     }
 
 }
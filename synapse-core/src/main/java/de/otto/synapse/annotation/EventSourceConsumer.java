@@ -1,5 +1,8 @@
 package de.otto.synapse.annotation;
 
+import de.otto.synapse.consumer.BulkheadMessageConsumer;
+import de.otto.synapse.consumer.BulkheadMessageConsumer.OverflowPolicy;
+import de.otto.synapse.consumer.MessageConsumer;
 import de.otto.synapse.eventsource.EventSource;
 import de.otto.synapse.message.Message;
 
@@ -32,4 +35,55 @@ public @interface EventSourceConsumer {
      */
     Class<?> payloadType();
 
+    /**
+     * JSON pointers, like {@code /id} or {@code /price/amount}, of the parts of the payload read by the consumer.
+     * If not empty, only these parts of JSON payloads are deserialized into the {@link #payloadType()}; all other
+     * parts are skipped by the parser.
+     *
+     * @return JSON pointers of the projected parts of the payload; defaults to an empty array, so the whole
+     *         payload is deserialized
+     * @see de.otto.synapse.translator.PayloadProjection#of(String...)
+     */
+    String[] payloadProjection() default {};
+
+    /**
+     * If true, only the properties of the {@link #payloadType()} are parsed, and all other parts of JSON payloads,
+     * including nested objects and arrays, are skipped. Ignored, if {@link #payloadProjection()} is not empty.
+     *
+     * @return boolean; defaults to false
+     * @see de.otto.synapse.translator.PayloadProjection#ofPropertiesOf(Class)
+     */
+    boolean projectPayloadType() default false;
+
+    /**
+     * The capacity of a {@link BulkheadMessageConsumer bulkhead} isolating the consumer from the other consumers
+     * of the EventSource. If greater than 0, messages are processed by a separate thread, so a slow consumer is
+     * not delaying the other consumers. The position of the channel is not waiting for isolated consumers, so
+     * this should only be used for best-effort consumers.
+     *
+     * <p>
+     *     Bulkheads are only supported for single-message consumers: annotated methods accepting a {@code List}
+     *     of messages or returning a {@code CompletionStage} must not configure a bulkhead.
+     * </p>
+     *
+     * @return capacity of the bulkhead; defaults to 0, so the consumer is not isolated
+     */
+    int bulkheadCapacity() default 0;
+
+    /**
+     * The policy applied if the {@link #bulkheadCapacity() bulkhead} of the consumer is full.
+     *
+     * @return overflow policy; defaults to {@link OverflowPolicy#BLOCK}
+     */
+    OverflowPolicy overflowPolicy() default OverflowPolicy.BLOCK;
+
+    /**
+     * The name of a {@link de.otto.synapse.consumer.MessageConsumer} bean receiving the messages spilled by
+     * {@link OverflowPolicy#SPILL}. The {@link MessageConsumer#payloadType() payload type} of the spill consumer
+     * must be assignable from the {@link #payloadType()} of the annotated method.
+     *
+     * @return bean name of the spill consumer
+     */
+    String spillConsumer() default "";
+
 }
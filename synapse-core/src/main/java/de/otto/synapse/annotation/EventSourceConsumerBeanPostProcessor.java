@@ -1,10 +1,19 @@
 package de.otto.synapse.annotation;
 
+import de.otto.synapse.consumer.AsyncMessageConsumer;
+import de.otto.synapse.consumer.BatchMessageConsumer;
+import de.otto.synapse.consumer.BulkheadMessageConsumer;
+import de.otto.synapse.consumer.MessageConsumer;
+import de.otto.synapse.consumer.MethodInvokingAsyncMessageConsumer;
+import de.otto.synapse.consumer.MethodInvokingBatchMessageConsumer;
 import de.otto.synapse.consumer.MethodInvokingMessageConsumer;
 import de.otto.synapse.eventsource.EventSource;
+import de.otto.synapse.translator.PayloadProjection;
 import org.slf4j.Logger;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -16,14 +25,19 @@ import org.springframework.core.annotation.AnnotationUtils;
 import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import static de.otto.synapse.consumer.MethodInvokingAsyncMessageConsumer.isAsyncConsumerMethod;
+import static de.otto.synapse.consumer.MethodInvokingBatchMessageConsumer.isBatchConsumerMethod;
+import static java.lang.String.format;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.core.MethodIntrospector.selectMethods;
 
-public class EventSourceConsumerBeanPostProcessor implements BeanPostProcessor, Ordered, ApplicationContextAware {
+public class EventSourceConsumerBeanPostProcessor implements BeanPostProcessor, Ordered, ApplicationContextAware, DisposableBean {
 
     private static final Logger LOG = getLogger(EventSourceConsumerBeanPostProcessor.class);
 
@@ -31,6 +45,8 @@ public class EventSourceConsumerBeanPostProcessor implements BeanPostProcessor,
             Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>(64));
 
 
+    private final List<BulkheadMessageConsumer<?>> bulkheads = new CopyOnWriteArrayList<>();
+
     private ConfigurableApplicationContext applicationContext;
 
     @Override
@@ -60,6 +76,15 @@ public class EventSourceConsumerBeanPostProcessor implements BeanPostProcessor,
         return bean;
     }
 
+    /**
+     * Stops the worker threads of the {@link EventSourceConsumer#bulkheadCapacity() bulkheads} of isolated consumers.
+     */
+    @Override
+    public void destroy() {
+        bulkheads.forEach(BulkheadMessageConsumer::close);
+        bulkheads.clear();
+    }
+
     @Override
     public Object postProcessAfterInitialization(final Object bean, final String beanName) {
         return bean;
@@ -80,7 +105,7 @@ public class EventSourceConsumerBeanPostProcessor implements BeanPostProcessor,
             final Method method = entry.getKey();
             for (EventSourceConsumer consumerAnnotation : entry.getValue()) {
                 matchingEventSourceFor(consumerAnnotation)
-                        .register(eventConsumerFor(consumerAnnotation, method, bean));
+                        .register(isolated(consumerAnnotation, beanName + "." + method.getName(), eventConsumerFor(consumerAnnotation, method, bean)));
             }
         }
         LOG.info("{} @EventSourceConsumer methods processed on bean {} : {}'", annotatedMethods.size(), beanName, annotatedMethods);
@@ -98,10 +123,48 @@ public class EventSourceConsumerBeanPostProcessor implements BeanPostProcessor,
         return listeners;
     }
 
-    private MethodInvokingMessageConsumer<?> eventConsumerFor(final EventSourceConsumer annotation,
-                                                              final Method annotatedMethod,
-                                                              final Object bean) {
-        return new MethodInvokingMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), bean, annotatedMethod);
+    private MessageConsumer<?> eventConsumerFor(final EventSourceConsumer annotation,
+                                                final Method annotatedMethod,
+                                                final Object bean) {
+        final PayloadProjection projection = payloadProjectionOf(annotation);
+        if (isBatchConsumerMethod(annotatedMethod)) {
+            return new MethodInvokingBatchMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), projection, bean, annotatedMethod);
+        }
+        if (isAsyncConsumerMethod(annotatedMethod)) {
+            return new MethodInvokingAsyncMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), projection, bean, annotatedMethod);
+        }
+        return new MethodInvokingMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), projection, bean, annotatedMethod);
+    }
+
+    private PayloadProjection payloadProjectionOf(final EventSourceConsumer annotation) {
+        if (annotation.payloadProjection().length > 0) {
+            return PayloadProjection.of(annotation.payloadProjection());
+        }
+        return annotation.projectPayloadType()
+                ? PayloadProjection.ofPropertiesOf(annotation.payloadType())
+                : null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private MessageConsumer<?> isolated(final EventSourceConsumer annotation,
+                                        final String name,
+                                        final MessageConsumer<?> consumer) {
+        if (annotation.bulkheadCapacity() <= 0) {
+            return consumer;
+        }
+        if (consumer instanceof BatchMessageConsumer || consumer instanceof AsyncMessageConsumer) {
+            throw new BeanCreationException(name, format("Unable to isolate %s: bulkheads are only supported for single-message consumers, not for batch or asynchronous consumers", name));
+        }
+        final MessageConsumer spillConsumer = annotation.spillConsumer().isEmpty()
+                ? null
+                : applicationContext.getBean(annotation.spillConsumer(), MessageConsumer.class);
+        if (spillConsumer != null && !spillConsumer.payloadType().isAssignableFrom(consumer.payloadType())) {
+            throw new BeanCreationException(name, format("Spill consumer %s of %s is expecting payload type %s instead of %s", annotation.spillConsumer(), name, spillConsumer.payloadType().getName(), consumer.payloadType().getName()));
+        }
+        final BulkheadMessageConsumer<?> bulkhead = new BulkheadMessageConsumer(
+                name, consumer, annotation.bulkheadCapacity(), annotation.overflowPolicy(), spillConsumer);
+        bulkheads.add(bulkhead);
+        return bulkhead;
     }
 
     private EventSource matchingEventSourceFor(final EventSourceConsumer annotation) {
@@ -50,4 +50,14 @@ public @interface MessageInterceptor {
      */
     EndpointType[] endpointType() default {EndpointType.SENDER, EndpointType.RECEIVER};
 
+    /**
+     * Marks the interceptor as {@link de.otto.synapse.endpoint.MessageInterceptor#isSideEffectFree() side-effect free}.
+     *
+     * <p>Only set this to {@code true}, if the annotated method is only modifying or filtering messages. Otherwise,
+     * receiver endpoints may skip messages that are not consumed by any consumer without intercepting them.</p>
+     *
+     * @return true, if the interceptor has no side effects
+     */
+    boolean sideEffectFree() default false;
+
 }
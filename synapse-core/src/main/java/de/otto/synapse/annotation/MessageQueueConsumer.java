@@ -20,4 +20,24 @@ public @interface MessageQueueConsumer {
      * @return payload type
      */
     Class<?> payloadType();
+
+    /**
+     * JSON pointers, like {@code /id} or {@code /price/amount}, of the parts of the payload read by the consumer.
+     * If not empty, only these parts of JSON payloads are deserialized into the {@link #payloadType()}; all other
+     * parts are skipped by the parser.
+     *
+     * @return JSON pointers of the projected parts of the payload; defaults to an empty array, so the whole
+     *         payload is deserialized
+     * @see de.otto.synapse.translator.PayloadProjection#of(String...)
+     */
+    String[] payloadProjection() default {};
+
+    /**
+     * If true, only the properties of the {@link #payloadType()} are parsed, and all other parts of JSON payloads,
+     * including nested objects and arrays, are skipped. Ignored, if {@link #payloadProjection()} is not empty.
+     *
+     * @return boolean; defaults to false
+     * @see de.otto.synapse.translator.PayloadProjection#ofPropertiesOf(Class)
+     */
+    boolean projectPayloadType() default false;
 }
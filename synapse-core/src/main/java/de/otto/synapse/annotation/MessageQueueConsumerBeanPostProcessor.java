@@ -1,8 +1,12 @@
 package de.otto.synapse.annotation;
 
+import de.otto.synapse.consumer.MessageConsumer;
+import de.otto.synapse.consumer.MethodInvokingAsyncMessageConsumer;
+import de.otto.synapse.consumer.MethodInvokingBatchMessageConsumer;
 import de.otto.synapse.consumer.MethodInvokingMessageConsumer;
 import de.otto.synapse.endpoint.receiver.MessageQueueReceiverEndpoint;
 import de.otto.synapse.endpoint.receiver.MessageReceiverEndpoint;
+import de.otto.synapse.translator.PayloadProjection;
 import org.slf4j.Logger;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.BeansException;
@@ -21,6 +25,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static de.otto.synapse.consumer.MethodInvokingAsyncMessageConsumer.isAsyncConsumerMethod;
+import static de.otto.synapse.consumer.MethodInvokingBatchMessageConsumer.isBatchConsumerMethod;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.core.MethodIntrospector.selectMethods;
 
@@ -99,10 +105,26 @@ public class MessageQueueConsumerBeanPostProcessor implements BeanPostProcessor,
         return listeners;
     }
 
-    private MethodInvokingMessageConsumer<?> messageQueueConsumerFor(final MessageQueueConsumer annotation,
-                                                                     final Method annotatedMethod,
-                                                                     final Object bean) {
-        return new MethodInvokingMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), bean, annotatedMethod);
+    private MessageConsumer<?> messageQueueConsumerFor(final MessageQueueConsumer annotation,
+                                                       final Method annotatedMethod,
+                                                       final Object bean) {
+        final PayloadProjection projection = payloadProjectionOf(annotation);
+        if (isBatchConsumerMethod(annotatedMethod)) {
+            return new MethodInvokingBatchMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), projection, bean, annotatedMethod);
+        }
+        if (isAsyncConsumerMethod(annotatedMethod)) {
+            return new MethodInvokingAsyncMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), projection, bean, annotatedMethod);
+        }
+        return new MethodInvokingMessageConsumer<>(annotation.keyPattern(), annotation.payloadType(), projection, bean, annotatedMethod);
+    }
+
+    private PayloadProjection payloadProjectionOf(final MessageQueueConsumer annotation) {
+        if (annotation.payloadProjection().length > 0) {
+            return PayloadProjection.of(annotation.payloadProjection());
+        }
+        return annotation.projectPayloadType()
+                ? PayloadProjection.ofPropertiesOf(annotation.payloadType())
+                : null;
     }
 
     private MessageReceiverEndpoint matchingMessageQueueReceiverEndpointFor(final MessageQueueConsumer annotation) {
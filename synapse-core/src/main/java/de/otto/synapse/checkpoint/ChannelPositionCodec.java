@@ -0,0 +1,86 @@
+package de.otto.synapse.checkpoint;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import de.otto.synapse.channel.ChannelPosition;
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.channel.StartFrom;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.otto.synapse.channel.ChannelPosition.channelPosition;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Encodes {@link ChannelPosition channel positions} into JSON documents and vice versa.
+ * <p>
+ *     The positions are encoded as a JSON object, containing the {@link ShardPosition} of every shard:
+ * </p>
+ * <pre><code>
+ * {
+ *     "shard-1": { "startFrom": "POSITION", "position": "4711" },
+ *     "shard-2": { "startFrom": "HORIZON" }
+ * }
+ * </code></pre>
+ */
+public final class ChannelPositionCodec {
+
+    private static final TypeReference<Map<String, Map<String, String>>> SHARD_POSITIONS_TYPE = new TypeReference<Map<String, Map<String, String>>>() {};
+
+    private ChannelPositionCodec() {
+    }
+
+    public static String encode(final ChannelPosition channelPosition) {
+        final Map<String, Map<String, String>> shardPositions = new LinkedHashMap<>();
+        channelPosition.shards().forEach(shardName -> {
+            final ShardPosition shardPosition = channelPosition.shard(shardName);
+            final Map<String, String> encoded = new LinkedHashMap<>();
+            encoded.put("startFrom", shardPosition.startFrom().name());
+            if (shardPosition.position() != null && !shardPosition.position().isEmpty()) {
+                encoded.put("position", shardPosition.position());
+            }
+            if (shardPosition.timestamp() != null) {
+                encoded.put("timestamp", shardPosition.timestamp().toString());
+            }
+            shardPositions.put(shardName, encoded);
+        });
+        try {
+            return currentObjectMapper().writeValueAsString(shardPositions);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode ChannelPosition " + channelPosition + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static ChannelPosition decode(final String json) {
+        try {
+            final Map<String, Map<String, String>> shardPositions = currentObjectMapper().readValue(json, SHARD_POSITIONS_TYPE);
+            final List<ShardPosition> positions = shardPositions
+                    .entrySet()
+                    .stream()
+                    .map(entry -> decodeShardPosition(entry.getKey(), entry.getValue()))
+                    .collect(toList());
+            return channelPosition(positions);
+        } catch (final IOException | RuntimeException e) {
+            throw new IllegalStateException("Failed to decode ChannelPosition from " + json + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static ShardPosition decodeShardPosition(final String shardName, final Map<String, String> encoded) {
+        final StartFrom startFrom = StartFrom.valueOf(encoded.get("startFrom"));
+        switch (startFrom) {
+            case POSITION:
+                return ShardPosition.fromPosition(shardName, encoded.get("position"));
+            case AT_POSITION:
+                return ShardPosition.atPosition(shardName, encoded.get("position"));
+            case TIMESTAMP:
+                return ShardPosition.fromTimestamp(shardName, Instant.parse(encoded.get("timestamp")));
+            default:
+                return ShardPosition.fromHorizon(shardName);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.otto.synapse.checkpoint;
+
+import de.otto.synapse.channel.ChannelPosition;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+
+/**
+ * A {@code CheckpointStore} is used to durably store the {@link ChannelPosition} reached by an event source.
+ * <p>
+ *     EventSources with enabled checkpoints are periodically storing the position that was reached after messages
+ *     have been dispatched to the registered consumers. After a restart, consumption resumes from the stored
+ *     position, instead of reading the latest snapshot and replaying all messages after the snapshot.
+ * </p>
+ * <p>
+ *     Checkpoints are stored per event source, not per channel: multiple event sources may consume the same
+ *     channel, and every event source is only resuming from its own position.
+ * </p>
+ * <p>
+ *     Resuming from a checkpoint is only safe, if the state derived from consumed messages is persistent as well:
+ *     a {@link de.otto.synapse.state.StateRepository} that is losing its content on restart requires the
+ *     snapshot to be read again.
+ * </p>
+ */
+public interface CheckpointStore {
+
+    /**
+     * Returns the stored channel position of the given event source.
+     *
+     * @param eventSourceName the name of the event source
+     * @return the optional channel position, or {@code Optional.empty()} if there is no checkpoint for the
+     * event source.
+     */
+    @Nonnull
+    Optional<ChannelPosition> getChannelPosition(@Nonnull String eventSourceName);
+
+    /**
+     * Stores the channel position of the given event source, replacing the previous checkpoint.
+     *
+     * @param eventSourceName the name of the event source
+     * @param channelPosition the position reached in the channel consumed by the event source
+     */
+    void saveChannelPosition(@Nonnull String eventSourceName, @Nonnull ChannelPosition channelPosition);
+
+}
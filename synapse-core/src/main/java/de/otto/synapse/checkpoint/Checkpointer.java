@@ -0,0 +1,130 @@
+package de.otto.synapse.checkpoint;
+
+import de.otto.synapse.channel.ChannelPosition;
+import de.otto.synapse.channel.ShardPosition;
+import org.slf4j.Logger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static de.otto.synapse.channel.ChannelPosition.merge;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps track of the position of a channel while messages are consumed by an event source and periodically saves
+ * the position into a {@link CheckpointStore}.
+ * <p>
+ *     Positions are {@link #update(ShardPosition) updated} after the messages of a shard have been dispatched.
+ *     Saving the checkpoint is done asynchronously, so the consumption of messages is not blocked by a slow
+ *     CheckpointStore. Checkpoints are only saved if the position has changed since the last save.
+ * </p>
+ */
+@ThreadSafe
+public class Checkpointer {
+
+    private static final Logger LOG = getLogger(Checkpointer.class);
+
+    public static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.ofSeconds(5);
+
+    private static final ScheduledExecutorService CHECKPOINT_SCHEDULER = newSingleThreadScheduledExecutor(checkpointThreadFactory());
+
+    private final String eventSourceName;
+    private final CheckpointStore checkpointStore;
+    private final Duration checkpointInterval;
+    private final AtomicReference<ChannelPosition> channelPosition = new AtomicReference<>(ChannelPosition.fromHorizon());
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> scheduledCheckpoints;
+
+    public Checkpointer(final @Nonnull String eventSourceName,
+                        final @Nonnull CheckpointStore checkpointStore,
+                        final @Nonnull Duration checkpointInterval) {
+        checkArgument(!checkpointInterval.isNegative() && !checkpointInterval.isZero(), "checkpointInterval must be positive");
+        this.eventSourceName = eventSourceName;
+        this.checkpointStore = checkpointStore;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Starts to periodically save checkpoints, beginning with the given position.
+     *
+     * @param startFrom the position where consumption of the channel starts
+     */
+    public synchronized void start(final @Nonnull ChannelPosition startFrom) {
+        channelPosition.set(startFrom);
+        if (scheduledCheckpoints == null) {
+            final long intervalMillis = checkpointInterval.toMillis();
+            scheduledCheckpoints = CHECKPOINT_SCHEDULER.scheduleWithFixedDelay(this::saveIfChanged, intervalMillis, intervalMillis, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Updates the position of a single shard. The position will be saved with the next checkpoint.
+     *
+     * @param shardPosition the position of the last dispatched message of the shard
+     */
+    public void update(final @Nonnull ShardPosition shardPosition) {
+        channelPosition.updateAndGet(current -> merge(current, shardPosition));
+        dirty.set(true);
+    }
+
+    /**
+     * Synchronously saves the current position, if it has changed since the last checkpoint.
+     */
+    public void flush() {
+        saveIfChanged();
+    }
+
+    /**
+     * Stops the periodic checkpoints and synchronously saves the final position of the channel.
+     *
+     * @param finalPosition the position reached when consumption of the channel was finished.
+     */
+    public synchronized void stop(final @Nonnull ChannelPosition finalPosition) {
+        channelPosition.updateAndGet(current -> merge(current, finalPosition));
+        dirty.set(true);
+        stop();
+    }
+
+    /**
+     * Stops the periodic checkpoints and synchronously saves the last updated position, if it was not yet saved.
+     */
+    public synchronized void stop() {
+        if (scheduledCheckpoints != null) {
+            scheduledCheckpoints.cancel(false);
+            scheduledCheckpoints = null;
+        }
+        saveIfChanged();
+    }
+
+    @Nonnull
+    public ChannelPosition getChannelPosition() {
+        return channelPosition.get();
+    }
+
+    private synchronized void saveIfChanged() {
+        if (dirty.getAndSet(false)) {
+            final ChannelPosition position = channelPosition.get();
+            try {
+                checkpointStore.saveChannelPosition(eventSourceName, position);
+            } catch (final RuntimeException e) {
+                dirty.set(true);
+                LOG.warn("Failed to save checkpoint {} of EventSource '{}': {}", position, eventSourceName, e.getMessage());
+            }
+        }
+    }
+
+    private static CustomizableThreadFactory checkpointThreadFactory() {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("synapse-checkpoint-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
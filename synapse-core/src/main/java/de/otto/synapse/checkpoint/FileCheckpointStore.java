@@ -0,0 +1,86 @@
+package de.otto.synapse.checkpoint;
+
+import de.otto.synapse.channel.ChannelPosition;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A {@link CheckpointStore} that is storing the channel positions in the local file system.
+ * <p>
+ *     Every event source is stored in a separate file {@code <eventSourceName>.checkpoint.json} in the
+ *     configured directory.
+ *     Checkpoints are first written to a temporary file that is then moved to the target file, so a crash while
+ *     saving a checkpoint will not leave a corrupted file behind.
+ * </p>
+ */
+@ThreadSafe
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final Logger LOG = getLogger(FileCheckpointStore.class);
+
+    private static final String FILE_SUFFIX = ".checkpoint.json";
+
+    private final Path directory;
+
+    public FileCheckpointStore(final @Nonnull Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to create checkpoint directory " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Optional<ChannelPosition> getChannelPosition(final @Nonnull String eventSourceName) {
+        final Path file = checkpointFile(eventSourceName);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(ChannelPositionCodec.decode(new String(Files.readAllBytes(file), UTF_8)));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to read checkpoint " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void saveChannelPosition(final @Nonnull String eventSourceName,
+                                                 final @Nonnull ChannelPosition channelPosition) {
+        final Path file = checkpointFile(eventSourceName);
+        try {
+            final Path tempFile = Files.createTempFile(directory, eventSourceName, ".tmp");
+            Files.write(tempFile, ChannelPositionCodec.encode(channelPosition).getBytes(UTF_8));
+            try {
+                Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, REPLACE_EXISTING);
+            }
+            LOG.debug("Saved checkpoint {} of EventSource '{}' to {}", channelPosition, eventSourceName, file);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to write checkpoint " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path checkpointFile(final String eventSourceName) {
+        return directory.resolve(eventSourceName + FILE_SUFFIX);
+    }
+}
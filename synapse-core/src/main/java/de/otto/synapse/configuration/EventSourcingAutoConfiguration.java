@@ -1,7 +1,9 @@
 package de.otto.synapse.configuration;
 
 import de.otto.synapse.annotation.EventSourceConsumerBeanPostProcessor;
-import de.otto.synapse.eventsource.DefaultEventSource;
+import de.otto.synapse.checkpoint.CheckpointStore;
+import de.otto.synapse.checkpoint.FileCheckpointStore;
+import de.otto.synapse.eventsource.DefaultEventSourceBuilder;
 import de.otto.synapse.eventsource.EventSource;
 import de.otto.synapse.eventsource.EventSourceBuilder;
 import de.otto.synapse.eventsource.EventSourceConsumerProcess;
@@ -16,7 +18,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Role;
 
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.beans.factory.config.BeanDefinition.ROLE_INFRASTRUCTURE;
@@ -32,11 +36,21 @@ public class EventSourcingAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public EventSourceBuilder eventSourceBuilder(final MessageStoreFactory<SnapshotMessageStore> snapshotMessageStoreFactory) {
-        return (messageLogReceiverEndpoint) -> {
-            final SnapshotMessageStore messageStore = snapshotMessageStoreFactory.createMessageStoreFor(messageLogReceiverEndpoint.getChannelName());
-            return new DefaultEventSource(messageStore, messageLogReceiverEndpoint);
-        };
+    public EventSourceBuilder eventSourceBuilder(final MessageStoreFactory<SnapshotMessageStore> snapshotMessageStoreFactory,
+                                                 final Optional<CheckpointStore> checkpointStore,
+                                                 final SynapseProperties synapseProperties) {
+        return new DefaultEventSourceBuilder(snapshotMessageStoreFactory, checkpointStore.orElse(null), synapseProperties.getCheckpoint().getInterval());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(
+            prefix = "synapse",
+            name = "checkpoint.file.directory")
+    public CheckpointStore fileCheckpointStore(final SynapseProperties synapseProperties) {
+        final String directory = synapseProperties.getCheckpoint().getFile().getDirectory();
+        LOG.info("Using FileCheckpointStore in directory {}", directory);
+        return new FileCheckpointStore(Paths.get(directory));
     }
 
     @Bean
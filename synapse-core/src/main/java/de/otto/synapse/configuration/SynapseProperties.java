@@ -1,11 +1,21 @@
 package de.otto.synapse.configuration;
 
+import de.otto.synapse.checkpoint.Checkpointer;
+import de.otto.synapse.translator.CompressionCodec;
+import de.otto.synapse.translator.CompressionCodecs;
+import de.otto.synapse.translator.MessageFormat;
+import de.otto.synapse.translator.PayloadCodec;
+import de.otto.synapse.translator.PayloadCodecs;
+import de.otto.synapse.translator.TextEncoder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "synapse")
 public class SynapseProperties {
     private final ConsumerProcess consumerProcess = new ConsumerProcess();
+    private final Checkpoint checkpoint = new Checkpoint();
     private final Sender sender;
     private final Receiver receiver;
 
@@ -18,6 +28,10 @@ public class SynapseProperties {
         return consumerProcess;
     }
 
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
     public Sender getSender() {
         return sender;
     }
@@ -39,6 +53,29 @@ public class SynapseProperties {
 
         private final DefaultHeaders defaultHeaders = new DefaultHeaders();
 
+        /**
+         * The format used by message senders to encode messages. Receivers are able to decode all formats, so
+         * receivers must be upgraded before senders switch to a newer format.
+         */
+        private MessageFormat messageFormat = MessageFormat.defaultMessageFormat();
+
+        private final Compression compression = new Compression();
+
+        /**
+         * If true, payloads looking like JSON objects or arrays are embedded into V2 messages without checking that
+         * they are valid JSON. Only enable this, if all payloads sent by the application are known to be valid JSON.
+         */
+        private boolean trustJsonPayloads = false;
+
+        /**
+         * The name of the {@link PayloadCodec} used to encode the payloads of messages, like 'json', 'smile' or
+         * 'cbor'. Codecs registered for a payload type using {@link PayloadCodecs#register(Class, PayloadCodec)}
+         * take precedence. Receivers must know the codec, and codecs other than 'json' require message format V2 or V3,
+         * so receivers are able to read the codec from the header of the message: senders using message format V1
+         * are rejected on startup.
+         */
+        private String payloadCodec = PayloadCodecs.JSON.name();
+
         private Sender(final String defaultName) {
             this.name = defaultName;
         }
@@ -51,10 +88,46 @@ public class SynapseProperties {
             this.name = name;
         }
 
+        public MessageFormat getMessageFormat() {
+            return messageFormat;
+        }
+
+        public void setMessageFormat(MessageFormat messageFormat) {
+            this.messageFormat = messageFormat;
+        }
+
         public DefaultHeaders getDefaultHeaders() {
             return defaultHeaders;
         }
 
+        public Compression getCompression() {
+            return compression;
+        }
+
+        public boolean isTrustJsonPayloads() {
+            return trustJsonPayloads;
+        }
+
+        public void setTrustJsonPayloads(boolean trustJsonPayloads) {
+            this.trustJsonPayloads = trustJsonPayloads;
+        }
+
+        public String getPayloadCodec() {
+            return payloadCodec;
+        }
+
+        public void setPayloadCodec(String payloadCodec) {
+            this.payloadCodec = payloadCodec;
+        }
+
+        /**
+         * @return the configured payload codec
+         * @throws IllegalArgumentException if the codec is unknown
+         */
+        public PayloadCodec toPayloadCodec() {
+            return payloadCodec == null || payloadCodec.isEmpty() ? PayloadCodecs.JSON : PayloadCodecs.codecFor(payloadCodec);
+        }
+
 
         public class DefaultHeaders {
             private boolean enabled = true;
@@ -67,16 +140,62 @@ public class SynapseProperties {
                 this.enabled = enabled;
             }
         }
+
+        /**
+         * Compression of messages sent by message senders supporting compression. Receivers are automatically
+         * decompressing messages, as long as the codec is known by the receiver.
+         */
+        public static class Compression {
+            /**
+             * The name of the {@link CompressionCodec} used to compress messages, like 'gzip' or 'deflate'.
+             * If empty, messages are not compressed.
+             */
+            private String codec;
+            /**
+             * The minimum number of characters of encoded messages that are compressed.
+             */
+            private int minSize = TextEncoder.DEFAULT_MIN_COMPRESSION_SIZE;
+
+            public String getCodec() {
+                return codec;
+            }
+
+            public void setCodec(String codec) {
+                this.codec = codec;
+            }
+
+            public int getMinSize() {
+                return minSize;
+            }
+
+            public void setMinSize(int minSize) {
+                this.minSize = minSize;
+            }
+
+            /**
+             * @return the configured codec, or null if compression is disabled
+             * @throws IllegalArgumentException if the codec is unknown
+             */
+            public CompressionCodec toCompressionCodec() {
+                return codec == null || codec.isEmpty() ? null : CompressionCodecs.codecFor(codec);
+            }
+        }
     }
 
     public static class Receiver {
 
         private final DefaultHeaders defaultHeaders = new DefaultHeaders();
 
+        private final MessageQueue messageQueue = new MessageQueue();
+
         public DefaultHeaders getDefaultHeaders() {
             return defaultHeaders;
         }
 
+        public MessageQueue getMessageQueue() {
+            return messageQueue;
+        }
+
         public class DefaultHeaders {
             private boolean enabled = true;
 
@@ -88,6 +207,38 @@ public class SynapseProperties {
                 this.enabled = enabled;
             }
         }
+
+        /**
+         * Batching of messages received by message queue receivers supporting batches.
+         */
+        public static class MessageQueue {
+            /**
+             * The maximum number of messages dispatched to batch consumers at once. With the default of 1,
+             * every message is dispatched and acknowledged separately.
+             */
+            private int maxBatchSize = 1;
+            /**
+             * The maximum time to wait for more messages, before an incomplete batch is dispatched. SQS receivers
+             * accept at most two seconds, so batches are processed within the visibility timeout of the messages.
+             */
+            private Duration lingerTime = Duration.ZERO;
+
+            public int getMaxBatchSize() {
+                return maxBatchSize;
+            }
+
+            public void setMaxBatchSize(int maxBatchSize) {
+                this.maxBatchSize = maxBatchSize;
+            }
+
+            public Duration getLingerTime() {
+                return lingerTime;
+            }
+
+            public void setLingerTime(Duration lingerTime) {
+                this.lingerTime = lingerTime;
+            }
+        }
     }
 
     public static class ConsumerProcess {
@@ -101,4 +252,43 @@ public class SynapseProperties {
             this.enabled = enabled;
         }
     }
+
+    public static class Checkpoint {
+
+        /**
+         * The interval used to save the positions of consumed channels into the configured CheckpointStore.
+         */
+        private Duration interval = Checkpointer.DEFAULT_CHECKPOINT_INTERVAL;
+
+        private final File file = new File();
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public static class File {
+
+            /**
+             * The directory used to store checkpoints. If configured, a FileCheckpointStore is used to
+             * resume event sources with enabled checkpoints from the last checkpoint after a restart.
+             */
+            private String directory;
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+        }
+    }
 }
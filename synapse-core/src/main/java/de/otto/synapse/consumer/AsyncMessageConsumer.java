@@ -0,0 +1,76 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static java.util.regex.Pattern.compile;
+
+/**
+ * A {@link MessageConsumer} that is processing messages asynchronously, for example by calling a remote service
+ * without blocking the thread that is dispatching the messages.
+ * <p>
+ *     If messages are dispatched by a {@link KeyOrderedDispatcher}, up to
+ *     {@link MessageDispatcher#getMaxInFlight() maxInFlight} messages of every lane are processed at the same time.
+ *     Messages having the same {@link de.otto.synapse.message.Key#partitionKey() partition key} are still processed
+ *     one after another, and the position of a channel only advances after the returned futures of all earlier
+ *     messages are completed.
+ * </p>
+ * <p>
+ *     Receivers that are not supporting asynchronous consumers, are {@link #accept(Message) accepting} messages
+ *     by waiting for the completion of {@link #acceptAsync(Message)}.
+ * </p>
+ *
+ * @param <T> the type of the messages's payload
+ */
+@ThreadSafe
+public interface AsyncMessageConsumer<T> extends MessageConsumer<T> {
+
+    static <T> AsyncMessageConsumer<T> of(final String keyPattern,
+                                          final Class<T> payloadType,
+                                          final Function<Message<T>, ? extends CompletionStage<Void>> consumer) {
+        return new AsyncMessageConsumer<T>() {
+
+            private Pattern pattern = compile(keyPattern);
+
+            @Override
+            @Nonnull
+            public Class<T> payloadType() {
+                return payloadType;
+            }
+
+            @Override
+            @Nonnull
+            public Pattern keyPattern() {
+                return pattern;
+            }
+
+            @Override
+            public CompletionStage<Void> acceptAsync(final Message<T> message) {
+                return consumer.apply(message);
+            }
+        };
+    }
+
+    /**
+     * Starts processing the message.
+     *
+     * @param message the message
+     * @return CompletionStage that is completed after the message is processed
+     */
+    CompletionStage<Void> acceptAsync(Message<T> message);
+
+    /**
+     * Accepts the message and waits until it is processed.
+     *
+     * @param message the message
+     */
+    @Override
+    default void accept(final Message<T> message) {
+        acceptAsync(message).toCompletableFuture().join();
+    }
+}
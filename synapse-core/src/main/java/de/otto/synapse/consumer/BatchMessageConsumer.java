@@ -0,0 +1,75 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static java.util.Collections.singletonList;
+import static java.util.regex.Pattern.compile;
+
+/**
+ * A {@link MessageConsumer} that is able to consume batches of messages at once.
+ * <p>
+ *     Batch consumers are able to amortize the overhead of processing single messages, for example by writing
+ *     all messages of a batch into a database using a single bulk request.
+ * </p>
+ * <p>
+ *     The messages of a batch are accepted by the {@link MessageDispatcher#acceptAll(List) MessageDispatcher}
+ *     after all single-message consumers of the dispatcher have accepted the messages of the same batch. Batches
+ *     only contain messages matching the {@link #keyPattern()} of the consumer, in the order of their arrival.
+ *     Depending on the receiver endpoint, a batch may contain all messages of a Kinesis {@code ShardResponse},
+ *     or a configurable number of messages received from a message queue.
+ * </p>
+ *
+ * @param <T> the type of the messages's payload
+ */
+@ThreadSafe
+public interface BatchMessageConsumer<T> extends MessageConsumer<T> {
+
+    static <T> BatchMessageConsumer<T> of(final String keyPattern,
+                                          final Class<T> payloadType,
+                                          final Consumer<List<Message<T>>> consumer) {
+        return new BatchMessageConsumer<T>() {
+
+            private Pattern pattern = compile(keyPattern);
+
+            @Override
+            @Nonnull
+            public Class<T> payloadType() {
+                return payloadType;
+            }
+
+            @Override
+            @Nonnull
+            public Pattern keyPattern() {
+                return pattern;
+            }
+
+            @Override
+            public void acceptAll(final List<Message<T>> messages) {
+                consumer.accept(messages);
+            }
+        };
+    }
+
+    /**
+     * Accepts a batch of messages.
+     *
+     * @param messages the non-empty list of messages, in the order of their arrival
+     */
+    void acceptAll(List<Message<T>> messages);
+
+    /**
+     * Accepts a single message as a batch containing only this message.
+     *
+     * @param message the message
+     */
+    @Override
+    default void accept(final Message<T> message) {
+        acceptAll(singletonList(message));
+    }
+}
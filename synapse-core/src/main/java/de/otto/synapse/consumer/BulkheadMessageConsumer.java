@@ -0,0 +1,284 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+import de.otto.synapse.translator.PayloadProjection;
+import org.slf4j.Logger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A {@link MessageConsumer} that is isolating a delegate consumer from the other consumers of a channel.
+ * <p>
+ *     Accepted messages are added to a bounded queue and processed by a separate worker thread, so a slow or stuck
+ *     delegate is not delaying the other consumers of the channel. The worker processes messages in the order of
+ *     their arrival, so messages having the same key are still processed in order.
+ * </p>
+ * <p>
+ *     If the queue is full, the {@link OverflowPolicy} of the bulkhead applies: {@link OverflowPolicy#BLOCK}
+ *     is slowing down the channel until the queue has free capacity, {@link OverflowPolicy#DROP} is discarding the
+ *     message and {@link OverflowPolicy#SPILL} is passing the message to a spill consumer, for example a
+ *     {@code MessageConsumer} sending the message to a retry queue.
+ * </p>
+ * <p>
+ *     The position of a channel is not waiting for the messages queued in a bulkhead, so messages that are not
+ *     yet processed when the bulkhead is {@link #close() closed} are lost. Bulkheads are therefore intended for
+ *     best-effort consumers, like analytics, that should not interfere with consumers maintaining state.
+ * </p>
+ * <p>
+ *     If registered at a {@link MessageDispatcher}, the bulkhead receives its own copy of the deserialized payload
+ *     instead of the instance shared with the other consumers of the message, so the delegate may process the
+ *     payload concurrently to the other consumers.
+ * </p>
+ *
+ * @param <T> the type of the messages's payload
+ */
+@ThreadSafe
+public class BulkheadMessageConsumer<T> implements MessageConsumer<T>, AutoCloseable {
+
+    private static final Logger LOG = getLogger(BulkheadMessageConsumer.class);
+
+    /**
+     * The policy applied to messages accepted by a {@link BulkheadMessageConsumer} while its queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Block the dispatching thread until the queue has free capacity. */
+        BLOCK,
+        /** Discard the message. */
+        DROP,
+        /** Pass the message to the spill consumer of the bulkhead. */
+        SPILL
+    }
+
+    private final String name;
+    private final MessageConsumer<T> delegate;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final MessageConsumer<T> spillConsumer;
+    private final BlockingQueue<Queued<T>> queue;
+    private final Thread worker;
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong spilledMessages = new AtomicLong();
+    private volatile long processingSince;
+    private volatile boolean closed;
+
+    /**
+     * @param name the name of the bulkhead, used as the name of the worker thread
+     * @param delegate the isolated consumer
+     * @param capacity the maximum number of messages waiting to be processed by the delegate
+     * @param overflowPolicy the policy applied while the queue is full
+     * @param spillConsumer the consumer of messages spilled by {@link OverflowPolicy#SPILL}, or null
+     * @throws IllegalArgumentException if the delegate is a {@link BatchMessageConsumer} or
+     *                                  {@link AsyncMessageConsumer}, or if the payload type of the spill consumer
+     *                                  does not match the payload type of the delegate
+     */
+    public BulkheadMessageConsumer(final @Nonnull String name,
+                                   final @Nonnull MessageConsumer<T> delegate,
+                                   final int capacity,
+                                   final @Nonnull OverflowPolicy overflowPolicy,
+                                   final @Nullable MessageConsumer<T> spillConsumer) {
+        checkArgument(capacity > 0, "capacity must be greater than 0");
+        checkArgument(overflowPolicy != OverflowPolicy.SPILL || spillConsumer != null, "spillConsumer is required by OverflowPolicy.SPILL");
+        checkArgument(!(delegate instanceof BatchMessageConsumer) && !(delegate instanceof AsyncMessageConsumer), "batch and asynchronous consumers can not be isolated by a bulkhead");
+        checkArgument(spillConsumer == null || spillConsumer.payloadType().isAssignableFrom(delegate.payloadType()), "payload type of spillConsumer does not match the payload type of the delegate");
+        this.name = name;
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillConsumer = spillConsumer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("synapse-bulkhead-" + name + "-");
+        threadFactory.setDaemon(true);
+        this.worker = threadFactory.newThread(this::process);
+        this.worker.start();
+    }
+
+    public static <T> BulkheadMessageConsumer<T> blocking(final @Nonnull String name,
+                                                          final @Nonnull MessageConsumer<T> delegate,
+                                                          final int capacity) {
+        return new BulkheadMessageConsumer<>(name, delegate, capacity, OverflowPolicy.BLOCK, null);
+    }
+
+    public static <T> BulkheadMessageConsumer<T> dropping(final @Nonnull String name,
+                                                          final @Nonnull MessageConsumer<T> delegate,
+                                                          final int capacity) {
+        return new BulkheadMessageConsumer<>(name, delegate, capacity, OverflowPolicy.DROP, null);
+    }
+
+    public static <T> BulkheadMessageConsumer<T> spilling(final @Nonnull String name,
+                                                          final @Nonnull MessageConsumer<T> delegate,
+                                                          final int capacity,
+                                                          final @Nonnull MessageConsumer<T> spillConsumer) {
+        return new BulkheadMessageConsumer<>(name, delegate, capacity, OverflowPolicy.SPILL, spillConsumer);
+    }
+
+    @Nonnull
+    @Override
+    public Class<T> payloadType() {
+        return delegate.payloadType();
+    }
+
+    @Nonnull
+    @Override
+    public Pattern keyPattern() {
+        return delegate.keyPattern();
+    }
+
+    @Nullable
+    @Override
+    public PayloadProjection payloadProjection() {
+        return delegate.payloadProjection();
+    }
+
+    /**
+     * Adds the message to the queue of the bulkhead, applying the {@link OverflowPolicy} if the queue is full.
+     *
+     * @param message the message
+     */
+    @Override
+    public void accept(final Message<T> message) {
+        if (closed) {
+            throw new IllegalStateException("BulkheadMessageConsumer is already closed");
+        }
+        final Queued<T> queued = new Queued<>(message, System.nanoTime());
+        if (queue.offer(queued)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(queued);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for free capacity of bulkhead", e);
+                }
+                break;
+            case DROP:
+                droppedMessages.incrementAndGet();
+                LOG.debug("Dropped message {}: bulkhead is full", message.getKey());
+                break;
+            case SPILL:
+                spilledMessages.incrementAndGet();
+                spillConsumer.accept(message);
+                break;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the isolated consumer.
+     *
+     * @return MessageConsumer
+     */
+    public MessageConsumer<T> getDelegate() {
+        return delegate;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of messages waiting to be processed by the delegate.
+     *
+     * @return queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of messages discarded by {@link OverflowPolicy#DROP}.
+     *
+     * @return number of dropped messages
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Returns the number of messages passed to the spill consumer by {@link OverflowPolicy#SPILL}.
+     *
+     * @return number of spilled messages
+     */
+    public long getSpilledMessages() {
+        return spilledMessages.get();
+    }
+
+    /**
+     * Returns the lag of the delegate: the time since the oldest message, that is not yet processed by the delegate,
+     * was accepted by the bulkhead.
+     *
+     * @return duration behind the other consumers of the channel, or {@link Duration#ZERO} if all accepted messages
+     *         are processed
+     */
+    public Duration getDurationBehind() {
+        long since = processingSince;
+        if (since == 0) {
+            final Queued<T> head = queue.peek();
+            since = head != null ? head.acceptedAt : 0;
+        }
+        return since != 0
+                ? Duration.ofNanos(System.nanoTime() - since)
+                : Duration.ZERO;
+    }
+
+    /**
+     * Stops the worker thread. Messages that are not yet processed are discarded.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            worker.interrupt();
+            if (!queue.isEmpty()) {
+                LOG.warn("Closed bulkhead with {} unprocessed messages", queue.size());
+            }
+        }
+    }
+
+    private void process() {
+        try {
+            while (!closed) {
+                final Queued<T> queued = queue.take();
+                processingSince = queued.acceptedAt;
+                try {
+                    delegate.accept(queued.message);
+                } catch (final Exception e) {
+                    LOG.error("Error processing message: " + e.getMessage(), e);
+                } finally {
+                    processingSince = 0;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Queued<T> {
+        private final Message<T> message;
+        private final long acceptedAt;
+
+        private Queued(final Message<T> message, final long acceptedAt) {
+            this.message = message;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
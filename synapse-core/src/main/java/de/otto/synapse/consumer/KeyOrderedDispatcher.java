@@ -0,0 +1,375 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.TextMessage;
+import org.slf4j.Logger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Dispatches messages to a {@link MessageDispatcher} using a number of ordered lanes that are processed in parallel.
+ * <p>
+ *     Messages are assigned to lanes by the {@link de.otto.synapse.message.Key#partitionKey() partition key} of
+ *     the message, and every lane is processed by a single thread. All messages having the same partition key are
+ *     therefore dispatched in the order of arrival, while messages with different partition keys may be dispatched
+ *     concurrently.
+ * </p>
+ * <p>
+ *     Messages are dispatched in {@link Batch batches}: after {@link Batch#await()} returns, all messages of the
+ *     batch have been dispatched, so the position of the last message can safely be used as a checkpoint.
+ * </p>
+ * <p>
+ *     If the MessageDispatcher has {@link BatchMessageConsumer batch consumers}, the messages of every lane are
+ *     dispatched in chunks of up to {@link #MAX_BATCH_SIZE} messages using {@link MessageDispatcher#acceptAll(List)}.
+ * </p>
+ * <p>
+ *     If the MessageDispatcher has {@link AsyncMessageConsumer asynchronous consumers}, every lane keeps up to
+ *     {@code maxInFlight} messages in flight: the lane continues with the next message, as soon as the
+ *     synchronous consumers have accepted a message. Only messages having the same partition key as a message in
+ *     flight are waiting for the completion of the earlier message, and {@link Batch#await()} is waiting until all
+ *     messages of the batch are completed.
+ * </p>
+ * <p>
+ *     With a concurrency of 1, no threads are started and messages are dispatched by the calling thread.
+ *     Exceptions thrown by consumers are logged and do not stop the processing of other messages (or chunks).
+ * </p>
+ */
+@ThreadSafe
+public class KeyOrderedDispatcher implements AutoCloseable {
+
+    private static final Logger LOG = getLogger(KeyOrderedDispatcher.class);
+
+    /**
+     * The maximum number of messages waiting to be dispatched in a single lane.
+     */
+    static final int LANE_CAPACITY = 1000;
+
+    /**
+     * The maximum number of messages dispatched to {@link BatchMessageConsumer batch consumers} at once.
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private static final Runnable STOP = () -> {};
+
+    private final MessageDispatcher messageDispatcher;
+    private final Lane[] lanes;
+    private final InFlight[] inFlight;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * @param messageDispatcher the dispatcher used to dispatch messages to consumers
+     * @param concurrency the number of lanes
+     * @param threadNamePrefix the prefix of the names of the lane threads
+     */
+    public KeyOrderedDispatcher(final @Nonnull MessageDispatcher messageDispatcher,
+                                final int concurrency,
+                                final @Nonnull String threadNamePrefix) {
+        this(messageDispatcher, concurrency, messageDispatcher.getMaxInFlight(), threadNamePrefix);
+    }
+
+    /**
+     * @param messageDispatcher the dispatcher used to dispatch messages to consumers
+     * @param concurrency the number of lanes
+     * @param maxInFlight the maximum number of messages per lane processed by asynchronous consumers at the same time
+     * @param threadNamePrefix the prefix of the names of the lane threads
+     */
+    public KeyOrderedDispatcher(final @Nonnull MessageDispatcher messageDispatcher,
+                                final int concurrency,
+                                final int maxInFlight,
+                                final @Nonnull String threadNamePrefix) {
+        checkArgument(concurrency > 0, "concurrency must be greater than 0");
+        checkArgument(maxInFlight > 0, "maxInFlight must be greater than 0");
+        this.messageDispatcher = messageDispatcher;
+        this.inFlight = new InFlight[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            inFlight[i] = new InFlight(maxInFlight);
+        }
+        if (concurrency == 1) {
+            this.lanes = new Lane[0];
+        } else {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+            threadFactory.setDaemon(true);
+            this.lanes = new Lane[concurrency];
+            for (int i = 0; i < concurrency; i++) {
+                lanes[i] = new Lane();
+                threadFactory.newThread(lanes[i]).start();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lanes used to dispatch messages.
+     *
+     * @return concurrency
+     */
+    public int getConcurrency() {
+        return Math.max(lanes.length, 1);
+    }
+
+    /**
+     * Starts a new batch of messages.
+     *
+     * @return Batch
+     */
+    public Batch newBatch() {
+        if (closed.get()) {
+            throw new IllegalStateException("KeyOrderedDispatcher is already closed");
+        }
+        return new Batch();
+    }
+
+    /**
+     * Stops the lane threads after the messages already submitted to the lanes are dispatched.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            for (final Lane lane : lanes) {
+                lane.submit(STOP);
+            }
+        }
+    }
+
+    private void dispatch(final TextMessage message) {
+        try {
+            messageDispatcher.accept(message);
+        } catch (final Exception e) {
+            LOG.error("Error processing message: " + e.getMessage(), e);
+        }
+    }
+
+    private void dispatchAll(final List<TextMessage> messages) {
+        try {
+            messageDispatcher.acceptAll(messages);
+        } catch (final Exception e) {
+            LOG.error("Error processing batch of " + messages.size() + " messages: " + e.getMessage(), e);
+        }
+    }
+
+    private CompletableFuture<Void> dispatchAsync(final TextMessage message) {
+        try {
+            return messageDispatcher.acceptAsync(message).handle((_void, throwable) -> {
+                if (throwable != null) {
+                    LOG.error("Error processing message: " + throwable.getMessage(), throwable);
+                }
+                return null;
+            });
+        } catch (final Exception e) {
+            LOG.error("Error processing message: " + e.getMessage(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private int laneOf(final TextMessage message) {
+        return lanes.length == 0
+                ? 0
+                : (message.getKey().partitionKey().hashCode() & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * A batch of messages, submitted by a single thread.
+     */
+    public final class Batch {
+        /** The messages not yet submitted per lane, or null if there are no batch consumers. */
+        private final List<List<TextMessage>> chunks;
+        private final boolean async;
+        private int pending;
+
+        private Batch() {
+            if (messageDispatcher.hasBatchConsumers()) {
+                this.chunks = new ArrayList<>(getConcurrency());
+                for (int lane = 0; lane < getConcurrency(); lane++) {
+                    chunks.add(new ArrayList<>());
+                }
+            } else {
+                this.chunks = null;
+            }
+            this.async = chunks == null && messageDispatcher.hasAsyncConsumers();
+        }
+
+        /**
+         * Dispatches the message in the lane of its partition key. Blocks, if the lane is full.
+         *
+         * @param message the message
+         */
+        public void accept(final @Nonnull TextMessage message) {
+            final int lane = laneOf(message);
+            if (chunks != null) {
+                final List<TextMessage> chunk = chunks.get(lane);
+                chunk.add(message);
+                if (chunk.size() >= MAX_BATCH_SIZE) {
+                    flush(lane);
+                }
+            } else if (async) {
+                submitAsync(lane, message);
+            } else {
+                submit(lane, () -> dispatch(message));
+            }
+        }
+
+        private void flush(final int lane) {
+            final List<TextMessage> chunk = chunks.set(lane, new ArrayList<>());
+            submit(lane, () -> dispatchAll(chunk));
+        }
+
+        private void submit(final int lane, final Runnable task) {
+            if (lanes.length == 0) {
+                task.run();
+            } else {
+                synchronized (this) {
+                    ++pending;
+                }
+                lanes[lane].submit(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        completed();
+                    }
+                });
+            }
+        }
+
+        private void submitAsync(final int lane, final TextMessage message) {
+            synchronized (this) {
+                ++pending;
+            }
+            final Runnable task = () -> inFlight[lane]
+                    .dispatch(message)
+                    .whenComplete((_void, _throwable) -> completed());
+            if (lanes.length == 0) {
+                task.run();
+            } else {
+                lanes[lane].submit(task);
+            }
+        }
+
+        /**
+         * Waits until all messages of the batch are dispatched.
+         */
+        public void await() {
+            if (chunks != null) {
+                for (int lane = 0; lane < chunks.size(); lane++) {
+                    if (!chunks.get(lane).isEmpty()) {
+                        flush(lane);
+                    }
+                }
+            }
+            awaitPending();
+        }
+
+        private synchronized void awaitPending() {
+            boolean interrupted = false;
+            while (pending > 0) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized void completed() {
+            if (--pending == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The messages of a lane that are processed by asynchronous consumers. {@link #dispatch(TextMessage)} is only
+     * called by the thread of the lane.
+     */
+    private final class InFlight {
+        private final Semaphore permits;
+        private final ConcurrentMap<String, CompletableFuture<Void>> lastByPartitionKey = new ConcurrentHashMap<>();
+
+        private InFlight(final int maxInFlight) {
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        /**
+         * Dispatches the message after a permit is available and the previous message having the same partition key
+         * is completed.
+         */
+        private CompletableFuture<Void> dispatch(final TextMessage message) {
+            final String partitionKey = message.getKey().partitionKey();
+            permits.acquireUninterruptibly();
+            final CompletableFuture<Void> previous = lastByPartitionKey.get(partitionKey);
+            if (previous != null) {
+                awaitUninterruptibly(previous);
+            }
+            final CompletableFuture<Void> future = dispatchAsync(message);
+            lastByPartitionKey.put(partitionKey, future);
+            future.whenComplete((_void, _throwable) -> {
+                lastByPartitionKey.remove(partitionKey, future);
+                permits.release();
+            });
+            return future;
+        }
+
+        private void awaitUninterruptibly(final CompletableFuture<Void> future) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final Exception e) {
+                    // already logged by dispatchAsync()
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Lane implements Runnable {
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(LANE_CAPACITY);
+
+        private void submit(final Runnable task) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(task);
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = queue.take()) != STOP) {
+                    task.run();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
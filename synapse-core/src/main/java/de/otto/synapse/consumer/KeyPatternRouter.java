@@ -0,0 +1,192 @@
+package de.otto.synapse.consumer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the {@link MessageConsumer#keyPattern() key patterns} matching the key of a message.
+ * <p>
+ *     The patterns are compiled into lookup structures when the router is created: literal patterns like
+ *     {@code "product-42"} are looked up in a hash map, and prefix patterns like {@code "product-.*"} or {@code ".*"}
+ *     are looked up in a trie. Only other patterns are matched using {@link java.util.regex.Matcher#matches()}.
+ * </p>
+ */
+final class KeyPatternRouter {
+
+    private static final int[] NONE = new int[0];
+    private static final String REGEX_META_CHARACTERS = ".[]{}()*+?^$|";
+
+    private final int size;
+    private final Map<String, int[]> literals = new HashMap<>();
+    private final TrieNode prefixes = new TrieNode();
+    private final List<Pattern> regexPatterns = new ArrayList<>();
+    private final List<Integer> regexIndexes = new ArrayList<>();
+
+    /**
+     * @param keyPatterns the key patterns. The index of a pattern in this list is returned by
+     *                    {@link #matches(String)}, if the pattern matches a key.
+     */
+    KeyPatternRouter(final @Nonnull List<Pattern> keyPatterns) {
+        this.size = keyPatterns.size();
+        for (int i = 0; i < size; i++) {
+            final Pattern pattern = keyPatterns.get(i);
+            final String regex = pattern.pattern();
+            if (pattern.flags() == 0 && literalOf(regex) != null) {
+                literals.merge(literalOf(regex), new int[]{i}, KeyPatternRouter::concat);
+            } else if (pattern.flags() == 0 && regex.endsWith(".*") && literalOf(regex.substring(0, regex.length() - 2)) != null) {
+                prefixes.add(literalOf(regex.substring(0, regex.length() - 2)), i);
+            } else {
+                regexPatterns.add(pattern);
+                regexIndexes.add(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes of all patterns matching the key, in ascending order.
+     *
+     * @param key the compaction key of a message
+     * @return indexes of the matching patterns
+     */
+    int[] matches(final @Nonnull String key) {
+        final int[] result = new int[size];
+        int count = 0;
+        final int[] literalMatches = literals.get(key);
+        if (literalMatches != null) {
+            System.arraycopy(literalMatches, 0, result, 0, literalMatches.length);
+            count = literalMatches.length;
+        }
+        // A prefix pattern "<prefix>.*" only matches, if the remaining characters do not contain line terminators:
+        final int prefixLimit = lastLineTerminator(key);
+        TrieNode node = prefixes;
+        for (int pos = 0; node != null; pos++) {
+            if (pos > prefixLimit) {
+                System.arraycopy(node.indexes, 0, result, count, node.indexes.length);
+                count += node.indexes.length;
+            }
+            node = pos < key.length() ? node.child(key.charAt(pos)) : null;
+        }
+        for (int i = 0; i < regexPatterns.size(); i++) {
+            if (regexPatterns.get(i).matcher(key).matches()) {
+                result[count++] = regexIndexes.get(i);
+            }
+        }
+        if (count == 0) {
+            return NONE;
+        }
+        final int[] matches = count == size ? result : Arrays.copyOf(result, count);
+        Arrays.sort(matches);
+        return matches;
+    }
+
+    /**
+     * Returns true, if at least one of the patterns is matching the key.
+     *
+     * @param key the compaction key of a message
+     * @return boolean
+     */
+    boolean matchesAny(final @Nonnull String key) {
+        if (literals.containsKey(key)) {
+            return true;
+        }
+        final int prefixLimit = lastLineTerminator(key);
+        TrieNode node = prefixes;
+        for (int pos = 0; node != null; pos++) {
+            if (pos > prefixLimit && node.indexes.length > 0) {
+                return true;
+            }
+            node = pos < key.length() ? node.child(key.charAt(pos)) : null;
+        }
+        for (final Pattern pattern : regexPatterns) {
+            if (pattern.matcher(key).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the literal string matched by the regex, or null if the regex contains meta characters other than
+     * escaped characters that are not letters or digits.
+     */
+    static String literalOf(final String regex) {
+        final StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    literal.append(regex.charAt(++i));
+                } else {
+                    return null;
+                }
+            } else if (REGEX_META_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Returns the index of the last character that is not matched by {@code "."}, or -1.
+     */
+    private static int lastLineTerminator(final String key) {
+        for (int i = key.length() - 1; i >= 0; i--) {
+            final char c = key.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] concat(final int[] first, final int[] second) {
+        final int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static final class TrieNode {
+        private char[] chars = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private int[] indexes = NONE;
+
+        private void add(final String prefix, final int index) {
+            TrieNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                TrieNode child = node.child(prefix.charAt(i));
+                if (child == null) {
+                    child = node.addChild(prefix.charAt(i));
+                }
+                node = child;
+            }
+            node.indexes = concat(node.indexes, new int[]{index});
+        }
+
+        private TrieNode child(final char c) {
+            final int pos = Arrays.binarySearch(chars, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        private TrieNode addChild(final char c) {
+            final int pos = -(Arrays.binarySearch(chars, c) + 1);
+            final char[] newChars = new char[chars.length + 1];
+            final TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            newChars[pos] = c;
+            newChildren[pos] = new TrieNode();
+            System.arraycopy(chars, pos, newChars, pos + 1, chars.length - pos);
+            System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+            chars = newChars;
+            children = newChildren;
+            return newChildren[pos];
+        }
+    }
+}
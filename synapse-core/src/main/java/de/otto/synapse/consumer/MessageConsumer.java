@@ -4,8 +4,10 @@ import de.otto.synapse.configuration.SynapseProperties;
 import de.otto.synapse.eventsource.EventSource;
 import de.otto.synapse.eventsource.EventSourceConsumerProcess;
 import de.otto.synapse.message.Message;
+import de.otto.synapse.translator.PayloadProjection;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -66,6 +68,49 @@ public interface MessageConsumer<T> extends Consumer<Message<T>> {
         };
     }
 
+    /**
+     * Creates a MessageConsumer that is only deserializing the parts of the payloads selected by a projection.
+     *
+     * @param keyPattern the pattern of accepted message keys
+     * @param payloadType the payload type
+     * @param projection the projection selecting the parts of the payloads read by the consumer
+     * @param consumer the consumer of the messages
+     * @param <T> the payload type
+     * @return MessageConsumer
+     * @see PayloadProjection
+     */
+    static <T> MessageConsumer<T> of(final String keyPattern,
+                                     final Class<T> payloadType,
+                                     final PayloadProjection projection,
+                                     final Consumer<Message<T>> consumer) {
+        return new MessageConsumer<T>() {
+
+            private Pattern pattern = compile(keyPattern);
+
+            @Override
+            @Nonnull
+            public Class<T> payloadType() {
+                return payloadType;
+            }
+
+            @Override
+            @Nonnull
+            public Pattern keyPattern() {
+                return pattern;
+            }
+
+            @Override
+            public PayloadProjection payloadProjection() {
+                return projection;
+            }
+
+            @Override
+            public void accept(Message<T> tMessage) {
+                consumer.accept(tMessage);
+            }
+        };
+    }
+
     /**
      * Returns the expected payload type of {@link Message events} consumed by this EventConsumer.
      *
@@ -82,4 +127,16 @@ public interface MessageConsumer<T> extends Consumer<Message<T>> {
     @Nonnull
     Pattern keyPattern();
 
+    /**
+     * Returns the projection selecting the parts of message payloads read by this consumer. If not null, the
+     * {@link MessageDispatcher} only deserializes the selected parts of JSON payloads into the
+     * {@link #payloadType()}, and skips all other parts of the payloads.
+     *
+     * @return PayloadProjection, or null if payloads are deserialized completely
+     */
+    @Nullable
+    default PayloadProjection payloadProjection() {
+        return null;
+    }
+
 }
@@ -1,18 +1,27 @@
 package de.otto.synapse.consumer;
 
+import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.PayloadProjection;
 import org.slf4j.Logger;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static de.otto.synapse.message.Message.message;
-import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
-import static java.util.Collections.synchronizedList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableList;
 import static java.util.regex.Pattern.compile;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -36,23 +45,107 @@ public class MessageDispatcher implements Consumer<TextMessage> {
 
     private static final Logger LOG = getLogger(MessageDispatcher.class);
     private static final Pattern ACCEPT_ALL = compile(".*");
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
 
-    private final List<MessageConsumer<?>> messageConsumers;
+    /**
+     * The default maximum number of messages per lane processed by {@link AsyncMessageConsumer asynchronous
+     * consumers} at the same time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    /** Copy-on-write snapshot of the registered consumers, replaced on every {@link #add(MessageConsumer)}. */
+    private volatile Routing routing;
+    private volatile int concurrency = 1;
+    private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
 
     public MessageDispatcher() {
-        this.messageConsumers = synchronizedList(new ArrayList<>());
+        this(emptyList());
     }
 
     public MessageDispatcher(final List<MessageConsumer<?>> messageConsumers) {
-        this.messageConsumers = synchronizedList(new ArrayList<>(messageConsumers));
+        this.routing = new Routing(
+                messageConsumers.toArray(new MessageConsumer<?>[0]),
+                messageConsumers.stream().map(MessageConsumer::keyPattern).toArray(Pattern[]::new),
+                messageConsumers.stream().map(MessageConsumer::payloadProjection).toArray(PayloadProjection[]::new));
+    }
+
+    /**
+     * Registers a consumer. The {@link MessageConsumer#keyPattern() key pattern} of the consumer is compiled into
+     * the routing of the dispatcher, so the key pattern and the {@link MessageConsumer#payloadProjection() payload
+     * projection} are expected not to change after registration.
+     *
+     * @param messageConsumer the consumer
+     */
+    public synchronized void add(final MessageConsumer<?> messageConsumer) {
+        final MessageConsumer<?>[] consumers = Arrays.copyOf(routing.consumers, routing.consumers.length + 1);
+        final Pattern[] keyPatterns = Arrays.copyOf(routing.keyPatterns, routing.keyPatterns.length + 1);
+        final PayloadProjection[] projections = Arrays.copyOf(routing.projections, routing.projections.length + 1);
+        consumers[consumers.length - 1] = messageConsumer;
+        keyPatterns[keyPatterns.length - 1] = messageConsumer.keyPattern();
+        projections[projections.length - 1] = messageConsumer.payloadProjection();
+        this.routing = new Routing(consumers, keyPatterns, projections);
+    }
+
+    /**
+     * Returns the number of threads used by message-log receivers to dispatch messages of the channel.
+     *
+     * @return concurrency, defaults to 1
+     * @see KeyOrderedDispatcher
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Configures the number of threads used by message-log receivers to dispatch messages of the channel. Messages
+     * having the same {@link Key#partitionKey() partition key} are always dispatched in order, while messages with
+     * different partition keys may be dispatched concurrently, if the concurrency is greater than 1.
+     *
+     * @param concurrency the number of threads
+     * @throws IllegalArgumentException if concurrency is less than 1
+     */
+    public void setConcurrency(final int concurrency) {
+        checkArgument(concurrency > 0, "concurrency must be greater than 0");
+        this.concurrency = concurrency;
     }
 
-    public void add(final MessageConsumer<?> messageConsumer) {
-        this.messageConsumers.add(messageConsumer);
+    /**
+     * Returns the maximum number of messages per lane that are processed by {@link AsyncMessageConsumer
+     * asynchronous consumers} at the same time.
+     *
+     * @return max number of messages in flight, defaults to {@link #DEFAULT_MAX_IN_FLIGHT}
+     * @see KeyOrderedDispatcher
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Configures the maximum number of messages per lane that are processed by {@link AsyncMessageConsumer
+     * asynchronous consumers} at the same time. Together with the {@link #getConcurrency() concurrency}, this
+     * limits the number of messages of a channel waiting for the completion of asynchronous consumers.
+     *
+     * @param maxInFlight max number of messages in flight
+     * @throws IllegalArgumentException if maxInFlight is less than 1
+     */
+    public void setMaxInFlight(final int maxInFlight) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be greater than 0");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Creates a {@link KeyOrderedDispatcher} that is dispatching messages using this dispatcher and the
+     * configured {@link #getConcurrency() concurrency}. The returned dispatcher must be closed after use.
+     *
+     * @param threadNamePrefix the prefix of the names of the threads used to dispatch messages
+     * @return KeyOrderedDispatcher
+     */
+    public KeyOrderedDispatcher keyOrdered(final @Nonnull String threadNamePrefix) {
+        return new KeyOrderedDispatcher(this, concurrency, maxInFlight, threadNamePrefix);
     }
 
     public List<MessageConsumer<?>> getAll() {
-        return unmodifiableList(messageConsumers);
+        return unmodifiableList(asList(routing.consumers));
     }
 
     /**
@@ -80,39 +173,229 @@ public class MessageDispatcher implements Consumer<TextMessage> {
      * {@link MessageConsumer consumers} if their {@link MessageConsumer#keyPattern()} matches, and
      * translates the JSON payload into the expected {@link MessageConsumer#payloadType()} of the receiving
      * MessageConsumer.
+     * <p>
+     *     The payload is deserialized at most once per payload type, using {@link TextMessage#getPayloadAs(Class)}.
+     *     Consumers expecting the same payload type are therefore receiving the same payload instance. Consumers
+     *     having a {@link MessageConsumer#payloadProjection() payload projection} are receiving a payload that is
+     *     deserialized once per projection, using {@link TextMessage#getPayloadAs(Class, PayloadProjection)}.
+     * </p>
      *
      * @param message the input argument
      */
     @Override
-    @SuppressWarnings({"unchecked", "raw"})
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public void accept(final TextMessage message) {
         LOG.debug("Accepting message={}", message);
-        messageConsumers
-                .stream()
-                .filter(consumer -> matchesKeyPattern(message, consumer.keyPattern()))
-                .forEach((MessageConsumer consumer) -> {
-                    try {
-                        final Class<?> payloadType = consumer.payloadType();
-                        if (payloadType.equals(String.class)) {
-                            consumer.accept(message);
-                        } else {
-                            Object payload = null;
-                            if (message.getPayload() != null) {
-                                payload = currentObjectMapper().readValue(message.getPayload(), payloadType);
-                            }
-                            final Message<?> tMessage = message(message.getKey(), message.getHeader(), payload);
-                            consumer.accept(tMessage);
+        final Routing routing = this.routing;
+        final int[] matchingConsumers = routing.router.matches(message.getKey().compactionKey());
+        final Payloads payloads = new Payloads(message);
+        for (final int index : matchingConsumers) {
+            final MessageConsumer consumer = routing.consumers[index];
+            try {
+                consumer.accept(messageFor(consumer, routing.projections[index], payloads));
+            } catch (final Exception e) {
+                LOG.error(e.getMessage(), e);
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Accepts a message with JSON String payload, without waiting for {@link AsyncMessageConsumer asynchronous
+     * consumers} to complete.
+     * <p>
+     *     Single-message consumers are called the same way as {@link #accept(TextMessage)} would do. Asynchronous
+     *     consumers are called using {@link AsyncMessageConsumer#acceptAsync(Message)}.
+     * </p>
+     *
+     * @param message the message
+     * @return CompletableFuture that is completed after all asynchronous consumers have processed the message
+     * @throws IllegalStateException if a consumer failed to accept the message
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CompletableFuture<Void> acceptAsync(final @Nonnull TextMessage message) {
+        final Routing routing = this.routing;
+        if (!routing.hasAsyncConsumers) {
+            accept(message);
+            return COMPLETED;
+        }
+        LOG.debug("Accepting message={}", message);
+        final int[] matchingConsumers = routing.router.matches(message.getKey().compactionKey());
+        final Payloads payloads = new Payloads(message);
+        CompletableFuture<Void> result = COMPLETED;
+        for (final int index : matchingConsumers) {
+            final MessageConsumer consumer = routing.consumers[index];
+            try {
+                if (consumer instanceof AsyncMessageConsumer) {
+                    final CompletableFuture<Void> future = ((AsyncMessageConsumer) consumer)
+                            .acceptAsync(messageFor(consumer, routing.projections[index], payloads))
+                            .toCompletableFuture();
+                    result = result == COMPLETED ? future : CompletableFuture.allOf(result, future);
+                } else {
+                    consumer.accept(messageFor(consumer, routing.projections[index], payloads));
+                }
+            } catch (final Exception e) {
+                LOG.error(e.getMessage(), e);
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true, if at least one registered consumer is an {@link AsyncMessageConsumer}.
+     *
+     * @return boolean
+     */
+    public boolean hasAsyncConsumers() {
+        return routing.hasAsyncConsumers;
+    }
+
+    /**
+     * Accepts a batch of messages with JSON String payload.
+     * <p>
+     *     Every message is first dispatched to the matching single-message consumers, the same way as
+     *     {@link #accept(TextMessage)} would do. After this, every matching {@link BatchMessageConsumer} is
+     *     called once with all messages of the batch matching its {@link MessageConsumer#keyPattern()}.
+     * </p>
+     *
+     * @param messages the messages of the batch
+     * @throws IllegalStateException if a consumer failed to accept a message. The remaining messages of the batch
+     *                               are not dispatched in this case.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void acceptAll(final @Nonnull List<TextMessage> messages) {
+        final Routing routing = this.routing;
+        if (!routing.hasBatchConsumers) {
+            messages.forEach(this::accept);
+            return;
+        }
+        final List<Message<?>>[] batches = new List[routing.consumers.length];
+        for (final TextMessage message : messages) {
+            LOG.debug("Accepting message={}", message);
+            final int[] matchingConsumers = routing.router.matches(message.getKey().compactionKey());
+            final Payloads payloads = new Payloads(message);
+            for (final int index : matchingConsumers) {
+                final MessageConsumer consumer = routing.consumers[index];
+                try {
+                    if (consumer instanceof BatchMessageConsumer) {
+                        if (batches[index] == null) {
+                            batches[index] = new ArrayList<>(messages.size());
                         }
-                    } catch (final Exception e) {
-                        LOG.error(e.getMessage(), e);
-                        throw new IllegalStateException(e.getMessage(), e);
+                        batches[index].add(messageFor(consumer, routing.projections[index], payloads));
+                    } else {
+                        consumer.accept(messageFor(consumer, routing.projections[index], payloads));
                     }
-                });
+                } catch (final Exception e) {
+                    LOG.error(e.getMessage(), e);
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        }
+        for (int index = 0; index < batches.length; index++) {
+            if (batches[index] != null) {
+                try {
+                    ((BatchMessageConsumer) routing.consumers[index]).acceptAll(batches[index]);
+                } catch (final Exception e) {
+                    LOG.error(e.getMessage(), e);
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true, if at least one registered consumer is a {@link BatchMessageConsumer}.
+     *
+     * @return boolean
+     */
+    public boolean hasBatchConsumers() {
+        return routing.hasBatchConsumers;
+    }
+
+    private static Message<?> messageFor(final MessageConsumer<?> consumer,
+                                         final PayloadProjection projection,
+                                         final Payloads payloads) throws IOException {
+        final TextMessage message = payloads.message;
+        final Class<?> payloadType = consumer.payloadType();
+        if (payloadType.equals(String.class)) {
+            return message;
+        } else if (consumer instanceof BulkheadMessageConsumer) {
+            // processed by the worker thread of the bulkhead while the other consumers are still using the
+            // shared payload, so the bulkhead gets its own copy:
+            return message(message.getKey(), message.getHeader(), message.getPayloadAs(payloadType, projection));
+        } else {
+            return message(message.getKey(), message.getHeader(), payloads.as(payloadType, projection));
+        }
     }
 
-    private boolean matchesKeyPattern(final TextMessage message,
-                                      final Pattern keyPattern) {
-        return keyPattern.matcher(message.getKey().compactionKey()).matches();
+    /**
+     * Returns true, if the {@link MessageConsumer#keyPattern()} of at least one registered consumer matches the
+     * key. Messages with other keys are ignored by {@link #accept(TextMessage)}.
+     *
+     * @param key the key of some message
+     * @return boolean
+     */
+    public boolean hasConsumerFor(final @Nonnull Key key) {
+        return routing.router.matchesAny(key.compactionKey());
+    }
+
+    /**
+     * The registered consumers, together with the router compiled from their key patterns.
+     */
+    private static final class Routing {
+        private final MessageConsumer<?>[] consumers;
+        private final Pattern[] keyPatterns;
+        private final PayloadProjection[] projections;
+        private final KeyPatternRouter router;
+        private final boolean hasBatchConsumers;
+        private final boolean hasAsyncConsumers;
+
+        private Routing(final MessageConsumer<?>[] consumers,
+                        final Pattern[] keyPatterns,
+                        final PayloadProjection[] projections) {
+            this.consumers = consumers;
+            this.keyPatterns = keyPatterns;
+            this.projections = projections;
+            this.router = new KeyPatternRouter(asList(keyPatterns));
+            this.hasBatchConsumers = Stream.of(consumers).anyMatch(consumer -> consumer instanceof BatchMessageConsumer);
+            this.hasAsyncConsumers = Stream.of(consumers).anyMatch(consumer -> consumer instanceof AsyncMessageConsumer);
+        }
+    }
+
+    /**
+     * The payloads of a single message, deserialized into the payload types of the consumers. Most dispatchers
+     * only have consumers of a single payload type, so the map is only created if more types are required.
+     * Projected payloads are only shared by consumers having the same payload type and projection instance.
+     */
+    private static final class Payloads {
+        private final TextMessage message;
+        private Object firstKey;
+        private Object firstPayload;
+        private Map<Object, Object> otherPayloads;
+
+        private Payloads(final TextMessage message) {
+            this.message = message;
+        }
+
+        private Object as(final Class<?> payloadType, final PayloadProjection projection) throws IOException {
+            final Object key = projection != null ? asList(payloadType, projection) : payloadType;
+            if (firstKey == null) {
+                firstPayload = message.getPayloadAs(payloadType, projection);
+                firstKey = key;
+                return firstPayload;
+            } else if (firstKey.equals(key)) {
+                return firstPayload;
+            }
+            if (otherPayloads == null) {
+                otherPayloads = new HashMap<>(4);
+            } else if (otherPayloads.containsKey(key)) {
+                return otherPayloads.get(key);
+            }
+            final Object payload = message.getPayloadAs(payloadType, projection);
+            otherPayloads.put(key, payload);
+            return payload;
+        }
     }
 
 }
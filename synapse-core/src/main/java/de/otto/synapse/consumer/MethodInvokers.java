@@ -0,0 +1,165 @@
+package de.otto.synapse.consumer;
+
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Creates invokers for single-argument methods of an instance, used to call annotated methods like
+ * {@link de.otto.synapse.annotation.EventSourceConsumer @EventSourceConsumer} for every message.
+ * <p>
+ *     Instead of calling {@link Method#invoke(Object, Object...)} for every message, the invokers are generated once
+ *     using {@link LambdaMetafactory}, so they can be inlined by the JIT like ordinary lambdas. If the method is not
+ *     accessible for a lambda (for example, non-public methods or classes loaded by a different class loader), the
+ *     invoker is calling a {@link MethodHandle} instead.
+ * </p>
+ * <p>
+ *     Exceptions thrown by the method are not wrapped into {@link java.lang.reflect.InvocationTargetException}.
+ *     Checked exceptions are rethrown as they are, so callers should be prepared to catch them.
+ * </p>
+ */
+public final class MethodInvokers {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private MethodInvokers() {
+    }
+
+    /**
+     * Returns a Consumer that is calling the method of the instance. The return value of the method is ignored.
+     *
+     * @param instance the instance used to call the method
+     * @param method a method of the instance, having exactly one parameter
+     * @return Consumer
+     * @throws IllegalArgumentException if the method can not be called using the instance
+     */
+    @SuppressWarnings("unchecked")
+    public static Consumer<Object> consumerFor(final @Nonnull Object instance, final @Nonnull Method method) {
+        if (isLambdaCompatible(instance, method)) {
+            return (Consumer<Object>) metafactory(instance, method, "accept", methodType(void.class, Object.class), Consumer.class);
+        }
+        final MethodHandle handle = boundMethodHandleFor(instance, method);
+        return argument -> {
+            try {
+                handle.invoke(argument);
+            } catch (final Throwable t) {
+                throw sneakyThrow(t);
+            }
+        };
+    }
+
+    /**
+     * Returns a Function that is calling the method of the instance.
+     *
+     * @param instance the instance used to call the method
+     * @param method a method of the instance, having exactly one parameter and a non-void return type
+     * @return Function returning the value returned by the method
+     * @throws IllegalArgumentException if the method can not be called using the instance
+     */
+    @SuppressWarnings("unchecked")
+    public static Function<Object, Object> functionFor(final @Nonnull Object instance, final @Nonnull Method method) {
+        if (method.getReturnType() == void.class) {
+            throw new IllegalArgumentException("Unable to create invoker: method " + method + " does not return a value");
+        }
+        if (isLambdaCompatible(instance, method)) {
+            return (Function<Object, Object>) metafactory(instance, method, "apply", methodType(Object.class, Object.class), Function.class);
+        }
+        final MethodHandle handle = boundMethodHandleFor(instance, method);
+        return argument -> {
+            try {
+                return handle.invoke(argument);
+            } catch (final Throwable t) {
+                throw sneakyThrow(t);
+            }
+        };
+    }
+
+    private static Object metafactory(final Object instance,
+                                      final Method method,
+                                      final String samName,
+                                      final MethodType samType,
+                                      final Class<?> functionalInterface) {
+        assertIsInstance(instance, method);
+        try {
+            final MethodHandle handle = LOOKUP.unreflect(method);
+            final MethodType instantiatedType = methodType(
+                    samType.returnType() == void.class ? void.class : boxed(method.getReturnType()),
+                    method.getParameterTypes()[0]);
+            final CallSite callSite = LambdaMetafactory.metafactory(
+                    LOOKUP,
+                    samName,
+                    methodType(functionalInterface, method.getDeclaringClass()),
+                    samType,
+                    handle,
+                    instantiatedType);
+            return callSite.getTarget().invoke(instance);
+        } catch (final Throwable t) {
+            throw new IllegalArgumentException("Unable to create invoker for method " + method + ": " + t.getMessage(), t);
+        }
+    }
+
+    private static MethodHandle boundMethodHandleFor(final Object instance, final Method method) {
+        assertIsInstance(instance, method);
+        try {
+            ReflectionUtils.makeAccessible(method);
+            return LOOKUP.unreflect(method).bindTo(instance);
+        } catch (final IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Unable to create invoker for method " + method + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lambdas are defined in the class loader of this class, so the class declaring the method, and the types of
+     * the method's parameter and return value, must be public and visible from this class loader.
+     */
+    private static boolean isLambdaCompatible(final Object instance, final Method method) {
+        return method.getParameterCount() == 1
+                && !Modifier.isStatic(method.getModifiers())
+                && Modifier.isPublic(method.getModifiers())
+                && isPublicAndVisible(method.getDeclaringClass())
+                && isPublicAndVisible(method.getParameterTypes()[0])
+                && isPublicAndVisible(method.getReturnType());
+    }
+
+    private static boolean isPublicAndVisible(final Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isPublic(type.getModifiers())
+                || (type.getEnclosingClass() != null && !isPublicAndVisible(type.getEnclosingClass()))) {
+            return false;
+        }
+        try {
+            return Class.forName(type.getName(), false, MethodInvokers.class.getClassLoader()) == type;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static void assertIsInstance(final Object instance, final Method method) {
+        if (!method.getDeclaringClass().isInstance(instance)) {
+            throw new IllegalArgumentException("Unable to create invoker: " + instance.getClass().getName()
+                    + " is not an instance of " + method.getDeclaringClass().getName());
+        }
+    }
+
+    private static Class<?> boxed(final Class<?> type) {
+        return type.isPrimitive() ? methodType(type).wrap().returnType() : type;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> RuntimeException sneakyThrow(final Throwable t) throws T {
+        throw (T) t;
+    }
+}
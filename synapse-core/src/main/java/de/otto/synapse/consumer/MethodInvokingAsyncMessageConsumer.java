@@ -0,0 +1,126 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+import de.otto.synapse.translator.PayloadProjection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * An {@link AsyncMessageConsumer} that is calling a method of a class instance for every accepted {@link Message}.
+ * The method must have a single parameter of type {@code Message<T>} and return a {@link CompletionStage}, like
+ * {@code CompletableFuture<Void>}.
+ *
+ * @param <T> The expected type of the message's payload
+ */
+public class MethodInvokingAsyncMessageConsumer<T> implements AsyncMessageConsumer<T> {
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final Pattern keyPattern;
+    private final Class<T> payloadType;
+    private final PayloadProjection payloadProjection;
+    private final Function<Object, Object> invoker;
+
+    public MethodInvokingAsyncMessageConsumer(final String keyPattern,
+                                              final Class<T> payloadType,
+                                              final Object instance,
+                                              final Method method) {
+        this(keyPattern, payloadType, null, instance, method);
+    }
+
+    /**
+     * @param keyPattern the pattern of accepted message keys
+     * @param payloadType the payload type
+     * @param payloadProjection the projection selecting the parts of the payloads read by the method, or null
+     * @param instance the instance of the method
+     * @param method the method called for accepted messages
+     */
+    public MethodInvokingAsyncMessageConsumer(final String keyPattern,
+                                              final Class<T> payloadType,
+                                              final @Nullable PayloadProjection payloadProjection,
+                                              final Object instance,
+                                              final Method method) {
+        Objects.requireNonNull(keyPattern, "keyPattern must not be null");
+        Objects.requireNonNull(payloadType, "payloadType must not be null");
+        Objects.requireNonNull(instance, "Unable to build MethodInvokingAsyncMessageConsumer: instance parameter is null");
+        Objects.requireNonNull(method, "Unable to build MethodInvokingAsyncMessageConsumer: method parameter is null");
+
+        if (method.getParameterCount() != 1 || !method.getParameterTypes()[0].equals(Message.class)) {
+            throw new IllegalArgumentException("Unable to build MethodInvokingAsyncMessageConsumer: expected a single parameter of type Message: " + method.toGenericString());
+        }
+        if (!isAsyncConsumerMethod(method)) {
+            throw new IllegalArgumentException("Unable to build MethodInvokingAsyncMessageConsumer: expected return type is CompletionStage, not " + method.getReturnType().getName());
+        }
+
+        this.keyPattern = Pattern.compile(keyPattern);
+        this.payloadType = payloadType;
+        this.payloadProjection = payloadProjection;
+        this.invoker = MethodInvokers.functionFor(instance, method);
+    }
+
+    /**
+     * Returns true, if the method is returning a {@link CompletionStage}.
+     *
+     * @param method the method
+     * @return boolean
+     */
+    public static boolean isAsyncConsumerMethod(final @Nonnull Method method) {
+        return CompletionStage.class.isAssignableFrom(method.getReturnType());
+    }
+
+    /**
+     * Returns the expected payload type of {@link Message messages} consumed by this MessageConsumer.
+     *
+     * @return payload type
+     */
+    @Nonnull
+    @Override
+    public Class<T> payloadType() {
+        return payloadType;
+    }
+
+    /**
+     * Returns the pattern of {@link Message#getKey() message keys} accepted by this consumer.
+     *
+     * @return Pattern
+     */
+    @Nonnull
+    @Override
+    public Pattern keyPattern() {
+        return keyPattern;
+    }
+
+    @Nullable
+    @Override
+    public PayloadProjection payloadProjection() {
+        return payloadProjection;
+    }
+
+    /**
+     * Calls the method. Exceptions thrown by the method are returned as exceptionally completed futures, a
+     * {@code null} result is treated as a completed future.
+     *
+     * @param message the message
+     * @return CompletionStage returned by the method
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletionStage<Void> acceptAsync(final Message<T> message) {
+        try {
+            final CompletionStage<Void> result = (CompletionStage<Void>) invoker.apply(message);
+            return result != null ? result : COMPLETED;
+        } catch (final Exception e) {
+            final CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+import de.otto.synapse.translator.PayloadProjection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link BatchMessageConsumer} that is calling a method of a class instance for every batch of accepted
+ * {@link Message messages}. The method must have a single parameter of type {@code List<Message<T>>}.
+ * <p>
+ *     Exceptions thrown by the method are propagated unchanged, including checked exceptions.
+ * </p>
+ *
+ * @param <T> The expected type of the message's payload
+ */
+public class MethodInvokingBatchMessageConsumer<T> implements BatchMessageConsumer<T> {
+
+    private final Pattern keyPattern;
+    private final Class<T> payloadType;
+    private final PayloadProjection payloadProjection;
+    private final Consumer<Object> invoker;
+
+    public MethodInvokingBatchMessageConsumer(final String keyPattern,
+                                              final Class<T> payloadType,
+                                              final Object instance,
+                                              final Method method) {
+        this(keyPattern, payloadType, null, instance, method);
+    }
+
+    /**
+     * @param keyPattern the pattern of accepted message keys
+     * @param payloadType the payload type
+     * @param payloadProjection the projection selecting the parts of the payloads read by the method, or null
+     * @param instance the instance of the method
+     * @param method the method called for accepted messages
+     */
+    public MethodInvokingBatchMessageConsumer(final String keyPattern,
+                                              final Class<T> payloadType,
+                                              final @Nullable PayloadProjection payloadProjection,
+                                              final Object instance,
+                                              final Method method) {
+        Objects.requireNonNull(keyPattern, "keyPattern must not be null");
+        Objects.requireNonNull(payloadType, "payloadType must not be null");
+        Objects.requireNonNull(instance, "Unable to build MethodInvokingBatchMessageConsumer: instance parameter is null");
+        Objects.requireNonNull(method, "Unable to build MethodInvokingBatchMessageConsumer: method parameter is null");
+
+        if (!isBatchConsumerMethod(method)) {
+            throw new IllegalArgumentException("Unable to build MethodInvokingBatchMessageConsumer: expected a single parameter of type List<Message>: " + method.toGenericString());
+        }
+
+        this.keyPattern = Pattern.compile(keyPattern);
+        this.payloadType = payloadType;
+        this.payloadProjection = payloadProjection;
+        this.invoker = MethodInvokers.consumerFor(instance, method);
+    }
+
+    /**
+     * Returns true, if the method has a single parameter of type {@code List<Message<T>>}, or a raw {@code List}.
+     *
+     * @param method the method
+     * @return boolean
+     */
+    public static boolean isBatchConsumerMethod(final @Nonnull Method method) {
+        if (method.getParameterCount() != 1 || !method.getParameterTypes()[0].equals(List.class)) {
+            return false;
+        }
+        final Type paramType = method.getGenericParameterTypes()[0];
+        if (paramType instanceof ParameterizedType) {
+            final Type elementType = ((ParameterizedType) paramType).getActualTypeArguments()[0];
+            final Type rawElementType = elementType instanceof ParameterizedType
+                    ? ((ParameterizedType) elementType).getRawType()
+                    : elementType;
+            return rawElementType.equals(Message.class);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the expected payload type of {@link Message messages} consumed by this MessageConsumer.
+     *
+     * @return payload type
+     */
+    @Nonnull
+    @Override
+    public Class<T> payloadType() {
+        return payloadType;
+    }
+
+    /**
+     * Returns the pattern of {@link Message#getKey() message keys} accepted by this consumer.
+     *
+     * @return Pattern
+     */
+    @Nonnull
+    @Override
+    public Pattern keyPattern() {
+        return keyPattern;
+    }
+
+    @Nullable
+    @Override
+    public PayloadProjection payloadProjection() {
+        return payloadProjection;
+    }
+
+    @Override
+    public void acceptAll(final List<Message<T>> messages) {
+        invoker.accept(messages);
+    }
+
+}
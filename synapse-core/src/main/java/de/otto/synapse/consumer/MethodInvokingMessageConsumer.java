@@ -1,11 +1,13 @@
 package de.otto.synapse.consumer;
 
 import de.otto.synapse.message.Message;
+import de.otto.synapse.translator.PayloadProjection;
 
 import javax.annotation.Nonnull;
-import java.lang.reflect.InvocationTargetException;
+import javax.annotation.Nullable;
 import java.lang.reflect.Method;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -13,18 +15,37 @@ import java.util.regex.Pattern;
  * <p>
  *     <img src="http://www.enterpriseintegrationpatterns.com/img/MessageEndpointSolution.gif" alt="MesageConsumer">
  * </p>
-
+ * <p>
+ *     The method is called using an invoker created by {@link MethodInvokers#consumerFor(Object, Method)}, so
+ *     the consumer does not rely on reflection to call the method.
+ * </p>
+ *
  * @param <T> The expected type of the message's payload
  */
 public class MethodInvokingMessageConsumer<T> implements MessageConsumer<T> {
 
     private final Pattern keyPattern;
     private final Class<T> payloadType;
-    private final Object instance;
-    private final Method method;
+    private final PayloadProjection payloadProjection;
+    private final Consumer<Object> invoker;
+
+    public MethodInvokingMessageConsumer(final String keyPattern,
+                                         final Class<T> payloadType,
+                                         final Object instance,
+                                         final Method method) {
+        this(keyPattern, payloadType, null, instance, method);
+    }
 
+    /**
+     * @param keyPattern the pattern of accepted message keys
+     * @param payloadType the payload type
+     * @param payloadProjection the projection selecting the parts of the payloads read by the method, or null
+     * @param instance the instance of the method
+     * @param method the method called for accepted messages
+     */
     public MethodInvokingMessageConsumer(final String keyPattern,
                                          final Class<T> payloadType,
+                                         final @Nullable PayloadProjection payloadProjection,
                                          final Object instance,
                                          final Method method) {
         Objects.requireNonNull(keyPattern, "keyPattern must not be null");
@@ -42,8 +63,8 @@ public class MethodInvokingMessageConsumer<T> implements MessageConsumer<T> {
 
         this.keyPattern = Pattern.compile(keyPattern);
         this.payloadType = payloadType;
-        this.method = method;
-        this.instance = instance;
+        this.payloadProjection = payloadProjection;
+        this.invoker = MethodInvokers.consumerFor(instance, method);
     }
 
     /**
@@ -68,11 +89,19 @@ public class MethodInvokingMessageConsumer<T> implements MessageConsumer<T> {
         return keyPattern;
     }
 
+    @Nullable
+    @Override
+    public PayloadProjection payloadProjection() {
+        return payloadProjection;
+    }
+
     @Override
     public void accept(final Message<T> message) {
         try {
-            method.invoke(instance, message);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            invoker.accept(message);
+        } catch (final RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
             throw new IllegalStateException(e);
         }
     }
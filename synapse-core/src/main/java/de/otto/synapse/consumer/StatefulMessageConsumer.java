@@ -5,6 +5,10 @@ import de.otto.synapse.message.Message;
 import de.otto.synapse.state.StateRepository;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -12,11 +16,15 @@ import java.util.regex.Pattern;
 
 /**
  * A {@code MessageConsumer} that is updating a {@link StateRepository}.
+ * <p>
+ *     If batches of messages are {@link #acceptAll(List) accepted}, all messages having the same repository key are
+ *     applied to the state of this key using a single {@link StateRepository#compute(String, BiFunction)}.
+ * </p>
  *
  * @param <P> the type of the {@link Message} payload
  * @param <S> the type of the {@link StateRepository} entries
  */
-public class StatefulMessageConsumer<P, S> implements MessageConsumer<P> {
+public class StatefulMessageConsumer<P, S> implements BatchMessageConsumer<P> {
 
     private final Pattern keyPattern;
     private final StateRepository<S> stateRepository;
@@ -137,4 +145,25 @@ public class StatefulMessageConsumer<P, S> implements MessageConsumer<P> {
         }
     }
 
+    @Override
+    public void acceptAll(final List<Message<P>> messages) {
+        final Map<String, List<Message<P>>> messagesPerKey = new LinkedHashMap<>();
+        for (final Message<P> message : messages) {
+            messagesPerKey.computeIfAbsent(keyMapper.apply(message), _key -> new ArrayList<>()).add(message);
+        }
+        messagesPerKey.forEach((key, messagesOfKey) -> stateRepository.compute(
+                key,
+                (_key, previousValue) -> fold(previousValue, messagesOfKey)));
+    }
+
+    private S fold(final Optional<S> previousValue, final List<Message<P>> messages) {
+        Optional<S> value = previousValue;
+        for (final Message<P> message : messages) {
+            value = message.getPayload() == null
+                    ? Optional.empty()
+                    : Optional.ofNullable(payloadToStateMapper.apply(value, message));
+        }
+        return value.orElse(null);
+    }
+
 }
@@ -41,6 +41,8 @@ public abstract class AbstractMessageEndpoint implements MessageEndpoint {
     private final String channelName;
     @Nonnull
     private final MessageInterceptorRegistry interceptorRegistry;
+    @Nullable
+    private volatile VersionedInterceptorChain interceptorChain;
 
     /**
      * Constructor used to create a new AbstractMessageEndpoint.
@@ -71,13 +73,24 @@ public abstract class AbstractMessageEndpoint implements MessageEndpoint {
 
     /**
      * Returns the {@link InterceptorChain} of the {@code MessageEndpoint}.
+     * <p>
+     *     The chain is computed once and replaced atomically, after the
+     *     {@link MessageInterceptorRegistry#register(MessageInterceptorRegistration) registrations} of the
+     *     {@link MessageInterceptorRegistry} have changed.
+     * </p>
      *
      * @return InterceptorChain
      */
     @Nonnull
     @Override
     public final InterceptorChain getInterceptorChain() {
-        return interceptorRegistry.getInterceptorChain(channelName, getEndpointType());
+        final long version = interceptorRegistry.getVersion();
+        VersionedInterceptorChain current = interceptorChain;
+        if (current == null || current.version != version) {
+            current = new VersionedInterceptorChain(version, interceptorRegistry.getInterceptorChain(channelName, getEndpointType()));
+            interceptorChain = current;
+        }
+        return current.chain;
     }
 
     /**
@@ -104,4 +117,13 @@ public abstract class AbstractMessageEndpoint implements MessageEndpoint {
         return getInterceptorChain().intercept(message);
     }
 
+    private static final class VersionedInterceptorChain {
+        private final long version;
+        private final InterceptorChain chain;
+
+        private VersionedInterceptorChain(final long version, final InterceptorChain chain) {
+            this.version = version;
+            this.chain = chain;
+        }
+    }
 }
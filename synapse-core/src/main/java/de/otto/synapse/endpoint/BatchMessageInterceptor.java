@@ -0,0 +1,47 @@
+package de.otto.synapse.endpoint;
+
+import de.otto.synapse.message.TextMessage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * A {@link MessageInterceptor} that is able to intercept batches of messages at once.
+ * <p>
+ *     Batch interceptors are able to amortize the overhead of intercepting single messages, for example by
+ *     updating metrics or writing a journal only once per batch. Receiver endpoints supporting batches are
+ *     intercepting all messages of a Kinesis {@code ShardResponse} at once, sender endpoints are intercepting
+ *     the messages of {@link de.otto.synapse.endpoint.sender.MessageSenderEndpoint#sendBatch(java.util.stream.Stream)}.
+ * </p>
+ * <p>
+ *     Single messages are intercepted as a batch containing only this message.
+ * </p>
+ */
+public interface BatchMessageInterceptor extends MessageInterceptor {
+
+    /**
+     * Intercepts a batch of messages and returns the remaining, possibly modified messages. Messages that are not
+     * contained in the returned list are dropped by the {@link AbstractMessageEndpoint}.
+     *
+     * @param messages the non-empty list of messages, in the order of their arrival
+     * @return the intercepted messages, in the same order.
+     */
+    @Nonnull
+    List<TextMessage> interceptAll(final @Nonnull List<TextMessage> messages);
+
+    /**
+     * Intercepts a single message as a batch containing only this message.
+     *
+     * @param message the channel-layer message with payload-type beeing a String
+     * @return intercepted version of the message, or null if the message should be dropped.
+     */
+    @Nullable
+    @Override
+    default TextMessage intercept(final @Nonnull TextMessage message) {
+        final List<TextMessage> intercepted = interceptAll(singletonList(message));
+        return intercepted.isEmpty() ? null : intercepted.get(0);
+    }
+}
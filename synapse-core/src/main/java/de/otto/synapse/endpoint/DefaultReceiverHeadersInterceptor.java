@@ -1,7 +1,6 @@
 package de.otto.synapse.endpoint;
 
 import de.otto.synapse.configuration.SynapseProperties;
-import de.otto.synapse.message.Header;
 import de.otto.synapse.message.TextMessage;
 
 import javax.annotation.Nonnull;
@@ -9,8 +8,6 @@ import javax.annotation.Nullable;
 import java.time.Clock;
 
 import static de.otto.synapse.message.DefaultHeaderAttr.MSG_RECEIVER_TS;
-import static de.otto.synapse.message.Header.copyOf;
-import static de.otto.synapse.message.Message.message;
 
 /**
  * A {@link MessageInterceptor message interceptor} that is able to add some commonly required header attributes in
@@ -49,14 +46,13 @@ public class DefaultReceiverHeadersInterceptor {
     }
 
     @Nullable
-    @de.otto.synapse.annotation.MessageInterceptor(endpointType = EndpointType.RECEIVER)
+    @de.otto.synapse.annotation.MessageInterceptor(endpointType = EndpointType.RECEIVER, sideEffectFree = true)
     public TextMessage addDefaultHeaders(@Nonnull TextMessage message) {
-
-        final Header.Builder headers = copyOf(message.getHeader());
-
         if (enabled) {
-            headers.withAttribute(MSG_RECEIVER_TS, clock.instant());
+            // the attributes of the received header are shared with the new header:
+            return message.withHeader(message.getHeader().withAttribute(MSG_RECEIVER_TS, clock.instant()));
+        } else {
+            return message;
         }
-        return TextMessage.of(message.getKey(), headers.build(), message.getPayload());
     }
 }
@@ -8,6 +8,8 @@ import org.slf4j.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -27,6 +29,11 @@ import static org.slf4j.LoggerFactory.getLogger;
  * <p>
  *     If an interceptor returns null, the chain will return null without further processing of the message.
  * </p>
+ * <p>
+ *     Batches of messages are {@link #interceptAll(List) intercepted} by one interceptor after the other:
+ *     {@link BatchMessageInterceptor batch interceptors} are called once per batch, other interceptors once
+ *     per message of the batch.
+ * </p>
  *
  * @see <a href="https://en.wikipedia.org/wiki/Composite_pattern">Composite Pattern</a>
  */
@@ -36,16 +43,20 @@ public final class InterceptorChain implements MessageInterceptor {
     private static final Logger LOG = getLogger(InterceptorChain.class);
 
     private final ImmutableList<MessageInterceptor> interceptors;
+    private final boolean hasBatchInterceptors;
 
     /**
      * Creates an empty InterceptorChain.
      */
     public InterceptorChain() {
-        this.interceptors = ImmutableList.of();
+        this(ImmutableList.of());
     }
 
     public InterceptorChain(final ImmutableList<MessageInterceptor> messageInterceptors) {
         this.interceptors = messageInterceptors;
+        this.hasBatchInterceptors = messageInterceptors
+                .stream()
+                .anyMatch(interceptor -> interceptor instanceof BatchMessageInterceptor);
     }
 
     /**
@@ -92,4 +103,63 @@ public final class InterceptorChain implements MessageInterceptor {
         return interceptedMessage;
     }
 
+    /**
+     * Intercepts a batch of messages using all registered interceptors and returns the remaining messages.
+     * <p>
+     *     The interceptors are called in order. {@link BatchMessageInterceptor Batch interceptors} are
+     *     intercepting all remaining messages at once, other interceptors are intercepting the remaining messages
+     *     one by one. Messages dropped by one interceptor are not propagated to the next interceptor.
+     * </p>
+     *
+     * @param messages the messages to intercept
+     * @return the (possibly modified) messages that should not be dropped, in the order of the given messages.
+     */
+    @Nonnull
+    public List<TextMessage> interceptAll(final @Nonnull List<TextMessage> messages) {
+        List<TextMessage> interceptedMessages = messages;
+        for (final MessageInterceptor interceptor : interceptors) {
+            if (interceptedMessages.isEmpty()) {
+                break;
+            }
+            if (interceptor instanceof BatchMessageInterceptor) {
+                interceptedMessages = ((BatchMessageInterceptor) interceptor).interceptAll(interceptedMessages);
+            } else {
+                final List<TextMessage> result = new ArrayList<>(interceptedMessages.size());
+                for (final TextMessage message : interceptedMessages) {
+                    final TextMessage interceptedMessage = interceptor.intercept(message);
+                    if (interceptedMessage != null) {
+                        result.add(interceptedMessage);
+                    }
+                }
+                interceptedMessages = result;
+            }
+        }
+        LOG.debug("Intercepted batch of {} messages: {} messages remaining", messages.size(), interceptedMessages.size());
+        return interceptedMessages;
+    }
+
+    /**
+     * Returns true, if at least one of the registered interceptors is a {@link BatchMessageInterceptor}.
+     *
+     * @return boolean
+     */
+    public boolean hasBatchInterceptors() {
+        return hasBatchInterceptors;
+    }
+
+    /**
+     * Returns true, if all registered interceptors are {@link MessageInterceptor#isSideEffectFree() side-effect free}.
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean isSideEffectFree() {
+        for (final MessageInterceptor interceptor : interceptors) {
+            if (!interceptor.isSideEffectFree()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
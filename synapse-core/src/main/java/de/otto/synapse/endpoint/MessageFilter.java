@@ -52,4 +52,16 @@ public class MessageFilter implements MessageInterceptor {
     public final TextMessage intercept(final @Nonnull TextMessage message) {
         return predicate.test(message) ? message : null;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * MessageFilters are expected to use predicates without side effects.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isSideEffectFree() {
+        return true;
+    }
 }
@@ -43,4 +43,19 @@ public interface MessageInterceptor {
      */
     @Nullable
     TextMessage intercept(final @Nonnull TextMessage message);
+
+    /**
+     * Returns true, if the interceptor only modifies or filters messages, without any other effects like logging,
+     * metrics or wire taps.
+     * <p>
+     *     Receiver endpoints are able to drop messages that are not consumed by any
+     *     {@link de.otto.synapse.consumer.MessageConsumer} without decoding and intercepting them, if all
+     *     interceptors of the endpoint are side-effect free.
+     * </p>
+     *
+     * @return true, if the interceptor has no side effects. Default is false.
+     */
+    default boolean isSideEffectFree() {
+        return false;
+    }
 }
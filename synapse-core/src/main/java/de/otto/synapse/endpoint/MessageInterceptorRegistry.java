@@ -6,44 +6,88 @@ import org.springframework.core.OrderComparator;
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static java.util.Collections.synchronizedList;
-import static java.util.Comparator.comparing;
 
+/**
+ * Registry of {@link MessageInterceptorRegistration message-interceptor registrations}.
+ * <p>
+ *     The registrations are copied on write: every {@link #register(MessageInterceptorRegistration) registration}
+ *     creates a new, immutable snapshot of the registry with a new {@link #getVersion() version}. The
+ *     {@link InterceptorChain interceptor chains} of a snapshot are computed once per channel and endpoint type,
+ *     so {@link AbstractMessageEndpoint endpoints} are able to keep their chain until the version of the
+ *     registry has changed.
+ * </p>
+ */
 public class MessageInterceptorRegistry {
 
     private final static Comparator<Object> REGISTRATION_ORDER_COMPARATOR = new OrderComparator().reversed();
-    private final List<MessageInterceptorRegistration> registry = synchronizedList(new ArrayList<>());
-    private final ConcurrentMap<String, InterceptorChain> interceptorChainCache = new ConcurrentHashMap<>();
 
-    public void register(final @Nonnull MessageInterceptorRegistration registration) {
-        registry.add(registration);
-        registry.sort(REGISTRATION_ORDER_COMPARATOR);
-        interceptorChainCache.clear();
+    private volatile Snapshot snapshot = new Snapshot(ImmutableList.of(), 0);
+
+    public synchronized void register(final @Nonnull MessageInterceptorRegistration registration) {
+        final List<MessageInterceptorRegistration> registrations = new ArrayList<>(snapshot.registrations);
+        registrations.add(registration);
+        registrations.sort(REGISTRATION_ORDER_COMPARATOR);
+        snapshot = new Snapshot(ImmutableList.copyOf(registrations), snapshot.version + 1);
     }
 
     @Nonnull
     public InterceptorChain getInterceptorChain(final String channelName,
                                                 final EndpointType endpointType) {
-        return interceptorChainCache.computeIfAbsent(channelName + "#" + endpointType.name(), (key) -> new InterceptorChain(
-                getRegistrations(channelName, endpointType)
-                        .stream()
-                        .map(MessageInterceptorRegistration::getInterceptor)
-                        .collect(toImmutableList())
-        ));
+        return snapshot.getInterceptorChain(channelName, endpointType);
     }
 
     @Nonnull
     public ImmutableList<MessageInterceptorRegistration> getRegistrations(final String channelName,
                                                                           final EndpointType endpointType) {
-        return registry
-                .stream()
-                .filter(registration -> registration.isEnabledFor(channelName, endpointType))
-                .collect(toImmutableList());
+        return snapshot.getRegistrations(channelName, endpointType);
+    }
+
+    /**
+     * Returns the version of the registry that is incremented on every registration.
+     *
+     * @return version
+     */
+    long getVersion() {
+        return snapshot.version;
     }
 
+    private static final class Snapshot {
+        private final ImmutableList<MessageInterceptorRegistration> registrations;
+        private final long version;
+        private final Map<EndpointType, ConcurrentMap<String, InterceptorChain>> interceptorChains = new EnumMap<>(EndpointType.class);
+
+        private Snapshot(final ImmutableList<MessageInterceptorRegistration> registrations,
+                         final long version) {
+            this.registrations = registrations;
+            this.version = version;
+            for (final EndpointType endpointType : EndpointType.values()) {
+                interceptorChains.put(endpointType, new ConcurrentHashMap<>());
+            }
+        }
+
+        private InterceptorChain getInterceptorChain(final String channelName,
+                                                     final EndpointType endpointType) {
+            return interceptorChains.get(endpointType).computeIfAbsent(channelName, (key) -> new InterceptorChain(
+                    getRegistrations(channelName, endpointType)
+                            .stream()
+                            .map(MessageInterceptorRegistration::getInterceptor)
+                            .collect(toImmutableList())
+            ));
+        }
+
+        private ImmutableList<MessageInterceptorRegistration> getRegistrations(final String channelName,
+                                                                               final EndpointType endpointType) {
+            return registrations
+                    .stream()
+                    .filter(registration -> registration.isEnabledFor(channelName, endpointType))
+                    .collect(toImmutableList());
+        }
+    }
 }
@@ -1,17 +1,19 @@
 package de.otto.synapse.endpoint;
 
 import de.otto.synapse.consumer.MessageConsumer;
+import de.otto.synapse.consumer.MethodInvokers;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A {@link MessageConsumer} that is calling a method of a class instance for every accepted {@link Message}
@@ -21,9 +23,8 @@ import java.util.Objects;
  */
 public class MethodInvokingMessageInterceptor implements MessageInterceptor {
 
-    private final Object instance;
-    private final Method method;
-    private final boolean returnsMessage;
+    private final Function<Object, Object> invoker;
+    private final boolean sideEffectFree;
 
     public MethodInvokingMessageInterceptor(final Object instance,
                                             final Method method) {
@@ -43,9 +44,17 @@ public class MethodInvokingMessageInterceptor implements MessageInterceptor {
         assertIsMessageWithStringTypeParam(method.getGenericParameterTypes()[0]);
         assertIsMessage(method.getParameterTypes()[0]);
 
-        this.method = method;
-        this.instance = instance;
-        this.returnsMessage = method.getReturnType() != Void.class && method.getReturnType() != void.class;
+        if (method.getReturnType() == void.class || method.getReturnType() == Void.class) {
+            final Consumer<Object> consumer = MethodInvokers.consumerFor(instance, method);
+            this.invoker = message -> {
+                consumer.accept(message);
+                return message;
+            };
+        } else {
+            this.invoker = MethodInvokers.functionFor(instance, method);
+        }
+        final de.otto.synapse.annotation.MessageInterceptor annotation = method.getAnnotation(de.otto.synapse.annotation.MessageInterceptor.class);
+        this.sideEffectFree = annotation != null && annotation.sideEffectFree();
     }
 
     private void assertIsMessageWithStringTypeParam(final Type type) {
@@ -75,20 +84,29 @@ public class MethodInvokingMessageInterceptor implements MessageInterceptor {
     @Override
     @SuppressWarnings("unchecked")
     public TextMessage intercept(@Nonnull TextMessage message) {
+        final Message<String> interceptedMessage;
         try {
-            if (returnsMessage) {
-                final Message<String> interceptedMessage = (Message<String>) method.invoke(instance, message);
-                if (interceptedMessage == null || interceptedMessage == message || interceptedMessage instanceof TextMessage) {
-                    return (TextMessage) interceptedMessage;
-                } else {
-                    return TextMessage.of(interceptedMessage);
-                }
-            } else {
-                method.invoke(instance, message);
-                return message;
-            }
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            interceptedMessage = (Message<String>) invoker.apply(message);
+        } catch (final RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
             throw new IllegalStateException(e);
         }
+        if (interceptedMessage == null || interceptedMessage == message || interceptedMessage instanceof TextMessage) {
+            return (TextMessage) interceptedMessage;
+        } else {
+            return TextMessage.of(interceptedMessage);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the value of {@link de.otto.synapse.annotation.MessageInterceptor#sideEffectFree()}, or false if the
+     * method is not annotated.
+     */
+    @Override
+    public boolean isSideEffectFree() {
+        return sideEffectFree;
     }
 }
@@ -2,6 +2,7 @@ package de.otto.synapse.endpoint.sender;
 
 import de.otto.synapse.endpoint.AbstractMessageEndpoint;
 import de.otto.synapse.endpoint.EndpointType;
+import de.otto.synapse.endpoint.InterceptorChain;
 import de.otto.synapse.endpoint.MessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.message.Message;
@@ -16,6 +17,7 @@ import java.util.stream.Stream;
 import static de.otto.synapse.endpoint.EndpointType.SENDER;
 import static java.util.concurrent.CompletableFuture.allOf;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Sender-side {@code MessageEndpoint endpoint} of a Message Channel with support for {@link MessageTranslator message translation}.
@@ -68,16 +70,37 @@ public abstract class AbstractMessageSenderEndpoint extends AbstractMessageEndpo
     /**
      * Sends a stream of messages to the message channel as one or more batches, if
      * batches are supported by the infrastructure. If not, the messages are send one by one.
+     * <p>
+     *     If the {@link InterceptorChain} of the endpoint contains {@link de.otto.synapse.endpoint.BatchMessageInterceptor
+     *     batch interceptors}, all messages of the stream are intercepted at once.
+     * </p>
      *
      * @param batch a stream of messages that is sent in batched mode, if supported
      * @param <T> the type of the message payload
      */
     @Override
     public final <T> CompletableFuture<Void> sendBatch(@Nonnull final Stream<Message<T>> batch) {
-        return doSendBatch(batch
-                .map(messageTranslator::apply)
-                .map(this::intercept)
-                .filter(Objects::nonNull));
+        return doSendBatch(translateAndInterceptBatch(batch));
+    }
+
+    /**
+     * Translates a stream of messages and intercepts the translated messages the same way as
+     * {@link #sendBatch(Stream)}. Messages that were dropped by an interceptor are removed from the stream.
+     *
+     * @param batch a stream of messages
+     * @param <T> the type of the message payload
+     * @return stream of translated and intercepted messages
+     */
+    protected final <T> Stream<TextMessage> translateAndInterceptBatch(@Nonnull final Stream<Message<T>> batch) {
+        final InterceptorChain interceptorChain = getInterceptorChain();
+        final Stream<TextMessage> translatedBatch = batch.map(messageTranslator::apply);
+        if (interceptorChain.hasBatchInterceptors()) {
+            return interceptorChain.interceptAll(translatedBatch.collect(toList())).stream();
+        } else {
+            return translatedBatch
+                    .map(interceptorChain::intercept)
+                    .filter(Objects::nonNull);
+        }
     }
 
     @Nonnull
@@ -2,6 +2,10 @@ package de.otto.synapse.eventsource;
 
 import de.otto.synapse.channel.ChannelPosition;
 import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.checkpoint.CheckpointStore;
+import de.otto.synapse.checkpoint.Checkpointer;
+import de.otto.synapse.consumer.KeyOrderedDispatcher;
+import de.otto.synapse.consumer.MessageDispatcher;
 import de.otto.synapse.endpoint.receiver.MessageLogReceiverEndpoint;
 import de.otto.synapse.messagestore.MessageStore;
 import de.otto.synapse.messagestore.MessageStoreEntry;
@@ -12,8 +16,8 @@ import javax.annotation.Nonnull;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
@@ -23,73 +27,138 @@ public class DefaultEventSource extends AbstractEventSource {
 
     private static final Logger LOG = getLogger(DefaultEventSource.class);
 
+    /**
+     * The minimum number of threads used to dispatch the messages of compacted message stores.
+     */
+    static final int COMPACTED_MESSAGE_STORE_CONCURRENCY = 16;
+
     private final MessageStore messageStore;
+    private final CheckpointStore checkpointStore;
+    private final String checkpointName;
+    private final Checkpointer checkpointer;
 
     public DefaultEventSource(final @Nonnull MessageStore messageStore,
                               final @Nonnull MessageLogReceiverEndpoint messageLog) {
         super(messageLog);
         this.messageStore = messageStore;
+        this.checkpointStore = null;
+        this.checkpointName = null;
+        this.checkpointer = null;
+    }
+
+    /**
+     * Creates a DefaultEventSource that is periodically saving the position of the consumed channel into
+     * a {@link CheckpointStore}.
+     * <p>
+     *     If the CheckpointStore contains a position for the given event source name, the event source will
+     *     resume consumption from this position and the MessageStore will not be read. This requires the
+     *     consumers of the event source to keep their state in a persistent
+     *     {@link de.otto.synapse.state.StateRepository}.
+     * </p>
+     *
+     * @param messageStore the MessageStore used to bootstrap consumers if there is no checkpoint
+     * @param messageLog the MessageLogReceiverEndpoint of the channel
+     * @param checkpointStore the CheckpointStore used to save and restore positions of the channel
+     * @param eventSourceName the name of the event source, used as the key of its checkpoints
+     * @param checkpointInterval the interval used to save checkpoints while consuming the channel
+     */
+    public DefaultEventSource(final @Nonnull MessageStore messageStore,
+                              final @Nonnull MessageLogReceiverEndpoint messageLog,
+                              final @Nonnull CheckpointStore checkpointStore,
+                              final @Nonnull String eventSourceName,
+                              final @Nonnull Duration checkpointInterval) {
+        super(messageLog);
+        this.messageStore = messageStore;
+        this.checkpointStore = checkpointStore;
+        this.checkpointName = eventSourceName;
+        this.checkpointer = new Checkpointer(eventSourceName, checkpointStore, checkpointInterval);
     }
 
     @Nonnull
     @Override
     public CompletableFuture<ChannelPosition> consumeUntil(final @Nonnull Predicate<ShardResponse> stopCondition) {
-        return consumeMessageStore()
-                .thenCompose(channelPosition -> getMessageLogReceiverEndpoint().consumeUntil(channelPosition, stopCondition))
-                .handle((channelPosition, throwable) -> {
-                    if (throwable != null) {
-                        LOG.error("Failed to start consuming from EventSource {}: {}. Closing MessageStore.", getChannelName(), throwable.getMessage(), throwable);
-                    }
-                    try {
-                        messageStore.close();
-                    } catch (final Exception e) {
-                        LOG.error("Unable to close() MessageStore: " + e.getMessage(), e);
+        if (checkpointer == null) {
+            return consumeMessageStore()
+                    .thenCompose(channelPosition -> getMessageLogReceiverEndpoint().consumeUntil(channelPosition, stopCondition))
+                    .handle(this::closeMessageStore);
+        }
+        final Predicate<ShardResponse> checkpointingStopCondition = shardResponse -> {
+            checkpointer.update(shardResponse.getShardPosition());
+            return stopCondition.test(shardResponse);
+        };
+        return startPosition()
+                .thenCompose(channelPosition -> {
+                    checkpointer.start(channelPosition);
+                    return getMessageLogReceiverEndpoint().consumeUntil(channelPosition, checkpointingStopCondition);
+                })
+                .whenComplete((channelPosition, throwable) -> {
+                    if (channelPosition != null) {
+                        checkpointer.stop(channelPosition);
+                    } else {
+                        checkpointer.stop();
                     }
-                    return channelPosition;
-                });
+                })
+                .handle(this::closeMessageStore);
     }
 
+    @Override
+    public void stop() {
+        super.stop();
+        if (checkpointer != null) {
+            checkpointer.flush();
+        }
+    }
 
-    private CompletableFuture<ChannelPosition> consumeMessageStore() {
+    private CompletableFuture<ChannelPosition> startPosition() {
+        final Optional<ChannelPosition> checkpoint = checkpointStore.getChannelPosition(checkpointName);
+        if (checkpoint.isPresent()) {
+            LOG.info("Resuming EventSource {} from checkpoint {}. Skipping MessageStore.", checkpointName, checkpoint.get());
+            return CompletableFuture.completedFuture(checkpoint.get());
+        } else {
+            return consumeMessageStore();
+        }
+    }
 
-        int numberOfDispatcherThreads = 1;
-        if (messageStore.isCompacting()) {
-            numberOfDispatcherThreads = 16;
+    private ChannelPosition closeMessageStore(final ChannelPosition channelPosition, final Throwable throwable) {
+        if (throwable != null) {
+            LOG.error("Failed to start consuming from EventSource {}: {}. Closing MessageStore.", getChannelName(), throwable.getMessage(), throwable);
+        }
+        try {
+            messageStore.close();
+        } catch (final Exception e) {
+            LOG.error("Unable to close() MessageStore: " + e.getMessage(), e);
         }
+        return channelPosition;
+    }
+
+
+    /**
+     * Dispatches the messages of the MessageStore. Compacted message stores are dispatched using at least
+     * {@link #COMPACTED_MESSAGE_STORE_CONCURRENCY} threads, while keeping the order of messages having the same
+     * partition key.
+     */
+    private CompletableFuture<ChannelPosition> consumeMessageStore() {
 
-        final ExecutorService executorService = Executors.newCachedThreadPool(new CustomizableThreadFactory("synapse-messagestore-dispatcher-"));
-        final Semaphore lock = new Semaphore(numberOfDispatcherThreads);
+        final MessageDispatcher messageDispatcher = getMessageLogReceiverEndpoint().getMessageDispatcher();
+        final int concurrency = messageStore.isCompacting()
+                ? Math.max(COMPACTED_MESSAGE_STORE_CONCURRENCY, messageDispatcher.getConcurrency())
+                : messageDispatcher.getConcurrency();
         final String channelName = getChannelName();
 
         LOG.info("Starting to read message store for channel '{}'.", channelName);
         Instant startTime = Instant.now();
 
         return CompletableFuture.supplyAsync(() -> {
-            messageStore
-                    .stream()
-                    .filter(entry -> entry.getChannelName().equals(channelName))
-                    .map(MessageStoreEntry::getTextMessage)
-                    .map(message -> getMessageLogReceiverEndpoint().intercept(message))
-                    .filter(Objects::nonNull)
-                    .forEach(message -> {
-                        try {
-                            lock.acquire();
-                        } catch (InterruptedException e) {
-                            LOG.error(e.getMessage(), e);
-                        }
-                        executorService.execute(() -> {
-                            try {
-                                getMessageLogReceiverEndpoint().getMessageDispatcher().accept(message);
-                            } finally {
-                                lock.release();
-                            }
-                        });
-                    });
-            executorService.shutdown();
-            try {
-                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MINUTES);
-            } catch (InterruptedException e) {
-                LOG.error(e.getMessage(), e);
+            try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, concurrency, "synapse-messagestore-dispatcher-")) {
+                final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+                messageStore
+                        .stream()
+                        .filter(entry -> entry.getChannelName().equals(channelName))
+                        .map(MessageStoreEntry::getTextMessage)
+                        .map(message -> getMessageLogReceiverEndpoint().intercept(message))
+                        .filter(Objects::nonNull)
+                        .forEach(batch::accept);
+                batch.await();
             }
 
             LOG.info("Finished reading message store for channel '{}'. Duration was {}.", channelName, Duration.between(startTime, Instant.now()));
@@ -0,0 +1,61 @@
+package de.otto.synapse.eventsource;
+
+import de.otto.synapse.checkpoint.CheckpointStore;
+import de.otto.synapse.endpoint.receiver.MessageLogReceiverEndpoint;
+import de.otto.synapse.messagestore.MessageStoreFactory;
+import de.otto.synapse.messagestore.SnapshotMessageStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * The {@link EventSourceBuilder} used to build {@link DefaultEventSource} instances that are bootstrapped
+ * from a {@link SnapshotMessageStore}.
+ * <p>
+ *     Checkpoints are only enabled for event sources built by
+ *     {@link #buildCheckpointingEventSource(MessageLogReceiverEndpoint, String)}. This requires a
+ *     {@link CheckpointStore}.
+ * </p>
+ */
+public class DefaultEventSourceBuilder implements EventSourceBuilder {
+
+    private final MessageStoreFactory<SnapshotMessageStore> snapshotMessageStoreFactory;
+    private final CheckpointStore checkpointStore;
+    private final Duration checkpointInterval;
+
+    /**
+     * @param snapshotMessageStoreFactory the factory used to create the MessageStores used to bootstrap event sources
+     * @param checkpointStore the CheckpointStore used by checkpointing event sources, or null, if checkpoints
+     *                        are not supported
+     * @param checkpointInterval the interval used to save checkpoints
+     */
+    public DefaultEventSourceBuilder(final @Nonnull MessageStoreFactory<SnapshotMessageStore> snapshotMessageStoreFactory,
+                                     final @Nullable CheckpointStore checkpointStore,
+                                     final @Nonnull Duration checkpointInterval) {
+        this.snapshotMessageStoreFactory = snapshotMessageStoreFactory;
+        this.checkpointStore = checkpointStore;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    @Override
+    public EventSource buildEventSource(final MessageLogReceiverEndpoint messageLogReceiverEndpoint) {
+        final SnapshotMessageStore messageStore = snapshotMessageStoreFactory.createMessageStoreFor(messageLogReceiverEndpoint.getChannelName());
+        return new DefaultEventSource(messageStore, messageLogReceiverEndpoint);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if no {@link CheckpointStore} is configured
+     */
+    @Override
+    public EventSource buildCheckpointingEventSource(final MessageLogReceiverEndpoint messageLogReceiverEndpoint,
+                                                     final String eventSourceName) {
+        if (checkpointStore == null) {
+            throw new IllegalStateException("Unable to enable checkpoints of EventSource " + eventSourceName + ": no CheckpointStore configured");
+        }
+        final SnapshotMessageStore messageStore = snapshotMessageStoreFactory.createMessageStoreFor(messageLogReceiverEndpoint.getChannelName());
+        return new DefaultEventSource(messageStore, messageLogReceiverEndpoint, checkpointStore, eventSourceName, checkpointInterval);
+    }
+}
@@ -5,9 +5,11 @@ import de.otto.synapse.channel.ShardResponse;
 import de.otto.synapse.consumer.MessageConsumer;
 import de.otto.synapse.consumer.MessageDispatcher;
 import de.otto.synapse.endpoint.receiver.MessageLogReceiverEndpoint;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
@@ -19,8 +21,67 @@ public class DelegateEventSource implements EventSource {
     public DelegateEventSource(final String messageLogBeanName,
                                final EventSourceBuilder eventSourceBuilder,
                                final ApplicationContext applicationContext) {
+        this(messageLogBeanName, 1, eventSourceBuilder, applicationContext);
+    }
+
+    /**
+     * Creates a DelegateEventSource dispatching messages using the given concurrency.
+     *
+     * @param messageLogBeanName the name of the MessageLogReceiverEndpoint bean
+     * @param concurrency the {@link MessageDispatcher#setConcurrency(int) concurrency} of the dispatcher
+     * @param eventSourceBuilder the builder used to create the delegate EventSource
+     * @param applicationContext the ApplicationContext used to lookup the MessageLogReceiverEndpoint
+     */
+    public DelegateEventSource(final String messageLogBeanName,
+                               final int concurrency,
+                               final EventSourceBuilder eventSourceBuilder,
+                               final ApplicationContext applicationContext) {
+        this(messageLogBeanName, concurrency, MessageDispatcher.DEFAULT_MAX_IN_FLIGHT, eventSourceBuilder, applicationContext);
+    }
+
+    /**
+     * Creates a DelegateEventSource dispatching messages using the given concurrency and max number of messages
+     * in flight.
+     *
+     * @param messageLogBeanName the name of the MessageLogReceiverEndpoint bean
+     * @param concurrency the {@link MessageDispatcher#setConcurrency(int) concurrency} of the dispatcher
+     * @param maxInFlight the {@link MessageDispatcher#setMaxInFlight(int) max number of messages in flight}
+     * @param eventSourceBuilder the builder used to create the delegate EventSource
+     * @param applicationContext the ApplicationContext used to lookup the MessageLogReceiverEndpoint
+     */
+    public DelegateEventSource(final String messageLogBeanName,
+                               final int concurrency,
+                               final int maxInFlight,
+                               final EventSourceBuilder eventSourceBuilder,
+                               final ApplicationContext applicationContext) {
+        this(messageLogBeanName, concurrency, maxInFlight, null, eventSourceBuilder, applicationContext);
+    }
+
+    /**
+     * Creates a DelegateEventSource dispatching messages using the given concurrency and max number of messages
+     * in flight.
+     *
+     * @param messageLogBeanName the name of the MessageLogReceiverEndpoint bean
+     * @param concurrency the {@link MessageDispatcher#setConcurrency(int) concurrency} of the dispatcher
+     * @param maxInFlight the {@link MessageDispatcher#setMaxInFlight(int) max number of messages in flight}
+     * @param checkpointName the name used to save the checkpoints of the EventSource, or null, if checkpoints
+     *                       are disabled
+     * @param eventSourceBuilder the builder used to create the delegate EventSource
+     * @param applicationContext the ApplicationContext used to lookup the MessageLogReceiverEndpoint
+     */
+    @Autowired
+    public DelegateEventSource(final String messageLogBeanName,
+                               final int concurrency,
+                               final int maxInFlight,
+                               final @Nullable String checkpointName,
+                               final EventSourceBuilder eventSourceBuilder,
+                               final ApplicationContext applicationContext) {
         final MessageLogReceiverEndpoint messageLogReceiverEndpoint = applicationContext.getBean(messageLogBeanName, MessageLogReceiverEndpoint.class);
-        this.delegate = eventSourceBuilder.buildEventSource(messageLogReceiverEndpoint);
+        this.delegate = checkpointName != null
+                ? eventSourceBuilder.buildCheckpointingEventSource(messageLogReceiverEndpoint, checkpointName)
+                : eventSourceBuilder.buildEventSource(messageLogReceiverEndpoint);
+        this.delegate.getMessageDispatcher().setConcurrency(concurrency);
+        this.delegate.getMessageDispatcher().setMaxInFlight(maxInFlight);
     }
 
     public EventSource getDelegate() {
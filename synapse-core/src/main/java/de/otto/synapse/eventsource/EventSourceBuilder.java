@@ -16,4 +16,25 @@ public interface EventSourceBuilder {
      */
     EventSource buildEventSource(final MessageLogReceiverEndpoint messageLogReceiverEndpoint);
 
+    /**
+     * Builds an event source that is periodically saving the position of the consumed channel into a
+     * {@link de.otto.synapse.checkpoint.CheckpointStore}, and that is resuming from this position after a restart.
+     * <p>
+     *     Checkpoints are keyed by the name of the event source, so other event sources consuming the same
+     *     channel are not affected.
+     * </p>
+     * <p>
+     *     The default implementation does not support checkpoints and throws an
+     *     {@code UnsupportedOperationException}.
+     * </p>
+     *
+     * @param messageLogReceiverEndpoint the MessageLogReceiverEndpoint used to consume
+     * @param eventSourceName the name of the event source, used as the key of its checkpoints
+     * @return EventSource implementation for this specific technology
+     */
+    default EventSource buildCheckpointingEventSource(final MessageLogReceiverEndpoint messageLogReceiverEndpoint,
+                                                      final String eventSourceName) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support checkpoints of EventSource " + eventSourceName);
+    }
+
 }
@@ -0,0 +1,94 @@
+package de.otto.synapse.message;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import de.otto.synapse.translator.PayloadCodec;
+import de.otto.synapse.translator.PayloadCodecs;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import static de.otto.synapse.translator.ObjectMappers.currentObjectReaderFor;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A {@link TextMessage} with an UTF-8 encoded payload, like the payload of a Kinesis record, or with a payload
+ * encoded by a {@link PayloadCodec#isBinary() binary} codec. The payload string is created lazily; binary
+ * payloads are represented as Base64 string.
+ *
+ * @see TextMessage#ofUtf8(Key, Header, ByteBuffer)
+ */
+class BinaryTextMessage extends TextMessage {
+
+    private static final long serialVersionUID = 2693826367015339318L;
+
+    /** The read-only payload, from position 0 to the limit of the buffer. */
+    private final transient ByteBuffer bytes;
+    private transient volatile String payload;
+
+    BinaryTextMessage(final @Nonnull Key key,
+                      final @Nonnull Header header,
+                      final @Nonnull ByteBuffer bytes) {
+        super(key, header, null);
+        this.bytes = bytes;
+    }
+
+    @Nullable
+    @Override
+    public String getPayload() {
+        String result = payload;
+        if (result == null) {
+            result = PayloadCodecs.codecOf(getHeader()).isBinary()
+                    ? Base64.getEncoder().encodeToString(toArray(bytes))
+                    : UTF_8.decode(bytes.duplicate()).toString();
+            payload = result;
+        }
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getPayloadAsByteBuffer() {
+        return bytes.duplicate();
+    }
+
+    @Nonnull
+    @Override
+    public TextMessage withHeader(final @Nonnull Header header) {
+        return new BinaryTextMessage(getKey(), header, bytes);
+    }
+
+    @Nullable
+    @Override
+    public <T> T getPayloadAs(final @Nonnull Class<T> payloadType) throws IOException {
+        if (payloadType == String.class) {
+            return super.getPayloadAs(payloadType);
+        }
+        final PayloadCodec codec = PayloadCodecs.codecOf(getHeader());
+        if (codec != PayloadCodecs.JSON) {
+            return codec.decode(bytes, payloadType);
+        } else if (payload != null) {
+            return super.getPayloadAs(payloadType);
+        }
+        return currentObjectReaderFor(payloadType).readValue(new ByteBufferBackedInputStream(bytes.duplicate()));
+    }
+
+    @Override
+    JsonParser jsonParser(final @Nonnull JsonFactory jsonFactory) throws IOException {
+        return jsonFactory.createParser(new ByteBufferBackedInputStream(bytes.duplicate()));
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] array = new byte[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    private Object writeReplace() {
+        return TextMessage.of(getKey(), getHeader(), getPayload());
+    }
+}
@@ -47,7 +47,15 @@ public enum DefaultHeaderAttr implements HeaderAttr {
      * The attribute key is {@code synapse_msg_receiver_ts}
      * </p>
      */
-    MSG_RECEIVER_TS("synapse_msg_receiver_ts");
+    MSG_RECEIVER_TS("synapse_msg_receiver_ts"),
+    /**
+     * The name of the {@link de.otto.synapse.translator.PayloadCodec} used to encode the payload of the message.
+     * Messages without this attribute have JSON payloads.
+     * <p>
+     * The attribute key is {@code synapse_msg_payload_codec}
+     * </p>
+     */
+    MSG_PAYLOAD_CODEC("synapse_msg_payload_codec");
 
     private final String key;
 
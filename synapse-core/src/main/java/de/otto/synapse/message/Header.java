@@ -13,6 +13,7 @@ import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -26,6 +27,12 @@ import java.util.Optional;
  *     the message header.
  * </p>
  * <p>
+ *     Headers are immutable. Headers derived from another header using {@link #withAttribute(String, String)} or
+ *     {@link #copyOf(Header)} are sharing the attributes of the original header instead of copying them, so
+ *     interceptors adding single attributes to every message are not copying the whole header. Timestamps returned
+ *     by {@link #getAsInstant(String)} are parsed only once per header.
+ * </p>
+ * <p>
  *     <img src="http://www.enterpriseintegrationpatterns.com/img/MessageSolution.gif" alt="Message">
  * </p>
  * @see <a href="http://www.enterpriseintegrationpatterns.com/patterns/messaging/Message.html">EIP: Message</a>
@@ -35,6 +42,14 @@ public class Header implements Serializable {
 
     private static final long serialVersionUID = -6285737687861009394L;
 
+    /**
+     * The maximum number of headers sharing their attributes, before the attributes of a derived header are
+     * copied into a new, flat header.
+     */
+    static final int MAX_DEPTH = 8;
+
+    private static final ImmutableMap<String, String> WELL_KNOWN_KEYS = wellKnownKeys();
+
     public static Header of() {
         return new Header(null, ImmutableMap.of());
     }
@@ -53,22 +68,98 @@ public class Header implements Serializable {
     }
 
     public static Builder builder() {
-        return new Builder();
+        return new Builder(null);
     }
 
+    /**
+     * Returns a builder used to create a header derived from the given header.
+     * <p>
+     *     The attributes of the given header are shared with the created header, only the attributes added to the
+     *     builder are copied.
+     * </p>
+     *
+     * @param header the header
+     * @return Builder
+     */
     public static Builder copyOf(final Header header) {
-        return new Builder()
-                .withShardPosition(header.shardPosition)
-                .withAttributes(header.getAll());
+        return new Builder(header)
+                .withShardPosition(header.shardPosition);
     }
 
     private final ShardPosition shardPosition;
+    /** The header sharing its attributes with this header, or null. */
+    private final Header parent;
+    /** The attributes of this header, overriding the attributes of the parent. */
     private final ImmutableMap<String, String> attributes;
+    private final int depth;
+    /** All attributes of this header and its parents, computed on demand. */
+    private transient volatile ImmutableMap<String, String> allAttributes;
+    /** Cache of the Instants parsed from the attributes of this header. */
+    private transient volatile ImmutableMap<String, Instant> instants;
 
     private Header(final ShardPosition shardPosition,
                    final ImmutableMap<String, String> attributes) {
+        this(shardPosition, null, attributes, ImmutableMap.of());
+    }
+
+    private Header(final ShardPosition shardPosition,
+                   final Header parent,
+                   final ImmutableMap<String, String> attributes,
+                   final ImmutableMap<String, Instant> instants) {
         this.shardPosition = shardPosition;
+        this.parent = parent;
         this.attributes = attributes;
+        this.depth = parent != null ? parent.depth + 1 : 0;
+        this.instants = instants;
+    }
+
+    /**
+     * Returns a new header containing the attributes of this header and the given attribute.
+     *
+     * @param key the key of the attribute
+     * @param value the value of the attribute
+     * @return Header
+     */
+    @Nonnull
+    public Header withAttribute(final @Nonnull String key, final @Nonnull String value) {
+        return derive(shardPosition, ImmutableMap.of(internKey(key), value), ImmutableMap.of());
+    }
+
+    /**
+     * Returns a new header containing the attributes of this header and the given attribute.
+     *
+     * @param attr the attribute
+     * @param value the value of the attribute
+     * @return Header
+     */
+    @Nonnull
+    public Header withAttribute(final @Nonnull HeaderAttr attr, final @Nonnull String value) {
+        return withAttribute(attr.key(), value);
+    }
+
+    /**
+     * Returns a new header containing the attributes of this header and the given timestamp attribute.
+     *
+     * @param key the key of the attribute
+     * @param value the timestamp
+     * @return Header
+     */
+    @Nonnull
+    public Header withAttribute(final @Nonnull String key, final @Nonnull Instant value) {
+        final String internedKey = internKey(key);
+        return derive(shardPosition, ImmutableMap.of(internedKey, value.toString()), ImmutableMap.of(internedKey, value));
+    }
+
+    /**
+     * Returns a new header containing the attributes of this header and the given timestamp attribute.
+     *
+     * @param attr the attribute
+     * @param value the timestamp
+     * @return Header
+     */
+    @Nonnull
+    public Header withAttribute(final @Nonnull HeaderAttr attr, final @Nonnull Instant value) {
+        return withAttribute(attr.key(), value);
     }
 
     @Nonnull
@@ -79,11 +170,21 @@ public class Header implements Serializable {
     @Nonnull
     @JsonAnyGetter
     public ImmutableMap<String, String> getAll() {
-        return attributes;
+        if (parent == null) {
+            return attributes;
+        }
+        ImmutableMap<String, String> all = allAttributes;
+        if (all == null) {
+            final Map<String, String> merged = new LinkedHashMap<>(parent.getAll());
+            merged.putAll(attributes);
+            all = ImmutableMap.copyOf(merged);
+            allAttributes = all;
+        }
+        return all;
     }
 
     public boolean containsKey(final String key) {
-        return attributes.containsKey(key);
+        return valueOf(key) != null;
     }
 
     public boolean containsKey(final HeaderAttr attr) {
@@ -93,7 +194,7 @@ public class Header implements Serializable {
     @Nullable
     @JsonIgnore
     public Object get(final String key) {
-        return attributes.get(key);
+        return valueOf(key);
     }
 
     @Nullable
@@ -105,7 +206,8 @@ public class Header implements Serializable {
     @Nullable
     @JsonIgnore
     public Object get(final String key, final String defaultValue) {
-        return attributes.getOrDefault(key, defaultValue);
+        final String value = valueOf(key);
+        return value != null ? value : defaultValue;
     }
 
     @Nullable
@@ -117,7 +219,7 @@ public class Header implements Serializable {
     @Nullable
     @JsonIgnore
     public String getAsString(final String key) {
-        return Objects.toString(attributes.get(key), null);
+        return valueOf(key);
     }
 
     @Nullable
@@ -129,7 +231,8 @@ public class Header implements Serializable {
     @Nullable
     @JsonIgnore
     public String getAsString(final String key, final String defaultValue) {
-        return Objects.toString(attributes.get(key), defaultValue);
+        final String value = valueOf(key);
+        return value != null ? value : defaultValue;
     }
 
     @Nullable
@@ -141,9 +244,7 @@ public class Header implements Serializable {
     @Nullable
     @JsonIgnore
     public Instant getAsInstant(final String key) {
-        return containsKey(key)
-                ? Instant.parse(attributes.get(key))
-                : null;
+        return getAsInstant(key, null);
     }
 
     @Nullable
@@ -155,9 +256,13 @@ public class Header implements Serializable {
     @Nullable
     @JsonIgnore
     public Instant getAsInstant(final String key, final Instant defaultValue) {
-        return containsKey(key)
-                ? Instant.parse(attributes.get(key))
-                : defaultValue;
+        for (Header header = this; header != null; header = header.parent) {
+            final String value = header.attributes.get(key);
+            if (value != null) {
+                return header.instantOf(key, value);
+            }
+        }
+        return defaultValue;
     }
 
     @Nullable
@@ -172,25 +277,84 @@ public class Header implements Serializable {
         if (o == null || getClass() != o.getClass()) return false;
         Header header = (Header) o;
         return Objects.equals(shardPosition, header.shardPosition) &&
-                Objects.equals(attributes, header.attributes);
+                Objects.equals(getAll(), header.getAll());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(shardPosition, attributes);
+        return Objects.hash(shardPosition, getAll());
     }
 
     @Override
     public String toString() {
         return "Header{" +
                 "shardPosition=" + shardPosition +
-                ", attributes=" + attributes +
+                ", attributes=" + getAll() +
                 '}';
     }
 
+    private String valueOf(final String key) {
+        for (Header header = this; header != null; header = header.parent) {
+            final String value = header.attributes.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the parsed value of an attribute of this header, parsing it only once.
+     */
+    private Instant instantOf(final String key, final String value) {
+        final ImmutableMap<String, Instant> cached = instants != null ? instants : ImmutableMap.of();
+        Instant instant = cached.get(key);
+        if (instant == null) {
+            instant = Instant.parse(value);
+            // Concurrent updates might lose an entry, which is only parsed again:
+            instants = ImmutableMap.<String, Instant>builder().putAll(cached).put(key, instant).build();
+        }
+        return instant;
+    }
+
+    private Header derive(final ShardPosition shardPosition,
+                          final ImmutableMap<String, String> attributes,
+                          final ImmutableMap<String, Instant> instants) {
+        if (depth < MAX_DEPTH) {
+            return new Header(shardPosition, this, attributes, instants);
+        } else {
+            final Map<String, String> merged = new LinkedHashMap<>(getAll());
+            merged.putAll(attributes);
+            return new Header(shardPosition, null, ImmutableMap.copyOf(merged), instants);
+        }
+    }
+
+    /**
+     * Returns the canonical instance of well-known attribute keys like the keys of {@link DefaultHeaderAttr}, so
+     * the keys of decoded messages are not retained once per message.
+     */
+    private static String internKey(final String key) {
+        final String wellKnownKey = WELL_KNOWN_KEYS.get(key);
+        return wellKnownKey != null ? wellKnownKey : key;
+    }
+
+    private static ImmutableMap<String, String> wellKnownKeys() {
+        final ImmutableMap.Builder<String, String> keys = ImmutableMap.builder();
+        for (final DefaultHeaderAttr attr : DefaultHeaderAttr.values()) {
+            keys.put(attr.key(), attr.key());
+        }
+        return keys.build();
+    }
+
     public static class Builder {
+        private final Header prototype;
         private ShardPosition shardPosition;
         private final Map<String, String> attributes = new HashMap<>();
+        private final Map<String, Instant> instants = new HashMap<>();
+
+        private Builder(final Header prototype) {
+            this.prototype = prototype;
+        }
 
         public Builder withShardPosition(final @Nonnull ShardPosition shardPosition) {
             this.shardPosition = shardPosition;
@@ -198,7 +362,9 @@ public class Header implements Serializable {
         }
 
         public Builder withAttribute(final @Nonnull String key, final @Nonnull String value) {
-            this.attributes.put(key, value);
+            final String internedKey = internKey(key);
+            this.attributes.put(internedKey, value);
+            this.instants.remove(internedKey);
             return this;
         }
 
@@ -207,7 +373,9 @@ public class Header implements Serializable {
         }
 
         public Builder withAttribute(final @Nonnull String key, final @Nonnull Instant value) {
-            this.attributes.put(key, value.toString());
+            final String internedKey = internKey(key);
+            this.attributes.put(internedKey, value.toString());
+            this.instants.put(internedKey, value);
             return this;
         }
 
@@ -216,12 +384,18 @@ public class Header implements Serializable {
         }
 
         public Builder withAttributes(final @Nonnull Map<String, String> attributes) {
-            this.attributes.putAll(attributes);
+            attributes.forEach(this::withAttribute);
             return this;
         }
 
         public Header build() {
-            return new Header(shardPosition, ImmutableMap.copyOf(attributes));
+            if (prototype == null) {
+                return new Header(shardPosition, null, ImmutableMap.copyOf(attributes), ImmutableMap.copyOf(instants));
+            } else if (attributes.isEmpty() && Objects.equals(shardPosition, prototype.shardPosition)) {
+                return prototype;
+            } else {
+                return prototype.derive(shardPosition, ImmutableMap.copyOf(attributes), ImmutableMap.copyOf(instants));
+            }
         }
     }
 }
@@ -85,22 +85,22 @@ public class Message<P> implements Serializable {
         if (this == o) return true;
         if (!(o instanceof Message)) return false;
         Message<?> message = (Message<?>) o;
-        return key.equals(message.key) &&
-                header.equals(message.header) &&
-                Objects.equals(payload, message.payload);
+        return getKey().equals(message.getKey()) &&
+                getHeader().equals(message.getHeader()) &&
+                Objects.equals(getPayload(), message.getPayload());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(key, header, payload);
+        return Objects.hash(getKey(), getHeader(), getPayload());
     }
 
     @Override
     public String toString() {
         return "Message{" +
-                "of='" + key + '\'' +
-                ", payload=" + payload +
-                ", header=" + header +
+                "of='" + getKey() + '\'' +
+                ", payload=" + getPayload() +
+                ", header=" + getHeader() +
                 '}';
     }
 
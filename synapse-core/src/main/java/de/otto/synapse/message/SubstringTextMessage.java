@@ -0,0 +1,107 @@
+package de.otto.synapse.message;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+
+import static de.otto.synapse.translator.ObjectMappers.currentObjectReaderFor;
+
+/**
+ * A {@link TextMessage} with a JSON payload that is a part of some larger text. The payload string is created
+ * lazily.
+ *
+ * @see TextMessage#of(Key, Header, String, int, int)
+ */
+class SubstringTextMessage extends TextMessage {
+
+    private static final long serialVersionUID = -1437213521412947396L;
+
+    private final String text;
+    private final int beginIndex;
+    private final int endIndex;
+    private transient volatile String payload;
+
+    SubstringTextMessage(final @Nonnull Key key,
+                         final @Nonnull Header header,
+                         final @Nonnull String text,
+                         final int beginIndex,
+                         final int endIndex) {
+        super(key, header, null);
+        this.text = text;
+        this.beginIndex = beginIndex;
+        this.endIndex = endIndex;
+    }
+
+    @Nullable
+    @Override
+    public String getPayload() {
+        String result = payload;
+        if (result == null) {
+            result = text.substring(beginIndex, endIndex);
+            payload = result;
+        }
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public TextMessage withHeader(final @Nonnull Header header) {
+        return new SubstringTextMessage(getKey(), header, text, beginIndex, endIndex);
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getPayloadAs(final @Nonnull Class<T> payloadType) throws IOException {
+        if (payloadType == String.class || payload != null) {
+            return super.getPayloadAs(payloadType);
+        }
+        return currentObjectReaderFor(payloadType).readValue(new SubstringReader(text, beginIndex, endIndex));
+    }
+
+    @Override
+    JsonParser jsonParser(final @Nonnull JsonFactory jsonFactory) throws IOException {
+        return payload != null
+                ? super.jsonParser(jsonFactory)
+                : jsonFactory.createParser(new SubstringReader(text, beginIndex, endIndex));
+    }
+
+    private Object writeReplace() {
+        return TextMessage.of(getKey(), getHeader(), getPayload());
+    }
+
+    /**
+     * A Reader for a part of a String that, in contrast to a StringReader on a substring, does not copy the
+     * characters.
+     */
+    private static final class SubstringReader extends Reader {
+        private final String text;
+        private final int endIndex;
+        private int pos;
+
+        private SubstringReader(final String text, final int beginIndex, final int endIndex) {
+            this.text = text;
+            this.pos = beginIndex;
+            this.endIndex = endIndex;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) {
+            if (pos >= endIndex) {
+                return -1;
+            }
+            final int n = Math.min(len, endIndex - pos);
+            text.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
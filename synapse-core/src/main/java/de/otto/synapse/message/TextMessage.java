@@ -1,11 +1,34 @@
 package de.otto.synapse.message;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import de.otto.synapse.translator.PayloadCodec;
+import de.otto.synapse.translator.PayloadCodecs;
+import de.otto.synapse.translator.PayloadProjection;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectReaderFor;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A {@code Message} that is used by Synapse for messages with String payloads.
- *
+ * <p>
+ *     Payloads received as bytes are kept in their UTF-8 encoded form: the payload string of a message created
+ *     using {@link #ofUtf8(Key, Header, ByteBuffer)} is only created if {@link #getPayload()} is called, and
+ *     {@link #getPayloadAsByteBuffer()} returns the bytes without encoding the payload again.
+ * </p>
+ * <p>
+ *     Payloads encoded by a {@link PayloadCodec} other than JSON are named by the
+ *     {@link DefaultHeaderAttr#MSG_PAYLOAD_CODEC} header attribute. The payload string of messages encoded by a
+ *     {@link PayloadCodec#isBinary() binary} codec is the Base64 representation of the encoded bytes.
+ * </p>
  */
 public class TextMessage extends Message<String> {
 
@@ -84,4 +107,160 @@ public class TextMessage extends Message<String> {
         return new TextMessage(Key.of(key), Header.of(), payload);
     }
 
+    /**
+     * Factory method used to create a {@code TextMessage} with a JSON payload that is a part of some larger text,
+     * like the JSON payload contained in a {@link de.otto.synapse.translator.MessageFormat#V2 V2} message.
+     * <p>
+     *     The payload string is only created if {@link #getPayload()} is called. {@link #getPayloadAs(Class)}
+     *     deserializes the payload directly from the text, without creating the payload string.
+     * </p>
+     *
+     * @param key Key of the created message
+     * @param header Header of the created message
+     * @param text the text containing the JSON payload
+     * @param beginIndex the index of the first character of the payload in {@code text}
+     * @param endIndex the index after the last character of the payload in {@code text}
+     * @return TextMessage
+     */
+    @Nonnull
+    public static TextMessage of(final @Nonnull Key key,
+                                 final @Nonnull Header header,
+                                 final @Nonnull String text,
+                                 final int beginIndex,
+                                 final int endIndex) {
+        checkPositionIndexes(beginIndex, endIndex, text.length());
+        return new SubstringTextMessage(key, header, text, beginIndex, endIndex);
+    }
+
+    /**
+     * Factory method used to create a {@code TextMessage} with an UTF-8 encoded payload, like the data of a
+     * Kinesis record, or with a payload encoded by the {@link PayloadCodec binary codec} named by the
+     * {@link DefaultHeaderAttr#MSG_PAYLOAD_CODEC} header attribute.
+     * <p>
+     *     The payload string is only created if {@link #getPayload()} is called. {@link #getPayloadAs(Class)}
+     *     deserializes the payload directly from the bytes, and {@link #getPayloadAsByteBuffer()} returns the bytes
+     *     without copying them.
+     * </p>
+     *
+     * @param key Key of the created message
+     * @param header Header of the created message
+     * @param payload the remaining bytes of the buffer are the encoded payload of the created message. The
+     *                bytes are not copied, so the content of the buffer must not be modified afterwards.
+     * @return TextMessage
+     */
+    @Nonnull
+    public static TextMessage ofUtf8(final @Nonnull Key key,
+                                     final @Nonnull Header header,
+                                     final @Nonnull ByteBuffer payload) {
+        return new BinaryTextMessage(key, header, payload.asReadOnlyBuffer().slice());
+    }
+
+    /**
+     * Returns a copy of this message, having the same key and payload, but a different header.
+     * <p>
+     *     In contrast to {@code TextMessage.of(message.getKey(), header, message.getPayload())}, a payload that
+     *     was not yet {@link #of(Key, Header, String, int, int) materialized} remains unmaterialized.
+     * </p>
+     *
+     * @param header Header of the created message
+     * @return TextMessage
+     */
+    @Nonnull
+    public TextMessage withHeader(final @Nonnull Header header) {
+        return new TextMessage(getKey(), header, getPayload());
+    }
+
+    /**
+     * Returns the encoded payload of the message: the UTF-8 encoded payload string, or the bytes encoded by the
+     * {@link PayloadCodec#isBinary() binary} codec of the message.
+     * <p>
+     *     Messages {@link #ofUtf8(Key, Header, ByteBuffer) created from bytes} are returning their bytes without
+     *     encoding the payload string.
+     * </p>
+     *
+     * @return buffer containing the encoded payload, or null if the payload is null. The content of the buffer
+     *         must not be modified.
+     * @throws IllegalArgumentException if the codec of the message is not registered
+     */
+    @Nullable
+    public ByteBuffer getPayloadAsByteBuffer() {
+        final String payload = getPayload();
+        if (payload == null) {
+            return null;
+        }
+        return PayloadCodecs.codecOf(getHeader()).isBinary()
+                ? ByteBuffer.wrap(Base64.getDecoder().decode(payload))
+                : ByteBuffer.wrap(payload.getBytes(UTF_8));
+    }
+
+    /**
+     * Returns the payload of the message, deserialized into the given type using the {@link PayloadCodec} of
+     * the message. JSON payloads are deserialized using the
+     * {@link de.otto.synapse.translator.ObjectMappers#currentObjectMapper() current ObjectMapper}.
+     *
+     * @param payloadType the expected type of the payload. If {@code String}, the payload is returned as-is.
+     * @param <T> the expected type of the payload
+     * @return deserialized payload, or null if the payload is null
+     * @throws IOException if the payload can not be deserialized
+     * @throws IllegalArgumentException if the codec of the message is not registered
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T getPayloadAs(final @Nonnull Class<T> payloadType) throws IOException {
+        final String payload = getPayload();
+        if (payload == null || payloadType == String.class) {
+            return (T) payload;
+        }
+        final PayloadCodec codec = PayloadCodecs.codecOf(getHeader());
+        if (codec == PayloadCodecs.JSON) {
+            return currentObjectReaderFor(payloadType).readValue(payload);
+        } else {
+            return codec.decode(getPayloadAsByteBuffer(), payloadType);
+        }
+    }
+
+    /**
+     * Returns the selected parts of the payload, deserialized into the given type.
+     * <p>
+     *     JSON payloads are parsed using a streaming parser that skips all parts of the payload that are not
+     *     selected by the projection. Payloads encoded by other {@link PayloadCodec codecs} are deserialized
+     *     completely.
+     * </p>
+     *
+     * @param payloadType the expected type of the payload. If {@code String}, the payload is returned as-is.
+     * @param projection the projection selecting the parts of the payload, or null if the whole payload should
+     *                   be deserialized
+     * @param <T> the expected type of the payload
+     * @return deserialized payload, or null if the payload is null
+     * @throws IOException if the payload can not be deserialized
+     * @throws IllegalArgumentException if the codec of the message is not registered
+     */
+    @Nullable
+    public <T> T getPayloadAs(final @Nonnull Class<T> payloadType,
+                              final @Nullable PayloadProjection projection) throws IOException {
+        if (projection == null || payloadType == String.class || PayloadCodecs.codecOf(getHeader()) != PayloadCodecs.JSON) {
+            return getPayloadAs(payloadType);
+        }
+        try (final JsonParser parser = jsonParser(currentObjectMapper().getFactory())) {
+            return parser != null
+                    ? projection.decode(parser, payloadType)
+                    : null;
+        }
+    }
+
+    /**
+     * Creates a parser for the JSON payload of the message.
+     *
+     * @param jsonFactory the factory used to create the parser
+     * @return JsonParser, or null if the payload is null
+     * @throws IOException if the parser can not be created
+     */
+    @Nullable
+    JsonParser jsonParser(final @Nonnull JsonFactory jsonFactory) throws IOException {
+        final String payload = getPayload();
+        return payload != null
+                ? jsonFactory.createParser(payload)
+                : null;
+    }
+
 }
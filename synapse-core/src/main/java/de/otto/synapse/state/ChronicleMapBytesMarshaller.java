@@ -1,6 +1,7 @@
 package de.otto.synapse.state;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.otto.synapse.translator.PayloadCodec;
 import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.core.util.ReadResolvable;
 import net.openhft.chronicle.hash.serialization.BytesReader;
@@ -16,23 +17,40 @@ public final class ChronicleMapBytesMarshaller<V> implements
         ReadResolvable<ChronicleMapBytesMarshaller> {
 
     private final ObjectMapper objectMapper;
+    private final PayloadCodec payloadCodec;
     private final Class<V> clazz;
 
     public ChronicleMapBytesMarshaller(Class<V> clazz) {
-        this.objectMapper = currentObjectMapper();
-        this.clazz = clazz;
+        this(currentObjectMapper(), clazz);
     }
 
     public ChronicleMapBytesMarshaller(ObjectMapper objectMapper,
                                        Class<V> clazz) {
         this.objectMapper = objectMapper;
+        this.payloadCodec = null;
+        this.clazz = clazz;
+    }
+
+    /**
+     * Creates a marshaller that is encoding values using a {@link PayloadCodec}, for example a binary codec like
+     * {@code smile} or {@code cbor} that is encoding values more compact than JSON.
+     *
+     * @param payloadCodec the codec used to encode and decode values
+     * @param clazz the type of the values
+     */
+    public ChronicleMapBytesMarshaller(PayloadCodec payloadCodec,
+                                       Class<V> clazz) {
+        this.objectMapper = null;
+        this.payloadCodec = payloadCodec;
         this.clazz = clazz;
     }
 
     @Override
     public V read(Bytes in, V using) {
         try {
-            return objectMapper.readValue(in.inputStream(), clazz);
+            return payloadCodec != null
+                    ? payloadCodec.decode(in.inputStream(), clazz)
+                    : objectMapper.readValue(in.inputStream(), clazz);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -41,7 +59,11 @@ public final class ChronicleMapBytesMarshaller<V> implements
     @Override
     public void write(Bytes out, V toWrite) {
         try {
-            objectMapper.writeValue(out.writer(), toWrite);
+            if (payloadCodec != null) {
+                out.write(payloadCodec.encode(toWrite));
+            } else {
+                objectMapper.writeValue(out.writer(), toWrite);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
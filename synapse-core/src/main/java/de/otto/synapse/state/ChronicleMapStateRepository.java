@@ -1,6 +1,7 @@
 package de.otto.synapse.state;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.otto.synapse.translator.PayloadCodec;
 import net.openhft.chronicle.hash.ChronicleHashClosedException;
 import net.openhft.chronicle.map.ChronicleMap;
 import net.openhft.chronicle.map.ChronicleMapBuilder;
@@ -71,6 +72,7 @@ public class ChronicleMapStateRepository<V> extends ConcurrentMapStateRepository
     public static final class Builder<V> {
 
         private ObjectMapper objectMapper = currentObjectMapper();
+        private PayloadCodec payloadCodec;
 
         private final Class<V> clazz;
         private String name;
@@ -88,6 +90,17 @@ public class ChronicleMapStateRepository<V> extends ConcurrentMapStateRepository
             return this;
         }
 
+        /**
+         * Encodes the values of the repository using the given codec instead of the ObjectMapper.
+         *
+         * @param val the codec used to encode and decode values
+         * @return Builder
+         */
+        public Builder<V> withPayloadCodec(PayloadCodec val) {
+            payloadCodec = val;
+            return this;
+        }
+
         public Builder<V> withName(final String val) {
             name = val;
             return this;
@@ -114,7 +127,9 @@ public class ChronicleMapStateRepository<V> extends ConcurrentMapStateRepository
 
             boolean doesClassNeedToBeSerialized = clazz != String.class;
             if (!customValueMarshaller && doesClassNeedToBeSerialized) {
-                chronicleMapBuilder.valueMarshaller(new ChronicleMapBytesMarshaller<>(objectMapper, clazz));
+                chronicleMapBuilder.valueMarshaller(payloadCodec != null
+                        ? new ChronicleMapBytesMarshaller<>(payloadCodec, clazz)
+                        : new ChronicleMapBytesMarshaller<>(objectMapper, clazz));
             }
 
             return new ChronicleMapStateRepository<>(name, chronicleMapBuilder.create());
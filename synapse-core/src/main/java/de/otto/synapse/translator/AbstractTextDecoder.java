@@ -1,42 +1,45 @@
 package de.otto.synapse.translator;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Key;
 import de.otto.synapse.message.TextMessage;
 import org.slf4j.Logger;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
 
 import static de.otto.synapse.message.Header.copyOf;
 import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
-import static java.util.Collections.emptyMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public abstract class AbstractTextDecoder<T> implements Decoder<T> {
 
     private static final Logger LOG = getLogger(AbstractTextDecoder.class);
-
-    private static final TypeReference<Map<String, String>> MAP_TYPE_REFERENCE = new TypeReference<Map<String, String>>() {};
+    private static final byte[] SYNAPSE_FIELD_PREFIX = "\"_synapse_msg_".getBytes(UTF_8);
 
     protected TextMessage decode(final Key prototypeKey,
                                  final Header prototypeHeader,
-                                 final String body) {
+                                 final String encodedBody) {
+        final String body = decompressed(encodedBody);
         switch (MessageFormat.versionOf(body)) {
             case V1:
                 return TextMessage.of(prototypeKey, prototypeHeader, body);
             case V2:
                 try {
-                    final JsonNode json = parseRecordBody(body);
-                    return TextMessage.of(
-                            keyFrom(json).orElse(prototypeKey),
-                            copyOf(prototypeHeader)
-                                    .withAttributes(attributesFrom(json))
-                                    .build(),
-                            payloadFrom(json));
+                    return decodeV2(prototypeKey, prototypeHeader, body);
+                } catch (final RuntimeException e) {
+                    LOG.error("Exception caught while parsing record {}: {}", body, e.getMessage());
+                    return TextMessage.of(prototypeKey, prototypeHeader, body);
+                }
+            case V3:
+                try {
+                    return BinaryEnvelope.decodeText(prototypeKey, prototypeHeader, body);
                 } catch (final RuntimeException e) {
                     LOG.error("Exception caught while parsing record {}: {}", body, e.getMessage());
                     return TextMessage.of(prototypeKey, prototypeHeader, body);
@@ -46,50 +49,270 @@ public abstract class AbstractTextDecoder<T> implements Decoder<T> {
         }
     }
 
-    private static Map<String, String> attributesFrom(final JsonNode json) {
-        final JsonNode headersJson = json.get(MessageFormat.SYNAPSE_MSG_HEADERS);
-        if (headersJson != null) {
-            return currentObjectMapper().convertValue(
-                    headersJson,
-                    MAP_TYPE_REFERENCE
-            );
+    /**
+     * Decodes the bytes of a message. Binary {@link MessageFormat#V3} envelopes and {@link MessageFormat#V1}
+     * messages are decoded without converting them into a string: the payload of the decoded message is only
+     * decoded, if it is requested. All other messages are decoded as UTF-8 text using
+     * {@link #decode(Key, Header, String)}.
+     *
+     * @param prototypeKey the key used, if the message does not contain a key
+     * @param prototypeHeader the header that is extended by the header attributes of the message
+     * @param body the encoded message, or null. The position of the buffer is not modified.
+     * @return decoded message
+     */
+    protected TextMessage decode(final Key prototypeKey,
+                                 final Header prototypeHeader,
+                                 final ByteBuffer body) {
+        if (BinaryEnvelope.isBinaryEnvelope(body)) {
+            try {
+                return BinaryEnvelope.decode(prototypeKey, prototypeHeader, body);
+            } catch (final RuntimeException e) {
+                LOG.error("Exception caught while parsing binary record: {}", e.getMessage());
+            }
+        } else if (isV1(body)) {
+            return TextMessage.ofUtf8(prototypeKey, prototypeHeader, body);
+        }
+        return decode(prototypeKey, prototypeHeader, body != null && body.hasRemaining()
+                ? UTF_8.decode(body.duplicate()).toString()
+                : null);
+    }
+
+    /**
+     * Decodes only the key of a message, without decoding header and payload.
+     * <p>
+     *     The key of {@link MessageFormat#V1} messages is the prototype key. Keys of binary {@link MessageFormat#V3}
+     *     envelopes are read from the first fields of the envelope; keys of {@link MessageFormat#V2} messages are
+     *     read by parsing the message up to the {@code _synapse_msg_key} field.
+     * </p>
+     *
+     * @param prototypeKey the key used, if the message does not contain a key
+     * @param body the encoded message, or null. The position of the buffer is not modified.
+     * @return the key of the message, or null if the key can only be determined by decoding the whole message,
+     * as it is the case for compressed or malformed messages.
+     */
+    @Nullable
+    protected Key decodeKey(final Key prototypeKey,
+                            final ByteBuffer body) {
+        if (body == null || !body.hasRemaining()) {
+            return prototypeKey;
+        }
+        final byte first = body.get(body.position());
+        if (BinaryEnvelope.isBinaryEnvelope(body)) {
+            try {
+                return BinaryEnvelope.decodeKey(prototypeKey, body);
+            } catch (final RuntimeException e) {
+                return null;
+            }
+        } else if (first == '{') {
+            return decodeV2Key(prototypeKey, body);
+        } else if ((first & 0x80) != 0) {
+            // may be the UTF-8 encoded marker of a V3 text envelope:
+            return null;
         } else {
-            return emptyMap();
+            return prototypeKey;
         }
     }
 
-    private static Optional<Key> keyFrom(final JsonNode json) {
-        final JsonNode keyNode = json.get(MessageFormat.SYNAPSE_MSG_KEY);
-        if (keyNode == null || keyNode.isNull()) {
-            return Optional.empty();
-        } else if (keyNode.isObject()) {
-            final String partitionKey = keyNode.get(MessageFormat.SYNAPSE_MSG_PARTITIONKEY).textValue();
-            final String compactionKey = keyNode.get(MessageFormat.SYNAPSE_MSG_COMPACTIONKEY).textValue();
-            return Optional.of(Key.of(partitionKey, compactionKey));
+    /**
+     * Returns true, if the bytes are a non-empty {@link MessageFormat#V1} message. Messages starting with a JSON
+     * object having a field named {@code _synapse_msg_*} as first field are not V1 messages, but may be compressed
+     * or {@link MessageFormat#V2} messages. Bytes that are not ASCII may be the marker of a
+     * {@link MessageFormat#V3} text envelope.
+     */
+    private static boolean isV1(final ByteBuffer body) {
+        if (body == null || !body.hasRemaining()) {
+            return false;
+        }
+        final byte first = body.get(body.position());
+        if (first == '{') {
+            int pos = body.position() + 1;
+            while (pos < body.limit() && Character.isWhitespace(body.get(pos))) {
+                ++pos;
+            }
+            for (int i = 0; i < SYNAPSE_FIELD_PREFIX.length; i++, pos++) {
+                if (pos >= body.limit() || body.get(pos) != SYNAPSE_FIELD_PREFIX[i]) {
+                    return true;
+                }
+            }
+            return false;
         } else {
-            final String msg = "Unexpected json node containing " + json + ": ";
+            return (first & 0x80) == 0;
+        }
+    }
+
+    private static Key decodeV2Key(final Key prototypeKey, final ByteBuffer body) {
+        final ByteBuffer buffer = body.duplicate();
+        final byte[] bytes;
+        final int offset;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+        } else {
+            bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            offset = 0;
+        }
+        try (final JsonParser parser = currentObjectMapper().getFactory().createParser(bytes, offset, body.remaining())) {
+            parser.nextToken();
+            if (parser.nextToken() != JsonToken.FIELD_NAME) {
+                return prototypeKey;
+            }
+            final String firstField = parser.getCurrentName();
+            if (!MessageFormat.SYNAPSE_MSG_FORMAT.equals(firstField)) {
+                return MessageFormat.SYNAPSE_MSG_COMPRESSION.equals(firstField) ? null : prototypeKey;
+            }
+            parser.nextToken();
+            if (!"v2".equals(parser.getText())) {
+                return prototypeKey;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (MessageFormat.SYNAPSE_MSG_KEY.equals(fieldName)) {
+                    return keyFrom(parser, prototypeKey);
+                }
+                parser.skipChildren();
+            }
+            return prototypeKey;
+        } catch (final IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String decompressed(final String body) {
+        if (TextCompression.isCompressed(body)) {
+            try {
+                return TextCompression.decompress(body);
+            } catch (final RuntimeException e) {
+                LOG.error("Exception caught while decompressing record {}: {}", body, e.getMessage());
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Decodes a V2 message in a single pass over the body, without building a tree of JSON nodes. JSON object and
+     * array payloads are not copied: the returned message refers to the payload in the body, so it can be
+     * deserialized into the payload type of consumers without creating an intermediate payload string.
+     */
+    private static TextMessage decodeV2(final Key prototypeKey,
+                                        final Header prototypeHeader,
+                                        final String body) {
+        try (final JsonParser parser = currentObjectMapper().getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("Expected JSON object in V2 message");
+            }
+            Key key = prototypeKey;
+            Header header = prototypeHeader;
+            PayloadRange payload = PayloadRange.NULL;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case MessageFormat.SYNAPSE_MSG_KEY:
+                        key = keyFrom(parser, prototypeKey);
+                        break;
+                    case MessageFormat.SYNAPSE_MSG_HEADERS:
+                        header = headerFrom(parser, prototypeHeader);
+                        break;
+                    case MessageFormat.SYNAPSE_MSG_PAYLOAD:
+                        payload = payloadFrom(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return payload.toMessage(key, header, body);
+        } catch (final IOException e) {
+            LOG.error("Error parsing body={} from record: {}", body, e.getMessage());
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static Key keyFrom(final JsonParser parser, final Key prototypeKey) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return prototypeKey;
+        } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+            String partitionKey = null;
+            String compactionKey = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (MessageFormat.SYNAPSE_MSG_PARTITIONKEY.equals(fieldName)) {
+                    partitionKey = parser.getValueAsString();
+                } else if (MessageFormat.SYNAPSE_MSG_COMPACTIONKEY.equals(fieldName)) {
+                    compactionKey = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (partitionKey == null || compactionKey == null) {
+                throw new IllegalStateException("Missing partitionKey or compactionKey in V2 message");
+            }
+            return Key.of(partitionKey, compactionKey);
+        } else {
+            final String msg = "Unexpected json token " + parser.currentToken() + " in " + MessageFormat.SYNAPSE_MSG_KEY;
             LOG.error(msg);
             throw new IllegalStateException(msg);
         }
     }
 
-    private static String payloadFrom(final JsonNode json) {
-        final JsonNode payloadJson = json.get(MessageFormat.SYNAPSE_MSG_PAYLOAD);
-        if (payloadJson == null || payloadJson.isNull()) {
-            return null;
-        } else if (payloadJson.isObject()) {
-            return payloadJson.toString();
+    private static Header headerFrom(final JsonParser parser, final Header prototypeHeader) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return prototypeHeader;
+        } else if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IllegalStateException("Unexpected json token " + parser.currentToken() + " in " + MessageFormat.SYNAPSE_MSG_HEADERS);
+        }
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if (token.isStructStart()) {
+                throw new IllegalStateException("Unexpected json token " + token + " in header attribute " + name);
+            }
+            if (token != JsonToken.VALUE_NULL) {
+                attributes.put(name, parser.getText());
+            }
+        }
+        return attributes.isEmpty()
+                ? prototypeHeader
+                : copyOf(prototypeHeader).withAttributes(attributes).build();
+    }
+
+    private static PayloadRange payloadFrom(final JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return PayloadRange.NULL;
+        } else if (token.isStructStart()) {
+            final int beginIndex = (int) parser.getTokenLocation().getCharOffset();
+            parser.skipChildren();
+            final int endIndex = (int) parser.getTokenLocation().getCharOffset() + 1;
+            return new PayloadRange(null, beginIndex, endIndex);
         } else {
-            return payloadJson.asText();
+            return new PayloadRange(parser.getText(), -1, -1);
         }
     }
 
-    private static JsonNode parseRecordBody(String body) {
-        try {
-            return currentObjectMapper().readTree(body);
-        } catch (IOException e) {
-            LOG.error("Error parsing body={} from Kinesis record: {}", body, e.getMessage());
-            throw new IllegalStateException(e.getMessage(), e);
+    /**
+     * The payload of a V2 message: either a string value, or the range of a JSON object or array in the body.
+     */
+    private static final class PayloadRange {
+        private static final PayloadRange NULL = new PayloadRange(null, -1, -1);
+
+        private final String text;
+        private final int beginIndex;
+        private final int endIndex;
+
+        private PayloadRange(final String text, final int beginIndex, final int endIndex) {
+            this.text = text;
+            this.beginIndex = beginIndex;
+            this.endIndex = endIndex;
+        }
+
+        private TextMessage toMessage(final Key key, final Header header, final String body) {
+            return beginIndex >= 0
+                    ? TextMessage.of(key, header, body, beginIndex, endIndex)
+                    : TextMessage.of(key, header, text);
         }
     }
 }
@@ -0,0 +1,398 @@
+package de.otto.synapse.translator;
+
+import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.message.Header;
+import de.otto.synapse.message.Key;
+import de.otto.synapse.message.Message;
+import de.otto.synapse.message.TextMessage;
+
+import javax.annotation.Nonnull;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static de.otto.synapse.message.Header.copyOf;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes and decodes messages using {@link MessageFormat#V3}.
+ * <p>
+ *     V3 is a length-prefixed envelope containing the key, the header attributes and the unmodified payload of a
+ *     message. In contrast to {@link MessageFormat#V2}, neither the envelope nor the payload has to be parsed as JSON,
+ *     and the format is detected by looking at the first bytes or characters only.
+ * </p>
+ * <p>
+ *     The envelope has two representations:
+ * </p>
+ * <ul>
+ *     <li>
+ *         The binary representation is used by byte-oriented channels like Kinesis. It starts with the bytes
+ *         {@code 0xFE 0x03}, followed by the fields of the message. Every field is prefixed by its length in bytes,
+ *         plus one, encoded as an unsigned varint. A length of zero identifies a null value. {@code 0xFE} is never
+ *         used in UTF-8 encoded text, so binary envelopes can not be mistaken for V1 or V2 messages.
+ *     </li>
+ *     <li>
+ *         The text representation is used by string-oriented channels like SQS, Redis or snapshots. It starts with
+ *         the character {@code U+E003} from the private use area, followed by the fields of the message. Every
+ *         field is prefixed by its length in characters as a decimal number, terminated by {@code ':'}. Null
+ *         values are encoded as {@code "-:"}.
+ *     </li>
+ * </ul>
+ * <p>
+ *     The fields are: partition key, compaction key, number of header attributes, name and value of every
+ *     header attribute, and finally the payload.
+ * </p>
+ */
+public final class BinaryEnvelope {
+
+    /** First byte of the binary representation of V3 messages. */
+    public static final byte MAGIC_BYTE = (byte) 0xFE;
+    /** Second byte of the binary representation of V3 messages. */
+    public static final byte VERSION_BYTE = 0x03;
+    /** First character of the text representation of V3 messages. */
+    public static final char TEXT_MARKER = '\uE003';
+
+    private BinaryEnvelope() {
+    }
+
+    /**
+     * Returns true, if the remaining bytes of the buffer contain the binary representation of a V3 message.
+     * The position of the buffer is not modified.
+     *
+     * @param data some bytes, or null
+     * @return boolean
+     */
+    public static boolean isBinaryEnvelope(final ByteBuffer data) {
+        return data != null
+                && data.remaining() >= 2
+                && data.get(data.position()) == MAGIC_BYTE
+                && data.get(data.position() + 1) == VERSION_BYTE;
+    }
+
+    /**
+     * Returns true, if the text contains the text representation of a V3 message.
+     *
+     * @param text some text, or null
+     * @return boolean
+     */
+    public static boolean isTextEnvelope(final String text) {
+        return text != null && !text.isEmpty() && text.charAt(0) == TEXT_MARKER;
+    }
+
+    /**
+     * Encodes the message into the binary representation of the V3 format.
+     *
+     * @param message the message
+     * @return encoded message
+     */
+    public static byte[] encode(final @Nonnull Message<String> message) {
+        final Map<String, String> attributes = message.getHeader().getAll();
+        final byte[][] fields = new byte[3 + 2 * attributes.size()][];
+        int i = 0;
+        fields[i++] = utf8(message.getKey().partitionKey());
+        fields[i++] = utf8(message.getKey().compactionKey());
+        for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+            fields[i++] = utf8(attribute.getKey());
+            fields[i++] = utf8(attribute.getValue());
+        }
+        fields[i] = payloadOf(message);
+
+        int size = 2 + varIntSize(attributes.size());
+        for (final byte[] field : fields) {
+            size += field != null
+                    ? varIntSize(field.length + 1) + field.length
+                    : 1;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC_BYTE).put(VERSION_BYTE);
+        putField(buffer, fields[0]);
+        putField(buffer, fields[1]);
+        putVarInt(buffer, attributes.size());
+        for (int f = 2; f < fields.length; f++) {
+            putField(buffer, fields[f]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the binary representation of a V3 message. The position of the buffer is not modified.
+     *
+     * @param prototypeKey the key used, if the envelope does not contain a key
+     * @param prototypeHeader the header that is extended by the header attributes of the envelope
+     * @param data the encoded message
+     * @return decoded message
+     * @throws IllegalArgumentException if the data is not a valid V3 envelope
+     */
+    public static TextMessage decode(final @Nonnull Key prototypeKey,
+                                     final @Nonnull Header prototypeHeader,
+                                     final @Nonnull ByteBuffer data) {
+        if (!isBinaryEnvelope(data)) {
+            throw new IllegalArgumentException("Data is not a binary V3 message");
+        }
+        final ByteBuffer buffer = data.slice();
+        buffer.position(2);
+        try {
+            final String partitionKey = getField(buffer);
+            final String compactionKey = getField(buffer);
+            final Header header = headerFrom(prototypeHeader, buffer, getVarInt(buffer));
+            final ByteBuffer payload = getFieldBytes(buffer);
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected trailing bytes in binary V3 message");
+            }
+            final Key key = keyOf(prototypeKey, partitionKey, compactionKey);
+            // the payload is not decoded into a string, unless it is requested by a consumer:
+            return payload != null
+                    ? TextMessage.ofUtf8(key, header, payload)
+                    : TextMessage.of(key, header, null);
+        } catch (final BufferUnderflowException e) {
+            throw new IllegalArgumentException("Unexpected end of binary V3 message", e);
+        }
+    }
+
+    /**
+     * Decodes only the key of the binary representation of a V3 message. The position of the buffer is not modified.
+     *
+     * @param prototypeKey the key used, if the envelope does not contain a key
+     * @param data the encoded message
+     * @return decoded key
+     * @throws IllegalArgumentException if the data is not a valid V3 envelope
+     */
+    public static Key decodeKey(final @Nonnull Key prototypeKey,
+                                final @Nonnull ByteBuffer data) {
+        if (!isBinaryEnvelope(data)) {
+            throw new IllegalArgumentException("Data is not a binary V3 message");
+        }
+        final ByteBuffer buffer = data.slice();
+        buffer.position(2);
+        try {
+            final String partitionKey = getField(buffer);
+            final String compactionKey = getField(buffer);
+            return keyOf(prototypeKey, partitionKey, compactionKey);
+        } catch (final BufferUnderflowException e) {
+            throw new IllegalArgumentException("Unexpected end of binary V3 message", e);
+        }
+    }
+
+    /**
+     * Encodes the message into the text representation of the V3 format.
+     *
+     * @param message the message
+     * @return encoded message
+     */
+    public static String encodeText(final @Nonnull Message<String> message) {
+        final Map<String, String> attributes = message.getHeader().getAll();
+        final String payload = message.getPayload();
+        final StringBuilder sb = new StringBuilder(64 + (payload != null ? payload.length() : 0));
+        sb.append(TEXT_MARKER);
+        appendField(sb, message.getKey().partitionKey());
+        appendField(sb, message.getKey().compactionKey());
+        sb.append(attributes.size()).append(':');
+        attributes.forEach((name, value) -> {
+            appendField(sb, name);
+            appendField(sb, value);
+        });
+        appendField(sb, payload);
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the text representation of a V3 message.
+     *
+     * @param prototypeKey the key used, if the envelope does not contain a key
+     * @param prototypeHeader the header that is extended by the header attributes of the envelope
+     * @param text the encoded message
+     * @return decoded message
+     * @throws IllegalArgumentException if the text is not a valid V3 envelope
+     */
+    public static TextMessage decodeText(final @Nonnull Key prototypeKey,
+                                         final @Nonnull Header prototypeHeader,
+                                         final @Nonnull String text) {
+        if (!isTextEnvelope(text)) {
+            throw new IllegalArgumentException("Text is not a V3 message");
+        }
+        final TextReader reader = new TextReader(text);
+        final String partitionKey = reader.field();
+        final String compactionKey = reader.field();
+        final int attributeCount = reader.length();
+        Header header = prototypeHeader;
+        if (attributeCount > 0) {
+            final ImmutableMap.Builder<String, String> attributes = ImmutableMap.builder();
+            for (int i = 0; i < attributeCount; i++) {
+                attributes.put(reader.field(), reader.field());
+            }
+            header = copyOf(prototypeHeader).withAttributes(attributes.build()).build();
+        }
+        final String payload = reader.field();
+        if (reader.pos != text.length()) {
+            throw new IllegalArgumentException("Unexpected trailing characters in V3 message");
+        }
+        return TextMessage.of(keyOf(prototypeKey, partitionKey, compactionKey), header, payload);
+    }
+
+    private static Key keyOf(final Key prototypeKey, final String partitionKey, final String compactionKey) {
+        if (partitionKey == null) {
+            return prototypeKey;
+        }
+        return Key.of(partitionKey, compactionKey != null ? compactionKey : partitionKey);
+    }
+
+    private static Header headerFrom(final Header prototypeHeader, final ByteBuffer buffer, final int attributeCount) {
+        if (attributeCount == 0) {
+            return prototypeHeader;
+        }
+        final ImmutableMap.Builder<String, String> attributes = ImmutableMap.builder();
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.put(getField(buffer), getField(buffer));
+        }
+        return copyOf(prototypeHeader).withAttributes(attributes.build()).build();
+    }
+
+    private static byte[] payloadOf(final Message<String> message) {
+        if (message instanceof TextMessage) {
+            // TextMessages received as bytes are not decoded and encoded again:
+            final ByteBuffer payload = ((TextMessage) message).getPayloadAsByteBuffer();
+            if (payload == null) {
+                return null;
+            } else if (payload.hasArray() && payload.arrayOffset() == 0 && payload.remaining() == payload.array().length) {
+                return payload.array();
+            }
+            final byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            return bytes;
+        }
+        return utf8(message.getPayload());
+    }
+
+    private static byte[] utf8(final String s) {
+        return s != null ? s.getBytes(UTF_8) : null;
+    }
+
+    private static void putField(final ByteBuffer buffer, final byte[] field) {
+        if (field == null) {
+            buffer.put((byte) 0);
+        } else {
+            putVarInt(buffer, field.length + 1);
+            buffer.put(field);
+        }
+    }
+
+    /**
+     * Returns the bytes of the next field without copying them, or null if the field is null.
+     */
+    private static ByteBuffer getFieldBytes(final ByteBuffer buffer) {
+        final int length = getVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Field length " + length + " exceeds the size of the binary V3 message");
+        }
+        final ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return bytes;
+    }
+
+    private static String getField(final ByteBuffer buffer) {
+        final int length = getVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Field length " + length + " exceeds the size of the binary V3 message");
+        }
+        final String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            value = new String(bytes, UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(final ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(final ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative length in binary V3 message");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in binary V3 message");
+    }
+
+    private static void appendField(final StringBuilder sb, final String value) {
+        if (value == null) {
+            sb.append("-:");
+        } else {
+            sb.append(value.length()).append(':').append(value);
+        }
+    }
+
+    private static final class TextReader {
+        private final String text;
+        private int pos = 1;
+
+        private TextReader(final String text) {
+            this.text = text;
+        }
+
+        private int length() {
+            int value = 0;
+            int digits = 0;
+            while (pos < text.length()) {
+                final char c = text.charAt(pos++);
+                if (c == ':') {
+                    if (digits == 0) {
+                        throw new IllegalArgumentException("Missing length in V3 message at position " + (pos - 1));
+                    }
+                    return value;
+                }
+                if (c < '0' || c > '9' || digits == 9) {
+                    throw new IllegalArgumentException("Invalid length in V3 message at position " + (pos - 1));
+                }
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            throw new IllegalArgumentException("Unexpected end of V3 message");
+        }
+
+        private String field() {
+            if (pos + 1 < text.length() && text.charAt(pos) == '-' && text.charAt(pos + 1) == ':') {
+                pos += 2;
+                return null;
+            }
+            final int length = length();
+            if (length > text.length() - pos) {
+                throw new IllegalArgumentException("Field length " + length + " exceeds the size of the V3 message");
+            }
+            final String value = text.substring(pos, pos + length);
+            pos += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package de.otto.synapse.translator;
+
+/**
+ * A codec used to compress the encoded representation of messages.
+ * <p>
+ *     Codecs are identified by their {@link #name() name}. The name is written into compressed messages, so
+ *     receivers are able to select the matching codec using {@link CompressionCodecs#codecFor(String)}. Codecs
+ *     that are not built into Synapse (like LZ4 or Zstandard) can be added using
+ *     {@link CompressionCodecs#register(CompressionCodec)}.
+ * </p>
+ */
+public interface CompressionCodec {
+
+    /**
+     * The unique name of the codec, like {@code gzip}.
+     *
+     * @return name of the codec
+     */
+    String name();
+
+    /**
+     * Compresses the given bytes.
+     *
+     * @param data uncompressed bytes
+     * @return compressed bytes
+     * @throws IllegalStateException if the data can not be compressed
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * Decompresses bytes that were compressed using {@link #compress(byte[])}.
+     * <p>
+     *     Implementations must stop decompressing, if the decompressed data would exceed
+     *     {@link CompressionCodecs#MAX_DECOMPRESSED_SIZE} bytes.
+     * </p>
+     *
+     * @param data compressed bytes
+     * @return decompressed bytes
+     * @throws IllegalStateException if the data can not be decompressed, or if the decompressed data is too large
+     */
+    byte[] decompress(byte[] data);
+}
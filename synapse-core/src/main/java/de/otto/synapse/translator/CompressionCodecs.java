@@ -0,0 +1,153 @@
+package de.otto.synapse.translator;
+
+import com.google.common.io.ByteStreams;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Registry of the {@link CompressionCodec codecs} known to Synapse.
+ * <p>
+ *     The {@link #GZIP} and {@link #DEFLATE} codecs are built in. Additional codecs must be registered by
+ *     senders and receivers before messages using the codec are encoded or decoded.
+ * </p>
+ */
+public final class CompressionCodecs {
+
+    /** Codec using the gzip format. */
+    public static final CompressionCodec GZIP = new StreamCompressionCodec("gzip") {
+        @Override
+        protected OutputStream compressing(final OutputStream out) throws IOException {
+            return new GZIPOutputStream(out);
+        }
+
+        @Override
+        protected InputStream decompressing(final InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    };
+
+    /** Codec using the zlib format. Slightly more compact than gzip, as no gzip header and trailer is written. */
+    public static final CompressionCodec DEFLATE = new StreamCompressionCodec("deflate") {
+        @Override
+        protected OutputStream compressing(final OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+
+        @Override
+        protected InputStream decompressing(final InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    /**
+     * The maximum number of bytes of decompressed data. Decompressing data that would exceed this limit is failing,
+     * so a small malicious message can not inflate to an arbitrary amount of memory.
+     */
+    public static final int MAX_DECOMPRESSED_SIZE = 32 * 1024 * 1024;
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final ConcurrentMap<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(GZIP);
+        register(DEFLATE);
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Registers a codec. A previously registered codec having the same name is replaced.
+     *
+     * @param codec the codec
+     */
+    public static void register(final @Nonnull CompressionCodec codec) {
+        checkArgument(codec.name() != null && VALID_NAME.matcher(codec.name()).matches(), "Invalid codec name '%s': only letters, digits, '.', '_' and '-' are allowed", codec.name());
+        CODECS.put(codec.name(), codec);
+    }
+
+    /**
+     * Returns the codec having the given name.
+     *
+     * @param name the name of the codec
+     * @return CompressionCodec
+     * @throws IllegalArgumentException if no codec with the given name is registered
+     */
+    public static CompressionCodec codecFor(final String name) {
+        final CompressionCodec codec = name != null ? CODECS.get(name) : null;
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown compression codec " + name + ". Available codecs: " + CODECS.keySet());
+        }
+        return codec;
+    }
+
+    /**
+     * @return the names of all registered codecs
+     */
+    public static Set<String> codecNames() {
+        return unmodifiableSet(CODECS.keySet());
+    }
+
+    private static abstract class StreamCompressionCodec implements CompressionCodec {
+
+        private final String name;
+
+        private StreamCompressionCodec(final String name) {
+            this.name = name;
+        }
+
+        protected abstract OutputStream compressing(OutputStream out) throws IOException;
+
+        protected abstract InputStream decompressing(InputStream in) throws IOException;
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public byte[] compress(final byte[] data) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 32);
+            try (final OutputStream out = compressing(bytes)) {
+                out.write(data);
+            } catch (final IOException e) {
+                throw new IllegalStateException("Failed to compress data using " + name + ": " + e.getMessage(), e);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(final byte[] data) {
+            try (final InputStream in = decompressing(new ByteArrayInputStream(data))) {
+                final byte[] decompressed = ByteStreams.toByteArray(ByteStreams.limit(in, MAX_DECOMPRESSED_SIZE + 1L));
+                if (decompressed.length > MAX_DECOMPRESSED_SIZE) {
+                    throw new IllegalStateException("Failed to decompress data using " + name + ": decompressed data exceeds " + MAX_DECOMPRESSED_SIZE + " bytes");
+                }
+                return decompressed;
+            } catch (final IOException e) {
+                throw new IllegalStateException("Failed to decompress data using " + name + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -10,7 +10,12 @@ public enum MessageFormat {
     /** String representation of the message only contains the message payload; no header attributes supported. */
     V1,
     /** String representation of the message contains version, header attributes and payload in JSON format */
-    V2;
+    V2,
+    /**
+     * Length-prefixed envelope containing key, header attributes and the unmodified payload. Binary in byte-oriented
+     * channels, using a text-safe representation in string-oriented channels. See {@link BinaryEnvelope}.
+     */
+    V3;
 
     public static final String SYNAPSE_MSG_FORMAT = "_synapse_msg_format";
     public static final String SYNAPSE_MSG_KEY = "_synapse_msg_key";
@@ -18,8 +23,12 @@ public enum MessageFormat {
     public static final String SYNAPSE_MSG_PARTITIONKEY = "partitionKey";
     public static final String SYNAPSE_MSG_HEADERS = "_synapse_msg_headers";
     public static final String SYNAPSE_MSG_PAYLOAD = "_synapse_msg_payload";
+    /** Name of the compression codec of messages compressed by {@link TextCompression}. */
+    public static final String SYNAPSE_MSG_COMPRESSION = "_synapse_msg_compression";
+    /** Base64-encoded data of messages compressed by {@link TextCompression}. */
+    public static final String SYNAPSE_MSG_COMPRESSED_DATA = "_synapse_msg_data";
 
-    private static final Pattern V2_PATTERN = Pattern.compile("\\{\\s*\"" + SYNAPSE_MSG_FORMAT + "\"\\s*:\\s*\"v2\".+");
+    private static final Pattern V2_PATTERN = Pattern.compile("\\{\\s*\"" + SYNAPSE_MSG_FORMAT + "\"\\s*:\\s*\"v2\"");
 
     /**
      * Returns the default message format used by Synapse to encode messages.
@@ -32,16 +41,23 @@ public enum MessageFormat {
 
     /**
      * Determines the {@code MessageFormat} from the string representation of some message.
+     * <p>
+     *     Only the beginning of the message is inspected, so the costs do not depend on the size of the message.
+     * </p>
      *
      * @param message the string representation of some message
      * @return MessageFormat of the message
      */
     public static MessageFormat versionOf(final String message) {
-        if (message != null) {
-            return V2_PATTERN.matcher(message).matches()
-                    ? V2
-                    : V1;
+        if (message == null || message.isEmpty()) {
+            return V1;
+        } else if (BinaryEnvelope.isTextEnvelope(message)) {
+            return V3;
+        } else if (message.charAt(0) == '{' && V2_PATTERN.matcher(message).lookingAt()) {
+            return V2;
         } else {
             return V1;
         }
-    }}
+    }
+
+}
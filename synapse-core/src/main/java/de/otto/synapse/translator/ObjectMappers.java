@@ -2,9 +2,12 @@ package de.otto.synapse.translator;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Objects.requireNonNull;
@@ -17,6 +20,7 @@ public final class ObjectMappers {
 
     private static final ObjectMapper DEFAULT_OBJECT_MAPPER;
     private static AtomicReference<ObjectMapper> SYNAPSE_OBJECT_MAPPER;
+    private static final AtomicReference<ReaderCache> READER_CACHE = new AtomicReference<>();
 
     static {
         DEFAULT_OBJECT_MAPPER = new ObjectMapper();
@@ -58,6 +62,36 @@ public final class ObjectMappers {
         SYNAPSE_OBJECT_MAPPER.set(requireNonNull(objectMapper));
     }
 
+    /**
+     * Returns an {@code ObjectReader} of the {@link #currentObjectMapper() current ObjectMapper} that is used to read
+     * values of the given type.
+     *
+     * <p>Readers are cached, until the ObjectMapper is {@link #overrideObjectMapper(ObjectMapper) overridden}.
+     * Changes to the configuration of the ObjectMapper itself are not applied to readers that are already
+     * cached.</p>
+     *
+     * @param type the type of the values
+     * @return ObjectReader
+     */
+    public static ObjectReader currentObjectReaderFor(final Class<?> type) {
+        final ObjectMapper objectMapper = currentObjectMapper();
+        ReaderCache cache = READER_CACHE.get();
+        if (cache == null || cache.objectMapper != objectMapper) {
+            cache = new ReaderCache(objectMapper);
+            READER_CACHE.set(cache);
+        }
+        return cache.readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
     private ObjectMappers() {
     }
+
+    private static final class ReaderCache {
+        private final ObjectMapper objectMapper;
+        private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+        private ReaderCache(final ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package de.otto.synapse.translator;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A codec used to encode the payloads of messages into bytes, and to decode payloads into the payload type of
+ * message consumers.
+ * <p>
+ *     Codecs are identified by their {@link #name() name}. Senders write the name of the codec into the
+ *     {@link de.otto.synapse.message.DefaultHeaderAttr#MSG_PAYLOAD_CODEC} header attribute of messages that are not
+ *     encoded as JSON, so receivers are able to select the matching codec using
+ *     {@link PayloadCodecs#codecFor(String)}. Codecs that are not built into Synapse (like Protobuf) can be added
+ *     using {@link PayloadCodecs#register(PayloadCodec)}.
+ * </p>
+ * <p>
+ *     The payloads of {@link #isBinary() binary} codecs are transported as Base64 text by channels and message
+ *     formats that are only supporting text, and as bytes by all others.
+ * </p>
+ */
+public interface PayloadCodec {
+
+    /**
+     * The unique name of the codec, like {@code json} or {@code cbor}.
+     *
+     * @return name of the codec
+     */
+    String name();
+
+    /**
+     * Returns true, if the encoded payloads are not UTF-8 encoded text.
+     *
+     * @return boolean
+     */
+    boolean isBinary();
+
+    /**
+     * Encodes a payload.
+     *
+     * @param payload the payload
+     * @return encoded payload
+     * @throws IllegalStateException if the payload can not be encoded
+     */
+    byte[] encode(@Nonnull Object payload);
+
+    /**
+     * Decodes a payload that was encoded using {@link #encode(Object)}.
+     *
+     * @param in the encoded payload
+     * @param payloadType the expected type of the payload
+     * @param <T> the expected type of the payload
+     * @return decoded payload
+     * @throws IOException if the payload can not be decoded
+     */
+    <T> T decode(@Nonnull InputStream in, @Nonnull Class<T> payloadType) throws IOException;
+
+    /**
+     * Decodes a payload that was encoded using {@link #encode(Object)}. The position of the buffer is not modified.
+     *
+     * @param data the encoded payload
+     * @param payloadType the expected type of the payload
+     * @param <T> the expected type of the payload
+     * @return decoded payload
+     * @throws IOException if the payload can not be decoded
+     */
+    default <T> T decode(final @Nonnull ByteBuffer data, final @Nonnull Class<T> payloadType) throws IOException {
+        return decode(new ByteBufferBackedInputStream(data.duplicate()), payloadType);
+    }
+}
@@ -0,0 +1,235 @@
+package de.otto.synapse.translator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.otto.synapse.message.Header;
+import org.slf4j.Logger;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static de.otto.synapse.message.DefaultHeaderAttr.MSG_PAYLOAD_CODEC;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectReaderFor;
+import static java.util.Collections.unmodifiableSet;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Registry of the {@link PayloadCodec codecs} known to Synapse.
+ * <p>
+ *     The {@link #JSON} codec is built in and used for all messages without a
+ *     {@link de.otto.synapse.message.DefaultHeaderAttr#MSG_PAYLOAD_CODEC} header attribute. If the Jackson dataformats
+ *     {@code jackson-dataformat-smile} or {@code jackson-dataformat-cbor} are on the classpath, the binary codecs
+ *     {@code smile} and {@code cbor} are registered automatically. Additional codecs must be registered by senders
+ *     and receivers before messages using the codec are encoded or decoded.
+ * </p>
+ * <p>
+ *     Senders select the codec of a payload using {@link #codecForPayloadType(Class, PayloadCodec)}: codecs
+ *     registered for a payload type using {@link #register(Class, PayloadCodec)} take precedence over the default
+ *     codec of the sender.
+ * </p>
+ */
+public final class PayloadCodecs {
+
+    /** Codec encoding payloads as JSON text, using the {@link ObjectMappers#currentObjectMapper() current ObjectMapper}. */
+    public static final PayloadCodec JSON = new PayloadCodec() {
+        @Override
+        public String name() {
+            return "json";
+        }
+
+        @Override
+        public boolean isBinary() {
+            return false;
+        }
+
+        @Override
+        public byte[] encode(final @Nonnull Object payload) {
+            try {
+                return currentObjectMapper().writeValueAsBytes(payload);
+            } catch (final JsonProcessingException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public <T> T decode(final @Nonnull InputStream in, final @Nonnull Class<T> payloadType) throws IOException {
+            return currentObjectReaderFor(payloadType).readValue(in);
+        }
+
+        @Override
+        public String toString() {
+            return name();
+        }
+    };
+
+    private static final Logger LOG = getLogger(PayloadCodecs.class);
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final ConcurrentMap<String, PayloadCodec> CODECS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, PayloadCodec> CODECS_BY_PAYLOAD_TYPE = new ConcurrentHashMap<>();
+
+    static {
+        register(JSON);
+        registerIfPresent("smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory");
+        registerIfPresent("cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory");
+    }
+
+    private PayloadCodecs() {
+    }
+
+    /**
+     * Creates a codec using a Jackson ObjectMapper, for example an ObjectMapper using a {@code SmileFactory} or
+     * {@code CBORFactory}. The codec is {@link PayloadCodec#isBinary() binary}, if the {@link JsonFactory} of the
+     * ObjectMapper is able to handle binary data natively.
+     *
+     * @param name the name of the codec
+     * @param objectMapper the ObjectMapper used to encode and decode payloads
+     * @return PayloadCodec
+     */
+    public static PayloadCodec jackson(final @Nonnull String name,
+                                       final @Nonnull ObjectMapper objectMapper) {
+        return new JacksonPayloadCodec(name, objectMapper);
+    }
+
+    /**
+     * Registers a codec. A previously registered codec having the same name is replaced.
+     *
+     * @param codec the codec
+     */
+    public static void register(final @Nonnull PayloadCodec codec) {
+        checkArgument(codec.name() != null && VALID_NAME.matcher(codec.name()).matches(), "Invalid codec name '%s': only letters, digits, '.', '_' and '-' are allowed", codec.name());
+        CODECS.put(codec.name(), codec);
+    }
+
+    /**
+     * Registers the codec used by senders to encode payloads of the given type. The codec is also registered using
+     * {@link #register(PayloadCodec)}, so receivers are able to decode the payloads.
+     *
+     * @param payloadType the type of the payloads
+     * @param codec the codec
+     */
+    public static void register(final @Nonnull Class<?> payloadType,
+                                final @Nonnull PayloadCodec codec) {
+        register(codec);
+        CODECS_BY_PAYLOAD_TYPE.put(payloadType, codec);
+    }
+
+    /**
+     * Returns the codec having the given name.
+     *
+     * @param name the name of the codec
+     * @return PayloadCodec
+     * @throws IllegalArgumentException if no codec with the given name is registered
+     */
+    public static PayloadCodec codecFor(final String name) {
+        final PayloadCodec codec = name != null ? CODECS.get(name) : null;
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown payload codec " + name + ". Available codecs: " + CODECS.keySet());
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the codec used to encode the payload of a message having the given header.
+     *
+     * @param header the header of the message
+     * @return the codec named by the {@link de.otto.synapse.message.DefaultHeaderAttr#MSG_PAYLOAD_CODEC} header
+     *         attribute, or {@link #JSON}
+     * @throws IllegalArgumentException if the codec is not registered
+     */
+    public static PayloadCodec codecOf(final @Nonnull Header header) {
+        final String name = header.getAsString(MSG_PAYLOAD_CODEC);
+        return name != null ? codecFor(name) : JSON;
+    }
+
+    /**
+     * Returns the codec used by senders to encode payloads of the given type.
+     *
+     * @param payloadType the type of the payload
+     * @param defaultCodec the codec used, if no codec is registered for the payload type
+     * @return PayloadCodec
+     */
+    public static PayloadCodec codecForPayloadType(final @Nonnull Class<?> payloadType,
+                                                   final @Nonnull PayloadCodec defaultCodec) {
+        return CODECS_BY_PAYLOAD_TYPE.getOrDefault(payloadType, defaultCodec);
+    }
+
+    /**
+     * @return the names of all registered codecs
+     */
+    public static Set<String> codecNames() {
+        return unmodifiableSet(CODECS.keySet());
+    }
+
+    private static void registerIfPresent(final String name, final String factoryClassName) {
+        final ClassLoader classLoader = PayloadCodecs.class.getClassLoader();
+        if (ClassUtils.isPresent(factoryClassName, classLoader)) {
+            try {
+                final JsonFactory factory = (JsonFactory) ClassUtils.forName(factoryClassName, classLoader).getDeclaredConstructor().newInstance();
+                final ObjectMapper objectMapper = new ObjectMapper(factory);
+                objectMapper.findAndRegisterModules();
+                objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+                objectMapper.disable(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE);
+                register(jackson(name, objectMapper));
+            } catch (final ReflectiveOperationException | RuntimeException | LinkageError e) {
+                // Optional codecs must not break the initialization of PayloadCodecs:
+                LOG.warn("Unable to create {} payload codec, codec is not registered: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class JacksonPayloadCodec implements PayloadCodec {
+
+        private final String name;
+        private final ObjectMapper objectMapper;
+        private final boolean binary;
+        private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+        private JacksonPayloadCodec(final String name, final ObjectMapper objectMapper) {
+            this.name = name;
+            this.objectMapper = objectMapper;
+            this.binary = objectMapper.getFactory().canHandleBinaryNatively();
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean isBinary() {
+            return binary;
+        }
+
+        @Override
+        public byte[] encode(final @Nonnull Object payload) {
+            try {
+                return objectMapper.writeValueAsBytes(payload);
+            } catch (final JsonProcessingException e) {
+                throw new IllegalStateException("Failed to encode payload using " + name + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public <T> T decode(final @Nonnull InputStream in, final @Nonnull Class<T> payloadType) throws IOException {
+            return readers.computeIfAbsent(payloadType, objectMapper::readerFor).readValue(in);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
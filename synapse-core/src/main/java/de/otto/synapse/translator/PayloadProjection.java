@@ -0,0 +1,241 @@
+package de.otto.synapse.translator;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
+import static de.otto.synapse.translator.ObjectMappers.currentObjectReaderFor;
+import static java.util.Arrays.asList;
+
+/**
+ * A projection of JSON payloads, used to deserialize only those parts of a payload that are read by a consumer.
+ * <p>
+ *     The projection is selecting parts of the payload using JSON pointers like {@code /id} or
+ *     {@code /price/amount}. Payloads are parsed using a streaming parser: subtrees that are not selected are
+ *     skipped at token level without creating any objects, and parsing stops as soon as all selected parts are
+ *     found. The selected parts are then deserialized into the payload type of the consumer, so properties of the
+ *     payload type that are not selected remain unset.
+ * </p>
+ * <p>
+ *     Elements of arrays are selected using their index, like {@code /items/0/id}; elements that are not selected
+ *     are projected as {@code null}.
+ * </p>
+ */
+public final class PayloadProjection {
+
+    private final List<String> jsonPointers;
+    private final Node root;
+    private final int selectedParts;
+
+    private PayloadProjection(final List<String> jsonPointers) {
+        this.jsonPointers = jsonPointers;
+        this.root = new Node();
+        for (final String jsonPointer : jsonPointers) {
+            root.add(JsonPointer.compile(jsonPointer));
+        }
+        this.selectedParts = root.countSelected();
+    }
+
+    /**
+     * Creates a projection selecting the parts of payloads identified by JSON pointers.
+     *
+     * @param jsonPointers the JSON pointers of the selected parts, like {@code /id}
+     * @return PayloadProjection
+     * @throws IllegalArgumentException if no pointer is given, or a pointer is not a valid JSON pointer
+     */
+    public static PayloadProjection of(final @Nonnull String... jsonPointers) {
+        checkArgument(jsonPointers.length > 0, "At least one JSON pointer is required");
+        return new PayloadProjection(asList(jsonPointers.clone()));
+    }
+
+    /**
+     * Creates a projection selecting the properties of a (small) projection class. All other properties of
+     * payloads are skipped, including nested objects and arrays.
+     * <p>
+     *     Properties are determined using the {@link ObjectMappers#currentObjectMapper() current ObjectMapper},
+     *     so annotations like {@code @JsonProperty} are taken into account. Properties collected using
+     *     {@code @JsonAnySetter}, and type ids of polymorphic types, are not selected.
+     * </p>
+     *
+     * @param projectionType the type of the projected payload
+     * @return PayloadProjection
+     * @throws IllegalArgumentException if the type has no properties
+     */
+    public static PayloadProjection ofPropertiesOf(final @Nonnull Class<?> projectionType) {
+        final ObjectMapper objectMapper = currentObjectMapper();
+        final BeanDescription description = objectMapper.getDeserializationConfig()
+                .introspect(objectMapper.constructType(projectionType));
+        final List<String> jsonPointers = new ArrayList<>();
+        for (final BeanPropertyDefinition property : description.findProperties()) {
+            jsonPointers.add("/" + property.getName().replace("~", "~0").replace("/", "~1"));
+        }
+        checkArgument(!jsonPointers.isEmpty(), "Unable to project %s: no properties found", projectionType.getName());
+        return new PayloadProjection(jsonPointers);
+    }
+
+    /**
+     * @return the JSON pointers of the selected parts of payloads
+     */
+    public List<String> getJsonPointers() {
+        return jsonPointers;
+    }
+
+    /**
+     * Parses the selected parts of the JSON value at the current position of the parser, or of the first value,
+     * if the parser was not yet advanced. The parser is not closed.
+     *
+     * @param parser the parser
+     * @return the tree of the selected parts, or null if the parser has no more values
+     * @throws IOException if the payload is not valid JSON
+     */
+    @Nullable
+    public JsonNode project(final @Nonnull JsonParser parser) throws IOException {
+        if (!parser.hasCurrentToken() && parser.nextToken() == null) {
+            return null;
+        }
+        return project(parser, root, new int[]{selectedParts});
+    }
+
+    /**
+     * Parses the selected parts of the JSON value at the current position of the parser, and deserializes them
+     * into the payload type.
+     *
+     * @param parser the parser
+     * @param payloadType the expected type of the payload
+     * @param <T> the expected type of the payload
+     * @return deserialized payload, or null if the payload is null
+     * @throws IOException if the payload can not be deserialized
+     */
+    @Nullable
+    public <T> T decode(final @Nonnull JsonParser parser, final @Nonnull Class<T> payloadType) throws IOException {
+        final JsonNode tree = project(parser);
+        if (tree == null || tree.isNull()) {
+            return null;
+        }
+        return currentObjectReaderFor(payloadType).readValue(tree);
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadProjection" + jsonPointers;
+    }
+
+    /**
+     * Projects the value at the current token of the parser. After returning, the parser is positioned at the
+     * last token of the value, or somewhere inside of the value, if all selected parts were found.
+     *
+     * @param remaining a single-element array containing the number of selected parts that are not yet found
+     */
+    private static JsonNode project(final JsonParser parser, final Node node, final int[] remaining) throws IOException {
+        if (node.selected) {
+            --remaining[0];
+            final JsonNode value = parser.readValueAsTree();
+            return value != null ? value : NullNode.getInstance();
+        }
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            final ObjectNode result = JsonNodeFactory.instance.objectNode();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final Node child = node.children.get(parser.getCurrentName());
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                } else {
+                    final JsonNode value = project(parser, child, remaining);
+                    if (value != null) {
+                        result.set(child.name, value);
+                    }
+                    if (remaining[0] == 0) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } else if (token == JsonToken.START_ARRAY) {
+            final ArrayNode result = JsonNodeFactory.instance.arrayNode();
+            int index = 0;
+            for (JsonToken t = parser.nextToken(); t != null && t != JsonToken.END_ARRAY; t = parser.nextToken(), ++index) {
+                final Node child = index <= node.maxIndex ? node.children.get(Integer.toString(index)) : null;
+                if (child == null) {
+                    parser.skipChildren();
+                    if (index <= node.maxIndex) {
+                        result.addNull();
+                    }
+                } else {
+                    final JsonNode value = project(parser, child, remaining);
+                    result.add(value != null ? value : NullNode.getInstance());
+                    if (remaining[0] == 0) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } else {
+            // scalar value where an object or array was expected:
+            return null;
+        }
+    }
+
+    /**
+     * A node of the trie of selected parts.
+     */
+    private static final class Node {
+        private final String name;
+        private final Map<String, Node> children = new HashMap<>(4);
+        private boolean selected;
+        private int maxIndex = -1;
+
+        private Node() {
+            this(null);
+        }
+
+        private Node(final String name) {
+            this.name = name;
+        }
+
+        private void add(final JsonPointer pointer) {
+            if (selected) {
+                return;
+            }
+            if (pointer.matches()) {
+                selected = true;
+                children.clear();
+                return;
+            }
+            final String property = pointer.getMatchingProperty();
+            if (pointer.getMatchingIndex() >= 0) {
+                maxIndex = Math.max(maxIndex, pointer.getMatchingIndex());
+            }
+            children.computeIfAbsent(property, Node::new).add(pointer.tail());
+        }
+
+        private int countSelected() {
+            if (selected) {
+                return 1;
+            }
+            int count = 0;
+            for (final Node child : children.values()) {
+                count += child.countSelected();
+            }
+            return count;
+        }
+    }
+}
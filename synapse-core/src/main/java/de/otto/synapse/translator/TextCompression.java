@@ -0,0 +1,107 @@
+package de.otto.synapse.translator;
+
+import javax.annotation.Nonnull;
+import java.util.Base64;
+
+import static de.otto.synapse.translator.MessageFormat.SYNAPSE_MSG_COMPRESSED_DATA;
+import static de.otto.synapse.translator.MessageFormat.SYNAPSE_MSG_COMPRESSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compresses and decompresses the string representation of messages.
+ * <p>
+ *     Compressed messages are wrapped into a JSON envelope containing the name of the {@link CompressionCodec}
+ *     and the Base64-encoded compressed bytes:
+ * </p>
+ * <pre><code>
+ * {"_synapse_msg_compression":"gzip","_synapse_msg_data":"H4sIAAAAAAAA..."}
+ * </code></pre>
+ * <p>
+ *     The envelope is plain text, so it can be transported by every channel supporting string messages. Because
+ *     receivers detect compressed messages using {@link #isCompressed(String)}, producers are able to switch
+ *     compression on or off without breaking consumers that are aware of the envelope.
+ * </p>
+ * <p>
+ *     Base64 is increasing the size of the compressed bytes by a third. The same envelope is used on channels
+ *     transporting bytes, like Kinesis, so all channels and message stores share a single format. Compression is
+ *     therefore only worth it for messages that compress to less than three quarters of their size, which is
+ *     usually the case for JSON messages of at least some kilobytes; {@link #compressIfSmaller(String,
+ *     CompressionCodec, int)} is sending all other messages uncompressed.
+ * </p>
+ * <p>
+ *     Decompressed messages are limited to {@link CompressionCodecs#MAX_DECOMPRESSED_SIZE} bytes.
+ * </p>
+ */
+public final class TextCompression {
+
+    private static final String PREFIX = "{\"" + SYNAPSE_MSG_COMPRESSION + "\":\"";
+    private static final String SEPARATOR = "\",\"" + SYNAPSE_MSG_COMPRESSED_DATA + "\":\"";
+    private static final String SUFFIX = "\"}";
+
+    private TextCompression() {
+    }
+
+    /**
+     * Compresses the text using the given codec.
+     *
+     * @param text the uncompressed text
+     * @param codec the codec used to compress the text
+     * @return envelope containing the compressed text
+     */
+    public static String compress(final @Nonnull String text, final @Nonnull CompressionCodec codec) {
+        final byte[] compressed = codec.compress(text.getBytes(UTF_8));
+        return PREFIX + codec.name() + SEPARATOR + Base64.getEncoder().encodeToString(compressed) + SUFFIX;
+    }
+
+    /**
+     * Compresses the text using the given codec, if the text has at least {@code minSize} characters, and if the
+     * compressed envelope is actually smaller than the text itself.
+     *
+     * @param text the uncompressed text, or null
+     * @param codec the codec used to compress the text
+     * @param minSize the minimum number of characters of texts that are compressed
+     * @return compressed envelope, or the text itself
+     */
+    public static String compressIfSmaller(final String text, final @Nonnull CompressionCodec codec, final int minSize) {
+        if (text == null || text.length() < minSize || isCompressed(text)) {
+            return text;
+        }
+        final String compressed = compress(text, codec);
+        return compressed.length() < text.length() ? compressed : text;
+    }
+
+    /**
+     * Returns true, if the text is a compressed envelope created by {@link #compress(String, CompressionCodec)}.
+     *
+     * @param text some text, or null
+     * @return boolean
+     */
+    public static boolean isCompressed(final String text) {
+        return text != null && text.startsWith(PREFIX) && text.endsWith(SUFFIX);
+    }
+
+    /**
+     * Decompresses a compressed envelope. Texts that are not compressed are returned unchanged.
+     *
+     * @param text compressed envelope or uncompressed text
+     * @return uncompressed text
+     * @throws IllegalArgumentException if the codec of the envelope is not registered in {@link CompressionCodecs}
+     * @throws IllegalStateException if the envelope is malformed, or the decompressed text is too large
+     */
+    public static String decompress(final String text) {
+        if (!isCompressed(text)) {
+            return text;
+        }
+        final int separator = text.indexOf(SEPARATOR, PREFIX.length());
+        if (separator < 0) {
+            throw new IllegalStateException("Malformed compressed message: missing " + SYNAPSE_MSG_COMPRESSED_DATA);
+        }
+        final CompressionCodec codec = CompressionCodecs.codecFor(text.substring(PREFIX.length(), separator));
+        try {
+            final byte[] compressed = Base64.getDecoder().decode(text.substring(separator + SEPARATOR.length(), text.length() - SUFFIX.length()));
+            return new String(codec.decompress(compressed), UTF_8);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalStateException("Malformed compressed message: " + e.getMessage(), e);
+        }
+    }
+}
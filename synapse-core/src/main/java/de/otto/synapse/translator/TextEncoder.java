@@ -1,33 +1,100 @@
 package de.otto.synapse.translator;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.NullNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import de.otto.synapse.message.Message;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static de.otto.synapse.translator.MessageFormat.*;
 import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
 
 public class TextEncoder implements Encoder<String> {
 
+    /** Default minimum number of characters of encoded messages that are compressed. */
+    public static final int DEFAULT_MIN_COMPRESSION_SIZE = 1024;
+
+    /**
+     * Buffers retained by a thread are discarded, if they have grown larger than this number of characters.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<StringWriter> BUFFER = ThreadLocal.withInitial(() -> new StringWriter(1024));
+
     private final MessageFormat messageFormat;
+    private final CompressionCodec compressionCodec;
+    private final int minCompressionSize;
+    private final boolean trustJsonPayloads;
 
     public TextEncoder() {
         this(defaultMessageFormat());
     }
 
     public TextEncoder(final MessageFormat messageFormat) {
+        this(messageFormat, null, DEFAULT_MIN_COMPRESSION_SIZE);
+    }
+
+    /**
+     * Creates a TextEncoder that is compressing encoded messages using the given codec.
+     * <p>
+     *     Messages are only compressed if the encoded message has at least {@code minCompressionSize} characters,
+     *     and if the compressed message is smaller than the uncompressed one. Compressed messages are wrapped into
+     *     an envelope created by {@link TextCompression}; they are automatically decompressed by
+     *     {@link AbstractTextDecoder decoders}.
+     * </p>
+     *
+     * @param messageFormat the format used to encode messages
+     * @param compressionCodec the codec used to compress messages, or null if messages should not be compressed
+     * @param minCompressionSize the minimum number of characters of encoded messages that are compressed
+     */
+    public TextEncoder(final MessageFormat messageFormat,
+                       final @Nullable CompressionCodec compressionCodec,
+                       final int minCompressionSize) {
+        this(messageFormat, compressionCodec, minCompressionSize, false);
+    }
+
+    /**
+     * Creates a TextEncoder that is compressing encoded messages using the given codec.
+     * <p>
+     *     {@link MessageFormat#V2} messages are written using a streaming {@link JsonGenerator}. JSON payloads are
+     *     embedded as-is, without parsing and re-serializing them. By default, payloads are checked using a
+     *     streaming parser before they are embedded; payloads that are not valid JSON are embedded as JSON string.
+     *     If {@code trustJsonPayloads} is true, payloads looking like a JSON object or array (starting with
+     *     {@code '{'} and ending with {@code '}'}, or starting with {@code '['} and ending with {@code ']'}) are
+     *     embedded without checking them. Only enable this, if the payloads of all messages are known to be
+     *     valid JSON; otherwise receivers will not be able to decode the messages.
+     * </p>
+     *
+     * @param messageFormat the format used to encode messages
+     * @param compressionCodec the codec used to compress messages, or null if messages should not be compressed
+     * @param minCompressionSize the minimum number of characters of encoded messages that are compressed
+     * @param trustJsonPayloads true, if JSON object and array payloads should be embedded into V2 messages
+     *                          without checking them
+     */
+    public TextEncoder(final MessageFormat messageFormat,
+                       final @Nullable CompressionCodec compressionCodec,
+                       final int minCompressionSize,
+                       final boolean trustJsonPayloads) {
+        checkArgument(minCompressionSize >= 0, "minCompressionSize must not be negative");
         this.messageFormat = messageFormat;
+        this.compressionCodec = compressionCodec;
+        this.minCompressionSize = minCompressionSize;
+        this.trustJsonPayloads = trustJsonPayloads;
     }
 
     @Override
     public String apply(final Message<String> message) {
-        return encode(message, messageFormat);
+        final String encoded = encode(message, messageFormat);
+        return compressionCodec != null
+                ? TextCompression.compressIfSmaller(encoded, compressionCodec, minCompressionSize)
+                : encoded;
     }
 
 
@@ -38,6 +105,8 @@ public class TextEncoder implements Encoder<String> {
                 return message.getPayload();
             case V2:
                 return encodeV2(message);
+            case V3:
+                return BinaryEnvelope.encodeText(message);
             default:
                 throw new IllegalStateException("Unsupported MessageFormat " + messageFormat);
         }
@@ -47,42 +116,77 @@ public class TextEncoder implements Encoder<String> {
         return encode(message, defaultMessageFormat());
     }
 
-    private static String encodeV2(Message<String> message) {
-        ObjectMapper mapper = currentObjectMapper();
-        try {
-            ObjectNode root = mapper.createObjectNode();
-            root.put(SYNAPSE_MSG_FORMAT, "v2");
-            root.set(SYNAPSE_MSG_KEY, encodeKeysV2(message, mapper));
-            root.set(SYNAPSE_MSG_HEADERS, encodeHeadersV2(message, mapper));
-            root.set(SYNAPSE_MSG_PAYLOAD, encodePayloadV2(message, mapper));
-            return root.toString();
-        } catch (IOException e) {
+    private String encodeV2(final Message<String> message) {
+        final JsonFactory jsonFactory = currentObjectMapper().getFactory();
+        final StringWriter buffer = BUFFER.get();
+        try (final JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeStringField(SYNAPSE_MSG_FORMAT, "v2");
+            generator.writeObjectFieldStart(SYNAPSE_MSG_KEY);
+            generator.writeStringField(SYNAPSE_MSG_PARTITIONKEY, message.getKey().partitionKey());
+            generator.writeStringField(SYNAPSE_MSG_COMPACTIONKEY, message.getKey().compactionKey());
+            generator.writeEndObject();
+            generator.writeObjectFieldStart(SYNAPSE_MSG_HEADERS);
+            for (final Map.Entry<String, String> attribute : message.getHeader().getAll().entrySet()) {
+                generator.writeStringField(attribute.getKey(), attribute.getValue());
+            }
+            generator.writeEndObject();
+            generator.writeFieldName(SYNAPSE_MSG_PAYLOAD);
+            final String payload = message.getPayload();
+            if (payload == null) {
+                generator.writeNull();
+            } else if (isJsonValue(jsonFactory, payload)) {
+                generator.writeRawValue(payload);
+            } else {
+                generator.writeString(payload);
+            }
+            generator.writeEndObject();
+            generator.flush();
+            return buffer.toString();
+        } catch (final IOException e) {
             throw new IllegalStateException(String.format("Cannot encode message %s", message), e);
+        } finally {
+            final StringBuffer chars = buffer.getBuffer();
+            if (chars.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                BUFFER.remove();
+            } else {
+                chars.setLength(0);
+            }
         }
     }
 
-    private static ObjectNode encodeKeysV2(Message<String> message, ObjectMapper mapper) {
-        ObjectNode keyNode = mapper.createObjectNode();
-        keyNode.put(SYNAPSE_MSG_PARTITIONKEY, message.getKey().partitionKey());
-        keyNode.put(SYNAPSE_MSG_COMPACTIONKEY, message.getKey().compactionKey());
-        return keyNode;
-    }
-
-    private static JsonNode encodeHeadersV2(Message<String> message, ObjectMapper mapper) {
-        return mapper.convertValue(message.getHeader().getAll(), JsonNode.class);
+    /**
+     * Returns true, if the payload is a single JSON value that can be embedded into a V2 message.
+     */
+    private boolean isJsonValue(final JsonFactory jsonFactory, final String payload) throws IOException {
+        if (trustJsonPayloads && looksLikeJsonStructure(payload)) {
+            return true;
+        }
+        try (final JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (final JsonProcessingException e) {
+            return false;
+        }
     }
 
-    private static JsonNode encodePayloadV2(Message<String> message, ObjectMapper mapper) throws IOException {
-        JsonNode jsonPayload;
-        try {
-            if (message.getPayload() == null) {
-                jsonPayload = NullNode.getInstance();
-            } else {
-                jsonPayload = mapper.readTree(message.getPayload());
-            }
-        } catch (JsonParseException e) {
-            jsonPayload = new TextNode(message.getPayload());
+    private static boolean looksLikeJsonStructure(final String payload) {
+        int first = 0;
+        int last = payload.length() - 1;
+        while (first < last && Character.isWhitespace(payload.charAt(first))) {
+            first++;
+        }
+        while (last > first && Character.isWhitespace(payload.charAt(last))) {
+            last--;
+        }
+        if (first >= last) {
+            return false;
         }
-        return jsonPayload;
+        final char begin = payload.charAt(first);
+        final char end = payload.charAt(last);
+        return (begin == '{' && end == '}') || (begin == '[' && end == ']');
     }
 }
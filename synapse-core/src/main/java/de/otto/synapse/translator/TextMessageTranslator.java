@@ -1,11 +1,14 @@
 package de.otto.synapse.translator;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
 
 import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
 
+import static de.otto.synapse.message.DefaultHeaderAttr.MSG_PAYLOAD_CODEC;
 import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
 
 /**
@@ -17,14 +20,34 @@ import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
  *
  * <p><img src="http://www.enterpriseintegrationpatterns.com/img/MessageTranslator.gif" alt="MessageTranslator"></p>
  *
- * <p>This implementation is relying on {@link ObjectMappers#currentObjectMapper()} to transform message payloads
- * with non-String payload into a JSON payload.</p>
+ * <p>By default, this implementation is relying on {@link ObjectMappers#currentObjectMapper()} to transform
+ * message payloads with non-String payload into a JSON payload. Payloads are encoded using a different
+ * {@link PayloadCodec}, if the codec is registered for the payload type using
+ * {@link PayloadCodecs#register(Class, PayloadCodec)}, or if the translator is created using a different default
+ * codec. The name of the codec is added to the header of the translated message as
+ * {@link de.otto.synapse.message.DefaultHeaderAttr#MSG_PAYLOAD_CODEC} attribute.</p>
  */
 public class TextMessageTranslator implements MessageTranslator<TextMessage> {
 
+    private final PayloadCodec defaultCodec;
+
+    public TextMessageTranslator() {
+        this(PayloadCodecs.JSON);
+    }
+
+    /**
+     * Creates a TextMessageTranslator using the given codec for all payload types without a
+     * {@link PayloadCodecs#register(Class, PayloadCodec) registered} codec.
+     *
+     * @param defaultCodec the default codec used to encode payloads
+     */
+    public TextMessageTranslator(final @Nonnull PayloadCodec defaultCodec) {
+        this.defaultCodec = defaultCodec;
+    }
+
     /**
      * Translates a Message into a Message with payload-type &lt;String&gt; and
-     * serializes the payload into a JSON String.
+     * serializes the payload using the {@link PayloadCodec} of the payload type.
      *
      * @param message Message&lt;?&gt;
      * @return Message&lt;String&gt;
@@ -34,13 +57,18 @@ public class TextMessageTranslator implements MessageTranslator<TextMessage> {
     @SuppressWarnings("unchecked")
     public TextMessage apply(final @Nonnull Message<?> message) {
         try {
-            if (message.getPayload() instanceof String) {
+            final Object payload = message.getPayload();
+            if (payload instanceof String) {
                 return TextMessage.of((Message<String>)message);
+            } else if (payload == null) {
+                return TextMessage.of(message.getKey(), message.getHeader(), null);
+            }
+            final PayloadCodec codec = PayloadCodecs.codecForPayloadType(payload.getClass(), defaultCodec);
+            if (codec == PayloadCodecs.JSON) {
+                return TextMessage.of(message.getKey(), message.getHeader(), currentObjectMapper().writeValueAsString(payload));
             } else {
-                final String payload = message.getPayload() != null
-                        ? currentObjectMapper().writeValueAsString(message.getPayload())
-                        : null;
-                return TextMessage.of(message.getKey(), message.getHeader(), payload);
+                final Header header = message.getHeader().withAttribute(MSG_PAYLOAD_CODEC, codec.name());
+                return TextMessage.ofUtf8(message.getKey(), header, ByteBuffer.wrap(codec.encode(payload)));
             }
         } catch (JsonProcessingException e) {
             throw new IllegalStateException(e.getMessage(), e);
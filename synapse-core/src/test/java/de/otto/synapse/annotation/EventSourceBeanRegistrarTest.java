@@ -33,6 +33,30 @@ public class EventSourceBeanRegistrarTest {
     static class SingleEventSourceWithMessageLogTestConfig {
     }
 
+    @EnableEventSource(name = "testEventSource", channelName = "test-stream", concurrency = "${test.concurrency}")
+    static class SingleEventSourceWithConcurrencyTestConfig {
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "test-stream", concurrency = "0")
+    static class SingleEventSourceWithIllegalConcurrencyTestConfig {
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "test-stream", maxInFlight = "${test.max-in-flight}")
+    static class SingleEventSourceWithMaxInFlightTestConfig {
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "test-stream", maxInFlight = "none")
+    static class SingleEventSourceWithIllegalMaxInFlightTestConfig {
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "test-stream", checkpoint = "${test.checkpoint}")
+    static class SingleEventSourceWithCheckpointTestConfig {
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "test-stream", checkpoint = "yes")
+    static class SingleEventSourceWithIllegalCheckpointTestConfig {
+    }
+
     @EnableEventSource(name = "brokenEventSource", channelName = "some-stream")
     @EnableEventSource(name = "brokenEventSource", channelName = "some-stream")
     static class MultiEventSourceTestConfigWithSameNames {
@@ -124,4 +148,71 @@ public class EventSourceBeanRegistrarTest {
         assertThat(receiverEndpoint.getChannelName()).isEqualTo("test-stream");
     }
 
+    @Test
+    public void shouldRegisterEventSourceWithConcurrency() {
+        context.register(SingleEventSourceWithConcurrencyTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        TestPropertyValues.of(
+                "test.concurrency=4"
+        ).applyTo(context);
+        context.refresh();
+
+        final EventSource eventSource = context.getBean("testEventSource", EventSource.class);
+        assertThat(eventSource.getMessageDispatcher().getConcurrency()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldRegisterEventSourceWithDefaultConcurrency() {
+        context.register(SingleEventSourceTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+
+        final EventSource eventSource = context.getBean("testEventSource", EventSource.class);
+        assertThat(eventSource.getMessageDispatcher().getConcurrency()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRegisterEventSourceWithMaxInFlight() {
+        context.register(SingleEventSourceWithMaxInFlightTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        TestPropertyValues.of(
+                "test.max-in-flight=64"
+        ).applyTo(context);
+        context.refresh();
+
+        final EventSource eventSource = context.getBean("testEventSource", EventSource.class);
+        assertThat(eventSource.getMessageDispatcher().getMaxInFlight()).isEqualTo(64);
+    }
+
+    @Test(expected = BeanCreationException.class)
+    public void shouldFailToRegisterEventSourceWithIllegalMaxInFlight() {
+        context.register(SingleEventSourceWithIllegalMaxInFlightTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+    }
+
+    @Test(expected = BeanCreationException.class)
+    public void shouldFailToRegisterCheckpointingEventSourceWithoutCheckpointStore() {
+        context.register(SingleEventSourceWithCheckpointTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        TestPropertyValues.of(
+                "test.checkpoint=true"
+        ).applyTo(context);
+        context.refresh();
+    }
+
+    @Test(expected = BeanCreationException.class)
+    public void shouldFailToRegisterEventSourceWithIllegalCheckpoint() {
+        context.register(SingleEventSourceWithIllegalCheckpointTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+    }
+
+    @Test(expected = BeanCreationException.class)
+    public void shouldFailToRegisterEventSourceWithIllegalConcurrency() {
+        context.register(SingleEventSourceWithIllegalConcurrencyTestConfig.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+    }
+
 }
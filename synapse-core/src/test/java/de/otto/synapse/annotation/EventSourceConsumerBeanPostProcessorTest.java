@@ -2,6 +2,10 @@ package de.otto.synapse.annotation;
 
 import de.otto.synapse.configuration.InMemoryMessageLogTestConfiguration;
 import de.otto.synapse.configuration.SynapseAutoConfiguration;
+import de.otto.synapse.consumer.AsyncMessageConsumer;
+import de.otto.synapse.consumer.BatchMessageConsumer;
+import de.otto.synapse.consumer.BulkheadMessageConsumer;
+import de.otto.synapse.consumer.BulkheadMessageConsumer.OverflowPolicy;
 import de.otto.synapse.consumer.MessageConsumer;
 import de.otto.synapse.consumer.MethodInvokingMessageConsumer;
 import de.otto.synapse.eventsource.DelegateEventSource;
@@ -15,6 +19,7 @@ import org.springframework.context.annotation.Bean;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -87,6 +92,60 @@ public class EventSourceConsumerBeanPostProcessorTest {
         assertThat(pattern).containsExactlyInAnyOrder("apple.*", "banana.*");
     }
 
+    @Test
+    public void shouldRegisterBatchConsumerForMethodsWithListParameter() {
+        context.register(TestConfigurationWithBatchConsumer.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+
+        final DelegateEventSource someStreamEventSource = context.getBean("testEventSource", DelegateEventSource.class);
+        final List<MessageConsumer<?>> messageConsumers = someStreamEventSource.getMessageDispatcher().getAll();
+        assertThat(messageConsumers).hasSize(2);
+        assertThat(messageConsumers.stream().filter(consumer -> consumer instanceof BatchMessageConsumer)).hasSize(1);
+    }
+
+    @Test
+    public void shouldRegisterIsolatedConsumerWithBulkhead() {
+        context.register(TestConfigurationWithIsolatedConsumer.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+
+        final DelegateEventSource someStreamEventSource = context.getBean("testEventSource", DelegateEventSource.class);
+        final List<MessageConsumer<?>> messageConsumers = someStreamEventSource.getMessageDispatcher().getAll();
+        assertThat(messageConsumers).hasSize(1);
+        final BulkheadMessageConsumer<?> bulkhead = (BulkheadMessageConsumer<?>) messageConsumers.get(0);
+        assertThat(bulkhead.getName()).isEqualTo("test.isolated");
+        assertThat(bulkhead.getCapacity()).isEqualTo(100);
+        assertThat(bulkhead.getOverflowPolicy()).isEqualTo(OverflowPolicy.DROP);
+        assertThat(bulkhead.getDelegate()).isInstanceOf(MethodInvokingMessageConsumer.class);
+    }
+
+    @Test(expected = BeanCreationException.class)
+    public void shouldRejectBulkheadForBatchConsumer() {
+        context.register(TestConfigurationWithIsolatedBatchConsumer.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+    }
+
+    @Test(expected = BeanCreationException.class)
+    public void shouldRejectSpillConsumerWithDifferentPayloadType() {
+        context.register(TestConfigurationWithMismatchingSpillConsumer.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+    }
+
+    @Test
+    public void shouldRegisterAsyncConsumerForMethodsReturningCompletableFuture() {
+        context.register(TestConfigurationWithAsyncConsumer.class);
+        context.register(InMemoryMessageLogTestConfiguration.class);
+        context.refresh();
+
+        final DelegateEventSource someStreamEventSource = context.getBean("testEventSource", DelegateEventSource.class);
+        final List<MessageConsumer<?>> messageConsumers = someStreamEventSource.getMessageDispatcher().getAll();
+        assertThat(messageConsumers).hasSize(1);
+        assertThat(messageConsumers.get(0)).isInstanceOf(AsyncMessageConsumer.class);
+    }
+
     @EnableEventSource(name = "testEventSource", channelName = "some-stream")
     @EnableEventSource(name = "otherStreamTestSource", channelName = "other-stream")
     static class ThreeConsumersAtTwoEventSourcesConfiguration {
@@ -113,6 +172,51 @@ public class EventSourceConsumerBeanPostProcessorTest {
         }
     }
 
+    @EnableEventSource(name = "testEventSource", channelName = "some-stream")
+    static class TestConfigurationWithBatchConsumer {
+        @Bean
+        public TestBatchConsumer test() {
+            return new TestBatchConsumer();
+        }
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "some-stream")
+    static class TestConfigurationWithIsolatedConsumer {
+        @Bean
+        public TestIsolatedConsumer test() {
+            return new TestIsolatedConsumer();
+        }
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "some-stream")
+    static class TestConfigurationWithIsolatedBatchConsumer {
+        @Bean
+        public TestIsolatedBatchConsumer test() {
+            return new TestIsolatedBatchConsumer();
+        }
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "some-stream")
+    static class TestConfigurationWithMismatchingSpillConsumer {
+        @Bean
+        public MessageConsumer<Integer> spill() {
+            return MessageConsumer.of(".*", Integer.class, message -> {});
+        }
+
+        @Bean
+        public TestSpillingConsumer test() {
+            return new TestSpillingConsumer();
+        }
+    }
+
+    @EnableEventSource(name = "testEventSource", channelName = "some-stream")
+    static class TestConfigurationWithAsyncConsumer {
+        @Bean
+        public TestAsyncConsumer test() {
+            return new TestAsyncConsumer();
+        }
+    }
+
     static class TestConfigurationWithMissingEventSource{
         @Bean
         public TestConsumerWithSnapshotEventSource test() {
@@ -175,6 +279,59 @@ public class EventSourceConsumerBeanPostProcessorTest {
 
     }
 
+    static class TestBatchConsumer {
+        @EventSourceConsumer(
+                eventSource = "testEventSource",
+                payloadType = String.class)
+        public void batch(List<Message<String>> messages) {
+        }
+
+        @EventSourceConsumer(
+                eventSource = "testEventSource",
+                payloadType = String.class)
+        public void single(Message<String> message) {
+        }
+    }
+
+    static class TestIsolatedConsumer {
+        @EventSourceConsumer(
+                eventSource = "testEventSource",
+                payloadType = String.class,
+                bulkheadCapacity = 100,
+                overflowPolicy = OverflowPolicy.DROP)
+        public void isolated(Message<String> message) {
+        }
+    }
+
+    static class TestIsolatedBatchConsumer {
+        @EventSourceConsumer(
+                eventSource = "testEventSource",
+                payloadType = String.class,
+                bulkheadCapacity = 100)
+        public void batch(List<Message<String>> messages) {
+        }
+    }
+
+    static class TestSpillingConsumer {
+        @EventSourceConsumer(
+                eventSource = "testEventSource",
+                payloadType = String.class,
+                bulkheadCapacity = 100,
+                overflowPolicy = OverflowPolicy.SPILL,
+                spillConsumer = "spill")
+        public void isolated(Message<String> message) {
+        }
+    }
+
+    static class TestAsyncConsumer {
+        @EventSourceConsumer(
+                eventSource = "testEventSource",
+                payloadType = String.class)
+        public CompletableFuture<Void> async(Message<String> message) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
     static class TestConsumerWithSnapshotEventSource {
         @EventSourceConsumer(
                 eventSource = "someTestEventSource",
@@ -0,0 +1,47 @@
+package de.otto.synapse.checkpoint;
+
+import de.otto.synapse.channel.ChannelPosition;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static de.otto.synapse.channel.ChannelPosition.channelPosition;
+import static de.otto.synapse.channel.ShardPosition.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ChannelPositionCodecTest {
+
+    @Test
+    public void shouldEncodeAndDecodeChannelPosition() {
+        // given
+        final ChannelPosition channelPosition = channelPosition(
+                fromHorizon("shard-1"),
+                fromPosition("shard-2", "42"),
+                atPosition("shard-3", "4711"),
+                fromTimestamp("shard-4", Instant.parse("2019-01-01T10:00:00Z")));
+
+        // when
+        final ChannelPosition decoded = ChannelPositionCodec.decode(ChannelPositionCodec.encode(channelPosition));
+
+        // then
+        assertThat(decoded, is(channelPosition));
+    }
+
+    @Test
+    public void shouldEncodeShardPositionsAsJson() {
+        // given
+        final ChannelPosition channelPosition = channelPosition(fromPosition("shard-1", "42"), fromHorizon("shard-2"));
+
+        // when
+        final String json = ChannelPositionCodec.encode(channelPosition);
+
+        // then
+        assertThat(json, is("{\"shard-1\":{\"startFrom\":\"POSITION\",\"position\":\"42\"},\"shard-2\":{\"startFrom\":\"HORIZON\"}}"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToDecodeInvalidJson() {
+        ChannelPositionCodec.decode("{invalid");
+    }
+}
@@ -0,0 +1,98 @@
+package de.otto.synapse.checkpoint;
+
+import de.otto.synapse.channel.ChannelPosition;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static de.otto.synapse.channel.ChannelPosition.channelPosition;
+import static de.otto.synapse.channel.ShardPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CheckpointerTest {
+
+    private final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+
+    @Test
+    public void shouldMergeUpdatedShardPositions() {
+        // given
+        final Checkpointer checkpointer = new Checkpointer("some-channel", checkpointStore, Duration.ofMinutes(1));
+        checkpointer.start(channelPosition(fromHorizon("shard-1"), fromHorizon("shard-2")));
+
+        // when
+        checkpointer.update(fromPosition("shard-2", "42"));
+
+        // then
+        assertThat(checkpointer.getChannelPosition(), is(channelPosition(fromHorizon("shard-1"), fromPosition("shard-2", "42"))));
+        checkpointer.stop();
+    }
+
+    @Test
+    public void shouldPeriodicallySaveUpdatedPosition() {
+        // given
+        final Checkpointer checkpointer = new Checkpointer("some-channel", checkpointStore, Duration.ofMillis(10));
+        checkpointer.start(channelPosition(fromHorizon("shard-1")));
+
+        // when
+        checkpointer.update(fromPosition("shard-1", "42"));
+
+        // then
+        await()
+                .atMost(1, SECONDS)
+                .untilAsserted(() -> verify(checkpointStore).saveChannelPosition("some-channel", channelPosition(fromPosition("shard-1", "42"))));
+        checkpointer.stop();
+    }
+
+    @Test
+    public void shouldNotSaveUnchangedPosition() {
+        // given
+        final Checkpointer checkpointer = new Checkpointer("some-channel", checkpointStore, Duration.ofMinutes(1));
+        checkpointer.start(channelPosition(fromPosition("shard-1", "42")));
+
+        // when
+        checkpointer.flush();
+        checkpointer.stop();
+
+        // then
+        verify(checkpointStore, never()).saveChannelPosition(anyString(), any(ChannelPosition.class));
+    }
+
+    @Test
+    public void shouldSaveFinalPositionOnStop() {
+        // given
+        final Checkpointer checkpointer = new Checkpointer("some-channel", checkpointStore, Duration.ofMinutes(1));
+        checkpointer.start(channelPosition(fromHorizon("shard-1")));
+
+        // when
+        checkpointer.stop(channelPosition(fromPosition("shard-1", "4711")));
+
+        // then
+        verify(checkpointStore).saveChannelPosition("some-channel", channelPosition(fromPosition("shard-1", "4711")));
+    }
+
+    @Test
+    public void shouldRetryFailedCheckpoint() {
+        // given
+        doThrow(new IllegalStateException("some failure"))
+                .doNothing()
+                .when(checkpointStore).saveChannelPosition(anyString(), any(ChannelPosition.class));
+        final Checkpointer checkpointer = new Checkpointer("some-channel", checkpointStore, Duration.ofMinutes(1));
+        checkpointer.start(channelPosition(fromHorizon("shard-1")));
+        checkpointer.update(fromPosition("shard-1", "42"));
+
+        // when
+        checkpointer.flush();
+        checkpointer.flush();
+
+        // then
+        verify(checkpointStore, times(2)).saveChannelPosition("some-channel", channelPosition(fromPosition("shard-1", "42")));
+        checkpointer.stop();
+    }
+}
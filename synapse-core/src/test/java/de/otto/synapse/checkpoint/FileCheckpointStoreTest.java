@@ -0,0 +1,65 @@
+package de.otto.synapse.checkpoint;
+
+import de.otto.synapse.channel.ChannelPosition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static de.otto.synapse.channel.ChannelPosition.channelPosition;
+import static de.otto.synapse.channel.ShardPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class FileCheckpointStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileCheckpointStore checkpointStore;
+
+    @Before
+    public void setUp() throws IOException {
+        checkpointStore = new FileCheckpointStore(temporaryFolder.newFolder("checkpoints").toPath());
+    }
+
+    @Test
+    public void shouldReturnEmptyPositionForUnknownChannel() {
+        // when
+        final Optional<ChannelPosition> channelPosition = checkpointStore.getChannelPosition("some-channel");
+
+        // then
+        assertThat(channelPosition.isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldSaveAndRestoreChannelPosition() {
+        // given
+        final ChannelPosition expected = channelPosition(fromPosition("shard-1", "42"), fromHorizon("shard-2"));
+
+        // when
+        checkpointStore.saveChannelPosition("some-channel", expected);
+
+        // then
+        assertThat(checkpointStore.getChannelPosition("some-channel"), is(Optional.of(expected)));
+        assertThat(checkpointStore.getChannelPosition("other-channel"), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldReplacePreviousCheckpoint() throws IOException {
+        // given
+        checkpointStore.saveChannelPosition("some-channel", channelPosition(fromPosition("shard-1", "42")));
+
+        // when
+        checkpointStore.saveChannelPosition("some-channel", channelPosition(fromPosition("shard-1", "4711")));
+
+        // then
+        assertThat(checkpointStore.getChannelPosition("some-channel"), is(Optional.of(channelPosition(fromPosition("shard-1", "4711")))));
+        assertThat(Files.list(checkpointStore.getDirectory()).count(), is(1L));
+    }
+}
@@ -0,0 +1,171 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static de.otto.synapse.message.Message.message;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class BulkheadMessageConsumerTest {
+
+    @Test
+    public void shouldProcessMessagesInOrderUsingSeparateThread() {
+        // given
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        final MessageConsumer<String> delegate = MessageConsumer.of(".*", String.class, message -> {
+            threads.add(Thread.currentThread());
+            received.add(message.getPayload());
+        });
+
+        // when
+        try (final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.blocking("test", delegate, 10)) {
+            bulkhead.accept(message("1", "first"));
+            bulkhead.accept(message("1", "second"));
+            bulkhead.accept(message("1", "third"));
+            await().atMost(5, SECONDS).until(() -> received.size() == 3);
+        }
+
+        // then
+        assertThat(received, contains("first", "second", "third"));
+        assertThat(threads.get(0), is(not(Thread.currentThread())));
+        assertThat(threads.get(0).getName().startsWith("synapse-bulkhead-test-"), is(true));
+    }
+
+    @Test
+    public void shouldDropMessagesIfQueueIsFull() throws InterruptedException {
+        // given
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> received = new CopyOnWriteArrayList<>();
+        try (final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.dropping("test", stuckConsumer(blocked, release, received), 1)) {
+            bulkhead.accept(message("1", "processing"));
+            blocked.await(5, SECONDS);
+
+            // when
+            bulkhead.accept(message("2", "queued"));
+            bulkhead.accept(message("3", "dropped"));
+
+            // then
+            assertThat(bulkhead.getQueueSize(), is(1));
+            assertThat(bulkhead.getDroppedMessages(), is(1L));
+            release.countDown();
+            await().atMost(5, SECONDS).until(() -> received.size() == 2);
+            assertThat(received, contains("processing", "queued"));
+        }
+    }
+
+    @Test
+    public void shouldSpillMessagesIfQueueIsFull() throws InterruptedException {
+        // given
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> spilled = new CopyOnWriteArrayList<>();
+        final MessageConsumer<String> spillConsumer = MessageConsumer.of(".*", String.class, message -> spilled.add(message.getPayload()));
+        try (final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.spilling("test", stuckConsumer(blocked, release, new CopyOnWriteArrayList<>()), 1, spillConsumer)) {
+            bulkhead.accept(message("1", "processing"));
+            blocked.await(5, SECONDS);
+
+            // when
+            bulkhead.accept(message("2", "queued"));
+            bulkhead.accept(message("3", "spilled"));
+
+            // then
+            assertThat(spilled, contains("spilled"));
+            assertThat(bulkhead.getSpilledMessages(), is(1L));
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldReportDurationBehind() throws InterruptedException {
+        // given
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> received = new CopyOnWriteArrayList<>();
+        try (final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.blocking("test", stuckConsumer(blocked, release, received), 10)) {
+            assertThat(bulkhead.getDurationBehind(), is(Duration.ZERO));
+
+            // when
+            bulkhead.accept(message("1", "processing"));
+            blocked.await(5, SECONDS);
+            Thread.sleep(10);
+
+            // then
+            assertThat(bulkhead.getDurationBehind(), greaterThan(Duration.ofMillis(5)));
+            release.countDown();
+            await().atMost(5, SECONDS).until(() -> bulkhead.getDurationBehind().equals(Duration.ZERO));
+        }
+    }
+
+    @Test
+    public void shouldContinueAfterFailingDelegate() {
+        // given
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final MessageConsumer<String> delegate = MessageConsumer.of(".*", String.class, message -> {
+            if (message.getPayload().equals("fail")) {
+                throw new IllegalStateException("forced test exception");
+            }
+            received.add(message.getPayload());
+        });
+
+        // when
+        try (final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.blocking("test", delegate, 10)) {
+            bulkhead.accept(message("1", "fail"));
+            bulkhead.accept(message("1", "ok"));
+            await().atMost(5, SECONDS).until(() -> received.size() == 1);
+        }
+
+        // then
+        assertThat(received, contains("ok"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireSpillConsumerForSpillPolicy() {
+        new BulkheadMessageConsumer<>("test", MessageConsumer.of(".*", String.class, message -> {}), 1, BulkheadMessageConsumer.OverflowPolicy.SPILL, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBatchConsumerAsDelegate() {
+        BulkheadMessageConsumer.blocking("test", BatchMessageConsumer.of(".*", String.class, messages -> {}), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void shouldRejectSpillConsumerWithDifferentPayloadType() {
+        final MessageConsumer spillConsumer = MessageConsumer.of(".*", Integer.class, message -> {});
+        BulkheadMessageConsumer.spilling("test", MessageConsumer.of(".*", String.class, message -> {}), 1, spillConsumer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAcceptMessagesAfterClose() {
+        final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.blocking("test", MessageConsumer.of(".*", String.class, message -> {}), 1);
+        bulkhead.close();
+        bulkhead.accept(message("1", "too late"));
+    }
+
+    private static MessageConsumer<String> stuckConsumer(final CountDownLatch blocked,
+                                                         final CountDownLatch release,
+                                                         final List<String> received) {
+        return MessageConsumer.of(".*", String.class, (Message<String> message) -> {
+            blocked.countDown();
+            try {
+                release.await(5, SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(message.getPayload());
+        });
+    }
+}
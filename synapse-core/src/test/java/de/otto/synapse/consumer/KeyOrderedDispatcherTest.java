@@ -0,0 +1,299 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Key;
+import de.otto.synapse.message.TextMessage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class KeyOrderedDispatcherTest {
+
+    @Test
+    public void shouldDispatchMessagesInCallingThreadWithConcurrencyOfOne() {
+        // given
+        final List<Thread> threads = new ArrayList<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> threads.add(Thread.currentThread())));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 1, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            batch.accept(TextMessage.of("1", "{}"));
+            batch.accept(TextMessage.of("2", "{}"));
+            batch.await();
+        }
+
+        // then
+        assertThat(threads, contains(Thread.currentThread(), Thread.currentThread()));
+    }
+
+    @Test
+    public void shouldKeepOrderOfMessagesWithSamePartitionKey() {
+        // given
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> received
+                .computeIfAbsent(message.getKey().partitionKey(), k -> new CopyOnWriteArrayList<>())
+                .add(Integer.valueOf(message.getPayload()))));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 4, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            for (int i = 0; i < 5000; i++) {
+                batch.accept(TextMessage.of(Key.of("p" + (i % 7), "c" + i), String.valueOf(i)));
+            }
+            batch.await();
+        }
+
+        // then
+        assertThat(received.size(), is(7));
+        received.forEach((partitionKey, values) -> {
+            assertThat(values.size(), greaterThan(700));
+            for (int i = 1; i < values.size(); i++) {
+                assertThat(values.get(i), greaterThan(values.get(i - 1)));
+            }
+        });
+    }
+
+    @Test
+    public void shouldDispatchMessagesWithDifferentPartitionKeysInParallel() throws InterruptedException {
+        // given
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final AtomicInteger timeouts = new AtomicInteger();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> {
+            bothStarted.countDown();
+            try {
+                if (!bothStarted.await(5, SECONDS)) {
+                    timeouts.incrementAndGet();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 2, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            // "a" and "b" are assigned to different lanes:
+            batch.accept(TextMessage.of("a", "{}"));
+            batch.accept(TextMessage.of("b", "{}"));
+            batch.await();
+        }
+
+        // then
+        assertThat(timeouts.get(), is(0));
+    }
+
+    @Test
+    public void shouldWaitForAllMessagesOfBatch() {
+        // given
+        final AtomicInteger count = new AtomicInteger();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> {
+            try {
+                Thread.sleep(1);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count.incrementAndGet();
+        }));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 3, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            for (int i = 0; i < 100; i++) {
+                batch.accept(TextMessage.of(String.valueOf(i), "{}"));
+            }
+            batch.await();
+
+            // then
+            assertThat(count.get(), is(100));
+        }
+    }
+
+    @Test
+    public void shouldKeepMessagesOfAsyncConsumersInFlight() {
+        // given
+        final List<CompletableFuture<Void>> pending = new CopyOnWriteArrayList<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(AsyncMessageConsumer.of(".*", String.class, message -> {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        }));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 1, 3, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            for (int i = 0; i < 3; i++) {
+                batch.accept(TextMessage.of(String.valueOf(i), "{}"));
+            }
+
+            // then
+            assertThat(pending.size(), is(3));
+            pending.forEach(future -> future.complete(null));
+            batch.await();
+        }
+    }
+
+    @Test
+    public void shouldKeepOrderOfMessagesWithSamePartitionKeyForAsyncConsumers() {
+        // given
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(AsyncMessageConsumer.of(".*", String.class, message -> CompletableFuture.runAsync(() -> received
+                .computeIfAbsent(message.getKey().partitionKey(), k -> new CopyOnWriteArrayList<>())
+                .add(Integer.valueOf(message.getPayload())), executorService)));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 2, 8, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            for (int i = 0; i < 2000; i++) {
+                batch.accept(TextMessage.of(Key.of("p" + (i % 5), "c" + i), String.valueOf(i)));
+            }
+            batch.await();
+        } finally {
+            executorService.shutdown();
+        }
+
+        // then
+        assertThat(received.size(), is(5));
+        received.forEach((partitionKey, values) -> {
+            assertThat(values.size(), is(400));
+            for (int i = 1; i < values.size(); i++) {
+                assertThat(values.get(i), greaterThan(values.get(i - 1)));
+            }
+        });
+    }
+
+    @Test
+    public void shouldWaitForAsyncConsumersInBatch() {
+        // given
+        final AtomicInteger count = new AtomicInteger();
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(AsyncMessageConsumer.of(".*", String.class, message -> CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(5);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count.incrementAndGet();
+        }, executorService)));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 2, 4, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            for (int i = 0; i < 50; i++) {
+                batch.accept(TextMessage.of(String.valueOf(i), "{}"));
+            }
+            batch.await();
+
+            // then
+            assertThat(count.get(), is(50));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldContinueAfterFailingConsumer() {
+        // given
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> {
+            if (message.getKey().compactionKey().equals("fail")) {
+                throw new IllegalStateException("forced test exception");
+            }
+            received.add(message.getKey().compactionKey());
+        }));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 2, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            batch.accept(TextMessage.of(Key.of("p", "fail"), "{}"));
+            batch.accept(TextMessage.of(Key.of("p", "ok"), "{}"));
+            batch.await();
+        }
+
+        // then
+        assertThat(received, contains("ok"));
+    }
+
+    @Test
+    public void shouldDispatchChunksOfLanesToBatchConsumers() {
+        // given
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(BatchMessageConsumer.of(".*", String.class, messages -> {
+            batchSizes.add(messages.size());
+            messages.forEach(message -> received
+                    .computeIfAbsent(message.getKey().partitionKey(), k -> new CopyOnWriteArrayList<>())
+                    .add(Integer.valueOf(message.getPayload())));
+        }));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(messageDispatcher, 2, "test-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            for (int i = 0; i < 2500; i++) {
+                batch.accept(TextMessage.of(Key.of("p", "c" + i), String.valueOf(i)));
+            }
+            batch.await();
+        }
+
+        // then
+        assertThat(batchSizes, contains(KeyOrderedDispatcher.MAX_BATCH_SIZE, KeyOrderedDispatcher.MAX_BATCH_SIZE, 500));
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            expected.add(i);
+        }
+        assertThat(received.get("p"), is(expected));
+    }
+
+    @Test
+    public void shouldUseThreadsWithNamePrefix() {
+        // given
+        final List<String> threadNames = new CopyOnWriteArrayList<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.setConcurrency(2);
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> threadNames.add(Thread.currentThread().getName())));
+
+        // when
+        try (final KeyOrderedDispatcher dispatcher = messageDispatcher.keyOrdered("test-dispatcher-")) {
+            final KeyOrderedDispatcher.Batch batch = dispatcher.newBatch();
+            batch.accept(TextMessage.of("1", "{}"));
+            batch.await();
+            assertThat(dispatcher.getConcurrency(), is(2));
+        }
+
+        // then
+        assertThat(threadNames.get(0).startsWith("test-dispatcher-"), is(true));
+        assertThat(threadNames.get(0), is(not(Thread.currentThread().getName())));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAcceptNewBatchesAfterClose() {
+        final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(new MessageDispatcher(), 2, "test-");
+        dispatcher.close();
+        dispatcher.newBatch();
+    }
+}
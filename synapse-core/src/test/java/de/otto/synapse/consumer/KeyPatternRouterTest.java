@@ -0,0 +1,71 @@
+package de.otto.synapse.consumer;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static java.util.regex.Pattern.compile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyPatternRouterTest {
+
+    @Test
+    public void shouldMatchLiteralPatterns() {
+        final KeyPatternRouter router = new KeyPatternRouter(asList(compile("apple"), compile("banana"), compile("apple")));
+
+        assertThat(router.matches("apple")).containsExactly(0, 2);
+        assertThat(router.matches("banana")).containsExactly(1);
+        assertThat(router.matches("apples")).isEmpty();
+        assertThat(router.matchesAny("banana")).isTrue();
+        assertThat(router.matchesAny("cherry")).isFalse();
+    }
+
+    @Test
+    public void shouldMatchPrefixPatterns() {
+        final KeyPatternRouter router = new KeyPatternRouter(asList(compile("apple.*"), compile(".*"), compile("apple\\..*"), compile("app.*")));
+
+        assertThat(router.matches("apple.123")).containsExactly(0, 1, 2, 3);
+        assertThat(router.matches("apple-123")).containsExactly(0, 1, 3);
+        assertThat(router.matches("app")).containsExactly(1, 3);
+        assertThat(router.matches("")).containsExactly(1);
+        assertThat(router.matches("apple\n123")).isEmpty();
+        assertThat(router.matchesAny("apple\n123")).isFalse();
+    }
+
+    @Test
+    public void shouldMatchOtherPatternsUsingRegex() {
+        final KeyPatternRouter router = new KeyPatternRouter(asList(
+                compile("apple"),
+                compile("[0-9]+"),
+                compile("APPLE", Pattern.CASE_INSENSITIVE),
+                compile("apple.*", Pattern.DOTALL)));
+
+        assertThat(router.matches("apple")).containsExactly(0, 2, 3);
+        assertThat(router.matches("42")).containsExactly(1);
+        assertThat(router.matches("apple\n123")).containsExactly(3);
+    }
+
+    @Test
+    public void shouldMatchSameKeysAsRegex() {
+        final String[] patterns = {"", "a", "a.*", ".*", "a\\.b", "a\\.b.*", "a\\\\.*", "a\\d", "a|b", "(a)", "a.", "a.*b", "^a$"};
+        final String[] keys = {"", "a", "b", "a.b", "a.bc", "a\\", "a\\x", "a1", "ab", "a\n", "a\rb", "acb"};
+        for (final String pattern : patterns) {
+            final KeyPatternRouter router = new KeyPatternRouter(asList(compile(pattern)));
+            for (final String key : keys) {
+                assertThat(router.matchesAny(key))
+                        .as("pattern '%s' matching key '%s'", pattern, key)
+                        .isEqualTo(compile(pattern).matcher(key).matches());
+            }
+        }
+    }
+
+    @Test
+    public void shouldExtractLiterals() {
+        assertThat(KeyPatternRouter.literalOf("product-42")).isEqualTo("product-42");
+        assertThat(KeyPatternRouter.literalOf("a\\.b\\-c")).isEqualTo("a.b-c");
+        assertThat(KeyPatternRouter.literalOf("a.b")).isNull();
+        assertThat(KeyPatternRouter.literalOf("a\\d")).isNull();
+        assertThat(KeyPatternRouter.literalOf("a\\")).isNull();
+    }
+}
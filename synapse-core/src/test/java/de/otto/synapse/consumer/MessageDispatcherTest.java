@@ -1,14 +1,25 @@
 package de.otto.synapse.consumer;
 
+import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
+import de.otto.synapse.translator.PayloadProjection;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 import static de.otto.synapse.channel.ShardPosition.fromHorizon;
 import static de.otto.synapse.consumer.TestMessageConsumer.testEventConsumer;
 import static de.otto.synapse.message.Header.of;
 import static de.otto.synapse.message.Message.message;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -67,8 +78,12 @@ public class MessageDispatcherTest {
             // then
             verify(appleConsumer).keyPattern();
             verify(appleConsumer).payloadType();
+            verify(appleConsumer).payloadProjection();
             verifyNoMoreInteractions(appleConsumer);
-            verifyZeroInteractions(bananaConsumer);
+            // the key pattern and payload projection are resolved on registration:
+            verify(bananaConsumer).keyPattern();
+            verify(bananaConsumer).payloadProjection();
+            verifyNoMoreInteractions(bananaConsumer);
             throw e;
         }
     }
@@ -104,6 +119,220 @@ public class MessageDispatcherTest {
         verify(eventConsumerCherry, never()).accept(any(Message.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDeserializePayloadOncePerPayloadType() throws Exception {
+        // given
+        TestMessageConsumer<Apple> firstAppleConsumer = spy(testEventConsumer(".*", Apple.class));
+        TestMessageConsumer<Apple> secondAppleConsumer = spy(testEventConsumer(".*", Apple.class));
+        TestMessageConsumer<Banana> bananaConsumer = spy(testEventConsumer(".*", Banana.class));
+        TestMessageConsumer<String> stringConsumer = spy(testEventConsumer(".*", String.class));
+
+        MessageDispatcher messageDispatcher = new MessageDispatcher(asList(firstAppleConsumer, secondAppleConsumer, bananaConsumer, stringConsumer));
+
+        // when
+        TextMessage someMessage = spy(TextMessage.of("someKey", of(fromHorizon("test")), "{}"));
+        messageDispatcher.accept(someMessage);
+
+        // then
+        verify(someMessage, times(1)).getPayloadAs(Apple.class);
+        verify(someMessage, times(1)).getPayloadAs(Banana.class);
+        verify(firstAppleConsumer).accept(message(someMessage.getKey(), of(fromHorizon("test")), new Apple()));
+        verify(secondAppleConsumer).accept(message(someMessage.getKey(), of(fromHorizon("test")), new Apple()));
+        verify(bananaConsumer).accept(message(someMessage.getKey(), of(fromHorizon("test")), new Banana()));
+        verify(stringConsumer).accept(someMessage);
+    }
+
+    @Test
+    public void shouldCheckForConsumersOfKey() {
+        // given
+        MessageDispatcher messageDispatcher = new MessageDispatcher(asList(
+                testEventConsumer("apple.*", Apple.class),
+                testEventConsumer("banana.*", Banana.class)));
+
+        // then
+        assertThat(messageDispatcher.hasConsumerFor(Key.of("banana.456")), is(true));
+        assertThat(messageDispatcher.hasConsumerFor(Key.of("apple", "apple.123")), is(true));
+        assertThat(messageDispatcher.hasConsumerFor(Key.of("apple.123", "cherry.789")), is(false));
+        assertThat(new MessageDispatcher().hasConsumerFor(Key.of("apple.123")), is(false));
+    }
+
+    @Test
+    public void shouldDispatchToConsumersInOrderOfRegistration() {
+        // given
+        final List<String> calls = new ArrayList<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(namedConsumer("regex", "[a-z]+\\.123", calls));
+        messageDispatcher.add(namedConsumer("literal", "apple.123", calls));
+        messageDispatcher.add(namedConsumer("prefix", "apple.*", calls));
+        messageDispatcher.add(namedConsumer("other", "banana.*", calls));
+
+        // when
+        messageDispatcher.accept(TextMessage.of("apple.123", "{}"));
+
+        // then
+        assertThat(calls, is(asList("regex", "literal", "prefix")));
+        assertThat(messageDispatcher.getAll().size(), is(4));
+    }
+
+    @Test
+    public void shouldDispatchBatchesToBatchConsumersAfterSingleMessageConsumers() {
+        // given
+        final List<String> calls = new ArrayList<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(BatchMessageConsumer.of("apple.*", String.class, messages -> messages.forEach(m -> calls.add("batch:" + m.getKey().compactionKey()))));
+        messageDispatcher.add(namedConsumer("single", ".*", calls));
+
+        // when
+        messageDispatcher.acceptAll(asList(
+                TextMessage.of("apple.1", "{}"),
+                TextMessage.of("banana.1", "{}"),
+                TextMessage.of("apple.2", "{}")));
+
+        // then
+        assertThat(calls, is(asList("single", "single", "single", "batch:apple.1", "batch:apple.2")));
+        assertThat(messageDispatcher.hasBatchConsumers(), is(true));
+    }
+
+    @Test
+    public void shouldDispatchBatchesOfTypedMessages() {
+        // given
+        final List<List<Message<Apple>>> batches = new ArrayList<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(BatchMessageConsumer.of(".*", Apple.class, batches::add));
+
+        // when
+        messageDispatcher.acceptAll(asList(
+                TextMessage.of("1", "{}"),
+                TextMessage.of("2", "{}")));
+
+        // then
+        assertThat(batches.size(), is(1));
+        assertThat(batches.get(0).size(), is(2));
+        assertThat(batches.get(0).get(0).getPayload(), is(new Apple()));
+    }
+
+    @Test
+    public void shouldDispatchBatchesMessageByMessageWithoutBatchConsumers() {
+        // given
+        final List<String> calls = new ArrayList<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(namedConsumer("single", ".*", calls));
+
+        // when
+        messageDispatcher.acceptAll(asList(
+                TextMessage.of("1", "{}"),
+                TextMessage.of("2", "{}")));
+
+        // then
+        assertThat(calls, is(asList("single", "single")));
+        assertThat(messageDispatcher.hasBatchConsumers(), is(false));
+    }
+
+    @Test
+    public void shouldConfigureConcurrency() {
+        // given
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+
+        // when
+        messageDispatcher.setConcurrency(4);
+
+        // then
+        assertThat(messageDispatcher.getConcurrency(), is(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIllegalConcurrency() {
+        new MessageDispatcher().setConcurrency(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIllegalMaxInFlight() {
+        new MessageDispatcher().setMaxInFlight(0);
+    }
+
+    @Test
+    public void shouldCompleteAcceptAsyncAfterAsyncConsumersCompleted() {
+        // given
+        final List<String> calls = new ArrayList<>();
+        final CompletableFuture<Void> pending = new CompletableFuture<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(AsyncMessageConsumer.of(".*", String.class, message -> {
+            calls.add("async");
+            return pending;
+        }));
+        messageDispatcher.add(namedConsumer("single", ".*", calls));
+
+        // when
+        final CompletableFuture<Void> result = messageDispatcher.acceptAsync(TextMessage.of("1", "{}"));
+
+        // then
+        assertThat(calls, is(asList("async", "single")));
+        assertThat(result.isDone(), is(false));
+        pending.complete(null);
+        assertThat(result.isDone(), is(true));
+        assertThat(messageDispatcher.hasAsyncConsumers(), is(true));
+    }
+
+    @Test
+    public void shouldWaitForAsyncConsumersOnAccept() {
+        // given
+        final List<String> calls = new ArrayList<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(AsyncMessageConsumer.of(".*", String.class, message -> CompletableFuture.runAsync(() -> calls.add("async"))));
+
+        // when
+        messageDispatcher.accept(TextMessage.of("1", "{}"));
+
+        // then
+        assertThat(calls, is(asList("async")));
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void shouldDeserializeProjectedPayloadsSeparately() {
+        // given
+        final List<Map> projected = new ArrayList<>();
+        final List<Map> complete = new ArrayList<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", Map.class, PayloadProjection.of("/id"), message -> projected.add(message.getPayload())));
+        messageDispatcher.add(MessageConsumer.of(".*", Map.class, message -> complete.add(message.getPayload())));
+
+        // when
+        messageDispatcher.accept(TextMessage.of("1", "{\"id\":\"42\",\"items\":[1,2,3]}"));
+
+        // then
+        assertThat(projected, is(asList(singletonMap("id", "42"))));
+        assertThat(complete.get(0).containsKey("items"), is(true));
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void shouldDeserializeSeparatePayloadForBulkheads() throws Exception {
+        // given
+        final List<Map> shared = new ArrayList<>();
+        final CompletableFuture<Map> isolated = new CompletableFuture<>();
+        MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", Map.class, message -> shared.add(message.getPayload())));
+        messageDispatcher.add(MessageConsumer.of(".*", Map.class, message -> shared.add(message.getPayload())));
+        try (BulkheadMessageConsumer<Map> bulkhead = BulkheadMessageConsumer.blocking("test", MessageConsumer.of(".*", Map.class, message -> isolated.complete(message.getPayload())), 1)) {
+            messageDispatcher.add(bulkhead);
+
+            // when
+            messageDispatcher.accept(TextMessage.of("1", "{\"id\":\"42\"}"));
+
+            // then
+            assertThat(shared.get(0) == shared.get(1), is(true));
+            final Map payload = isolated.get(1, SECONDS);
+            assertThat(payload, is(shared.get(0)));
+            assertThat(payload == shared.get(0), is(false));
+        }
+    }
+
+    private static MessageConsumer<String> namedConsumer(final String name, final String keyPattern, final List<String> calls) {
+        return MessageConsumer.of(keyPattern, String.class, message -> calls.add(name));
+    }
+
     static class Apple {
         public boolean equals(Object o) {
             return o instanceof Apple;
@@ -0,0 +1,142 @@
+package de.otto.synapse.consumer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class MethodInvokersTest {
+
+    public static class PublicTarget {
+        public final List<Object> calls = new ArrayList<>();
+
+        public void consume(final String value) {
+            calls.add(value);
+        }
+
+        public String transform(final String value) {
+            return value.toUpperCase();
+        }
+
+        public int length(final String value) {
+            return value.length();
+        }
+
+        public void fail(final String value) throws IOException {
+            throw new IOException(value);
+        }
+    }
+
+    static class PackagePrivateTarget {
+        final List<Object> calls = new ArrayList<>();
+
+        void consume(final String value) {
+            calls.add(value);
+        }
+
+        String transform(final String value) {
+            return value.toUpperCase();
+        }
+    }
+
+    @Test
+    public void shouldCreateConsumerForPublicMethod() throws NoSuchMethodException {
+        // given
+        final PublicTarget target = new PublicTarget();
+        final Consumer<Object> consumer = MethodInvokers.consumerFor(target, PublicTarget.class.getMethod("consume", String.class));
+
+        // when
+        consumer.accept("foo");
+
+        // then
+        assertThat(target.calls).containsExactly("foo");
+    }
+
+    @Test
+    public void shouldCreateConsumerIgnoringReturnValue() throws NoSuchMethodException {
+        // given
+        final Consumer<Object> consumer = MethodInvokers.consumerFor(new PublicTarget(), PublicTarget.class.getMethod("transform", String.class));
+
+        // when
+        consumer.accept("foo");
+
+        // then no exception is thrown
+    }
+
+    @Test
+    public void shouldCreateFunctionForPublicMethod() throws NoSuchMethodException {
+        // given
+        final Function<Object, Object> function = MethodInvokers.functionFor(new PublicTarget(), PublicTarget.class.getMethod("transform", String.class));
+
+        // when
+        final Object result = function.apply("foo");
+
+        // then
+        assertThat(result).isEqualTo("FOO");
+    }
+
+    @Test
+    public void shouldBoxPrimitiveReturnValues() throws NoSuchMethodException {
+        // given
+        final Function<Object, Object> function = MethodInvokers.functionFor(new PublicTarget(), PublicTarget.class.getMethod("length", String.class));
+
+        // when
+        final Object result = function.apply("foo");
+
+        // then
+        assertThat(result).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldCreateInvokersForNonPublicMethods() throws NoSuchMethodException {
+        // given
+        final PackagePrivateTarget target = new PackagePrivateTarget();
+        final Consumer<Object> consumer = MethodInvokers.consumerFor(target, PackagePrivateTarget.class.getDeclaredMethod("consume", String.class));
+        final Function<Object, Object> function = MethodInvokers.functionFor(target, PackagePrivateTarget.class.getDeclaredMethod("transform", String.class));
+
+        // when
+        consumer.accept("foo");
+        final Object result = function.apply("bar");
+
+        // then
+        assertThat(target.calls).containsExactly("foo");
+        assertThat(result).isEqualTo("BAR");
+    }
+
+    @Test
+    public void shouldNotWrapExceptions() throws NoSuchMethodException {
+        // given
+        final Consumer<Object> consumer = MethodInvokers.consumerFor(new PublicTarget(), PublicTarget.class.getMethod("fail", String.class));
+
+        // when
+        final Throwable throwable = catchThrowable(() -> consumer.accept("foo"));
+
+        // then
+        assertThat(throwable).isInstanceOf(IOException.class).hasMessage("foo");
+    }
+
+    @Test
+    public void shouldFailToCreateFunctionForVoidMethod() throws NoSuchMethodException {
+        // when
+        final Throwable throwable = catchThrowable(() -> MethodInvokers.functionFor(new PublicTarget(), PublicTarget.class.getMethod("consume", String.class)));
+
+        // then
+        assertThat(throwable).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldFailToCreateInvokerForOtherInstance() throws NoSuchMethodException {
+        // when
+        final Throwable throwable = catchThrowable(() -> MethodInvokers.consumerFor("some string", PublicTarget.class.getMethod("consume", String.class)));
+
+        // then
+        assertThat(throwable).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,83 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static de.otto.synapse.message.Message.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MethodInvokingAsyncMessageConsumerTest {
+
+    private final CompletableFuture<Void> pending = new CompletableFuture<>();
+    private Message<String> receivedMessage;
+
+    public CompletableFuture<Void> validMethod(final Message<String> message) {
+        receivedMessage = message;
+        return pending;
+    }
+
+    public CompletionStage<Void> methodReturningNull(final Message<String> message) {
+        return null;
+    }
+
+    public CompletableFuture<Void> methodThrowingCheckedException(final Message<String> message) throws IOException {
+        throw new IOException("forced test exception");
+    }
+
+    public void syncMethod(final Message<String> message) {
+    }
+
+    @Test
+    public void shouldReturnFutureOfMethod() throws NoSuchMethodException {
+        // given
+        final Method method = MethodInvokingAsyncMessageConsumerTest.class.getMethod("validMethod", Message.class);
+        final MethodInvokingAsyncMessageConsumer<String> consumer = new MethodInvokingAsyncMessageConsumer<>(".*", String.class, this, method);
+
+        // when
+        final CompletionStage<Void> result = consumer.acceptAsync(message("1", "first"));
+
+        // then
+        assertThat(receivedMessage.getPayload()).isEqualTo("first");
+        assertThat(result).isSameAs(pending);
+    }
+
+    @Test
+    public void shouldTreatNullAsCompletedFuture() throws NoSuchMethodException {
+        final Method method = MethodInvokingAsyncMessageConsumerTest.class.getMethod("methodReturningNull", Message.class);
+        final MethodInvokingAsyncMessageConsumer<String> consumer = new MethodInvokingAsyncMessageConsumer<>(".*", String.class, this, method);
+
+        assertThat(consumer.acceptAsync(message("1", "first")).toCompletableFuture().isDone()).isTrue();
+    }
+
+    @Test
+    public void shouldReturnExceptionsAsFailedFutures() throws NoSuchMethodException {
+        // given
+        final Method method = MethodInvokingAsyncMessageConsumerTest.class.getMethod("methodThrowingCheckedException", Message.class);
+        final MethodInvokingAsyncMessageConsumer<String> consumer = new MethodInvokingAsyncMessageConsumer<>(".*", String.class, this, method);
+
+        // when
+        final CompletableFuture<Void> result = consumer.acceptAsync(message("1", "first")).toCompletableFuture();
+
+        // then
+        assertThat(result.isCompletedExceptionally()).isTrue();
+    }
+
+    @Test
+    public void shouldDetectAsyncConsumerMethods() throws NoSuchMethodException {
+        assertThat(MethodInvokingAsyncMessageConsumer.isAsyncConsumerMethod(
+                MethodInvokingAsyncMessageConsumerTest.class.getMethod("validMethod", Message.class))).isTrue();
+        assertThat(MethodInvokingAsyncMessageConsumer.isAsyncConsumerMethod(
+                MethodInvokingAsyncMessageConsumerTest.class.getMethod("syncMethod", Message.class))).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToBuildAsyncConsumerForSyncMethod() throws NoSuchMethodException {
+        final Method method = MethodInvokingAsyncMessageConsumerTest.class.getMethod("syncMethod", Message.class);
+        new MethodInvokingAsyncMessageConsumer<>(".*", String.class, this, method);
+    }
+}
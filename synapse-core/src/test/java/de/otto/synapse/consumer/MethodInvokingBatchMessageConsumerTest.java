@@ -0,0 +1,93 @@
+package de.otto.synapse.consumer;
+
+import de.otto.synapse.message.Message;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static de.otto.synapse.message.Message.message;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class MethodInvokingBatchMessageConsumerTest {
+
+    private List<Message<String>> receivedMessages;
+
+    public void validMethod(final List<Message<String>> messages) {
+        receivedMessages = messages;
+    }
+
+    public void methodWithListOfStrings(final List<String> messages) {
+    }
+
+    public void methodWithSingleMessage(final Message<String> message) {
+    }
+
+    public void methodThrowingCheckedException(final List<Message<String>> messages) throws IOException {
+        throw new IOException("forced test exception");
+    }
+
+    @Before
+    public void setup() {
+        receivedMessages = null;
+    }
+
+    @Test
+    public void shouldBuildBatchConsumerForValidMethod() throws NoSuchMethodException {
+        // given
+        final Method method = MethodInvokingBatchMessageConsumerTest.class.getMethod("validMethod", List.class);
+        final MethodInvokingBatchMessageConsumer<String> consumer = new MethodInvokingBatchMessageConsumer<>(".*", String.class, this, method);
+
+        // when
+        consumer.acceptAll(asList(message("1", "first"), message("2", "second")));
+
+        // then
+        assertThat(receivedMessages).extracting(Message::getPayload).containsExactly("first", "second");
+    }
+
+    @Test
+    public void shouldAcceptSingleMessageAsBatch() throws NoSuchMethodException {
+        // given
+        final Method method = MethodInvokingBatchMessageConsumerTest.class.getMethod("validMethod", List.class);
+        final MethodInvokingBatchMessageConsumer<String> consumer = new MethodInvokingBatchMessageConsumer<>(".*", String.class, this, method);
+
+        // when
+        consumer.accept(message("1", "first"));
+
+        // then
+        assertThat(receivedMessages).extracting(Message::getPayload).containsExactly("first");
+    }
+
+    @Test
+    public void shouldDetectBatchConsumerMethods() throws NoSuchMethodException {
+        assertThat(MethodInvokingBatchMessageConsumer.isBatchConsumerMethod(
+                MethodInvokingBatchMessageConsumerTest.class.getMethod("validMethod", List.class))).isTrue();
+        assertThat(MethodInvokingBatchMessageConsumer.isBatchConsumerMethod(
+                MethodInvokingBatchMessageConsumerTest.class.getMethod("methodWithListOfStrings", List.class))).isFalse();
+        assertThat(MethodInvokingBatchMessageConsumer.isBatchConsumerMethod(
+                MethodInvokingBatchMessageConsumerTest.class.getMethod("methodWithSingleMessage", Message.class))).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToBuildBatchConsumerForListOfStrings() throws NoSuchMethodException {
+        final Method method = MethodInvokingBatchMessageConsumerTest.class.getMethod("methodWithListOfStrings", List.class);
+        new MethodInvokingBatchMessageConsumer<>(".*", String.class, this, method);
+    }
+
+    @Test
+    public void shouldPropagateCheckedExceptionsUnchanged() throws NoSuchMethodException {
+        // given
+        final Method method = MethodInvokingBatchMessageConsumerTest.class.getMethod("methodThrowingCheckedException", List.class);
+        final MethodInvokingBatchMessageConsumer<String> consumer = new MethodInvokingBatchMessageConsumer<>(".*", String.class, this, method);
+
+        // when
+        final Throwable thrown = catchThrowable(() -> consumer.acceptAll(asList(message("1", "first"))));
+
+        // then
+        assertThat(thrown).isInstanceOf(IOException.class).hasMessage("forced test exception");
+    }
+}
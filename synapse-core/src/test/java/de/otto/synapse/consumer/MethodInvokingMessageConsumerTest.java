@@ -5,10 +5,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.aop.support.AopUtils;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 
+import static de.otto.synapse.message.Message.message;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 public class MethodInvokingMessageConsumerTest {
 
@@ -31,48 +33,66 @@ public class MethodInvokingMessageConsumerTest {
         eventReceived = true;
     }
 
+    public void methodThrowingRuntimeException(final Message<String> message) {
+        throw new IllegalArgumentException("forced test exception");
+    }
+
+    public void methodThrowingCheckedException(final Message<String> message) throws IOException {
+        throw new IOException("forced test exception");
+    }
+
     @Before
     public void setup() {
         eventReceived = false;
     }
 
     @Test
-    @SuppressWarnings("unchecked")
     public void shouldBuildEventConsumerForValidMethod() throws NoSuchMethodException {
         final Method method = MethodInvokingMessageConsumerTest.class.getMethod("validMethod", Message.class);
         final Method method1 = AopUtils.selectInvocableMethod(method, MethodInvokingMessageConsumerTest.class);
-        final MethodInvokingMessageConsumer eventConsumer = new MethodInvokingMessageConsumer(".*", String.class, this, method1);
-        eventConsumer.accept(mock(Message.class));
+        final MethodInvokingMessageConsumer<String> eventConsumer = new MethodInvokingMessageConsumer<>(".*", String.class, this, method1);
+        eventConsumer.accept(message("someKey", "some payload"));
         assertThat(eventReceived).isTrue();
     }
 
     @Test
-    @SuppressWarnings("unchecked")
     public void shouldBuildEventConsumerAndIgnoreReturnValue() throws NoSuchMethodException {
         final Method method = MethodInvokingMessageConsumerTest.class.getMethod("validMethodWithReturnValue", Message.class);
-        final MethodInvokingMessageConsumer eventConsumer = new MethodInvokingMessageConsumer(".*", String.class, this, method);
-        eventConsumer.accept(mock(Message.class));
+        final MethodInvokingMessageConsumer<String> eventConsumer = new MethodInvokingMessageConsumer<>(".*", String.class, this, method);
+        eventConsumer.accept(message("someKey", "some payload"));
         assertThat(eventReceived).isTrue();
     }
 
     @Test(expected = IllegalArgumentException.class)
-    @SuppressWarnings("unchecked")
+    public void shouldNotWrapRuntimeExceptions() throws NoSuchMethodException {
+        final Method method = MethodInvokingMessageConsumerTest.class.getMethod("methodThrowingRuntimeException", Message.class);
+        final MethodInvokingMessageConsumer<String> eventConsumer = new MethodInvokingMessageConsumer<>(".*", String.class, this, method);
+        eventConsumer.accept(message("someKey", "some payload"));
+    }
+
+    @Test
+    public void shouldWrapCheckedExceptions() throws NoSuchMethodException {
+        final Method method = MethodInvokingMessageConsumerTest.class.getMethod("methodThrowingCheckedException", Message.class);
+        final MethodInvokingMessageConsumer<String> eventConsumer = new MethodInvokingMessageConsumer<>(".*", String.class, this, method);
+        final Throwable throwable = catchThrowable(() -> eventConsumer.accept(message("someKey", "some payload")));
+        assertThat(throwable).isInstanceOf(IllegalStateException.class).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
     public void shouldFailBuildingEventConsumerWithTooManyArgs() throws NoSuchMethodException {
         final Method method = MethodInvokingMessageConsumerTest.class.getMethod("methodWithTooManyParameters", Message.class, String.class);
-        new MethodInvokingMessageConsumer(".*", String.class, this, method);
+        new MethodInvokingMessageConsumer<>(".*", String.class, this, method);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    @SuppressWarnings("unchecked")
     public void shouldFailBuildingEventConsumerWithMissingEventArgs() throws NoSuchMethodException {
         final Method method = MethodInvokingMessageConsumerTest.class.getMethod("methodWithMissingEventParam", String.class);
-        new MethodInvokingMessageConsumer(".*", String.class, this, method);
+        new MethodInvokingMessageConsumer<>(".*", String.class, this, method);
     }
 
     @Test(expected = NullPointerException.class)
-    @SuppressWarnings("unchecked")
     public void shouldFailBuildingEventConsumerWithMissingMethod() throws NoSuchMethodException {
-        new MethodInvokingMessageConsumer(".*", String.class, this,null);
+        new MethodInvokingMessageConsumer<>(".*", String.class, this,null);
     }
 
 }
@@ -8,8 +8,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Optional;
+
 import static de.otto.synapse.channel.ShardPosition.fromPosition;
 import static de.otto.synapse.message.Header.of;
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -87,6 +90,50 @@ public class StatefulMessageConsumerTest {
 
     }
 
+    @Test
+    public void shouldFoldBatchOfMessagesPerKey() {
+        //given
+        stateRepository.put("first", "0");
+        final StatefulMessageConsumer<String, String> consumer = new StatefulMessageConsumer<>(
+                ".*",
+                String.class,
+                stateRepository,
+                (Optional<String> previous, Message<String> message) -> previous.orElse("") + message.getPayload(),
+                (m) -> m.getKey().partitionKey());
+
+        //when
+        consumer.acceptAll(asList(
+                Message.message("first", "1"),
+                Message.message("second", "a"),
+                Message.message("first", "2"),
+                Message.message("second", "b")
+        ));
+
+        //then
+        assertThat(stateRepository.get("first").get()).isEqualTo("012");
+        assertThat(stateRepository.get("second").get()).isEqualTo("ab");
+    }
+
+    @Test
+    public void shouldApplyDeletionsInBatchOfMessages() {
+        //given
+        stateRepository.put("first", "0");
+        final StatefulMessageConsumer<String, String> consumer = statefulMessageConsumer();
+
+        //when
+        consumer.acceptAll(asList(
+                Message.message("first", "1"),
+                Message.message("second", "a"),
+                Message.message("first", (String) null),
+                Message.message("second", (String) null),
+                Message.message("second", "b")
+        ));
+
+        //then
+        assertThat(stateRepository.get("first")).isEmpty();
+        assertThat(stateRepository.get("second").get()).isEqualTo("b");
+    }
+
     private StatefulMessageConsumer<String, String> statefulMessageConsumer() {
         return new StatefulMessageConsumer<>(".*", String.class, stateRepository, Message::getPayload);
     }
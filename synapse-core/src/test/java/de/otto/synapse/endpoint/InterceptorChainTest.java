@@ -5,7 +5,14 @@ import de.otto.synapse.message.Key;
 import de.otto.synapse.message.TextMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
@@ -19,7 +26,7 @@ public class InterceptorChainTest {
         final InterceptorChain chain = new InterceptorChain();
         final TextMessage message = mock(TextMessage.class);
         final TextMessage intercepted = chain.intercept(message);
-        verifyZeroInteractions(message);
+        verifyNoMoreInteractions(message);
         assertThat(message, is(intercepted));
     }
 
@@ -40,7 +47,7 @@ public class InterceptorChainTest {
         final MessageInterceptor second = mock(MessageInterceptor.class);
         final InterceptorChain chain = new InterceptorChain(ImmutableList.of(first, second));
         assertThat(chain.intercept(someMessage("foo")), is(nullValue()));
-        verifyZeroInteractions(second);
+        verifyNoMoreInteractions(second);
     }
 
     @Test
@@ -59,4 +66,63 @@ public class InterceptorChainTest {
     private TextMessage someMessage(final String keyValue) {
         return TextMessage.of(Key.of(keyValue), null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldBeSideEffectFreeIfAllInterceptorsAreSideEffectFree() {
+        final MessageInterceptor filter = MessageFilter.messageFilter(message -> true);
+        final MessageInterceptor other = message -> message;
+
+        assertThat(new InterceptorChain().isSideEffectFree(), is(true));
+        assertThat(new InterceptorChain(ImmutableList.of(filter)).isSideEffectFree(), is(true));
+        assertThat(new InterceptorChain(ImmutableList.of(filter, other)).isSideEffectFree(), is(false));
+    }
+
+    @Test
+    public void shouldInterceptAllMessagesWithBatchAndSingleMessageInterceptors() {
+        // given
+        final List<Integer> batchSizes = new ArrayList<>();
+        final BatchMessageInterceptor dropFirst = messages -> {
+            batchSizes.add(messages.size());
+            return messages.subList(1, messages.size());
+        };
+        final MessageInterceptor dropBar = message -> message.getKey().equals(Key.of("bar")) ? null : message;
+        final InterceptorChain chain = new InterceptorChain(ImmutableList.of(dropBar, dropFirst));
+
+        // when
+        final List<TextMessage> intercepted = chain.interceptAll(asList(someMessage("foo"), someMessage("bar"), someMessage("foobar")));
+
+        // then
+        assertThat(chain.hasBatchInterceptors(), is(true));
+        assertThat(batchSizes, contains(2));
+        assertThat(intercepted.size(), is(1));
+        assertThat(intercepted.get(0).getKey(), is(Key.of("foobar")));
+    }
+
+    @Test
+    public void shouldInterceptSingleMessageWithBatchInterceptor() {
+        // given
+        final BatchMessageInterceptor dropAll = messages -> emptyList();
+        final InterceptorChain chain = new InterceptorChain(ImmutableList.of(dropAll));
+
+        // when
+        final TextMessage intercepted = chain.intercept(someMessage("foo"));
+
+        // then
+        assertThat(intercepted, is(nullValue()));
+    }
+
+    @Test
+    public void shouldStopInterceptingAllMessagesIfAllMessagesAreDropped() {
+        // given
+        final MessageInterceptor dropAll = message -> null;
+        final BatchMessageInterceptor second = mock(BatchMessageInterceptor.class);
+        final InterceptorChain chain = new InterceptorChain(ImmutableList.of(dropAll, second));
+
+        // when
+        final List<TextMessage> intercepted = chain.interceptAll(asList(someMessage("foo"), someMessage("bar")));
+
+        // then
+        assertThat(intercepted, is(empty()));
+        verifyNoMoreInteractions(second);
+    }
+}
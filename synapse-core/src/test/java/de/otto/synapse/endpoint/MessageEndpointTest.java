@@ -8,7 +8,10 @@ import javax.annotation.Nonnull;
 import static de.otto.synapse.endpoint.EndpointType.SENDER;
 import static de.otto.synapse.endpoint.MessageInterceptorRegistration.senderChannelsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -89,4 +92,27 @@ public class MessageEndpointTest {
         final TextMessage message = mock(TextMessage.class);
         assertThat(messageEndpoint.intercept(message), is(message));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReplaceInterceptorChainAfterRegistration() {
+        // given
+        final MessageInterceptorRegistry registry = new MessageInterceptorRegistry();
+        final AbstractMessageEndpoint endpoint = new AbstractMessageEndpoint("foo", registry) {
+            @Nonnull
+            @Override
+            public EndpointType getEndpointType() {
+                return SENDER;
+            }
+        };
+        final InterceptorChain emptyChain = endpoint.getInterceptorChain();
+
+        // when
+        final MessageInterceptor interceptor = mock(MessageInterceptor.class);
+        registry.register(senderChannelsWith(interceptor));
+
+        // then
+        assertThat(emptyChain.getInterceptors(), is(empty()));
+        assertThat(endpoint.getInterceptorChain().getInterceptors(), contains(interceptor));
+        assertThat(endpoint.getInterceptorChain(), is(sameInstance(endpoint.getInterceptorChain())));
+    }
+}
@@ -11,7 +11,9 @@ import java.util.stream.Stream;
 
 import static de.otto.synapse.endpoint.MethodInvokingMessageInterceptorTest.TestInterceptors.method;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class MethodInvokingMessageInterceptorTest {
 
@@ -28,6 +30,11 @@ public class MethodInvokingMessageInterceptorTest {
             return message;
         }
 
+        @de.otto.synapse.annotation.MessageInterceptor(sideEffectFree = true)
+        public TextMessage sideEffectFreeInterceptor(final TextMessage message) {
+            return message;
+        }
+
         public Message interceptorWithoutReturnTypeParam(final Message<String> message) {
             return message;
         }
@@ -93,6 +100,12 @@ public class MethodInvokingMessageInterceptorTest {
         assertEquals(intercepted, expected);
     }
 
+    @Test
+    public void shouldBeSideEffectFreeIfAnnotated() {
+        assertTrue(new MethodInvokingMessageInterceptor(new TestInterceptors(), method("sideEffectFreeInterceptor")).isSideEffectFree());
+        assertFalse(new MethodInvokingMessageInterceptor(new TestInterceptors(), method("textMessageInterceptor")).isSideEffectFree());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldFailWithIllegalReturnTypeInterceptor() {
         new MethodInvokingMessageInterceptor(new TestInterceptors(), method("illegalReturnTypeInterceptor"));
@@ -1,5 +1,6 @@
 package de.otto.synapse.endpoint.sender;
 
+import de.otto.synapse.endpoint.BatchMessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptor;
 import de.otto.synapse.endpoint.MessageInterceptorRegistry;
 import de.otto.synapse.message.Key;
@@ -24,6 +25,7 @@ import static de.otto.synapse.message.Message.message;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.stream.Stream.of;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
@@ -205,4 +207,34 @@ public class MessageSenderEndpointTest {
         assertThat(sentMessages.get(1).getPayload(), is("translated and intercepted"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldInterceptMessageBatchWithBatchInterceptor() {
+        // given
+        final MessageTranslator<TextMessage> messageTranslator = (m) -> TextMessage.of(m.getKey(), "translated");
+        final List<Integer> batchSizes = new ArrayList<>();
+        final BatchMessageInterceptor interceptor = (messages) -> {
+            batchSizes.add(messages.size());
+            return messages.subList(1, messages.size());
+        };
+        final MessageInterceptorRegistry registry = new MessageInterceptorRegistry();
+        registry.register(matchingChannelsWith("foo-channel", interceptor));
+
+        final List<TextMessage> sentMessages = new ArrayList<>();
+        final MessageSenderEndpoint senderEndpoint = new AbstractMessageSenderEndpoint("foo-channel", registry, messageTranslator) {
+            @Override
+            protected CompletableFuture<Void> doSend(@Nonnull TextMessage message) {
+                sentMessages.add(message);
+                return completedFuture(null);
+            }
+        };
+        // when
+        senderEndpoint.sendBatch(Stream.of(message("foo", ""), message("bar", ""), message("foobar", "")));
+
+        // then
+        assertThat(batchSizes, contains(3));
+        assertThat(sentMessages.size(), is(2));
+        assertThat(sentMessages.get(0).getKey(), is(Key.of("bar")));
+        assertThat(sentMessages.get(1).getKey(), is(Key.of("foobar")));
+    }
+
+}
@@ -0,0 +1,78 @@
+package de.otto.synapse.eventsource;
+
+import de.otto.synapse.channel.ChannelPosition;
+import de.otto.synapse.checkpoint.CheckpointStore;
+import de.otto.synapse.consumer.MessageDispatcher;
+import de.otto.synapse.endpoint.receiver.MessageLogReceiverEndpoint;
+import de.otto.synapse.messagestore.SnapshotMessageStore;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import static de.otto.synapse.channel.ChannelPosition.channelPosition;
+import static de.otto.synapse.channel.ChannelPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DefaultEventSourceBuilderTest {
+
+    @Test
+    public void shouldNotSaveCheckpointsByDefault() throws ExecutionException, InterruptedException {
+        // given
+        final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+        final DefaultEventSourceBuilder builder = new DefaultEventSourceBuilder(channelName -> mockMessageStore(), checkpointStore, Duration.ofSeconds(1));
+
+        // when
+        builder.buildEventSource(mockMessageLogReceiverEndpoint()).consume().get();
+
+        // then
+        verifyNoMoreInteractions(checkpointStore);
+    }
+
+    @Test
+    public void shouldSaveCheckpointsUsingNameOfEventSource() throws ExecutionException, InterruptedException {
+        // given
+        final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+        when(checkpointStore.getChannelPosition(any())).thenReturn(Optional.empty());
+        final DefaultEventSourceBuilder builder = new DefaultEventSourceBuilder(channelName -> mockMessageStore(), checkpointStore, Duration.ofSeconds(1));
+
+        // when
+        builder.buildCheckpointingEventSource(mockMessageLogReceiverEndpoint(), "firstEventSource").consume().get();
+        builder.buildCheckpointingEventSource(mockMessageLogReceiverEndpoint(), "secondEventSource").consume().get();
+
+        // then
+        verify(checkpointStore).getChannelPosition("firstEventSource");
+        verify(checkpointStore).getChannelPosition("secondEventSource");
+        verify(checkpointStore).saveChannelPosition("firstEventSource", channelPosition(fromPosition("shard", "42")));
+        verify(checkpointStore).saveChannelPosition("secondEventSource", channelPosition(fromPosition("shard", "42")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToBuildCheckpointingEventSourceWithoutCheckpointStore() {
+        // given
+        final DefaultEventSourceBuilder builder = new DefaultEventSourceBuilder(channelName -> mockMessageStore(), null, Duration.ofSeconds(1));
+
+        // when
+        builder.buildCheckpointingEventSource(mockMessageLogReceiverEndpoint(), "someEventSource");
+    }
+
+    private MessageLogReceiverEndpoint mockMessageLogReceiverEndpoint() {
+        final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
+        when(messageLog.getChannelName()).thenReturn("some-channel");
+        when(messageLog.getMessageDispatcher()).thenReturn(new MessageDispatcher());
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(channelPosition(fromPosition("shard", "42"))));
+        return messageLog;
+    }
+
+    private SnapshotMessageStore mockMessageStore() {
+        final SnapshotMessageStore messageStore = mock(SnapshotMessageStore.class);
+        when(messageStore.getLatestChannelPosition("some-channel")).thenReturn(fromHorizon());
+        when(messageStore.stream()).thenReturn(Stream.empty());
+        return messageStore;
+    }
+}
@@ -1,6 +1,9 @@
 package de.otto.synapse.eventsource;
 
 import de.otto.synapse.channel.ChannelPosition;
+import de.otto.synapse.channel.ShardResponse;
+import de.otto.synapse.checkpoint.CheckpointStore;
+import de.otto.synapse.consumer.MessageConsumer;
 import de.otto.synapse.consumer.MessageDispatcher;
 import de.otto.synapse.endpoint.receiver.MessageLogReceiverEndpoint;
 import de.otto.synapse.message.Header;
@@ -10,19 +13,30 @@ import de.otto.synapse.messagestore.MessageStore;
 import de.otto.synapse.messagestore.MessageStoreEntry;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static de.otto.synapse.channel.ChannelPosition.channelPosition;
 import static de.otto.synapse.channel.ChannelPosition.fromHorizon;
 import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.channel.ShardResponse.shardResponse;
 import static de.otto.synapse.channel.StopCondition.shutdown;
 import static de.otto.synapse.messagestore.MessageStores.emptyMessageStore;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class DefaultEventSourceTest {
@@ -67,8 +81,9 @@ public class DefaultEventSourceTest {
         // and some MessageLogReceiverEndpoint with an InterceptorChain:
         final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
         when(messageLog.getChannelName()).thenReturn("some-channel");
+        when(messageLog.getMessageDispatcher()).thenReturn(new MessageDispatcher());
         when(messageLog.intercept(any(TextMessage.class))).thenReturn(null);
-        when(messageLog.consumeUntil(any(ChannelPosition.class), any(Predicate.class))).thenReturn(completedFuture(fromHorizon()));
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(fromHorizon()));
 
         // and our famous DefaultEventSource:
         final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog);
@@ -93,9 +108,11 @@ public class DefaultEventSourceTest {
         // and some MessageLogReceiverEndpoint with our InterceptorChain:
         final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
         when(messageLog.getChannelName()).thenReturn("some-channel");
-        when(messageLog.consumeUntil(any(ChannelPosition.class), any(Predicate.class))).thenReturn(completedFuture(fromHorizon()));
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(fromHorizon()));
         when(messageLog.intercept(any(TextMessage.class))).thenReturn(null);
         final MessageDispatcher messageDispatcher = mock(MessageDispatcher.class);
+        when(messageDispatcher.getConcurrency()).thenReturn(1);
+        when(messageDispatcher.getMaxInFlight()).thenReturn(1);
         when(messageLog.getMessageDispatcher()).thenReturn(messageDispatcher);
         // and our famous DefaultEventSource:
         final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog);
@@ -120,8 +137,10 @@ public class DefaultEventSourceTest {
         final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
         when(messageLog.getChannelName()).thenReturn("some-channel");
         when(messageLog.intercept(any(TextMessage.class))).thenReturn(TextMessage.of(Key.of("1"), null));
-        when(messageLog.consumeUntil(any(ChannelPosition.class), any(Predicate.class))).thenReturn(completedFuture(fromHorizon()));
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(fromHorizon()));
         final MessageDispatcher messageDispatcher = mock(MessageDispatcher.class);
+        when(messageDispatcher.getConcurrency()).thenReturn(1);
+        when(messageDispatcher.getMaxInFlight()).thenReturn(1);
         when(messageLog.getMessageDispatcher()).thenReturn(messageDispatcher);
 
         // and our famous DefaultEventSource:
@@ -134,6 +153,42 @@ public class DefaultEventSourceTest {
         verify(messageDispatcher).accept(TextMessage.of(Key.of("1"), null));
     }
 
+    @Test
+    public void shouldKeepOrderOfMessagesFromCompactingMessageStore() throws ExecutionException, InterruptedException {
+        // given
+        // and some compacting message store having multiple messages per key
+        final MessageStore messageStore = mock(MessageStore.class);
+        when(messageStore.isCompacting()).thenReturn(true);
+        when(messageStore.stream()).thenReturn(IntStream.range(0, 1000).mapToObj(i ->
+                MessageStoreEntry.of("some-channel", TextMessage.of(Key.of(String.valueOf(i % 10)), String.valueOf(i)))));
+        when(messageStore.getLatestChannelPosition(anyString())).thenReturn(fromHorizon());
+        // and some MessageLogReceiverEndpoint with a consumer recording the messages per key:
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> received
+                .computeIfAbsent(message.getKey().partitionKey(), k -> new CopyOnWriteArrayList<>())
+                .add(Integer.valueOf(message.getPayload()))));
+        final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
+        when(messageLog.getChannelName()).thenReturn("some-channel");
+        when(messageLog.intercept(any(TextMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(fromHorizon()));
+        when(messageLog.getMessageDispatcher()).thenReturn(messageDispatcher);
+
+        final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog);
+
+        // when
+        eventSource.consume().get();
+
+        // then
+        assertThat(received.size(), is(10));
+        received.forEach((key, values) -> {
+            assertThat(values.size(), is(100));
+            for (int i = 1; i < values.size(); i++) {
+                assertThat(values.get(i), greaterThan(values.get(i - 1)));
+            }
+        });
+    }
+
     @Test
     public void shouldContinueWithChannelPositionFromMessageStore() throws ExecutionException, InterruptedException {
         // given
@@ -201,17 +256,101 @@ public class DefaultEventSourceTest {
         assertThat(eventSource.isStopping(), is(true));
     }
 
+    @Test
+    public void shouldResumeFromCheckpointWithoutReadingMessageStore() throws ExecutionException, InterruptedException {
+        // given
+        final ChannelPosition checkpoint = channelPosition(fromPosition("bar", "4711"));
+        final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+        when(checkpointStore.getChannelPosition("someEventSource")).thenReturn(Optional.of(checkpoint));
+        final MessageStore messageStore = mockMessageStore(channelPosition(fromPosition("bar", "42")));
+        final MessageLogReceiverEndpoint messageLog = mockMessageLogReceiverEndpoint(checkpoint);
+        final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog, checkpointStore, "someEventSource", Duration.ofSeconds(1));
+
+        // when
+        eventSource.consume().get();
+
+        // then
+        verify(messageStore, never()).stream();
+        verify(messageLog).consumeUntil(eq(checkpoint), any());
+    }
+
+    @Test
+    public void shouldReadMessageStoreIfThereIsNoCheckpoint() throws ExecutionException, InterruptedException {
+        // given
+        final ChannelPosition messageStoreChannelPosition = channelPosition(fromPosition("bar", "42"));
+        final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+        when(checkpointStore.getChannelPosition("someEventSource")).thenReturn(Optional.empty());
+        final MessageStore messageStore = mockMessageStore(messageStoreChannelPosition);
+        final MessageLogReceiverEndpoint messageLog = mockMessageLogReceiverEndpoint();
+        final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog, checkpointStore, "someEventSource", Duration.ofSeconds(1));
+
+        // when
+        eventSource.consume().get();
+
+        // then
+        verify(messageStore).stream();
+        verify(messageLog).consumeUntil(eq(messageStoreChannelPosition), any());
+    }
+
+    @Test
+    public void shouldSaveCheckpointAfterConsumingMessageLog() throws ExecutionException, InterruptedException {
+        // given
+        final ChannelPosition expectedChannelPosition = channelPosition(fromPosition("bar", "4711"));
+        final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+        when(checkpointStore.getChannelPosition("someEventSource")).thenReturn(Optional.empty());
+        final MessageStore messageStore = mockMessageStore(channelPosition(fromPosition("bar", "42")));
+        final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
+        when(messageLog.getChannelName()).thenReturn("some-channel");
+        when(messageLog.getMessageDispatcher()).thenReturn(new MessageDispatcher());
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenAnswer(invocation -> {
+            final Predicate<ShardResponse> stopCondition = invocation.getArgument(1);
+            stopCondition.test(shardResponse(fromPosition("bar", "4711"), Duration.ZERO));
+            return completedFuture(expectedChannelPosition);
+        });
+        final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog, checkpointStore, "someEventSource", Duration.ofSeconds(1));
+
+        // when
+        eventSource.consume().get();
+
+        // then
+        verify(checkpointStore).saveChannelPosition("someEventSource", expectedChannelPosition);
+    }
+
+    @Test
+    public void shouldNotSaveCheckpointIfMessageLogFailed() throws ExecutionException, InterruptedException {
+        // given
+        final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+        when(checkpointStore.getChannelPosition("someEventSource")).thenReturn(Optional.empty());
+        final MessageStore messageStore = mockMessageStore(channelPosition(fromPosition("bar", "42")));
+        final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
+        when(messageLog.getChannelName()).thenReturn("some-channel");
+        when(messageLog.getMessageDispatcher()).thenReturn(new MessageDispatcher());
+        final CompletableFuture<ChannelPosition> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("some failure"));
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(failed);
+        final DefaultEventSource eventSource = new DefaultEventSource(messageStore, messageLog, checkpointStore, "someEventSource", Duration.ofSeconds(1));
+
+        // when
+        eventSource.consume().get();
+
+        // then
+        verify(checkpointStore, never()).saveChannelPosition(anyString(), any(ChannelPosition.class));
+        verify(messageStore).close();
+    }
+
     private MessageLogReceiverEndpoint mockMessageLogReceiverEndpoint() {
         final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
         when(messageLog.getChannelName()).thenReturn("some-channel");
-        when(messageLog.consumeUntil(any(ChannelPosition.class), any(Predicate.class))).thenReturn(completedFuture(fromHorizon()));
+        when(messageLog.getMessageDispatcher()).thenReturn(new MessageDispatcher());
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(fromHorizon()));
         return messageLog;
     }
 
     private MessageLogReceiverEndpoint mockMessageLogReceiverEndpoint(final ChannelPosition channelPosition) {
         final MessageLogReceiverEndpoint messageLog = mock(MessageLogReceiverEndpoint.class);
         when(messageLog.getChannelName()).thenReturn("some-channel");
-        when(messageLog.consumeUntil(any(ChannelPosition.class), any(Predicate.class))).thenReturn(completedFuture(channelPosition));
+        when(messageLog.getMessageDispatcher()).thenReturn(new MessageDispatcher());
+        when(messageLog.consumeUntil(any(ChannelPosition.class), any())).thenReturn(completedFuture(channelPosition));
         return messageLog;
     }
 
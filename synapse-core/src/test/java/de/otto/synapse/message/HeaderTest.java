@@ -6,11 +6,15 @@ import org.junit.Test;
 import java.time.Instant;
 import java.util.Optional;
 
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static de.otto.synapse.message.DefaultHeaderAttr.MSG_ARRIVAL_TS;
+import static de.otto.synapse.message.DefaultHeaderAttr.MSG_RECEIVER_TS;
 import static de.otto.synapse.message.Header.of;
 import static java.time.Instant.now;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class HeaderTest {
 
@@ -44,4 +48,74 @@ public class HeaderTest {
         final Header header = of(ImmutableMap.of());
         assertThat(header.getShardPosition(), is(Optional.empty()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAddAttributeWithoutModifyingOriginalHeader() {
+        final Header header = of(ImmutableMap.of("x", "foo", "y", "bar"));
+        final Header derived = header.withAttribute("y", "foobar").withAttribute("z", "42");
+
+        assertThat(header.getAll(), is(ImmutableMap.of("x", "foo", "y", "bar")));
+        assertThat(derived.getAsString("x"), is("foo"));
+        assertThat(derived.getAsString("y"), is("foobar"));
+        assertThat(derived.getAsString("z"), is("42"));
+        assertThat(derived.getAll(), is(ImmutableMap.of("x", "foo", "y", "foobar", "z", "42")));
+    }
+
+    @Test
+    public void shouldKeepShardPositionOfDerivedHeader() {
+        final Header header = of(fromPosition("shard", "42"));
+        assertThat(header.withAttribute("x", "foo").getShardPosition(), is(Optional.of(fromPosition("shard", "42"))));
+    }
+
+    @Test
+    public void shouldBeEqualToFlatHeader() {
+        final Header derived = of(ImmutableMap.of("x", "foo")).withAttribute("y", "bar");
+        final Header flat = of(ImmutableMap.of("x", "foo", "y", "bar"));
+
+        assertThat(derived, is(flat));
+        assertThat(derived.hashCode(), is(flat.hashCode()));
+    }
+
+    @Test
+    public void shouldFlattenDeeplyDerivedHeaders() {
+        Header header = of();
+        for (int i = 0; i < 3 * Header.MAX_DEPTH; i++) {
+            header = header.withAttribute("attr" + i, "" + i);
+        }
+        assertThat(header.getAll().size(), is(3 * Header.MAX_DEPTH));
+        assertThat(header.getAsString("attr0"), is("0"));
+    }
+
+    @Test
+    public void shouldParseInstantOnlyOnce() {
+        final Instant time = now();
+        final Header header = of(ImmutableMap.of("ts", time.toString()));
+        assertThat(header.getAsInstant("ts"), is(sameInstance(header.getAsInstant("ts"))));
+    }
+
+    @Test
+    public void shouldReturnAddedInstantAttrWithoutParsing() {
+        final Instant time = now();
+        final Header header = of().withAttribute(MSG_RECEIVER_TS, time);
+
+        assertThat(header.getAsInstant(MSG_RECEIVER_TS), is(sameInstance(time)));
+        assertThat(header.getAsString(MSG_RECEIVER_TS), is(time.toString()));
+    }
+
+    @Test
+    public void shouldReturnInstantAttrOfOriginalHeader() {
+        final Instant time = now();
+        final Header header = Header.builder().withAttribute(MSG_ARRIVAL_TS, time).build();
+        final Header derived = Header.copyOf(header).withAttribute("x", "foo").build();
+
+        assertThat(derived.getAsInstant(MSG_ARRIVAL_TS), is(sameInstance(time)));
+    }
+
+    @Test
+    public void shouldInternWellKnownKeys() {
+        final String key = new String(MSG_RECEIVER_TS.key());
+        final Header header = Header.builder().withAttribute(key, "foo").build();
+
+        assertThat(header.getAll().keySet().iterator().next(), is(sameInstance(MSG_RECEIVER_TS.key())));
+    }
+}
@@ -1,13 +1,22 @@
 package de.otto.synapse.message;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableMap;
 import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.translator.PayloadProjection;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 
 import static de.otto.synapse.message.Message.message;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.*;
 
 public class TextMessageTest {
@@ -44,4 +53,120 @@ public class TextMessageTest {
         assertThat(first.hashCode(), is(second.hashCode()));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldCreateSubstringPayloadLazily() throws Exception {
+        final String text = "{\"payload\":{\"foo\":\"bar\"}}";
+        final TextMessage message = TextMessage.of(Key.of("foo"), Header.of(), text, 11, 24);
+
+        assertThat(message.getPayloadAs(JsonNode.class).get("foo").textValue(), is("bar"));
+        assertThat(message.getPayload(), is("{\"foo\":\"bar\"}"));
+        assertThat(message.getPayloadAs(String.class), is("{\"foo\":\"bar\"}"));
+    }
+
+    @Test
+    public void shouldBeEqualToMessageWithSubstringPayload() {
+        final TextMessage first = TextMessage.of(Key.of("foo"), Header.of(), "[{\"foo\":\"bar\"}]", 1, 14);
+        final TextMessage second = TextMessage.of(Key.of("foo"), Header.of(), "{\"foo\":\"bar\"}");
+
+        assertThat(first, is(second));
+        assertThat(second, is(first));
+        assertThat(first.hashCode(), is(second.hashCode()));
+    }
+
+    @Test
+    public void shouldReplaceHeaderOfSubstringMessage() throws Exception {
+        final TextMessage message = TextMessage.of(Key.of("foo"), Header.of(), "[{\"foo\":42}]", 1, 11);
+
+        final TextMessage copy = message.withHeader(Header.of(ImmutableMap.of("attr", "value")));
+
+        assertThat(copy.getKey(), is(Key.of("foo")));
+        assertThat(copy.getHeader().getAsString("attr"), is("value"));
+        assertThat(copy.getPayloadAs(JsonNode.class).get("foo").intValue(), is(42));
+        assertThat(copy.getPayload(), is("{\"foo\":42}"));
+    }
+
+    @Test
+    public void shouldReturnNullPayloadAsNull() throws Exception {
+        final TextMessage message = TextMessage.of(Key.of("foo"), Header.of(), null);
+
+        assertThat(message.getPayloadAs(JsonNode.class), is(nullValue()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRejectInvalidSubstringRange() {
+        TextMessage.of(Key.of("foo"), Header.of(), "{}", 1, 3);
+    }
+
+    @Test
+    public void shouldCreateBinaryPayloadLazily() throws Exception {
+        final ByteBuffer bytes = ByteBuffer.wrap("{\"foo\":\"bär\"}".getBytes(UTF_8));
+        final TextMessage message = TextMessage.ofUtf8(Key.of("foo"), Header.of(), bytes);
+
+        assertThat(message.getPayloadAs(JsonNode.class).get("foo").textValue(), is("bär"));
+        assertThat(message.getPayload(), is("{\"foo\":\"bär\"}"));
+        assertThat(message.getPayloadAs(String.class), is("{\"foo\":\"bär\"}"));
+    }
+
+    @Test
+    public void shouldReturnBinaryPayloadWithoutCopying() {
+        final ByteBuffer bytes = ByteBuffer.wrap("[{\"foo\":42}]".getBytes(UTF_8));
+        bytes.position(1).limit(11);
+        final TextMessage message = TextMessage.ofUtf8(Key.of("foo"), Header.of(), bytes);
+
+        final ByteBuffer payload = message.getPayloadAsByteBuffer();
+
+        assertThat(payload.isReadOnly(), is(true));
+        assertThat(UTF_8.decode(payload).toString(), is("{\"foo\":42}"));
+        assertThat(message.getPayloadAsByteBuffer().remaining(), is(10));
+    }
+
+    @Test
+    public void shouldBeEqualToMessageWithBinaryPayload() {
+        final TextMessage first = TextMessage.ofUtf8(Key.of("foo"), Header.of(), ByteBuffer.wrap("{\"foo\":\"bar\"}".getBytes(UTF_8)));
+        final TextMessage second = TextMessage.of(Key.of("foo"), Header.of(), "{\"foo\":\"bar\"}");
+
+        assertThat(first, is(second));
+        assertThat(second, is(first));
+        assertThat(first.hashCode(), is(second.hashCode()));
+        assertThat(second.getPayloadAsByteBuffer(), is(first.getPayloadAsByteBuffer()));
+    }
+
+    @Test
+    public void shouldReplaceHeaderOfBinaryMessage() throws Exception {
+        final TextMessage message = TextMessage.ofUtf8(Key.of("foo"), Header.of(), ByteBuffer.wrap("{\"foo\":42}".getBytes(UTF_8)));
+
+        final TextMessage copy = message.withHeader(Header.of(ImmutableMap.of("attr", "value")));
+
+        assertThat(copy.getHeader().getAsString("attr"), is("value"));
+        assertThat(copy.getPayloadAs(JsonNode.class).get("foo").intValue(), is(42));
+    }
+
+    @Test
+    public void shouldSerializeBinaryMessage() throws Exception {
+        final TextMessage message = TextMessage.ofUtf8(Key.of("foo"), Header.of(), ByteBuffer.wrap("{\"foo\":42}".getBytes(UTF_8)));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(in.readObject(), is(message));
+        }
+    }
+
+    @Test
+    public void shouldProjectPayloadOfTextMessages() throws Exception {
+        final String json = "{\"foo\":42,\"bar\":{\"baz\":[1,2,3]},\"x\":\"y\"}";
+        final PayloadProjection projection = PayloadProjection.of("/foo", "/x");
+
+        assertThat(TextMessage.of("1", json).getPayloadAs(JsonNode.class, projection).toString(), is("{\"foo\":42,\"x\":\"y\"}"));
+        assertThat(TextMessage.ofUtf8(Key.of("1"), Header.of(), ByteBuffer.wrap(json.getBytes(UTF_8))).getPayloadAs(JsonNode.class, projection).toString(), is("{\"foo\":42,\"x\":\"y\"}"));
+        final String text = "[" + json + "]";
+        assertThat(TextMessage.of(Key.of("1"), Header.of(), text, 1, text.length() - 1).getPayloadAs(JsonNode.class, projection).toString(), is("{\"foo\":42,\"x\":\"y\"}"));
+    }
+
+    @Test
+    public void shouldProjectNullPayload() throws Exception {
+        assertThat(TextMessage.of("1", null).getPayloadAs(JsonNode.class, PayloadProjection.of("/foo")), is(nullValue()));
+    }
+}
@@ -1,5 +1,7 @@
 package de.otto.synapse.translator;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import de.otto.synapse.channel.ShardPosition;
 import de.otto.synapse.message.Header;
@@ -9,8 +11,11 @@ import de.otto.synapse.message.TextMessage;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import static com.google.common.collect.ImmutableBiMap.of;
 import static de.otto.synapse.message.Key.NO_KEY;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
 
@@ -150,4 +155,169 @@ public class AbstractTextDecoderTest {
         Assert.assertThat(transformed.getKey(), is(message.getKey()));
         Assert.assertThat(transformed.getPayload(), is(message.getPayload()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDecodeV3FormatIntoMessage() {
+        final TextMessage someMessage = TextMessage.of(Key.of("p1", "p2"), Header.builder().withAttributes(of("attr", "value")).build(), "{\"some\":\"payload\"}");
+        final String body = new TextEncoder(MessageFormat.V3).apply(someMessage);
+        final Header header = Header.of(ShardPosition.fromPosition("shard", "42"), ImmutableMap.of("foo", "bar"));
+
+        final TextMessage message = decoder.decode(NO_KEY, header, body);
+
+        assertThat(message.getKey()).isEqualTo(Key.of("p1", "p2"));
+        assertThat(message.getHeader()).isEqualTo(Header.copyOf(header).withAttribute("attr", "value").build());
+        assertThat(message.getPayload()).isEqualTo("{\"some\":\"payload\"}");
+    }
+
+    @Test
+    public void shouldDecodeBinaryV3FormatIntoMessage() {
+        final TextMessage someMessage = TextMessage.of(Key.of("p1", "p2"), Header.builder().withAttributes(of("attr", "value")).build(), "{\"some\":\"payload\"}");
+        final ByteBuffer body = ByteBuffer.wrap(BinaryEnvelope.encode(someMessage));
+
+        final TextMessage message = decoder.decode(NO_KEY, Header.of(), body);
+
+        assertThat(message).isEqualTo(someMessage);
+    }
+
+    @Test
+    public void shouldDecodeBytesOfV1FormatIntoMessage() {
+        final TextMessage message = decoder.decode(NO_KEY, Header.of(), ByteBuffer.wrap("{\"foo\":\"bär\"}".getBytes(UTF_8)));
+
+        assertThat(message.getPayload()).isEqualTo("{\"foo\":\"bär\"}");
+    }
+
+    @Test
+    public void shouldNotDecodePayloadOfBytesInV1Format() {
+        final ByteBuffer body = ByteBuffer.wrap("{ \"foo\":\"bar\"}".getBytes(UTF_8));
+
+        final TextMessage message = decoder.decode(NO_KEY, Header.of(), body);
+
+        assertThat(message.getPayloadAsByteBuffer()).isEqualTo(body);
+        assertThat(message.getPayloadAsByteBuffer().isReadOnly()).isTrue();
+    }
+
+    @Test
+    public void shouldNotDecodePayloadOfBinaryV3Format() {
+        final TextMessage someMessage = TextMessage.of(Key.of("p1", "p2"), Header.of(), "{\"some\":\"payload\"}");
+        final ByteBuffer body = ByteBuffer.wrap(BinaryEnvelope.encode(someMessage));
+
+        final TextMessage message = decoder.decode(NO_KEY, Header.of(), body);
+
+        assertThat(message.getPayloadAsByteBuffer().isReadOnly()).isTrue();
+        assertThat(BinaryEnvelope.encode(message)).isEqualTo(body.array());
+    }
+
+    @Test
+    public void shouldDecodeBytesOfV2FormatIntoMessage() {
+        final ByteBuffer body = ByteBuffer.wrap("{ \"_synapse_msg_format\" : \"v2\", \"_synapse_msg_payload\":{\"foo\":\"bar\"}}".getBytes(UTF_8));
+
+        final TextMessage message = decoder.decode(NO_KEY, Header.of(), body);
+
+        assertThat(message.getPayload()).isEqualTo("{\"foo\":\"bar\"}");
+    }
+
+    @Test
+    public void shouldFallBackToV1IfV3FormatIsMalformed() {
+        final String body = BinaryEnvelope.TEXT_MARKER + "broken";
+
+        final TextMessage message = decoder.decode(NO_KEY, Header.of(), body);
+
+        assertThat(message.getPayload()).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldDecompressCompressedV2Format() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V2, CompressionCodecs.GZIP, 0);
+        final TextMessage someMessage = TextMessage.of(Key.of("foo", "bar"), Header.builder().withAttributes(of("attr", "value")).build(), "{\"some\":\"" + Strings.repeat("payload", 100) + "\"}");
+        final String encoded = encoder.apply(someMessage);
+
+        final Message<String> decoded = decoder.apply(encoded);
+
+        assertThat(TextCompression.isCompressed(encoded)).isTrue();
+        assertThat(decoded).isEqualTo(someMessage);
+    }
+
+    @Test
+    public void shouldDecompressCompressedV1Format() {
+        final String payload = "{\"some\":\"payload\",\"other\":\"payload\",\"more\":\"payload\"}";
+        final String body = TextCompression.compress(payload, CompressionCodecs.DEFLATE);
+
+        final Message<String> message = decoder.apply(body);
+
+        assertThat(message.getKey()).isEqualTo(NO_KEY);
+        assertThat(message.getPayload()).isEqualTo(payload);
+    }
+
+    @Test
+    public void shouldKeepBodyIfDecompressionFails() {
+        final String body = "{\"_synapse_msg_compression\":\"unknown\",\"_synapse_msg_data\":\"\"}";
+
+        final Message<String> message = decoder.apply(body);
+
+        assertThat(message.getPayload()).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldDecodeV2PayloadWithoutNormalizingIt() throws Exception {
+        final String body = "{\"_synapse_msg_format\":\"v2\","
+                + "\"_synapse_msg_key\":{\"partitionKey\":\"p1\",\"compactionKey\":\"p2\"},"
+                + "\"_synapse_msg_headers\":{\"attr\":\"value\",\"number\":42,\"empty\":null},"
+                + "\"_synapse_msg_payload\":[ {\"some\" : \"}payload\"} ],"
+                + "\"_unknown\":{\"ignored\":[1,2,3]}}";
+
+        final TextMessage message = decoder.apply(body);
+
+        assertThat(message.getKey()).isEqualTo(Key.of("p1", "p2"));
+        assertThat(message.getHeader().getAll()).isEqualTo(ImmutableMap.of("attr", "value", "number", "42"));
+        assertThat(message.getPayloadAs(JsonNode.class).get(0).get("some").textValue()).isEqualTo("}payload");
+        assertThat(message.getPayload()).isEqualTo("[ {\"some\" : \"}payload\"} ]");
+    }
+
+    @Test
+    public void shouldDecodeV2ScalarPayloads() {
+        final String body = "{\"_synapse_msg_format\":\"v2\",\"_synapse_msg_payload\":42}";
+
+        final TextMessage message = decoder.apply(body);
+
+        assertThat(message.getKey()).isEqualTo(NO_KEY);
+        assertThat(message.getPayload()).isEqualTo("42");
+    }
+
+    @Test
+    public void shouldFallbackToV1IfV2HeadersAreNested() {
+        final String body = "{\"_synapse_msg_format\":\"v2\","
+                + "\"_synapse_msg_headers\":{\"attr\":{\"nested\":\"value\"}},"
+                + "\"_synapse_msg_payload\":{}}";
+
+        final TextMessage message = decoder.apply(body);
+
+        assertThat(message.getHeader().getAll()).isEmpty();
+        assertThat(message.getPayload()).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldDecodeKeyWithoutDecodingMessage() {
+        final Key prototypeKey = Key.of("prototype");
+        final TextMessage someMessage = TextMessage.of(Key.of("foo", "bar"), Header.of(), "{\"some\":\"payload\"}");
+
+        assertThat(decoder.decodeKey(prototypeKey, null)).isEqualTo(prototypeKey);
+        assertThat(decoder.decodeKey(prototypeKey, utf8("some payload"))).isEqualTo(prototypeKey);
+        assertThat(decoder.decodeKey(prototypeKey, utf8("{\"some\":\"payload\"}"))).isEqualTo(prototypeKey);
+        assertThat(decoder.decodeKey(prototypeKey, utf8(new TextEncoder(MessageFormat.V2).apply(someMessage)))).isEqualTo(Key.of("foo", "bar"));
+        assertThat(decoder.decodeKey(prototypeKey, utf8("{\"_synapse_msg_format\":\"v2\",\"_synapse_msg_payload\":{}}"))).isEqualTo(prototypeKey);
+        assertThat(decoder.decodeKey(prototypeKey, ByteBuffer.wrap(BinaryEnvelope.encode(someMessage)))).isEqualTo(Key.of("foo", "bar"));
+    }
+
+    @Test
+    public void shouldNotDecodeKeyOfCompressedOrMalformedMessages() {
+        final Key prototypeKey = Key.of("prototype");
+
+        assertThat(decoder.decodeKey(prototypeKey, utf8(TextCompression.compress("{}", CompressionCodecs.GZIP)))).isNull();
+        assertThat(decoder.decodeKey(prototypeKey, utf8("{\"_synapse_msg_format\":\"v2\",\"_synapse_msg_key\":42}"))).isNull();
+        assertThat(decoder.decodeKey(prototypeKey, utf8(BinaryEnvelope.encodeText(TextMessage.of("foo", "{}"))))).isNull();
+    }
+
+    private static ByteBuffer utf8(final String text) {
+        return ByteBuffer.wrap(text.getBytes(UTF_8));
+    }
+}
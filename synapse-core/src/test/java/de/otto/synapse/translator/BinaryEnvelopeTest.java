@@ -0,0 +1,91 @@
+package de.otto.synapse.translator;
+
+import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.channel.ShardPosition;
+import de.otto.synapse.message.Header;
+import de.otto.synapse.message.Key;
+import de.otto.synapse.message.TextMessage;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static de.otto.synapse.message.Key.NO_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BinaryEnvelopeTest {
+
+    private static final TextMessage SOME_MESSAGE = TextMessage.of(
+            Key.of("föö", "bär"),
+            Header.of(ImmutableMap.of("attr", "välue", "other", "")),
+            "{\"some\":\n\"payload € 😀\"}");
+
+    @Test
+    public void shouldEncodeAndDecodeBinaryEnvelope() {
+        final byte[] encoded = BinaryEnvelope.encode(SOME_MESSAGE);
+
+        assertThat(encoded[0]).isEqualTo(BinaryEnvelope.MAGIC_BYTE);
+        assertThat(encoded[1]).isEqualTo(BinaryEnvelope.VERSION_BYTE);
+        assertThat(BinaryEnvelope.isBinaryEnvelope(ByteBuffer.wrap(encoded))).isTrue();
+        assertThat(BinaryEnvelope.decode(NO_KEY, Header.of(), ByteBuffer.wrap(encoded))).isEqualTo(SOME_MESSAGE);
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeTextEnvelope() {
+        final String encoded = BinaryEnvelope.encodeText(SOME_MESSAGE);
+
+        assertThat(encoded.charAt(0)).isEqualTo(BinaryEnvelope.TEXT_MARKER);
+        assertThat(BinaryEnvelope.isTextEnvelope(encoded)).isTrue();
+        assertThat(BinaryEnvelope.decodeText(NO_KEY, Header.of(), encoded)).isEqualTo(SOME_MESSAGE);
+    }
+
+    @Test
+    public void shouldEncodeNullPayload() {
+        final TextMessage message = TextMessage.of("some key", null);
+
+        assertThat(BinaryEnvelope.decode(NO_KEY, Header.of(), ByteBuffer.wrap(BinaryEnvelope.encode(message)))).isEqualTo(message);
+        assertThat(BinaryEnvelope.decodeText(NO_KEY, Header.of(), BinaryEnvelope.encodeText(message))).isEqualTo(message);
+    }
+
+    @Test
+    public void shouldMergePrototypeHeader() {
+        final Header prototypeHeader = Header.of(ShardPosition.fromPosition("shard", "42"), ImmutableMap.of("foo", "bar"));
+
+        final TextMessage decoded = BinaryEnvelope.decode(NO_KEY, prototypeHeader, ByteBuffer.wrap(BinaryEnvelope.encode(SOME_MESSAGE)));
+
+        assertThat(decoded.getHeader().getShardPosition()).contains(ShardPosition.fromPosition("shard", "42"));
+        assertThat(decoded.getHeader().getAsString("foo")).isEqualTo("bar");
+        assertThat(decoded.getHeader().getAsString("attr")).isEqualTo("välue");
+    }
+
+    @Test
+    public void shouldDecodeFromPositionOfBuffer() {
+        final byte[] encoded = BinaryEnvelope.encode(SOME_MESSAGE);
+        final ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 3);
+        buffer.put(new byte[]{1, 2, 3}).put(encoded);
+        buffer.position(3);
+
+        assertThat(BinaryEnvelope.decode(NO_KEY, Header.of(), buffer)).isEqualTo(SOME_MESSAGE);
+        assertThat(buffer.position()).isEqualTo(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTruncatedBinaryEnvelope() {
+        final byte[] encoded = BinaryEnvelope.encode(SOME_MESSAGE);
+        BinaryEnvelope.decode(NO_KEY, Header.of(), ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length - 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTruncatedTextEnvelope() {
+        final String encoded = BinaryEnvelope.encodeText(SOME_MESSAGE);
+        BinaryEnvelope.decodeText(NO_KEY, Header.of(), encoded.substring(0, encoded.length() - 3));
+    }
+
+    @Test
+    public void shouldDecodeKeyOnly() {
+        final ByteBuffer data = ByteBuffer.wrap(BinaryEnvelope.encode(TextMessage.of(Key.of("foo", "bar"), Header.of(), "{}")));
+
+        assertThat(BinaryEnvelope.decodeKey(Key.of("prototype"), data)).isEqualTo(Key.of("foo", "bar"));
+        assertThat(data.position()).isEqualTo(0);
+    }
+}
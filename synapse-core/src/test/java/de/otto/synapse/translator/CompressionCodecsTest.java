@@ -0,0 +1,86 @@
+package de.otto.synapse.translator;
+
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class CompressionCodecsTest {
+
+    private static final byte[] SOME_DATA = "{\"value\":\"some value\",\"other\":\"some value\",\"third\":\"some value\"}".getBytes(UTF_8);
+
+    @Test
+    public void shouldCompressAndDecompressUsingGzip() {
+        // when
+        final byte[] compressed = CompressionCodecs.GZIP.compress(SOME_DATA);
+
+        // then
+        assertThat(CompressionCodecs.GZIP.decompress(compressed), is(SOME_DATA));
+    }
+
+    @Test
+    public void shouldCompressAndDecompressUsingDeflate() {
+        // when
+        final byte[] compressed = CompressionCodecs.DEFLATE.compress(SOME_DATA);
+
+        // then
+        assertThat(compressed.length, is(lessThan(SOME_DATA.length)));
+        assertThat(CompressionCodecs.DEFLATE.decompress(compressed), is(SOME_DATA));
+    }
+
+    @Test
+    public void shouldFindBuiltInCodecsByName() {
+        assertThat(CompressionCodecs.codecFor("gzip"), is(CompressionCodecs.GZIP));
+        assertThat(CompressionCodecs.codecFor("deflate"), is(CompressionCodecs.DEFLATE));
+        assertThat(CompressionCodecs.codecNames(), hasItems("gzip", "deflate"));
+    }
+
+    @Test
+    public void shouldRegisterAdditionalCodec() {
+        // given
+        final CompressionCodec identity = new CompressionCodec() {
+            @Override
+            public String name() {
+                return "test-identity";
+            }
+
+            @Override
+            public byte[] compress(final byte[] data) {
+                return data;
+            }
+
+            @Override
+            public byte[] decompress(final byte[] data) {
+                return data;
+            }
+        };
+
+        // when
+        CompressionCodecs.register(identity);
+
+        // then
+        assertThat(CompressionCodecs.codecFor("test-identity"), is(identity));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToFindUnknownCodec() {
+        CompressionCodecs.codecFor("unknown");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToDecompressDataExceedingMaxDecompressedSize() {
+        // given
+        final byte[] compressed = CompressionCodecs.DEFLATE.compress(new byte[CompressionCodecs.MAX_DECOMPRESSED_SIZE + 1]);
+
+        // when
+        CompressionCodecs.DEFLATE.decompress(compressed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToDecompressInvalidData() {
+        CompressionCodecs.GZIP.decompress(SOME_DATA);
+    }
+}
@@ -1,5 +1,6 @@
 package de.otto.synapse.translator;
 
+import de.otto.synapse.message.TextMessage;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -11,4 +12,28 @@ public class MessageFormatTest {
     public void shouldReturnDefaultMessageFormat() {
         assertThat(MessageFormat.defaultMessageFormat()).isEqualTo(MessageFormat.V1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDetectV1Format() {
+        assertThat(MessageFormat.versionOf(null)).isEqualTo(MessageFormat.V1);
+        assertThat(MessageFormat.versionOf("")).isEqualTo(MessageFormat.V1);
+        assertThat(MessageFormat.versionOf("{\"foo\":\"bar\"}")).isEqualTo(MessageFormat.V1);
+        assertThat(MessageFormat.versionOf("some text")).isEqualTo(MessageFormat.V1);
+    }
+
+    @Test
+    public void shouldDetectV2Format() {
+        assertThat(MessageFormat.versionOf("{\"_synapse_msg_format\":\"v2\",\"_synapse_msg_payload\":{}}")).isEqualTo(MessageFormat.V2);
+    }
+
+    @Test
+    public void shouldDetectMultiLineV2Format() {
+        assertThat(MessageFormat.versionOf("{\n  \"_synapse_msg_format\" : \"v2\",\n  \"_synapse_msg_payload\" : {\n  }\n}")).isEqualTo(MessageFormat.V2);
+    }
+
+    @Test
+    public void shouldDetectV3Format() {
+        final String encoded = new TextEncoder(MessageFormat.V3).apply(TextMessage.of("foo", "{}"));
+        assertThat(MessageFormat.versionOf(encoded)).isEqualTo(MessageFormat.V3);
+    }
+}
@@ -1,10 +1,12 @@
 package de.otto.synapse.translator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.junit.Test;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.*;
 
 public class ObjectMappersTest {
@@ -16,4 +18,20 @@ public class ObjectMappersTest {
         assertThat(ObjectMappers.currentObjectMapper(), is(objectMapper));
         assertThat(ObjectMappers.defaultObjectMapper(), is(not(objectMapper)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldCacheObjectReadersOfCurrentObjectMapper() {
+        final ObjectMapper previous = ObjectMappers.currentObjectMapper();
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            ObjectMappers.overrideObjectMapper(objectMapper);
+            ObjectReader reader = ObjectMappers.currentObjectReaderFor(String.class);
+            assertThat(ObjectMappers.currentObjectReaderFor(String.class), is(sameInstance(reader)));
+
+            ObjectMappers.overrideObjectMapper(new ObjectMapper());
+            assertThat(ObjectMappers.currentObjectReaderFor(String.class), is(not(sameInstance(reader))));
+        } finally {
+            ObjectMappers.overrideObjectMapper(previous);
+        }
+    }
+}
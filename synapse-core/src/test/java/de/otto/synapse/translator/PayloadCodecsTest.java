@@ -0,0 +1,122 @@
+package de.otto.synapse.translator;
+
+import com.google.common.collect.ImmutableMap;
+import de.otto.synapse.message.Header;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static de.otto.synapse.message.DefaultHeaderAttr.MSG_PAYLOAD_CODEC;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PayloadCodecsTest {
+
+    private static final Map<String, Object> SOME_PAYLOAD = ImmutableMap.of("value", "some value", "count", 42);
+
+    @Test
+    public void shouldEncodeAndDecodeJson() throws IOException {
+        // when
+        final byte[] encoded = PayloadCodecs.JSON.encode(SOME_PAYLOAD);
+
+        // then
+        assertThat(new String(encoded, UTF_8), is("{\"value\":\"some value\",\"count\":42}"));
+        assertThat(PayloadCodecs.JSON.isBinary(), is(false));
+        assertThat(PayloadCodecs.JSON.decode(ByteBuffer.wrap(encoded), Map.class), is(SOME_PAYLOAD));
+    }
+
+    @Test
+    public void shouldRegisterCborCodecIfCborIsOnTheClasspath() throws IOException {
+        // given
+        final PayloadCodec cbor = PayloadCodecs.codecFor("cbor");
+
+        // when
+        final byte[] encoded = cbor.encode(SOME_PAYLOAD);
+
+        // then
+        assertThat(cbor.isBinary(), is(true));
+        assertThat(encoded.length, is(lessThan(PayloadCodecs.JSON.encode(SOME_PAYLOAD).length)));
+        assertThat(cbor.decode(new ByteArrayInputStream(encoded), Map.class), is(SOME_PAYLOAD));
+    }
+
+    @Test
+    public void shouldFindBuiltInCodecsByName() {
+        assertThat(PayloadCodecs.codecFor("json"), is(PayloadCodecs.JSON));
+        assertThat(PayloadCodecs.codecNames(), hasItems("json", "cbor"));
+    }
+
+    @Test
+    public void shouldFailForUnknownCodec() {
+        try {
+            PayloadCodecs.codecFor("unknown");
+            fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("json"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCodecName() {
+        PayloadCodecs.register(new TestCodec("in valid"));
+    }
+
+    @Test
+    public void shouldReturnCodecOfHeader() {
+        assertThat(PayloadCodecs.codecOf(Header.of()), is(PayloadCodecs.JSON));
+        assertThat(PayloadCodecs.codecOf(Header.builder().withAttribute(MSG_PAYLOAD_CODEC, "cbor").build()), is(PayloadCodecs.codecFor("cbor")));
+    }
+
+    @Test
+    public void shouldPreferCodecRegisteredForPayloadType() {
+        // given
+        final PayloadCodec codec = new TestCodec("test-payload-type");
+
+        // when
+        PayloadCodecs.register(SomePayloadType.class, codec);
+
+        // then
+        assertThat(PayloadCodecs.codecForPayloadType(SomePayloadType.class, PayloadCodecs.JSON), is(codec));
+        assertThat(PayloadCodecs.codecForPayloadType(String.class, PayloadCodecs.JSON), is(PayloadCodecs.JSON));
+        assertThat(PayloadCodecs.codecFor("test-payload-type"), is(codec));
+    }
+
+    private static class SomePayloadType {
+    }
+
+    private static class TestCodec implements PayloadCodec {
+        private final String name;
+
+        private TestCodec(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean isBinary() {
+            return true;
+        }
+
+        @Override
+        public byte[] encode(final Object payload) {
+            return new byte[0];
+        }
+
+        @Override
+        public <T> T decode(final InputStream in, final Class<T> payloadType) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.otto.synapse.translator;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static de.otto.synapse.translator.ObjectMappers.currentObjectMapper;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PayloadProjectionTest {
+
+    private static final String SOME_PAYLOAD = "{" +
+            "\"id\":\"42\"," +
+            "\"variations\":[{\"id\":\"v1\",\"sizes\":[1,2,3]},{\"id\":\"v2\",\"sizes\":[4,5]}]," +
+            "\"price\":{\"amount\":1999,\"currency\":\"EUR\"}," +
+            "\"name\":\"some name\"" +
+            "}";
+
+    @Test
+    public void shouldProjectSelectedProperties() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.of("/id", "/price/amount");
+
+        // when
+        final JsonNode projected = projection.project(parserFor(SOME_PAYLOAD));
+
+        // then
+        assertThat(projected.toString(), is("{\"id\":\"42\",\"price\":{\"amount\":1999}}"));
+    }
+
+    @Test
+    public void shouldProjectSelectedArrayElements() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.of("/variations/1/id");
+
+        // when
+        final JsonNode projected = projection.project(parserFor(SOME_PAYLOAD));
+
+        // then
+        assertThat(projected.toString(), is("{\"variations\":[null,{\"id\":\"v2\"}]}"));
+    }
+
+    @Test
+    public void shouldKeepSubtreeOfSelectedParent() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.of("/price/amount", "/price");
+
+        // when
+        final JsonNode projected = projection.project(parserFor(SOME_PAYLOAD));
+
+        // then
+        assertThat(projected.toString(), is("{\"price\":{\"amount\":1999,\"currency\":\"EUR\"}}"));
+    }
+
+    @Test
+    public void shouldStopParsingAfterAllSelectedPartsAreFound() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.of("/id");
+        final JsonParser parser = parserFor(SOME_PAYLOAD);
+
+        // when
+        final JsonNode projected = projection.project(parser);
+
+        // then
+        assertThat(projected.toString(), is("{\"id\":\"42\"}"));
+        assertThat(parser.nextToken(), is(JsonToken.FIELD_NAME));
+        assertThat(parser.getCurrentName(), is("variations"));
+    }
+
+    @Test
+    public void shouldIgnoreMissingParts() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.of("/id", "/unknown/property", "/name/first");
+
+        // when
+        final JsonNode projected = projection.project(parserFor(SOME_PAYLOAD));
+
+        // then
+        assertThat(projected.toString(), is("{\"id\":\"42\"}"));
+    }
+
+    @Test
+    public void shouldDecodeProjectedPayload() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.of("/id", "/price/amount");
+
+        // when
+        final Product product = projection.decode(parserFor(SOME_PAYLOAD), Product.class);
+
+        // then
+        assertThat(product.id, is("42"));
+        assertThat(product.price.amount, is(1999));
+        assertThat(product.price.currency, is(nullValue()));
+        assertThat(product.name, is(nullValue()));
+    }
+
+    @Test
+    public void shouldProjectPropertiesOfProjectionType() throws IOException {
+        // given
+        final PayloadProjection projection = PayloadProjection.ofPropertiesOf(ProductName.class);
+
+        // when
+        final ProductName productName = projection.decode(parserFor(SOME_PAYLOAD), ProductName.class);
+
+        // then
+        assertThat(projection.getJsonPointers(), containsInAnyOrder("/id", "/name"));
+        assertThat(productName.id, is("42"));
+        assertThat(productName.productName, is("some name"));
+    }
+
+    @Test
+    public void shouldDecodeNullPayload() throws IOException {
+        assertThat(PayloadProjection.of("/id").decode(parserFor("null"), Product.class), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepJsonPointers() {
+        assertThat(PayloadProjection.of("/id", "/price").getJsonPointers(), contains("/id", "/price"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidJsonPointer() {
+        PayloadProjection.of("id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMissingJsonPointers() {
+        PayloadProjection.of();
+    }
+
+    private static JsonParser parserFor(final String json) throws IOException {
+        return currentObjectMapper().getFactory().createParser(json);
+    }
+
+    public static class Product {
+        public String id;
+        public String name;
+        public Price price;
+    }
+
+    public static class Price {
+        public Integer amount;
+        public String currency;
+    }
+
+    public static class ProductName {
+        public String id;
+        @JsonProperty("name")
+        public String productName;
+    }
+}
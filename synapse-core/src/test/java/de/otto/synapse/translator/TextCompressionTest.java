@@ -0,0 +1,61 @@
+package de.otto.synapse.translator;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class TextCompressionTest {
+
+    private static final String SOME_TEXT = "{\"value\":\"" + Strings.repeat("some value ", 200) + "\"}";
+
+    @Test
+    public void shouldCompressAndDecompressText() {
+        // when
+        final String compressed = TextCompression.compress(SOME_TEXT, CompressionCodecs.GZIP);
+
+        // then
+        assertThat(compressed, startsWith("{\"_synapse_msg_compression\":\"gzip\",\"_synapse_msg_data\":\""));
+        assertThat(compressed.length(), is(lessThan(SOME_TEXT.length())));
+        assertThat(TextCompression.isCompressed(compressed), is(true));
+        assertThat(TextCompression.decompress(compressed), is(SOME_TEXT));
+    }
+
+    @Test
+    public void shouldNotDetectUncompressedTextAsCompressed() {
+        assertThat(TextCompression.isCompressed(SOME_TEXT), is(false));
+        assertThat(TextCompression.isCompressed(null), is(false));
+        assertThat(TextCompression.decompress(SOME_TEXT), is(SOME_TEXT));
+    }
+
+    @Test
+    public void shouldNotCompressSmallTexts() {
+        assertThat(TextCompression.compressIfSmaller("{}", CompressionCodecs.GZIP, 0), is("{}"));
+        assertThat(TextCompression.compressIfSmaller(SOME_TEXT, CompressionCodecs.GZIP, SOME_TEXT.length() + 1), is(SOME_TEXT));
+    }
+
+    @Test
+    public void shouldNotCompressTwice() {
+        // given
+        final String compressed = TextCompression.compress(SOME_TEXT, CompressionCodecs.DEFLATE);
+
+        // when
+        final String result = TextCompression.compressIfSmaller(compressed, CompressionCodecs.GZIP, 0);
+
+        // then
+        assertThat(result, is(compressed));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToDecompressUnknownCodec() {
+        TextCompression.decompress("{\"_synapse_msg_compression\":\"unknown\",\"_synapse_msg_data\":\"\"}");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToDecompressMalformedData() {
+        TextCompression.decompress("{\"_synapse_msg_compression\":\"gzip\",\"_synapse_msg_data\":\"not base64!\"}");
+    }
+}
@@ -1,5 +1,6 @@
 package de.otto.synapse.translator;
 
+import com.google.common.base.Strings;
 import de.otto.synapse.message.Header;
 import de.otto.synapse.message.Key;
 import de.otto.synapse.message.Message;
@@ -37,4 +38,61 @@ public class TextEncoderTest {
         assertThat(encoded).isEqualTo("{\"_synapse_msg_format\":\"v2\",\"_synapse_msg_key\":{\"partitionKey\":\"foo\",\"compactionKey\":\"bar\"},\"_synapse_msg_headers\":{\"attr\":\"value\"},\"_synapse_msg_payload\":{}}");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldEmbedJsonPayloadsInV2FormatAsIs() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V2);
+        final TextMessage someMessage = TextMessage.of(Key.of("foo"), Header.of(), "[ {\"a\" : 1.50} ]");
+        final String encoded = encoder.apply(someMessage);
+        assertThat(encoded).isEqualTo("{\"_synapse_msg_format\":\"v2\",\"_synapse_msg_key\":{\"partitionKey\":\"foo\",\"compactionKey\":\"foo\"},\"_synapse_msg_headers\":{},\"_synapse_msg_payload\":[ {\"a\" : 1.50} ]}");
+    }
+
+    @Test
+    public void shouldEmbedInvalidJsonPayloadsInV2FormatAsString() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V2);
+        assertThat(encoder.apply(TextMessage.of("foo", "some \"text\""))).endsWith("\"_synapse_msg_payload\":\"some \\\"text\\\"\"}");
+        assertThat(encoder.apply(TextMessage.of("foo", "{\"broken\":"))).endsWith("\"_synapse_msg_payload\":\"{\\\"broken\\\":\"}");
+        assertThat(encoder.apply(TextMessage.of("foo", "{} {}"))).endsWith("\"_synapse_msg_payload\":\"{} {}\"}");
+        assertThat(encoder.apply(TextMessage.of("foo", "42"))).endsWith("\"_synapse_msg_payload\":42}");
+        assertThat(encoder.apply(TextMessage.of("foo", null))).endsWith("\"_synapse_msg_payload\":null}");
+    }
+
+    @Test
+    public void shouldEmbedTrustedJsonPayloadsInV2FormatWithoutCheckingThem() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V2, null, 0, true);
+        assertThat(encoder.apply(TextMessage.of("foo", " {\"a\":} "))).endsWith("\"_synapse_msg_payload\": {\"a\":} }");
+        assertThat(encoder.apply(TextMessage.of("foo", "{\"a\":"))).endsWith("\"_synapse_msg_payload\":\"{\\\"a\\\":\"}");
+    }
+
+    @Test
+    public void shouldDecodeEncodedV2Messages() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V2);
+        final TextMessage someMessage = TextMessage.of(Key.of("foo", "bar"), Header.builder().withAttributes(of("attr", "\"quoted\"")).build(), "{\"some\":[\"payload\"]}");
+        final TextMessage decoded = new TextDecoder().apply(encoder.apply(someMessage));
+        assertThat(decoded).isEqualTo(someMessage);
+    }
+
+    @Test
+    public void shouldEncodeInV3Format() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V3);
+        final TextMessage someMessage = TextMessage.of(Key.of("foo", "bar"), Header.builder().withAttributes(of("attr", "value")).build(), "{}");
+        final String encoded = encoder.apply(someMessage);
+        assertThat(encoded).isEqualTo("\uE0033:foo3:bar1:4:attr5:value2:{}");
+    }
+
+    @Test
+    public void shouldCompressLargeMessages() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V2, CompressionCodecs.GZIP, 100);
+        final TextMessage someMessage = TextMessage.of(Key.of("foo", "bar"), Header.of(), "{\"value\":\"" + Strings.repeat("x", 1000) + "\"}");
+        final String encoded = encoder.apply(someMessage);
+        assertThat(TextCompression.isCompressed(encoded)).isTrue();
+        assertThat(TextCompression.decompress(encoded)).isEqualTo(new TextEncoder(MessageFormat.V2).apply(someMessage));
+    }
+
+    @Test
+    public void shouldNotCompressSmallMessages() {
+        final TextEncoder encoder = new TextEncoder(MessageFormat.V1, CompressionCodecs.GZIP, 100);
+        final String encoded = encoder.apply(TextMessage.of("foo", "{\"value\":\"small\"}"));
+        assertThat(encoded).isEqualTo("{\"value\":\"small\"}");
+    }
+
+}
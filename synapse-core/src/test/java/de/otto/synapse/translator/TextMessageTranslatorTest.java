@@ -7,6 +7,12 @@ import de.otto.synapse.message.Message;
 import de.otto.synapse.message.TextMessage;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Map;
+
+import static de.otto.synapse.message.DefaultHeaderAttr.MSG_PAYLOAD_CODEC;
 import static de.otto.synapse.message.Message.message;
 import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -43,4 +49,55 @@ public class TextMessageTranslatorTest {
         assertThat(message.getKey(), is(Key.of("test")));
         assertThat(message.getPayload(), is(nullValue()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldEncodePayloadUsingBinaryCodec() throws IOException {
+        // given
+        final PayloadCodec cbor = PayloadCodecs.codecFor("cbor");
+        final MessageTranslator<TextMessage> messageTranslator = new TextMessageTranslator(cbor);
+
+        // when
+        final TextMessage message = messageTranslator.apply(message("test", singletonMap("foo", "bar")));
+
+        // then
+        assertThat(message.getHeader().getAsString(MSG_PAYLOAD_CODEC), is("cbor"));
+        assertThat(message.getPayloadAsByteBuffer(), is(ByteBuffer.wrap(cbor.encode(singletonMap("foo", "bar")))));
+        assertThat(message.getPayload(), is(Base64.getEncoder().encodeToString(cbor.encode(singletonMap("foo", "bar")))));
+        assertThat(message.getPayloadAs(Map.class), is(singletonMap("foo", "bar")));
+    }
+
+    @Test
+    public void shouldDecodeBinaryPayloadFromText() throws IOException {
+        // given
+        final TextMessage translated = new TextMessageTranslator(PayloadCodecs.codecFor("cbor")).apply(message("test", singletonMap("foo", "bar")));
+
+        // when
+        final TextMessage message = TextMessage.of(translated.getKey(), translated.getHeader(), translated.getPayload());
+
+        // then
+        assertThat(message.getPayloadAs(Map.class), is(singletonMap("foo", "bar")));
+        assertThat(message.getPayloadAsByteBuffer(), is(translated.getPayloadAsByteBuffer()));
+    }
+
+    @Test
+    public void shouldKeepBinaryPayloadInBinaryEnvelope() throws IOException {
+        // given
+        final TextMessage translated = new TextMessageTranslator(PayloadCodecs.codecFor("cbor")).apply(message("test", singletonMap("foo", "bar")));
+
+        // when
+        final TextMessage message = BinaryEnvelope.decode(Key.of(), Header.of(), ByteBuffer.wrap(BinaryEnvelope.encode(translated)));
+
+        // then
+        assertThat(message.getHeader().getAsString(MSG_PAYLOAD_CODEC), is("cbor"));
+        assertThat(message.getPayload(), is(translated.getPayload()));
+        assertThat(message.getPayloadAs(Map.class), is(singletonMap("foo", "bar")));
+    }
+
+    @Test
+    public void shouldUseJsonForPayloadsWithoutCodec() {
+        final TextMessage message = new TextMessageTranslator(PayloadCodecs.JSON).apply(message("test", singletonMap("foo", "bar")));
+
+        assertThat(message.getHeader().getAsString(MSG_PAYLOAD_CODEC), is(nullValue()));
+        assertThat(message.getPayload(), is("{\"foo\":\"bar\"}"));
+    }
+}
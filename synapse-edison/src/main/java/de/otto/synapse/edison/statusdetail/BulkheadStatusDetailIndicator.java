@@ -0,0 +1,52 @@
+package de.otto.synapse.edison.statusdetail;
+
+import de.otto.edison.status.domain.Status;
+import de.otto.edison.status.domain.StatusDetail;
+import de.otto.edison.status.indicator.StatusDetailIndicator;
+import de.otto.synapse.consumer.BulkheadMessageConsumer;
+import de.otto.synapse.eventsource.EventSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This status detail indicator indicates the lag of every {@link BulkheadMessageConsumer isolated consumer}
+ * registered at an {@link EventSource}.
+ */
+@Component
+public class BulkheadStatusDetailIndicator implements StatusDetailIndicator {
+
+    private final List<EventSource> eventSources;
+
+    @Autowired
+    public BulkheadStatusDetailIndicator(final Optional<List<EventSource>> eventSources) {
+        this.eventSources = eventSources.orElse(emptyList());
+    }
+
+    @Override
+    public List<StatusDetail> statusDetails() {
+        return eventSources.stream()
+                .flatMap(eventSource -> eventSource.getMessageDispatcher().getAll().stream()
+                        .filter(consumer -> consumer instanceof BulkheadMessageConsumer)
+                        .map(consumer -> statusDetailOf(eventSource.getChannelName(), (BulkheadMessageConsumer<?>) consumer)))
+                .collect(toList());
+    }
+
+    private StatusDetail statusDetailOf(final String channelName, final BulkheadMessageConsumer<?> bulkhead) {
+        final String message = format("Consumer is %s behind channel. %s of %s messages queued, %s dropped, %s spilled.",
+                bulkhead.getDurationBehind(),
+                bulkhead.getQueueSize(),
+                bulkhead.getCapacity(),
+                bulkhead.getDroppedMessages(),
+                bulkhead.getSpilledMessages());
+        final Status status = bulkhead.getDroppedMessages() > 0 ? Status.WARNING : Status.OK;
+        return StatusDetail.statusDetail(channelName + " / " + bulkhead.getName(), status, message);
+    }
+
+}
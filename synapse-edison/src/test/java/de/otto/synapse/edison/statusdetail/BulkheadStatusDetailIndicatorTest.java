@@ -0,0 +1,44 @@
+package de.otto.synapse.edison.statusdetail;
+
+import de.otto.edison.status.domain.Status;
+import de.otto.edison.status.domain.StatusDetail;
+import de.otto.synapse.consumer.BulkheadMessageConsumer;
+import de.otto.synapse.consumer.MessageConsumer;
+import de.otto.synapse.consumer.MessageDispatcher;
+import de.otto.synapse.eventsource.EventSource;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkheadStatusDetailIndicatorTest {
+
+    @Test
+    public void shouldIndicateStatusOfBulkheads() {
+        // given
+        final MessageDispatcher messageDispatcher = new MessageDispatcher();
+        messageDispatcher.add(MessageConsumer.of(".*", String.class, message -> {}));
+        try (final BulkheadMessageConsumer<String> bulkhead = BulkheadMessageConsumer.dropping("analytics", MessageConsumer.of(".*", String.class, message -> {}), 10)) {
+            messageDispatcher.add(bulkhead);
+            final EventSource eventSource = mock(EventSource.class);
+            when(eventSource.getChannelName()).thenReturn("foo");
+            when(eventSource.getMessageDispatcher()).thenReturn(messageDispatcher);
+
+            // when
+            final List<StatusDetail> statusDetails = new BulkheadStatusDetailIndicator(Optional.of(singletonList(eventSource))).statusDetails();
+
+            // then
+            assertThat(statusDetails.size(), is(1));
+            assertThat(statusDetails.get(0).getName(), is("foo / analytics"));
+            assertThat(statusDetails.get(0).getStatus(), is(Status.OK));
+            assertThat(statusDetails.get(0).getMessage(), startsWith("Consumer is PT0S behind channel. 0 of 10 messages queued"));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package de.otto.synapse.checkpoint.redis;
+
+import de.otto.synapse.channel.ChannelPosition;
+import de.otto.synapse.checkpoint.ChannelPositionCodec;
+import de.otto.synapse.checkpoint.CheckpointStore;
+import org.slf4j.Logger;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Redis-based implementation of a {@link CheckpointStore}.
+ * <p>
+ *     The channel position of every event source is stored as a JSON document using the key
+ *     {@code <name>-<eventSourceName>-checkpoint}.
+ * </p>
+ */
+public class RedisCheckpointStore implements CheckpointStore {
+
+    private static final Logger LOG = getLogger(RedisCheckpointStore.class);
+
+    private final String name;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * @param name the name of the checkpoint store, used as a prefix of the keys stored in Redis
+     * @param stringRedisTemplate the RedisTemplate used to access Redis
+     */
+    public RedisCheckpointStore(final String name,
+                                final RedisTemplate<String, String> stringRedisTemplate) {
+        this.name = name;
+        this.redisTemplate = stringRedisTemplate;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<ChannelPosition> getChannelPosition(final @Nonnull String eventSourceName) {
+        final String json = redisTemplate.opsForValue().get(checkpointKey(eventSourceName));
+        return Optional.ofNullable(json).map(ChannelPositionCodec::decode);
+    }
+
+    @Override
+    public void saveChannelPosition(final @Nonnull String eventSourceName,
+                                    final @Nonnull ChannelPosition channelPosition) {
+        redisTemplate.opsForValue().set(checkpointKey(eventSourceName), ChannelPositionCodec.encode(channelPosition));
+        LOG.debug("Saved checkpoint {} of EventSource '{}' in {}", channelPosition, eventSourceName, name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private String checkpointKey(final String eventSourceName) {
+        return name + "-" + eventSourceName + "-checkpoint";
+    }
+}
@@ -65,7 +65,27 @@ public class RedisIndexedMessageStore implements MessageStore {
                                     final long maxAge,
                                     final Indexer indexer,
                                     final RedisTemplate<String, String> stringRedisTemplate) {
-        this(name, batchSize, maxMessages, maxAge, indexer, stringRedisTemplate, new TextEncoder(MessageFormat.V2), new TextDecoder());
+        this(name, batchSize, maxMessages, maxAge, indexer, stringRedisTemplate, MessageFormat.V2);
+    }
+
+    /**
+     * @param name the name of the message store
+     * @param batchSize the size of the batches used to fetch messages from Redis
+     * @param maxMessages the maximum number of messages stored in the message store
+     * @param maxAge maximum number of seconds after that a message will be evicted
+     * @param indexer the {@code Indexer} used to index entities stored in the message store
+     * @param stringRedisTemplate the RedisTemplate used to access Redis
+     * @param messageFormat the format used to store messages in Redis. Messages of all formats can be read,
+     *                      so the format can be changed for existing message stores.
+     */
+    public RedisIndexedMessageStore(final String name,
+                                    final int batchSize,
+                                    final int maxMessages,
+                                    final long maxAge,
+                                    final Indexer indexer,
+                                    final RedisTemplate<String, String> stringRedisTemplate,
+                                    final MessageFormat messageFormat) {
+        this(name, batchSize, maxMessages, maxAge, indexer, stringRedisTemplate, new TextEncoder(messageFormat), new TextDecoder());
     }
 
     /**
@@ -0,0 +1,65 @@
+package de.otto.synapse.checkpoint.redis;
+
+import de.otto.synapse.channel.ChannelPosition;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Optional;
+
+import static de.otto.synapse.channel.ChannelPosition.channelPosition;
+import static de.otto.synapse.channel.ShardPosition.fromHorizon;
+import static de.otto.synapse.channel.ShardPosition.fromPosition;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RedisCheckpointStoreTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    private RedisCheckpointStore testee;
+
+    @Before
+    public void before() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        testee = new RedisCheckpointStore("Test Store", redisTemplate);
+    }
+
+    @Test
+    public void shouldReturnEmptyPositionForUnknownChannel() {
+        // given
+        when(valueOperations.get("Test Store-some-channel-checkpoint")).thenReturn(null);
+
+        // when
+        final Optional<ChannelPosition> channelPosition = testee.getChannelPosition("some-channel");
+
+        // then
+        assertThat(channelPosition.isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldSaveAndRestoreChannelPosition() {
+        // given
+        final ChannelPosition expected = channelPosition(fromPosition("shard-1", "42"), fromHorizon("shard-2"));
+
+        // when
+        testee.saveChannelPosition("some-channel", expected);
+
+        // then
+        final ArgumentCaptor<String> jsonCaptor = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).set(eq("Test Store-some-channel-checkpoint"), jsonCaptor.capture());
+        when(valueOperations.get("Test Store-some-channel-checkpoint")).thenReturn(jsonCaptor.getValue());
+        assertThat(testee.getChannelPosition("some-channel"), is(Optional.of(expected)));
+    }
+}